@@ -32,6 +32,9 @@ public abstract class AbstractMessageDecoder extends AbstractInitializableCompon
     /** Message context. */
     private MessageContext messageContext;
 
+    /** Whether the decoder has been reset since it was last used. */
+    private boolean resetForReuse;
+
     /** {@inheritDoc} */
     @Override
     public MessageContext getMessageContext() {
@@ -53,8 +56,66 @@ public abstract class AbstractMessageDecoder extends AbstractInitializableCompon
         ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
         ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
 
+        if (resetForReuse) {
+            validateResetInputs();
+            resetForReuse = false;
+        }
+
         doDecode();
     }
+
+    /**
+     * Discard the state of the previous exchange so that the decoder may be reused without being initialized again.
+     * 
+     * <p>
+     * Once reset, the per-exchange inputs of the decoder may be set again. This implements
+     * {@link org.opensaml.messaging.pipeline.ResettableComponent#reset()} for subclasses which declare that
+     * interface, and subclasses with additional per-exchange state should override {@link #doReset()}.
+     * </p>
+     */
+    public synchronized void reset() {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        doReset();
+        resetForReuse = true;
+    }
+
+    /**
+     * Discard the per-exchange state of the decoder.
+     * 
+     * <p>
+     * Subclasses should call this method after discarding their own state.
+     * </p>
+     */
+    protected void doReset() {
+        messageContext = null;
+    }
+
+    /**
+     * Check the per-exchange inputs supplied since the decoder was reset, as would otherwise be done at
+     * initialization.
+     * 
+     * <p>
+     * The default implementation is a no-op.
+     * </p>
+     * 
+     * @throws MessageDecodingException if a required input is missing
+     */
+    protected void validateResetInputs() throws MessageDecodingException {
+        
+    }
+
+    /**
+     * Throw an exception if the per-exchange inputs of the decoder may not be modified, which is the case once the
+     * decoder has been initialized, until it is reset.
+     */
+    protected void ifInputsUnmodifiableThrowUnmodifiabledComponentException() {
+        if (!resetForReuse) {
+            ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        }
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+    }
     
     /** {@inheritDoc} */
     protected void doDestroy() {
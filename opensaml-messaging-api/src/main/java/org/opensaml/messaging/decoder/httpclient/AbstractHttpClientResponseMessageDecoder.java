@@ -20,7 +20,6 @@ package org.opensaml.messaging.decoder.httpclient;
 import javax.annotation.Nullable;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
-import net.shibboleth.utilities.java.support.component.ComponentSupport;
 
 import org.apache.http.HttpResponse;
 import org.opensaml.messaging.decoder.AbstractMessageDecoder;
@@ -42,8 +41,7 @@ public abstract class AbstractHttpClientResponseMessageDecoder extends AbstractM
 
     /** {@inheritDoc} */
     public synchronized void setHttpResponse(@Nullable final HttpResponse clientResponse) {
-        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
-        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        ifInputsUnmodifiableThrowUnmodifiabledComponentException();
 
         response = clientResponse;
     }
@@ -53,6 +51,22 @@ public abstract class AbstractHttpClientResponseMessageDecoder extends AbstractM
         super.decode();
     }
 
+    /** {@inheritDoc} */
+    protected void doReset() {
+        response = null;
+
+        super.doReset();
+    }
+
+    /** {@inheritDoc} */
+    protected void validateResetInputs() throws MessageDecodingException {
+        super.validateResetInputs();
+
+        if (response == null) {
+            throw new MessageDecodingException("HTTP client response cannot be null");
+        }
+    }
+
     /** {@inheritDoc} */
     protected void doDestroy() {
         response = null;
@@ -35,11 +35,13 @@ public abstract class AbstractMessageEncoder extends AbstractInitializableCompon
     /** The message context. */
     @Nullable private MessageContext messageContext;
 
+    /** Whether the encoder has been reset since it was last used. */
+    private boolean resetForReuse;
+
     /** {@inheritDoc} */
     @Override
     public synchronized void setMessageContext(@Nullable final MessageContext context) {
-        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
-        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        ifInputsUnmodifiableThrowUnmodifiabledComponentException();
 
         messageContext = context;
     }
@@ -50,9 +52,65 @@ public abstract class AbstractMessageEncoder extends AbstractInitializableCompon
         ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
         ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
 
+        if (resetForReuse) {
+            validateResetInputs();
+            resetForReuse = false;
+        }
+
         doEncode();
     }
 
+    /**
+     * Discard the state of the previous exchange so that the encoder may be reused without being initialized again.
+     * 
+     * <p>
+     * Once reset, the per-exchange inputs of the encoder may be set again. This implements
+     * {@link org.opensaml.messaging.pipeline.ResettableComponent#reset()} for subclasses which declare that
+     * interface, and subclasses with additional per-exchange state should override {@link #doReset()}.
+     * </p>
+     */
+    public synchronized void reset() {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        doReset();
+        resetForReuse = true;
+    }
+
+    /**
+     * Discard the per-exchange state of the encoder.
+     * 
+     * <p>
+     * Subclasses should call this method after discarding their own state.
+     * </p>
+     */
+    protected void doReset() {
+        messageContext = null;
+    }
+
+    /**
+     * Check the per-exchange inputs supplied since the encoder was reset, as would otherwise be done at
+     * initialization.
+     * 
+     * @throws MessageEncodingException if a required input is missing
+     */
+    protected void validateResetInputs() throws MessageEncodingException {
+        if (messageContext == null) {
+            throw new MessageEncodingException("Message context cannot be null");
+        }
+    }
+
+    /**
+     * Throw an exception if the per-exchange inputs of the encoder may not be modified, which is the case once the
+     * encoder has been initialized, until it is reset.
+     */
+    protected void ifInputsUnmodifiableThrowUnmodifiabledComponentException() {
+        if (!resetForReuse) {
+            ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        }
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+    }
+
     /** {@inheritDoc}.
      * 
      * Default implementation is a no-op.
@@ -20,10 +20,10 @@ package org.opensaml.messaging.encoder.httpclient;
 import javax.annotation.Nullable;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
-import net.shibboleth.utilities.java.support.component.ComponentSupport;
 
 import org.apache.http.HttpRequest;
 import org.opensaml.messaging.encoder.AbstractMessageEncoder;
+import org.opensaml.messaging.encoder.MessageEncodingException;
 import org.opensaml.messaging.encoder.servlet.HttpServletResponseMessageEncoder;
 
 /**
@@ -42,12 +42,27 @@ public abstract class AbstractHttpClientRequestMessageEncoder extends AbstractMe
 
     /** {@inheritDoc} */
     public synchronized void setHttpRequest(@Nullable final HttpRequest httpRequest) {
-        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
-        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        ifInputsUnmodifiableThrowUnmodifiabledComponentException();
 
         request = httpRequest;
     }
 
+    /** {@inheritDoc} */
+    protected void doReset() {
+        request = null;
+
+        super.doReset();
+    }
+
+    /** {@inheritDoc} */
+    protected void validateResetInputs() throws MessageEncodingException {
+        super.validateResetInputs();
+
+        if (request == null) {
+            throw new MessageEncodingException("HTTP client request cannot be null");
+        }
+    }
+
     /** {@inheritDoc} */
     protected void doDestroy() {
         request = null;
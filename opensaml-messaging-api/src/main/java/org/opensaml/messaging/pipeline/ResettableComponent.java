@@ -0,0 +1,45 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.messaging.pipeline;
+
+/**
+ * Interface for a component of a {@link MessagePipeline}, such as a message encoder, decoder or handler, which
+ * may be reused for further message exchanges without being constructed and initialized again.
+ *
+ * <p>
+ * Resetting a component discards any state associated with the previous exchange, such as the message context
+ * and transport objects, while retaining its configuration. A component remains initialized once reset, and the
+ * per-exchange inputs for the next exchange, which would otherwise only be accepted before initialization, may
+ * then be supplied to it again.
+ * </p>
+ *
+ * <p>
+ * Message handlers are expected to be reusable in any case, so a handler need only implement this interface if it
+ * retains state between invocations which must be discarded.
+ * </p>
+ *
+ * @since 4.1.0
+ */
+public interface ResettableComponent {
+
+    /**
+     * Discard the state of the previous exchange so that the component may be reused.
+     */
+    void reset();
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.artifact.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.xml.SerializeSupport;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.common.binding.artifact.SAMLArtifactMap.SAMLArtifactMapEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+
+/**
+ * A variant of {@link StorageServiceSAMLArtifactMapEntryFactory} that serializes entries in a compact binary form.
+ *
+ * <p>The issuer and relying party are stored as length-prefixed fields, followed by the serialized message,
+ * which is compressed if large enough, and the result is base64-encoded for storage. Unlike the XML form,
+ * the message is parsed on its own, without a wrapping element to be detached afterwards.</p>
+ *
+ * <p>Entries stored by the parent class in XML form are still deserialized, to allow for a change of format
+ * while entries are outstanding.</p>
+ *
+ * @since 4.1.0
+ */
+public class BinaryStorageServiceSAMLArtifactMapEntryFactory extends StorageServiceSAMLArtifactMapEntryFactory {
+
+    /** Default minimum size of a serialized message to compress. */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 512;
+
+    /** Format version. */
+    private static final byte FORMAT_VERSION = 1;
+
+    /** Flag indicating a compressed message. */
+    private static final byte FLAG_DEFLATED = 1;
+
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(BinaryStorageServiceSAMLArtifactMapEntryFactory.class);
+
+    /** Whether to compress the message. */
+    private boolean compression;
+
+    /** Minimum size of a serialized message to compress. */
+    @NonNegative private int compressionThreshold;
+
+    /** Constructor. */
+    public BinaryStorageServiceSAMLArtifactMapEntryFactory() {
+        compression = true;
+        compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    }
+
+    /**
+     * Set whether to compress the serialized message.
+     *
+     * <p>Defaults to true.</p>
+     *
+     * @param flag flag to set
+     */
+    public void setCompression(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        compression = flag;
+    }
+
+    /**
+     * Set the minimum size of a serialized message to compress.
+     *
+     * <p>Defaults to {@link #DEFAULT_COMPRESSION_THRESHOLD}.</p>
+     *
+     * @param threshold minimum size in bytes
+     */
+    public void setCompressionThreshold(@NonNegative final int threshold) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        compressionThreshold = (int) Constraint.isGreaterThanOrEqual(0, threshold,
+                "Compression threshold cannot be negative");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public String serialize(@Nonnull final SAMLArtifactMapEntry instance) throws IOException {
+        log.debug("Serializing SAMLArtifactMapEntry for storage");
+
+        final Element marshalledMessage;
+        try {
+            marshalledMessage = XMLObjectSupport.marshall(instance.getSamlMessage());
+        } catch (final MarshallingException e) {
+            throw new IOException("Error marshalling SAML message", e);
+        }
+
+        final ByteArrayOutputStream message = new ByteArrayOutputStream(1024);
+        SerializeSupport.writeNode(marshalledMessage, message);
+        final boolean deflate = compression && message.size() >= compressionThreshold;
+
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream(message.size() + 128);
+        final DataOutputStream out = new DataOutputStream(sink);
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(deflate ? FLAG_DEFLATED : 0);
+        out.writeUTF(instance.getIssuerId());
+        out.writeUTF(instance.getRelyingPartyId());
+        if (deflate) {
+            final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try (final OutputStream deflaterStream = new DeflaterOutputStream(out, deflater)) {
+                message.writeTo(deflaterStream);
+            } finally {
+                deflater.end();
+            }
+        } else {
+            message.writeTo(out);
+        }
+        out.flush();
+
+        log.trace("Serialized SAMLArtifactMapEntry of {} bytes, message of {} bytes{}", sink.size(), message.size(),
+                deflate ? " compressed" : "");
+
+        return Base64.getEncoder().encodeToString(sink.toByteArray());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public SAMLArtifactMapEntry deserialize(final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value, @Nullable final Long expiration)
+                    throws IOException {
+
+        if (value.startsWith("<")) {
+            log.debug("Deserializing artifact mapping data stored in XML form");
+            return super.deserialize(version, context, key, value, expiration);
+        }
+
+        log.debug("Deserializing artifact mapping data from stored string");
+
+        final byte[] data;
+        try {
+            data = Base64.getDecoder().decode(value);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("SAMLArtifactMapEntry data was not base64-encoded", e);
+        }
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readByte() != FORMAT_VERSION) {
+            throw new IOException("SAMLArtifactMapEntry data was not in a supported format");
+        }
+        final boolean deflated = (in.readByte() & FLAG_DEFLATED) != 0;
+        final String issuer = in.readUTF();
+        final String relyingParty = in.readUTF();
+
+        final Inflater inflater = deflated ? new Inflater(true) : null;
+        try (final InputStream message = deflated ? new InflaterInputStream(in, inflater) : in) {
+            final XMLObject xmlObject = XMLObjectSupport.unmarshallFromInputStream(getParserPool(), message);
+            if (!(xmlObject instanceof SAMLObject)) {
+                throw new IOException("SAMLArtifactMapEntry's XMLObject was not a SAML message");
+            }
+            return newEntry(key, issuer, relyingParty, (SAMLObject) xmlObject);
+        } catch (final XMLParserException e) {
+            throw new IOException("Error parsing XML into DOM", e);
+        } catch (final UnmarshallingException e) {
+            throw new IOException("Error unmarshalling DOM into SAMLObject", e);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+}
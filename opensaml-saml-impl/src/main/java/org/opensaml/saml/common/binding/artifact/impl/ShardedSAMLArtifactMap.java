@@ -0,0 +1,553 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.artifact.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
+import net.shibboleth.utilities.java.support.component.AbstractInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.TimerSupport;
+
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.common.binding.artifact.ExpiringSAMLArtifactMapEntry;
+import org.opensaml.saml.common.binding.artifact.SAMLArtifactMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory artifact map implementation suited to high artifact issue rates.
+ *
+ * <p>Entries are spread over a number of independently locked shards. Within each shard, artifacts are also
+ * recorded in a queue of expiry buckets, each covering a fixed slice of time, so the cleanup task only visits
+ * the buckets which have expired rather than every entry in the map, as {@link BasicSAMLArtifactMap} does.</p>
+ *
+ * <p>The number of entries may be bounded. When the map is full, expired entries are reclaimed immediately, and
+ * if that does not free any space the new entry is refused with an {@link IOException}, pushing back on the
+ * issuer rather than letting the map grow without limit.</p>
+ *
+ * <p>Counts of artifacts issued, resolved, expired and refused are maintained for monitoring.</p>
+ *
+ * @since 4.1.0
+ */
+@ThreadSafeAfterInit
+public class ShardedSAMLArtifactMap extends AbstractInitializableComponent implements SAMLArtifactMap {
+
+    /** Default number of shards: 16. */
+    public static final int DEFAULT_SHARD_COUNT = 16;
+
+    /** Default width of an expiry bucket: 1 second. */
+    @Nonnull public static final Duration DEFAULT_BUCKET_WIDTH = Duration.ofSeconds(1);
+
+    /** Class Logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(ShardedSAMLArtifactMap.class);
+
+    /** Artifact mapping storage. */
+    @NonnullAfterInit private Shard[] shards;
+
+    /** Current number of entries. */
+    @Nonnull private final AtomicInteger size;
+
+    /** Number of artifacts stored. */
+    @Nonnull private final LongAdder issued;
+
+    /** Number of artifacts successfully retrieved. */
+    @Nonnull private final LongAdder resolved;
+
+    /** Number of artifacts removed upon expiry. */
+    @Nonnull private final LongAdder expired;
+
+    /** Number of artifacts refused because the map was full. */
+    @Nonnull private final LongAdder refused;
+
+    /** Lifetime of an artifact. */
+    @Nonnull private Duration artifactLifetime;
+
+    /** Factory for SAMLArtifactMapEntry instances. */
+    @Nonnull private SAMLArtifactMapEntryFactory entryFactory;
+
+    /** Number of shards. */
+    @Positive private int shardCount;
+
+    /** Maximum number of entries, or 0 for no limit. */
+    @NonNegative private int maxEntries;
+
+    /** Width of an expiry bucket in milliseconds. */
+    @Positive private long bucketWidth;
+
+    /** Time between cleanup checks. Default value: (30 seconds) */
+    @Nonnull private Duration cleanupInterval;
+
+    /** Timer used to schedule cleanup tasks. */
+    @Nullable private Timer cleanupTaskTimer;
+
+    /** Constructor. */
+    public ShardedSAMLArtifactMap() {
+        artifactLifetime = Duration.ofMinutes(1);
+        cleanupInterval = Duration.ofSeconds(30);
+        bucketWidth = DEFAULT_BUCKET_WIDTH.toMillis();
+        shardCount = DEFAULT_SHARD_COUNT;
+        entryFactory = new ExpiringSAMLArtifactMapEntryFactory();
+        size = new AtomicInteger();
+        issued = new LongAdder();
+        resolved = new LongAdder();
+        expired = new LongAdder();
+        refused = new LongAdder();
+    }
+
+    /** {@inheritDoc} */
+    @Override protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+
+        // A power of two, so a shard can be selected by masking the hash.
+        final int count = Integer.highestOneBit(shardCount) < shardCount
+                ? Integer.highestOneBit(shardCount) << 1 : shardCount;
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+
+        if (!cleanupInterval.isZero()) {
+            cleanupTaskTimer = new Timer(TimerSupport.getTimerName(this), true);
+            cleanupTaskTimer.schedule(new Cleanup(), cleanupInterval.toMillis(), cleanupInterval.toMillis());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override protected void doDestroy() {
+        if (cleanupTaskTimer != null) {
+            cleanupTaskTimer.cancel();
+            cleanupTaskTimer = null;
+        }
+        shards = null;
+
+        super.doDestroy();
+    }
+
+    /**
+     * Get the artifact entry lifetime.
+     *
+     * @return the artifact entry lifetime
+     */
+    @Nonnull public Duration getArtifactLifetime() {
+        return artifactLifetime;
+    }
+
+    /**
+     * Set the artifact entry lifetime.
+     *
+     * @param lifetime artifact entry lifetime
+     */
+    public void setArtifactLifetime(@Nonnull final Duration lifetime) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        Constraint.isNotNull(lifetime, "Lifetime cannot be null");
+        Constraint.isFalse(lifetime.isNegative() || lifetime.isZero(), "Lifetime must be positive");
+
+        artifactLifetime = lifetime;
+    }
+
+    /**
+     * Get the map entry factory.
+     *
+     * @return the map entry factory
+     */
+    @Nonnull public SAMLArtifactMapEntryFactory getEntryFactory() {
+        return entryFactory;
+    }
+
+    /**
+     * Set the map entry factory, which must produce instances of {@link ExpiringSAMLArtifactMapEntry}.
+     *
+     * @param factory map entry factory
+     */
+    public void setEntryFactory(@Nonnull final SAMLArtifactMapEntryFactory factory) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        entryFactory = Constraint.isNotNull(factory, "SAMLArtifactMapEntryFactory cannot be null");
+    }
+
+    /**
+     * Set the number of shards, which is rounded up to a power of two.
+     *
+     * <p>Defaults to {@link #DEFAULT_SHARD_COUNT}.</p>
+     *
+     * @param count number of shards
+     */
+    public void setShardCount(@Positive final int count) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        shardCount = (int) Constraint.isGreaterThan(0, count, "Shard count must be greater than 0");
+    }
+
+    /**
+     * Get the maximum number of entries.
+     *
+     * @return maximum number of entries, or 0 for no limit
+     */
+    @NonNegative public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Set the maximum number of entries, or 0 for no limit.
+     *
+     * <p>Defaults to 0.</p>
+     *
+     * @param max maximum number of entries
+     */
+    public void setMaxEntries(@NonNegative final int max) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        maxEntries = (int) Constraint.isGreaterThanOrEqual(0, max, "Maximum entries cannot be negative");
+    }
+
+    /**
+     * Set the width of the time slice covered by each expiry bucket.
+     *
+     * <p>Wider buckets mean fewer buckets to track, but entries are removed by the cleanup task up to one bucket
+     * width after they expire. Expired entries are never returned in any case. Defaults to
+     * {@link #DEFAULT_BUCKET_WIDTH}.</p>
+     *
+     * @param width expiry bucket width
+     */
+    public void setBucketWidth(@Nonnull final Duration width) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        Constraint.isNotNull(width, "Bucket width cannot be null");
+        Constraint.isFalse(width.toMillis() <= 0, "Bucket width must be at least 1 millisecond");
+
+        bucketWidth = width.toMillis();
+    }
+
+    /**
+     * Set the cleanup interval, or 0 for none.
+     *
+     * @param interval  cleanup interval
+     */
+    public void setCleanupInterval(@Nonnull final Duration interval) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        Constraint.isNotNull(interval, "Interval cannot be null");
+        Constraint.isFalse(interval.isNegative(), "Interval cannot be negative");
+
+        cleanupInterval = interval;
+    }
+
+    /**
+     * Get the current number of entries, including any which have expired but not yet been removed.
+     *
+     * @return the number of entries
+     */
+    @NonNegative public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Get the number of artifacts stored.
+     *
+     * @return the number of artifacts issued
+     */
+    public long getIssuedCount() {
+        return issued.sum();
+    }
+
+    /**
+     * Get the number of artifacts successfully retrieved.
+     *
+     * @return the number of artifacts resolved
+     */
+    public long getResolvedCount() {
+        return resolved.sum();
+    }
+
+    /**
+     * Get the number of artifacts removed upon expiry.
+     *
+     * @return the number of artifacts expired
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * Get the number of artifacts refused because the map was full.
+     *
+     * @return the number of artifacts refused
+     */
+    public long getRefusedCount() {
+        return refused.sum();
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(@Nonnull @NotEmpty final String artifact) throws IOException {
+        final Shard shard = getShard(artifact);
+        synchronized (shard) {
+            final ExpiringSAMLArtifactMapEntry entry = shard.entries.get(artifact);
+            return entry != null && entry.isValid();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Nullable public SAMLArtifactMapEntry get(@Nonnull @NotEmpty final String artifact) throws IOException {
+        log.debug("Attempting to retrieve entry for artifact: {}", artifact);
+
+        final Shard shard = getShard(artifact);
+        final ExpiringSAMLArtifactMapEntry entry;
+        synchronized (shard) {
+            entry = shard.entries.get(artifact);
+            if (entry != null && !entry.isValid()) {
+                shard.entries.remove(artifact);
+                size.decrementAndGet();
+                expired.increment();
+                log.debug("Entry for artifact was expired: {}", artifact);
+                return null;
+            }
+        }
+
+        if (entry == null) {
+            log.debug("No entry found for artifact: {}", artifact);
+            return null;
+        }
+
+        resolved.increment();
+        log.debug("Found valid entry for artifact: {}", artifact);
+        return entry;
+    }
+
+    /** {@inheritDoc} */
+    public void put(@Nonnull @NotEmpty final String artifact, @Nonnull @NotEmpty final String relyingPartyId,
+            @Nonnull @NotEmpty final String issuerId, @Nonnull final SAMLObject samlMessage) throws IOException {
+
+        final ExpiringSAMLArtifactMapEntry artifactEntry =
+                (ExpiringSAMLArtifactMapEntry) entryFactory.newEntry(artifact, issuerId, relyingPartyId, samlMessage);
+        final Instant expiration = Instant.now().plus(getArtifactLifetime());
+        artifactEntry.setExpiration(expiration);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Storing new artifact entry '{}' for relying party '{}', expiring at '{}'", new Object[] {
+                    artifact, relyingPartyId, artifactEntry.getExpiration(),});
+        }
+
+        final Shard shard = getShard(artifact);
+        final long bucketIndex = Math.floorDiv(expiration.toEpochMilli(), bucketWidth) + 1;
+        synchronized (shard) {
+            if (store(shard, artifact, artifactEntry, bucketIndex)) {
+                issued.increment();
+                return;
+            }
+        }
+
+        // Reclaiming takes every shard's lock in turn, so it must not be done while holding this one.
+        log.debug("Artifact map is full, removing expired entries");
+        removeExpired();
+        synchronized (shard) {
+            if (store(shard, artifact, artifactEntry, bucketIndex)) {
+                issued.increment();
+                return;
+            }
+        }
+
+        refused.increment();
+        log.warn("Artifact map is full with {} entries, refusing artifact for relying party '{}'", maxEntries,
+                relyingPartyId);
+        throw new IOException("Artifact map is full");
+    }
+
+    /** {@inheritDoc} */
+    public void remove(@Nonnull @NotEmpty final String artifact) throws IOException {
+        log.debug("Removing artifact entry: {}", artifact);
+
+        final Shard shard = getShard(artifact);
+        synchronized (shard) {
+            if (shard.entries.remove(artifact) != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove the entries in all expired buckets.
+     *
+     * @return the number of entries removed
+     */
+    protected int removeExpired() {
+        final Shard[] current = shards;
+        if (current == null) {
+            return 0;
+        }
+
+        final Instant now = Instant.now();
+        final long currentBucket = Math.floorDiv(now.toEpochMilli(), bucketWidth);
+        int removed = 0;
+        for (final Shard shard : current) {
+            synchronized (shard) {
+                removed += shard.removeExpired(currentBucket, now);
+            }
+        }
+        if (removed > 0) {
+            size.addAndGet(-removed);
+            expired.add(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Store an entry in a shard if it replaces an existing entry or there is space for it.
+     *
+     * <p>The caller must hold the shard's monitor.</p>
+     *
+     * @param shard the shard holding the artifact
+     * @param artifact the artifact
+     * @param entry the entry
+     * @param bucketIndex index of the bucket covering the entry's expiration
+     * @return true iff the entry was stored
+     */
+    private boolean store(@Nonnull final Shard shard, @Nonnull final String artifact,
+            @Nonnull final ExpiringSAMLArtifactMapEntry entry, final long bucketIndex) {
+        if (!shard.entries.containsKey(artifact) && size.incrementAndGet() > maxEntries && maxEntries > 0) {
+            size.decrementAndGet();
+            return false;
+        }
+        shard.entries.put(artifact, entry);
+        shard.addToBucket(artifact, bucketIndex);
+        return true;
+    }
+
+    /**
+     * Get the shard holding an artifact.
+     *
+     * @param artifact the artifact
+     * @return the shard
+     */
+    @Nonnull private Shard getShard(@Nonnull final String artifact) {
+        final int hash = artifact.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (shards.length - 1)];
+    }
+
+    /** A portion of the map, guarded by its own monitor. */
+    private static final class Shard {
+
+        /** Entries, indexed by artifact. */
+        @Nonnull private final Map<String,ExpiringSAMLArtifactMapEntry> entries;
+
+        /** Expiry buckets, in order of expiry. */
+        @Nonnull private final Deque<Bucket> buckets;
+
+        /** Constructor. */
+        Shard() {
+            entries = new HashMap<>();
+            buckets = new ArrayDeque<>();
+        }
+
+        /**
+         * Record an artifact in the bucket covering its expiration.
+         *
+         * <p>Expirations normally only move forward, but if the clock steps back the artifact is added to the
+         * latest bucket, which merely delays its removal.</p>
+         *
+         * @param artifact the artifact
+         * @param index index of the bucket covering its expiration
+         */
+        void addToBucket(@Nonnull final String artifact, final long index) {
+            Bucket bucket = buckets.peekLast();
+            if (bucket == null || bucket.index < index) {
+                bucket = new Bucket(index);
+                buckets.addLast(bucket);
+            }
+            bucket.artifacts.add(artifact);
+        }
+
+        /**
+         * Remove the entries in the buckets which have expired.
+         *
+         * <p>Entries recorded in an expired bucket may since have been removed or replaced, so each is checked
+         * before removal.</p>
+         *
+         * @param currentBucket index of the bucket covering the current time
+         * @param now the current time
+         * @return the number of entries removed
+         */
+        int removeExpired(final long currentBucket, @Nonnull final Instant now) {
+            int removed = 0;
+            while (!buckets.isEmpty() && buckets.peekFirst().index <= currentBucket) {
+                for (final String artifact : buckets.pollFirst().artifacts) {
+                    final ExpiringSAMLArtifactMapEntry entry = entries.get(artifact);
+                    if (entry != null && !entry.isValid(now)) {
+                        entries.remove(artifact);
+                        removed++;
+                    }
+                }
+            }
+            return removed;
+        }
+    }
+
+    /** The artifacts expiring within one time slice. */
+    private static final class Bucket {
+
+        /** Index of the time slice, such that all of its expirations precede index times the bucket width. */
+        private final long index;
+
+        /** Artifacts expiring within the time slice. */
+        @Nonnull private final List<String> artifacts;
+
+        /**
+         * Constructor.
+         *
+         * @param bucketIndex index of the time slice
+         */
+        Bucket(final long bucketIndex) {
+            index = bucketIndex;
+            artifacts = new ArrayList<>();
+        }
+    }
+
+    /** A cleanup task that removes the entries in expired buckets. */
+    protected class Cleanup extends TimerTask {
+
+        /** {@inheritDoc} */
+        @Override public void run() {
+            log.debug("Running cleanup task");
+
+            final int removed = removeExpired();
+            if (removed > 0) {
+                log.debug("Removed {} expired artifact entries", removed);
+            }
+        }
+    }
+
+}
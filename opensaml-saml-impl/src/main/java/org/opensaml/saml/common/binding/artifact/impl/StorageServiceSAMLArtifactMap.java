@@ -20,10 +20,13 @@ package org.opensaml.saml.common.binding.artifact.impl;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
 import net.shibboleth.utilities.java.support.component.AbstractInitializableComponent;
@@ -39,7 +42,14 @@ import org.opensaml.storage.StorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Artifact map implementation backed by {@link StorageService}. */
+/**
+ * Artifact map implementation backed by {@link StorageService}.
+ * 
+ * <p>An optional near-cache of entries created by this instance may be enabled via
+ * {@link #setNearCacheSize(int)}. When an artifact is resolved by the same instance that issued it,
+ * the cached entry is returned in place of deserializing the stored copy. The backing store remains
+ * authoritative for whether the artifact is still valid, and a cached entry is returned at most once.</p>
+ */
 public class StorageServiceSAMLArtifactMap extends AbstractInitializableComponent implements SAMLArtifactMap {
 
     /** Storage context label. */
@@ -59,6 +69,12 @@ public class StorageServiceSAMLArtifactMap extends AbstractInitializableComponen
 
     /** Factory for SAMLArtifactMapEntry instances. */
     @Nonnull private SAMLArtifactMapEntryFactory entryFactory;
+    
+    /** Maximum number of entries to cache locally, 0 to disable. */
+    @NonNegative private int nearCacheSize;
+    
+    /** Entries created by this instance, mapped by artifact, or null if disabled. */
+    @Nullable private Map<String,SAMLArtifactMapEntry> nearCache;
 
     /** Constructor. */
     public StorageServiceSAMLArtifactMap() {
@@ -77,6 +93,20 @@ public class StorageServiceSAMLArtifactMap extends AbstractInitializableComponen
         // We can't shorten the artifacts as lookup keys at the moment because
         // the key is used to recreate the original artifact value.
         artifactStoreKeySize = getStorageService().getCapabilities().getKeySize();
+        
+        if (nearCacheSize > 0) {
+            final int maxSize = nearCacheSize;
+            nearCache = new LinkedHashMap<>() {
+                /** Serial version UID. */
+                private static final long serialVersionUID = -2385472618640294826L;
+
+                /** {@inheritDoc} */
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String,SAMLArtifactMapEntry> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
     }
 
     /**
@@ -106,6 +136,17 @@ public class StorageServiceSAMLArtifactMap extends AbstractInitializableComponen
         return entryFactory;
     }
 
+    /**
+     * Get the maximum number of entries created by this instance to cache locally.
+     * 
+     * @return maximum near-cache size, 0 if disabled
+     * 
+     * @since 4.1.0
+     */
+    @NonNegative public int getNearCacheSize() {
+        return nearCacheSize;
+    }
+
     /**
      * Set the artifact store.
      * 
@@ -149,6 +190,24 @@ public class StorageServiceSAMLArtifactMap extends AbstractInitializableComponen
         entryFactory = factory;
     }
 
+    /**
+     * Set the maximum number of entries created by this instance to cache locally.
+     * 
+     * <p>A cached entry retains the message object supplied to {@link #put(String, String, String, SAMLObject)},
+     * so that object should not be modified once an artifact has been issued for it.</p>
+     * 
+     * <p>Defaults to 0, which disables the cache.</p>
+     * 
+     * @param size maximum near-cache size
+     * 
+     * @since 4.1.0
+     */
+    public void setNearCacheSize(@NonNegative final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        nearCacheSize = (int) Constraint.isGreaterThanOrEqual(0, size, "Near-cache size cannot be negative");
+    }
+
     /** {@inheritDoc} */
     public boolean contains(@Nonnull @NotEmpty final String artifact) throws IOException {
         if (artifact.length() > artifactStoreKeySize) {
@@ -166,12 +225,18 @@ public class StorageServiceSAMLArtifactMap extends AbstractInitializableComponen
         }
 
         final StorageRecord<SAMLArtifactMapEntry> record = getStorageService().read(STORAGE_CONTEXT, artifact);
+        final SAMLArtifactMapEntry cached = takeFromNearCache(artifact);
 
         if (record == null) {
             log.debug("No unexpired entry found for artifact: {}", artifact);
             return null;
         }
 
+        if (cached != null) {
+            log.debug("Found valid entry for artifact in near-cache: {}", artifact);
+            return cached;
+        }
+        
         log.debug("Found valid entry for artifact: {}", artifact);
         return record.getValue((StorageSerializer<SAMLArtifactMapEntry>) getEntryFactory(), STORAGE_CONTEXT, artifact);
     }
@@ -199,6 +264,12 @@ public class StorageServiceSAMLArtifactMap extends AbstractInitializableComponen
         if (!success) {
             throw new IOException("A duplicate artifact was generated");
         }
+        
+        if (nearCache != null) {
+            synchronized (nearCache) {
+                nearCache.put(artifact, artifactEntry);
+            }
+        }
     }
 
     /** {@inheritDoc} */
@@ -209,7 +280,24 @@ public class StorageServiceSAMLArtifactMap extends AbstractInitializableComponen
             throw new IOException("Length of artifact (" + artifact.length() + ") exceeds storage capabilities");
         }
 
+        takeFromNearCache(artifact);
         getStorageService().delete(STORAGE_CONTEXT, artifact);
     }
+    
+    /**
+     * Remove and return an entry from the near-cache, if enabled.
+     * 
+     * @param artifact the artifact
+     * 
+     * @return the cached entry, or null
+     */
+    @Nullable private SAMLArtifactMapEntry takeFromNearCache(@Nonnull @NotEmpty final String artifact) {
+        if (nearCache == null) {
+            return null;
+        }
+        synchronized (nearCache) {
+            return nearCache.remove(artifact);
+        }
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Codec for the raw DEFLATE (RFC 1951) encoding used by the SAML HTTP-Redirect binding.
+ * 
+ * <p>Creating a {@link Deflater} or {@link Inflater} allocates native zlib state, which dominates the cost
+ * of encoding or decoding a small message. This class retains a bounded number of them, along with the
+ * output buffer used for compression, for reuse across messages. The compressed output is identical
+ * to that of a {@link java.util.zip.DeflaterOutputStream} using the same compression level.</p>
+ */
+@ThreadSafe
+public class DeflateCodec {
+
+    /** Compression level used by the HTTP-Redirect encoder, for compatibility with its historical output. */
+    public static final int DEFAULT_LEVEL = Deflater.DEFLATED;
+
+    /** Initial size of a compression buffer. */
+    private static final int INITIAL_BUFFER_SIZE = 2048;
+
+    /** Largest compression buffer retained for reuse. */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    /** Shared instance. */
+    @Nonnull private static final DeflateCodec DEFAULT_INSTANCE =
+            new DeflateCodec(DEFAULT_LEVEL, 2 * Runtime.getRuntime().availableProcessors());
+
+    /** Compression level. */
+    private final int level;
+
+    /** Idle compressors. */
+    @Nonnull private final BlockingQueue<PooledDeflater> deflaters;
+
+    /** Idle decompressors. */
+    @Nonnull private final BlockingQueue<Inflater> inflaters;
+
+    /**
+     * Constructor.
+     *
+     * @param compressionLevel compression level (0-9)
+     * @param poolSize maximum number of idle compressors and decompressors to retain
+     */
+    public DeflateCodec(final int compressionLevel, @Positive final int poolSize) {
+        Constraint.isTrue(compressionLevel >= Deflater.NO_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION,
+                "Compression level must be between 0 and 9");
+        Constraint.isGreaterThan(0, poolSize, "Pool size must be greater than 0");
+        level = compressionLevel;
+        deflaters = new ArrayBlockingQueue<>(poolSize);
+        inflaters = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * Get a shared instance using {@link #DEFAULT_LEVEL}.
+     * 
+     * @return shared instance
+     */
+    @Nonnull public static DeflateCodec getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * DEFLATE compress data and base64 encode the result, unchunked.
+     * 
+     * @param data data to compress
+     * 
+     * @return the compressed and encoded data
+     */
+    @Nonnull public String deflateAndBase64Encode(@Nonnull final byte[] data) {
+        PooledDeflater pooled = deflaters.poll();
+        if (pooled == null) {
+            pooled = new PooledDeflater(new Deflater(level, true));
+        }
+        
+        try {
+            final Deflater deflater = pooled.deflater;
+            deflater.setInput(data);
+            deflater.finish();
+            
+            byte[] buffer = pooled.buffer;
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+                pooled.buffer = buffer;
+            }
+            
+            final ByteBuffer encoded = Base64.getEncoder().encode(ByteBuffer.wrap(buffer, 0, length));
+            return new String(encoded.array(), 0, encoded.limit(), StandardCharsets.US_ASCII);
+        } finally {
+            pooled.deflater.reset();
+            if (!deflaters.offer(pooled)) {
+                pooled.deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Get a stream that inflates DEFLATE compressed data.
+     * 
+     * <p>The stream should be closed after use to allow its decompressor to be reused.</p>
+     * 
+     * @param data compressed data
+     * 
+     * @return a stream over the decompressed data
+     */
+    @Nonnull public InputStream inflate(@Nonnull final byte[] data) {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        return new PooledInflaterInputStream(new ByteArrayInputStream(data), inflater);
+    }
+
+    /** A compressor and its output buffer. */
+    private static final class PooledDeflater {
+
+        /** Compressor. */
+        @Nonnull private final Deflater deflater;
+
+        /** Output buffer. */
+        @Nonnull private byte[] buffer;
+
+        /**
+         * Constructor.
+         *
+         * @param def compressor
+         */
+        PooledDeflater(@Nonnull final Deflater def) {
+            deflater = def;
+            buffer = new byte[INITIAL_BUFFER_SIZE];
+        }
+    }
+
+    /** A stream that returns its decompressor to the pool when closed. */
+    private final class PooledInflaterInputStream extends InflaterInputStream {
+
+        /** Whether the stream has been closed. */
+        private boolean closed;
+
+        /**
+         * Constructor.
+         *
+         * @param is the input stream
+         * @param inflater the decompressor
+         */
+        PooledInflaterInputStream(@Nonnull final InputStream is, @Nonnull final Inflater inflater) {
+            super(is, inflater);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.reset();
+                if (!inflaters.offer(inf)) {
+                    inf.end();
+                }
+            }
+            super.close();
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Incremental reader of an <code>application/x-www-form-urlencoded</code> request body.
+ *
+ * <p>Fields are visited in order via {@link #nextField()}. The value of the current field may be read either
+ * as a bounded string via {@link #readValue(int)} or as a stream of decoded bytes via {@link #openValue()}, which
+ * allows a large value to be consumed without first materializing it. Any unread portion of a value is skipped
+ * when advancing to the next field.</p>
+ *
+ * <p>The total number of bytes read from the underlying stream is limited, and an {@link IOException} is raised
+ * once the limit is exceeded.</p>
+ */
+@NotThreadSafe
+public class URLEncodedFormReader implements Closeable {
+
+    /** Maximum length of a decoded field name. */
+    private static final int MAX_NAME_LENGTH = 256;
+
+    /** Size of the read buffer. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Underlying stream. */
+    @Nonnull private final InputStream input;
+
+    /** Character set of the decoded content. */
+    @Nonnull private final Charset charset;
+
+    /** Maximum number of bytes to read from the underlying stream. */
+    private final long maxLength;
+
+    /** Read buffer. */
+    @Nonnull private final byte[] buffer;
+
+    /** Position of the next unread byte in the buffer. */
+    private int position;
+
+    /** Number of valid bytes in the buffer. */
+    private int limit;
+
+    /** Number of bytes read from the underlying stream. */
+    private long bytesRead;
+
+    /** Whether the end of the underlying stream has been reached. */
+    private boolean endOfStream;
+
+    /** Whether the value of the current field has not been fully consumed. */
+    private boolean valuePending;
+
+    /**
+     * Constructor.
+     *
+     * @param in the form body
+     * @param encoding character set of the decoded content
+     * @param maxBytes maximum number of bytes to read from the form body
+     */
+    public URLEncodedFormReader(@Nonnull final InputStream in, @Nonnull final Charset encoding,
+            @Positive final long maxBytes) {
+        input = Constraint.isNotNull(in, "InputStream cannot be null");
+        charset = Constraint.isNotNull(encoding, "Charset cannot be null");
+        maxLength = Constraint.isGreaterThan(0, maxBytes, "Maximum length must be greater than 0");
+        buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Get the number of bytes read from the form body so far.
+     *
+     * @return number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Advance to the next field, skipping any unread portion of the current value.
+     *
+     * @return the decoded name of the next field, or null if there are no more fields
+     *
+     * @throws IOException if an error occurs reading or decoding the form body
+     */
+    @Nullable public String nextField() throws IOException {
+        while (readValueByte() != -1) {
+            // Skip the unread portion of the current value.
+        }
+
+        final ByteArrayOutputStream name = new ByteArrayOutputStream(32);
+        while (true) {
+            final int b = readRaw();
+            if (b == -1 || b == '&') {
+                if (name.size() > 0) {
+                    return name.toString(charset);
+                } else if (b == -1) {
+                    return null;
+                }
+                // Skip empty pairs.
+            } else if (b == '=') {
+                valuePending = true;
+                return name.toString(charset);
+            } else {
+                if (name.size() >= MAX_NAME_LENGTH) {
+                    throw new IOException("Form field name exceeds maximum length of " + MAX_NAME_LENGTH);
+                }
+                name.write(decode(b));
+            }
+        }
+    }
+
+    /**
+     * Read the remainder of the current field's value as a string.
+     *
+     * @param maxBytes maximum length of the decoded value in bytes
+     *
+     * @return the decoded value, empty if the field has no value
+     *
+     * @throws IOException if an error occurs reading or decoding the form body, or the value is too long
+     */
+    @Nonnull public String readValue(@Positive final int maxBytes) throws IOException {
+        final ByteArrayOutputStream value = new ByteArrayOutputStream(Math.min(maxBytes, 128));
+        int b;
+        while ((b = readValueByte()) != -1) {
+            if (value.size() >= maxBytes) {
+                throw new IOException("Form field value exceeds maximum length of " + maxBytes);
+            }
+            value.write(b);
+        }
+        return value.toString(charset);
+    }
+
+    /**
+     * Open a stream over the remainder of the current field's value.
+     *
+     * <p>The stream is valid only until the reader is advanced to the next field, and closing it has no effect
+     * on the reader.</p>
+     *
+     * @return a stream of the decoded bytes of the value
+     */
+    @Nonnull public InputStream openValue() {
+        return new ValueInputStream();
+    }
+
+    /** {@inheritDoc} */
+    public void close() throws IOException {
+        valuePending = false;
+        input.close();
+    }
+
+    /**
+     * Read the next decoded byte of the current field's value.
+     *
+     * @return the next byte, or -1 at the end of the value
+     *
+     * @throws IOException if an error occurs reading or decoding the form body
+     */
+    private int readValueByte() throws IOException {
+        if (!valuePending) {
+            return -1;
+        }
+        final int b = readRaw();
+        if (b == -1 || b == '&') {
+            valuePending = false;
+            return -1;
+        }
+        return decode(b);
+    }
+
+    /**
+     * Decode a byte of the form body, consuming the remainder of any percent-encoded sequence.
+     *
+     * @param b the byte read
+     *
+     * @return the decoded byte
+     *
+     * @throws IOException if an error occurs reading or decoding the form body
+     */
+    private int decode(final int b) throws IOException {
+        if (b == '+') {
+            return ' ';
+        } else if (b == '%') {
+            final int high = Character.digit(readRaw(), 16);
+            final int low = Character.digit(readRaw(), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException("Invalid percent-encoding in form body");
+            }
+            return (high << 4) | low;
+        }
+        return b;
+    }
+
+    /**
+     * Read the next byte of the form body.
+     *
+     * @return the next byte, or -1 at the end of the stream
+     *
+     * @throws IOException if an error occurs reading the form body, or the maximum length is exceeded
+     */
+    private int readRaw() throws IOException {
+        if (position == limit) {
+            if (endOfStream) {
+                return -1;
+            }
+            final long remaining = maxLength - bytesRead;
+            final int count = input.read(buffer, 0, (int) Math.min(buffer.length, remaining + 1));
+            if (count == -1) {
+                endOfStream = true;
+                return -1;
+            }
+            bytesRead += count;
+            if (bytesRead > maxLength) {
+                throw new IOException("Form body exceeds maximum length of " + maxLength);
+            }
+            position = 0;
+            limit = count;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    /** Stream over the decoded bytes of the current field's value. */
+    private final class ValueInputStream extends InputStream {
+
+        /** {@inheritDoc} */
+        @Override
+        public int read() throws IOException {
+            return readValueByte();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < len) {
+                final int c = readValueByte();
+                if (c == -1) {
+                    break;
+                }
+                b[off + count++] = (byte) c;
+            }
+            return count == 0 ? -1 : count;
+        }
+    }
+
+}
@@ -17,8 +17,12 @@
 
 package org.opensaml.saml.common.binding.security.impl;
 
+import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -75,6 +79,9 @@ public abstract class BaseSAMLSimpleSignatureSecurityHandler extends AbstractMes
     /** Signature trust engine used to validate raw signatures. */
     @Nullable private SignatureTrustEngine trustEngine;
 
+    /** Keys of the request-derived credentials which last validated a signature, indexed by signer entityID. */
+    @Nonnull private final Map<String,PublicKey> lastValidatingKeys = new ConcurrentHashMap<>();
+
     /**
      * Gets the engine used to validate the signature.
      * 
@@ -276,10 +283,15 @@ public abstract class BaseSAMLSimpleSignatureSecurityHandler extends AbstractMes
                         getLogPrefix());
                 return false;
             }
-            for (final Credential cred : candidateCredentials) {
+            final EntityIdCriterion entityCriterion = criteriaSet.get(EntityIdCriterion.class);
+            final String entityID = entityCriterion != null ? entityCriterion.getEntityId() : null;
+            for (final Credential cred : orderCandidateCredentials(entityID, candidateCredentials)) {
                 if (engine.validate(signature, signedContent, algorithmURI, criteriaSet, cred)) {
                     log.debug("{} Simple signature validation succeeded with a request-derived credential",
                             getLogPrefix());
+                    if (entityID != null && cred.getPublicKey() != null) {
+                        lastValidatingKeys.put(entityID, cred.getPublicKey());
+                    }
                     return true;
                 }
             }
@@ -292,6 +304,37 @@ public abstract class BaseSAMLSimpleSignatureSecurityHandler extends AbstractMes
         }
     }
 
+    /**
+     * Order the request-derived candidate credentials so that any credential with the key which last validated
+     * a signature from the same signer is tried first.
+     * 
+     * <p>Each candidate which fails is also evaluated against all of the signer's trusted credentials, so a peer
+     * supplying several keys, e.g. during a key rollover, would otherwise pay for a number of failed
+     * verifications on every message.</p>
+     * 
+     * @param entityID the signer entityID, if known
+     * @param candidateCredentials the request-derived candidate credentials
+     * @return the candidate credentials in the order in which to try them
+     */
+    @Nonnull @NonnullElements private List<Credential> orderCandidateCredentials(@Nullable final String entityID,
+            @Nonnull @NonnullElements final List<Credential> candidateCredentials) {
+        if (entityID == null || candidateCredentials.size() < 2) {
+            return candidateCredentials;
+        }
+        final PublicKey lastKey = lastValidatingKeys.get(entityID);
+        if (lastKey == null) {
+            return candidateCredentials;
+        }
+        for (int i = 1; i < candidateCredentials.size(); i++) {
+            if (lastKey.equals(candidateCredentials.get(i).getPublicKey())) {
+                final List<Credential> ordered = new ArrayList<>(candidateCredentials);
+                ordered.add(0, ordered.remove(i));
+                return ordered;
+            }
+        }
+        return candidateCredentials;
+    }
+
     /**
      * Extract any candidate validation credentials from the request and/or message context.
      * 
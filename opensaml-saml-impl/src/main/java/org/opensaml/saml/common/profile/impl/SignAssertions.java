@@ -165,15 +165,11 @@ public class SignAssertions extends AbstractProfileAction {
             }
 
             if (response instanceof org.opensaml.saml.saml1.core.Response) {
-                for (final org.opensaml.saml.saml1.core.Assertion assertion :
-                        ((org.opensaml.saml.saml1.core.Response) response).getAssertions()) {
-                    SignatureSupport.signObject(assertion, signatureSigningParameters);
-                }
+                SignatureSupport.signObjects(((org.opensaml.saml.saml1.core.Response) response).getAssertions(),
+                        signatureSigningParameters);
             } else if (response instanceof org.opensaml.saml.saml2.core.Response) {
-                for (final org.opensaml.saml.saml2.core.Assertion assertion :
-                        ((org.opensaml.saml.saml2.core.Response) response).getAssertions()) {
-                    SignatureSupport.signObject(assertion, signatureSigningParameters);
-                }
+                SignatureSupport.signObjects(((org.opensaml.saml.saml2.core.Response) response).getAssertions(),
+                        signatureSigningParameters);
             }
 
             // TODO Maybe the response should not be logged ?
@@ -18,16 +18,29 @@
 package org.opensaml.saml.saml2.binding.decoding.impl;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
 import net.shibboleth.utilities.java.support.codec.Base64Support;
 import net.shibboleth.utilities.java.support.codec.DecodingException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
 
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.decoder.MessageDecodingException;
@@ -36,6 +49,7 @@ import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.common.binding.BindingDescriptor;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
 import org.opensaml.saml.common.binding.decoding.SAMLMessageDecoder;
+import org.opensaml.saml.common.binding.impl.URLEncodedFormReader;
 import org.opensaml.saml.common.messaging.context.SAMLBindingContext;
 import org.opensaml.saml.common.xml.SAMLConstants;
 import org.slf4j.Logger;
@@ -43,15 +57,47 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Strings;
 
-/** Message decoder implementing the SAML 2.0 HTTP POST binding. */
+/**
+ * Message decoder implementing the SAML 2.0 HTTP POST binding.
+ * 
+ * <p>By default, the message is obtained via the servlet parameter API. If streaming is enabled via
+ * {@link #setStreamingDecode(boolean)}, a form-encoded request body is instead read directly, and the
+ * message is base64-decoded into the parser as it is read, avoiding intermediate copies of it. The form
+ * fields other than the message are made available by {@link #getFormParameter(HttpServletRequest, String)},
+ * since the servlet container will not be able to supply them once the body has been consumed.</p>
+ */
 public class HTTPPostDecoder extends BaseHttpServletRequestXMLMessageDecoder implements SAMLMessageDecoder {
 
+    /** Default maximum length of a request body read when streaming. */
+    public static final long DEFAULT_MAX_CONTENT_LENGTH = 2 * 1024 * 1024;
+    
+    /** Name of the request attribute holding the form fields read when streaming. */
+    @Nonnull @NotEmpty public static final String FORM_PARAMETERS_ATTRIBUTE =
+            HTTPPostDecoder.class.getName() + ".FormParameters";
+    
+    /** Media type of a form-encoded request body. */
+    @Nonnull @NotEmpty private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+    
+    /** Maximum length of a form field other than the message. */
+    private static final int MAX_FIELD_LENGTH = 64 * 1024;
+    
     /** Class logger. */
     @Nonnull private final Logger log = LoggerFactory.getLogger(HTTPPostDecoder.class);
 
     /** Optional {@link BindingDescriptor} to inject into {@link SAMLBindingContext} created. */
     @Nullable private BindingDescriptor bindingDescriptor;
     
+    /** Whether to decode the message directly from the request body. */
+    private boolean streamingDecode;
+    
+    /** Maximum length of a request body read when streaming. */
+    @Positive private long maxContentLength;
+    
+    /** Constructor. */
+    public HTTPPostDecoder() {
+        maxContentLength = DEFAULT_MAX_CONTENT_LENGTH;
+    }
+    
     /** {@inheritDoc} */
     @Nonnull @NotEmpty public String getBindingURI() {
         return SAMLConstants.SAML2_POST_BINDING_URI;
@@ -75,6 +121,78 @@ public class HTTPPostDecoder extends BaseHttpServletRequestXMLMessageDecoder imp
         bindingDescriptor = descriptor;
     }
 
+    /**
+     * Get whether to decode the message directly from a form-encoded request body.
+     * 
+     * @return whether to decode the message directly from the request body
+     * 
+     * @since 4.1.0
+     */
+    public boolean isStreamingDecode() {
+        return streamingDecode;
+    }
+    
+    /**
+     * Set whether to decode the message directly from a form-encoded request body.
+     * 
+     * <p>If the body has already been consumed, e.g. by a filter that accessed the request parameters,
+     * the parameters are used instead.</p>
+     * 
+     * <p>Defaults to false.</p>
+     * 
+     * @param flag flag to set
+     * 
+     * @since 4.1.0
+     */
+    public void setStreamingDecode(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        streamingDecode = flag;
+    }
+    
+    /**
+     * Get the maximum length of a request body read when streaming.
+     * 
+     * @return maximum length in bytes
+     * 
+     * @since 4.1.0
+     */
+    @Positive public long getMaxContentLength() {
+        return maxContentLength;
+    }
+    
+    /**
+     * Set the maximum length of a request body read when streaming.
+     * 
+     * <p>Defaults to {@link #DEFAULT_MAX_CONTENT_LENGTH}.</p>
+     * 
+     * @param length maximum length in bytes
+     * 
+     * @since 4.1.0
+     */
+    public void setMaxContentLength(@Positive final long length) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        maxContentLength = Constraint.isGreaterThan(0, length, "Maximum content length must be greater than 0");
+    }
+    
+    /**
+     * Get a form parameter from a request, preferring those read by a streaming decode of its body.
+     * 
+     * @param request the HTTP request
+     * @param name the parameter name
+     * 
+     * @return the parameter value, or null
+     * 
+     * @since 4.1.0
+     */
+    @Nullable public static String getFormParameter(@Nonnull final HttpServletRequest request,
+            @Nonnull @NotEmpty final String name) {
+        final Object fields = request.getAttribute(FORM_PARAMETERS_ATTRIBUTE);
+        if (fields instanceof Map) {
+            return (String) ((Map<?,?>) fields).get(name);
+        }
+        return request.getParameter(name);
+    }
+
     /** {@inheritDoc} */
     protected void doDecode() throws MessageDecodingException {
         final MessageContext messageContext = new MessageContext();
@@ -83,6 +201,15 @@ public class HTTPPostDecoder extends BaseHttpServletRequestXMLMessageDecoder imp
         if (!"POST".equalsIgnoreCase(request.getMethod())) {
             throw new MessageDecodingException("This message decoder only supports the HTTP POST method");
         }
+        
+        if (streamingDecode && isFormContent(request)) {
+            if (decodeFromBody(request, messageContext)) {
+                populateBindingContext(messageContext);
+                setMessageContext(messageContext);
+                return;
+            }
+            log.debug("Request body was empty, decoding message from request parameters");
+        }
 
         final String relayState = request.getParameter("RelayState");
         log.debug("Decoded SAML relay state of: {}", relayState);
@@ -103,6 +230,112 @@ public class HTTPPostDecoder extends BaseHttpServletRequestXMLMessageDecoder imp
         setMessageContext(messageContext);
     }
 
+    /**
+     * Read the form fields directly from the request body, unmarshalling the message as it is read.
+     * 
+     * @param request the inbound HTTP servlet request
+     * @param messageContext the message context to populate
+     * 
+     * @return false iff the request body was empty
+     * 
+     * @throws MessageDecodingException if the body does not contain a single SAML message, cannot be read,
+     *          or exceeds the maximum length
+     * 
+     * @since 4.1.0
+     */
+    protected boolean decodeFromBody(@Nonnull final HttpServletRequest request,
+            @Nonnull final MessageContext messageContext) throws MessageDecodingException {
+        
+        if (request.getContentLengthLong() > maxContentLength) {
+            log.error("Request body of {} bytes exceeds maximum length of {}", request.getContentLengthLong(),
+                    maxContentLength);
+            throw new MessageDecodingException("Request body exceeds maximum length");
+        }
+        
+        final Charset charset;
+        try {
+            charset = request.getCharacterEncoding() != null
+                    ? Charset.forName(request.getCharacterEncoding()) : StandardCharsets.ISO_8859_1;
+        } catch (final IllegalCharsetNameException | UnsupportedCharsetException e) {
+            log.error("Request body has unsupported character encoding: {}", request.getCharacterEncoding());
+            throw new MessageDecodingException("Unsupported request character encoding", e);
+        }
+        final Map<String,String> fields = new HashMap<>();
+        SAMLObject inboundMessage = null;
+        
+        log.debug("Decoding SAML message from request body");
+        try (final URLEncodedFormReader reader =
+                new URLEncodedFormReader(request.getInputStream(), charset, maxContentLength)) {
+            String name;
+            while ((name = reader.nextField()) != null) {
+                if ("SAMLRequest".equals(name) || "SAMLResponse".equals(name)) {
+                    if (inboundMessage != null) {
+                        log.error("Request contained more than one SAML message");
+                        throw new MessageDecodingException("Multiple SAML messages present in request");
+                    }
+                    if (isMessageFieldRetained()) {
+                        final RetainingInputStream value = new RetainingInputStream(reader.openValue());
+                        inboundMessage = (SAMLObject) unmarshallMessage(Base64.getMimeDecoder().wrap(value));
+                        fields.put(name, value.getRetained());
+                    } else {
+                        inboundMessage =
+                                (SAMLObject) unmarshallMessage(Base64.getMimeDecoder().wrap(reader.openValue()));
+                    }
+                } else if (!fields.containsKey(name)) {
+                    fields.put(name, reader.readValue(MAX_FIELD_LENGTH));
+                }
+            }
+            
+            if (reader.getBytesRead() == 0) {
+                return false;
+            }
+        } catch (final IOException e) {
+            log.error("Error reading request body: {}", e.getMessage());
+            throw new MessageDecodingException("Error reading request body", e);
+        }
+
+        if (inboundMessage == null) {
+            log.error("Request did not contain either a SAMLRequest or "
+                    + "SAMLResponse paramter.  Invalid request for SAML 2 HTTP POST binding.");
+            throw new MessageDecodingException("No SAML message present in request");
+        }
+        messageContext.setMessage(inboundMessage);
+        log.debug("Decoded SAML message");
+        
+        request.setAttribute(FORM_PARAMETERS_ATTRIBUTE, Collections.unmodifiableMap(fields));
+        
+        final String relayState = fields.get("RelayState");
+        log.debug("Decoded SAML relay state of: {}", relayState);
+        SAMLBindingSupport.setRelayState(messageContext, relayState);
+        
+        return true;
+    }
+    
+    /**
+     * Get whether the base64-encoded message read by a streaming decode should be retained as a form parameter,
+     * as required to verify a signature computed over it.
+     * 
+     * @return whether to retain the encoded message
+     * 
+     * @since 4.1.0
+     */
+    protected boolean isMessageFieldRetained() {
+        return false;
+    }
+    
+    /**
+     * Check whether the request body is form-encoded.
+     * 
+     * @param request the inbound HTTP servlet request
+     * 
+     * @return true iff the request body is form-encoded
+     */
+    private boolean isFormContent(@Nonnull final HttpServletRequest request) {
+        final String contentType = request.getContentType();
+        return contentType != null
+                && contentType.regionMatches(true, 0, FORM_CONTENT_TYPE, 0, FORM_CONTENT_TYPE.length());
+    }
+    
     /**
      * Gets the Base64 encoded message from the request and decodes it.
      * 
@@ -151,4 +384,62 @@ public class HTTPPostDecoder extends BaseHttpServletRequestXMLMessageDecoder imp
         bindingContext.setIntendedDestinationEndpointURIRequired(SAMLBindingSupport.isMessageSigned(messageContext));
     }
     
-}
\ No newline at end of file
+    /** Stream which retains a copy of the data read through it. */
+    private static final class RetainingInputStream extends FilterInputStream {
+        
+        /** Data read. */
+        @Nonnull private final ByteArrayOutputStream retained;
+
+        /**
+         * Constructor.
+         *
+         * @param in the underlying stream
+         */
+        RetainingInputStream(@Nonnull final InputStream in) {
+            super(in);
+            retained = new ByteArrayOutputStream();
+        }
+        
+        /**
+         * Get the data read through this stream, after first reading any remaining data.
+         * 
+         * @return the data read, as a string
+         * 
+         * @throws IOException if an error occurs reading the remaining data
+         */
+        @Nonnull String getRetained() throws IOException {
+            final byte[] buffer = new byte[1024];
+            while (read(buffer, 0, buffer.length) != -1) {
+                // Read remaining data.
+            }
+            return retained.toString(StandardCharsets.ISO_8859_1);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                retained.write(b);
+            }
+            return b;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int count = super.read(b, off, len);
+            if (count > 0) {
+                retained.write(b, off, count);
+            }
+            return count;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void close() {
+            // The underlying stream is owned by the form reader.
+        }
+    }
+    
+}
@@ -36,6 +36,11 @@ public class HTTPPostSimpleSignDecoder extends HTTPPostDecoder {
         return SAMLConstants.SAML2_POST_SIMPLE_SIGN_BINDING_URI;
     }
     
+    /** {@inheritDoc} */
+    protected boolean isMessageFieldRetained() {
+        return true;
+    }
+    
     /**
      * Populate the context which carries information specific to this binding.
      * 
@@ -46,7 +51,7 @@ public class HTTPPostSimpleSignDecoder extends HTTPPostDecoder {
         bindingContext.setBindingUri(getBindingURI());
         bindingContext.setBindingDescriptor(getBindingDescriptor());
         bindingContext.setHasBindingSignature(
-                !Strings.isNullOrEmpty(getHttpServletRequest().getParameter("Signature")));
+                !Strings.isNullOrEmpty(getFormParameter(getHttpServletRequest(), "Signature")));
         bindingContext.setIntendedDestinationEndpointURIRequired(SAMLBindingSupport.isMessageSigned(messageContext));
     }
     
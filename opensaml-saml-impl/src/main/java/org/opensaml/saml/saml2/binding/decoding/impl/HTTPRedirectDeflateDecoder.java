@@ -17,11 +17,8 @@
 
 package org.opensaml.saml.saml2.binding.decoding.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -38,6 +35,7 @@ import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.common.binding.BindingDescriptor;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
 import org.opensaml.saml.common.binding.decoding.SAMLMessageDecoder;
+import org.opensaml.saml.common.binding.impl.DeflateCodec;
 import org.opensaml.saml.common.messaging.context.SAMLBindingContext;
 import org.opensaml.saml.common.xml.SAMLConstants;
 import org.slf4j.Logger;
@@ -134,7 +132,7 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
 
         try {
             final byte[] decodedBytes = Base64Support.decode(message);
-            return new NoWrapAutoEndInflaterInputStream(new ByteArrayInputStream(decodedBytes));
+            return DeflateCodec.getDefault().inflate(decodedBytes);
         } catch (final Exception e) {
             log.error("Unable to Base64 decode and inflate SAML message: {}", e.getMessage());
             throw new MessageDecodingException("Unable to Base64 decode and inflate SAML message", e);
@@ -154,29 +152,5 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
                 !Strings.isNullOrEmpty(getHttpServletRequest().getParameter("Signature")));
         bindingContext.setIntendedDestinationEndpointURIRequired(SAMLBindingSupport.isMessageSigned(messageContext));
     }
-    
-    /** A subclass of {@link InflaterInputStream} which defaults in a no-wrap {@link Inflater} instance and
-     * closes it when the stream is closed.
-     */
-    private class NoWrapAutoEndInflaterInputStream extends InflaterInputStream {
-
-        /**
-         * Creates a new input stream with a default no-wrap decompressor and buffer size.
-         *
-         * @param is the input stream
-         */
-        public NoWrapAutoEndInflaterInputStream(final InputStream is) {
-            super(is, new Inflater(true));
-        }
-
-        /** {@inheritDoc} */
-        public void close() throws IOException {
-            if (inf != null) {
-                inf.end();
-            }
-            super.close();
-        }
-
-    }
 
-}
\ No newline at end of file
+}
@@ -17,10 +17,14 @@
 
 package org.opensaml.saml.saml2.binding.encoding.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
+import javax.annotation.Nonnull;
 import javax.servlet.http.HttpServletResponse;
 
 import net.shibboleth.utilities.java.support.codec.Base64Support;
@@ -61,6 +65,9 @@ public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
     /** ID of the Velocity template used when performing POST encoding. */
     private String velocityTemplateId;
     
+    /** Whether to render the POST body directly rather than via the Velocity template. */
+    private boolean precompiledForm;
+    
     /** Constructor. */
     public HTTPPostEncoder() {
         setVelocityTemplateId(DEFAULT_TEMPLATE_ID);
@@ -115,6 +122,35 @@ public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
         velocityTemplateId = newVelocityTemplateId;
     }
     
+    /**
+     * Get whether to render the POST body directly rather than via the Velocity template.
+     * 
+     * @return whether to render the POST body directly
+     * 
+     * @since 4.1.0
+     */
+    public boolean isPrecompiledForm() {
+        return precompiledForm;
+    }
+
+    /**
+     * Set whether to render the POST body directly rather than via the Velocity template.
+     * 
+     * <p>The directly rendered page matches the default template, and avoids the cost of template evaluation,
+     * but cannot be customized. The Velocity engine and template are not used in this case.</p>
+     * 
+     * <p>Defaults to false.</p>
+     * 
+     * @param flag flag to set
+     * 
+     * @since 4.1.0
+     */
+    public void setPrecompiledForm(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        precompiledForm = flag;
+    }
+    
     /** {@inheritDoc} */
     protected void doDestroy() {
         velocityEngine = null;
@@ -125,6 +161,9 @@ public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
     /** {@inheritDoc} */
     protected void doInitialize() throws ComponentInitializationException {
         super.doInitialize();
+        if (precompiledForm) {
+            return;
+        }
         if (velocityEngine == null) {
             throw new ComponentInitializationException("VelocityEngine must be supplied");
         }
@@ -157,6 +196,11 @@ public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
      */
     protected void postEncode(final MessageContext messageContext, final String endpointURL) 
             throws MessageEncodingException {
+        if (precompiledForm) {
+            renderForm(messageContext, endpointURL);
+            return;
+        }
+        
         log.debug("Invoking Velocity template to create POST body");
         try {
             final VelocityContext context = new VelocityContext();
@@ -179,6 +223,73 @@ public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
         }
     }
 
+    /**
+     * Base64 and POST encodes the outbound message and writes it directly to the outbound transport.
+     * 
+     * @param messageContext current message context
+     * @param endpointURL endpoint URL to which to encode message
+     * 
+     * @throws MessageEncodingException thrown if there is a problem encoding the message
+     * 
+     * @since 4.1.0
+     */
+    protected void renderForm(@Nonnull final MessageContext messageContext, @Nonnull final String endpointURL)
+            throws MessageEncodingException {
+        log.debug("Rendering POST body");
+        
+        log.debug("Marshalling SAML message");
+        final SAMLObject outboundMessage = (SAMLObject) messageContext.getMessage();
+        final String messageXML = SerializeSupport.nodeToString(marshallMessage(outboundMessage));
+        
+        final HTTPPostFormRenderer form = new HTTPPostFormRenderer(endpointURL);
+        populateForm(form, messageContext, messageXML);
+
+        final HttpServletResponse response = getHttpServletResponse();
+        
+        HttpServletSupport.addNoCacheHeaders(response);
+        HttpServletSupport.setUTF8Encoding(response);
+        HttpServletSupport.setContentType(response, "text/html");
+        
+        try (final OutputStream out = response.getOutputStream()) {
+            form.write(out);
+            out.flush();
+        } catch (final IOException e) {
+            log.error("Error writing POST body: {}", e.getMessage());
+            throw new MessageEncodingException("Error creating output document", e);
+        }
+    }
+
+    /**
+     * Populate the form which will be rendered directly as the POST body.
+     * 
+     * @param form the form to populate
+     * @param messageContext the SAML message context source of data
+     * @param messageXML the serialized SAML message
+     * 
+     * @throws MessageEncodingException thrown if there is a problem encoding the message
+     * 
+     * @since 4.1.0
+     */
+    protected void populateForm(@Nonnull final HTTPPostFormRenderer form, @Nonnull final MessageContext messageContext,
+            @Nonnull final String messageXML) throws MessageEncodingException {
+        
+        final String relayState = SAMLBindingSupport.getRelayState(messageContext);
+        if (SAMLBindingSupport.checkRelayState(relayState)) {
+            log.debug("Setting RelayState parameter to: '{}'", relayState);
+            form.addField("RelayState", relayState);
+        }
+        
+        final SAMLObject outboundMessage = (SAMLObject) messageContext.getMessage();
+        if (outboundMessage instanceof RequestAbstractType) {
+            form.addBase64Field("SAMLRequest", messageXML.getBytes(StandardCharsets.UTF_8));
+        } else if (outboundMessage instanceof StatusResponseType) {
+            form.addBase64Field("SAMLResponse", messageXML.getBytes(StandardCharsets.UTF_8));
+        } else {
+            throw new MessageEncodingException(
+                    "SAML message is neither a SAML RequestAbstractType or StatusResponseType");
+        }
+    }
+
     /**
      * Populate the Velocity context instance which will be used to render the POST body.
      * 
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.binding.encoding.impl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.codec.HTMLEncoder;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Renders the auto-submitting HTML form used by the HTTP-POST family of bindings without a template engine.
+ * 
+ * <p>The fixed portions of the page are encoded once, and the base64 encoding of binary field values is
+ * streamed directly to the output. The page has the same structure as the default Velocity templates, but
+ * offers none of their customization hooks.</p>
+ */
+@NotThreadSafe
+public class HTTPPostFormRenderer {
+
+    /** Page content preceding the form action. */
+    @Nonnull private static final byte[] PREFIX = ("<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "    <head>\n"
+            + "        <meta charset=\"utf-8\" />\n"
+            + "    </head>\n"
+            + "    <body onload=\"document.forms[0].submit()\">\n"
+            + "        <noscript>\n"
+            + "            <p>\n"
+            + "                <strong>Note:</strong> Since your browser does not support JavaScript,\n"
+            + "                you must press the Continue button once to proceed.\n"
+            + "            </p>\n"
+            + "        </noscript>\n"
+            + "        \n"
+            + "        <form action=\"").getBytes(StandardCharsets.UTF_8);
+
+    /** Page content between the form action and the fields. */
+    @Nonnull private static final byte[] FORM_START = ("\" method=\"post\">\n"
+            + "            <div>\n").getBytes(StandardCharsets.UTF_8);
+
+    /** Field content preceding the name. */
+    @Nonnull private static final byte[] FIELD_NAME = "                <input type=\"hidden\" name=\""
+            .getBytes(StandardCharsets.UTF_8);
+
+    /** Field content between the name and the value. */
+    @Nonnull private static final byte[] FIELD_VALUE = "\" value=\"".getBytes(StandardCharsets.UTF_8);
+
+    /** Field content following the value. */
+    @Nonnull private static final byte[] FIELD_END = "\"/>\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Page content following the fields. */
+    @Nonnull private static final byte[] SUFFIX = ("            </div>\n"
+            + "            <noscript>\n"
+            + "                <div>\n"
+            + "                    <input type=\"submit\" value=\"Continue\"/>\n"
+            + "                </div>\n"
+            + "            </noscript>\n"
+            + "        </form>\n"
+            + "    </body>\n"
+            + "</html>").getBytes(StandardCharsets.UTF_8);
+
+    /** Encoded form action. */
+    @Nonnull private final byte[] action;
+
+    /** Form fields, in order. */
+    @Nonnull private final List<Field> fields;
+
+    /**
+     * Constructor.
+     *
+     * @param actionURL the URL to which the form is submitted
+     */
+    public HTTPPostFormRenderer(@Nonnull @NotEmpty final String actionURL) {
+        action = HTMLEncoder.encodeForHTMLAttribute(Constraint.isNotEmpty(actionURL, "Action URL cannot be empty"))
+                .getBytes(StandardCharsets.UTF_8);
+        fields = new ArrayList<>(4);
+    }
+
+    /**
+     * Add a field with a text value, which will be encoded for inclusion in an HTML attribute.
+     * 
+     * @param name field name
+     * @param value field value
+     * 
+     * @return this renderer
+     */
+    @Nonnull public HTTPPostFormRenderer addField(@Nonnull @NotEmpty final String name, @Nonnull final String value) {
+        fields.add(new Field(name, HTMLEncoder.encodeForHTMLAttribute(value).getBytes(StandardCharsets.UTF_8), null));
+        return this;
+    }
+
+    /**
+     * Add a field whose value will be the base64 encoding of the supplied data.
+     * 
+     * @param name field name
+     * @param data data to encode
+     * 
+     * @return this renderer
+     */
+    @Nonnull public HTTPPostFormRenderer addBase64Field(@Nonnull @NotEmpty final String name,
+            @Nonnull final byte[] data) {
+        fields.add(new Field(name, null, Constraint.isNotNull(data, "Data cannot be null")));
+        return this;
+    }
+
+    /**
+     * Write the page to an output stream, which is not closed.
+     * 
+     * @param out output stream
+     * 
+     * @throws IOException if an error occurs
+     */
+    public void write(@Nonnull final OutputStream out) throws IOException {
+        out.write(PREFIX);
+        out.write(action);
+        out.write(FORM_START);
+        for (final Field field : fields) {
+            out.write(FIELD_NAME);
+            out.write(field.name);
+            out.write(FIELD_VALUE);
+            if (field.value != null) {
+                out.write(field.value);
+            } else {
+                // Closing the encoding stream flushes the final quantum and padding, but must not close the output.
+                try (final OutputStream encoder = Base64.getEncoder().wrap(new NonClosingOutputStream(out))) {
+                    encoder.write(field.data);
+                }
+            }
+            out.write(FIELD_END);
+        }
+        out.write(SUFFIX);
+    }
+
+    /** Stream that passes writes through to another, but does not close it. */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        /**
+         * Constructor.
+         *
+         * @param os the underlying stream
+         */
+        NonClosingOutputStream(@Nonnull final OutputStream os) {
+            super(os);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /** A form field. */
+    private static final class Field {
+
+        /** Field name. */
+        @Nonnull private final byte[] name;
+
+        /** Encoded text value. */
+        @Nullable private final byte[] value;
+
+        /** Data to base64 encode. */
+        @Nullable private final byte[] data;
+
+        /**
+         * Constructor.
+         *
+         * @param fieldName field name
+         * @param encodedValue encoded text value, or null
+         * @param rawData data to base64 encode, or null
+         */
+        Field(@Nonnull @NotEmpty final String fieldName, @Nullable final byte[] encodedValue,
+                @Nullable final byte[] rawData) {
+            name = Constraint.isNotEmpty(fieldName, "Field name cannot be empty").getBytes(StandardCharsets.UTF_8);
+            value = encodedValue;
+            data = rawData;
+        }
+    }
+
+}
@@ -33,6 +33,7 @@ import org.opensaml.messaging.encoder.MessageEncodingException;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
 import org.opensaml.saml.common.messaging.SAMLMessageSecuritySupport;
 import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.core.RequestAbstractType;
 import org.opensaml.security.SecurityException;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.CredentialSupport;
@@ -97,6 +98,36 @@ public class HTTPPostSimpleSignEncoder extends HTTPPostEncoder {
         }
     }
 
+    /** {@inheritDoc} */
+    protected void populateForm(final HTTPPostFormRenderer form, final MessageContext messageContext,
+            final String messageXML) throws MessageEncodingException {
+
+        super.populateForm(form, messageContext, messageXML);
+
+        final SignatureSigningParameters signingParameters = 
+                SAMLMessageSecuritySupport.getContextSigningParameters(messageContext);
+        
+        if (signingParameters == null || signingParameters.getSigningCredential() == null) {
+            log.debug("No signing credential was supplied, skipping HTTP-Post simple signing");
+            return;
+        }
+
+        final String sigAlgURI = getSignatureAlgorithmURI(signingParameters);
+        final boolean isRequest = messageContext.getMessage() instanceof RequestAbstractType;
+        final String formControlData = buildFormDataToSign(isRequest, messageXML, messageContext, sigAlgURI);
+        form.addField("Signature", generateSignature(signingParameters.getSigningCredential(), 
+                sigAlgURI, formControlData));
+        form.addField("SigAlg", sigAlgURI);
+        
+        final KeyInfoGenerator kiGenerator = signingParameters.getKeyInfoGenerator();
+        if (kiGenerator != null) {
+            final String kiBase64 = buildKeyInfo(signingParameters.getSigningCredential(), kiGenerator);
+            if (!Strings.isNullOrEmpty(kiBase64)) {
+                form.addField("KeyInfo", kiBase64);
+            }
+        }
+    }
+
     /**
      * Build the {@link KeyInfo} from the signing credential.
      * 
@@ -148,8 +179,6 @@ public class HTTPPostSimpleSignEncoder extends HTTPPostEncoder {
      */
     protected String buildFormDataToSign(final VelocityContext velocityContext, final MessageContext messageContext,
             final String sigAlgURI) throws MessageEncodingException {
-        final StringBuilder builder = new StringBuilder();
-
         boolean isRequest = false;
         if (velocityContext.get("SAMLRequest") != null) {
             isRequest = true;
@@ -174,6 +203,25 @@ public class HTTPPostSimpleSignEncoder extends HTTPPostEncoder {
                                             (isRequest ? "SAMLRequest" : "SAMLResponse"),e);
         }
 
+        return buildFormDataToSign(isRequest, msg, messageContext, sigAlgURI);
+    }
+
+    /**
+     * Build the form control data string over which the signature is computed.
+     * 
+     * @param isRequest whether the message is a request
+     * @param msg the serialized SAML message
+     * @param messageContext the SAML message context being processed
+     * @param sigAlgURI the signature algorithm URI
+     * 
+     * @return the form control data string for signature computation
+     * 
+     * @since 4.1.0
+     */
+    protected String buildFormDataToSign(final boolean isRequest, final String msg,
+            final MessageContext messageContext, final String sigAlgURI) {
+        final StringBuilder builder = new StringBuilder();
+
         if (isRequest) {
             builder.append("SAMLRequest=" + msg);
         } else {
@@ -17,17 +17,14 @@
 
 package org.opensaml.saml.saml2.binding.encoding.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
 
 import javax.annotation.Nonnull;
 import javax.servlet.http.HttpServletResponse;
@@ -46,6 +43,7 @@ import org.opensaml.messaging.encoder.MessageEncodingException;
 import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.common.SignableSAMLObject;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
+import org.opensaml.saml.common.binding.impl.DeflateCodec;
 import org.opensaml.saml.common.messaging.SAMLMessageSecuritySupport;
 import org.opensaml.saml.common.xml.SAMLConstants;
 import org.opensaml.saml.saml2.core.RequestAbstractType;
@@ -137,21 +135,9 @@ public class HTTPRedirectDeflateEncoder extends BaseSAML2MessageEncoder {
      */
     protected String deflateAndBase64Encode(final SAMLObject message) throws MessageEncodingException {
         log.debug("Deflating and Base64 encoding SAML message");
-        try {
-            final String messageStr = SerializeSupport.nodeToString(marshallMessage(message));
-
-            try (final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-                    final DeflaterOutputStream deflaterStream =
-                            new NoWrapAutoEndDeflaterOutputStream(bytesOut, Deflater.DEFLATED)) {
-
-                deflaterStream.write(messageStr.getBytes("UTF-8"));
-                deflaterStream.finish();
+        final String messageStr = SerializeSupport.nodeToString(marshallMessage(message));
 
-                return Base64Support.encode(bytesOut.toByteArray(), Base64Support.UNCHUNKED);
-            }            
-        } catch (final IOException | EncodingException e) {
-            throw new MessageEncodingException("Unable to DEFLATE and Base64 encode SAML message", e);
-        } 
+        return DeflateCodec.getDefault().deflateAndBase64Encode(messageStr.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -301,29 +287,4 @@ public class HTTPRedirectDeflateEncoder extends BaseSAML2MessageEncoder {
         return b64Signature;
     }
 
-    /** A subclass of {@link DeflaterOutputStream} which defaults in a no-wrap {@link Deflater} instance and
-     * closes it when the stream is closed.
-     */
-    private class NoWrapAutoEndDeflaterOutputStream extends DeflaterOutputStream {
-
-        /**
-         * Creates a new output stream with a default no-wrap compressor and buffer size,
-         * and the specified compression level.
-         *
-         * @param os the output stream
-         * @param level the compression level (0-9)
-         */
-        public NoWrapAutoEndDeflaterOutputStream(final OutputStream os, final int level) {
-            super(os, new Deflater(level, true));
-        }
-
-        /** {@inheritDoc} */
-        public void close() throws IOException {
-            if (def != null) {
-                def.end();
-            }
-            super.close();
-        }
-
-    }
-}
\ No newline at end of file
+}
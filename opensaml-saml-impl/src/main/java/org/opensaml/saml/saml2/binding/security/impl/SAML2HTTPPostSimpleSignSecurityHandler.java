@@ -18,7 +18,7 @@
 package org.opensaml.saml.saml2.binding.security.impl;
 
 import java.io.ByteArrayInputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -45,6 +45,7 @@ import org.opensaml.core.xml.io.UnmarshallingException;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.handler.MessageHandlerException;
 import org.opensaml.saml.common.binding.security.impl.BaseSAMLSimpleSignatureSecurityHandler;
+import org.opensaml.saml.saml2.binding.decoding.impl.HTTPPostDecoder;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.xmlsec.keyinfo.KeyInfoCredentialResolver;
 import org.opensaml.xmlsec.keyinfo.KeyInfoCriterion;
@@ -122,52 +123,74 @@ public class SAML2HTTPPostSimpleSignSecurityHandler extends BaseSAMLSimpleSignat
         return "POST".equals(getHttpServletRequest().getMethod());
     }
 
+    /** {@inheritDoc} */
+    @Override
+    @Nullable protected byte[] getSignature() throws MessageHandlerException {
+        final String signature = HTTPPostDecoder.getFormParameter(getHttpServletRequest(), "Signature");
+        if (Strings.isNullOrEmpty(signature)) {
+            return null;
+        }
+        try {
+            return Base64Support.decode(signature);
+        } catch (final DecodingException e) {
+           throw new MessageHandlerException("Signature could not be base64 decoded",e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable protected String getSignatureAlgorithm() throws MessageHandlerException {
+        return HTTPPostDecoder.getFormParameter(getHttpServletRequest(), "SigAlg");
+    }
+
     /** {@inheritDoc} */
     @Override
     @Nullable protected byte[] getSignedContent() throws MessageHandlerException {
         final HttpServletRequest request = getHttpServletRequest();
         
-        final StringBuilder builder = new StringBuilder();
-        final String samlMsg;
+        // The decoded message is already in the UTF-8 form that was signed, so it's written out directly
+        // rather than round-tripped through a String.
+        final String samlRequest = HTTPPostDecoder.getFormParameter(request, "SAMLRequest");
+        final String samlResponse = HTTPPostDecoder.getFormParameter(request, "SAMLResponse");
+        final String paramName;
+        final byte[] samlMsg;
         try {
-            if (request.getParameter("SAMLRequest") != null) {
-                samlMsg = new String(Base64Support.decode(request.getParameter("SAMLRequest")), "UTF-8");
-                builder.append("SAMLRequest=" + samlMsg);
-            } else if (request.getParameter("SAMLResponse") != null) {
-                samlMsg = new String(Base64Support.decode(request.getParameter("SAMLResponse")), "UTF-8");
-                builder.append("SAMLResponse=" + samlMsg);
+            if (samlRequest != null) {
+                paramName = "SAMLRequest=";
+                samlMsg = Base64Support.decode(samlRequest);
+            } else if (samlResponse != null) {
+                paramName = "SAMLResponse=";
+                samlMsg = Base64Support.decode(samlResponse);
             } else {
                 log.warn("Could not extract either a SAMLRequest or a SAMLResponse from the form control data");
                 throw new MessageHandlerException("Extract of SAMLRequest or SAMLResponse from form control data");
             }
-        } catch (final UnsupportedEncodingException e) {
-            log.error("UTF-8 encoding is not supported, this VM is not Java compliant");
-            throw new MessageHandlerException("Unable to process message, UTF-8 encoding is not supported");
         } catch (final DecodingException e) {
             log.error("Unable to Base64 decode either a SAMLRequest or a SAMLResponse from the form control data");
             throw new MessageHandlerException("Unable to Base64 decode either a SAMLRequest or a SAMLResponse "
                     + "from the form control data",e);
         }
 
-        if (request.getParameter("RelayState") != null) {
-            builder.append("&RelayState=" + request.getParameter("RelayState"));
+        final StringBuilder trailer = new StringBuilder();
+        final String relayState = HTTPPostDecoder.getFormParameter(request, "RelayState");
+        if (relayState != null) {
+            trailer.append("&RelayState=").append(relayState);
         }
-
-        builder.append("&SigAlg=" + request.getParameter("SigAlg"));
-
-        final String constructed = builder.toString();
-        if (Strings.isNullOrEmpty(constructed)) {
-            log.warn("Could not construct signed content string from form control data");
-            return null;
+        trailer.append("&SigAlg=").append(HTTPPostDecoder.getFormParameter(request, "SigAlg"));
+
+        final byte[] prefixBytes = paramName.getBytes(StandardCharsets.UTF_8);
+        final byte[] trailerBytes = trailer.toString().getBytes(StandardCharsets.UTF_8);
+        final byte[] constructed = new byte[prefixBytes.length + samlMsg.length + trailerBytes.length];
+        System.arraycopy(prefixBytes, 0, constructed, 0, prefixBytes.length);
+        System.arraycopy(samlMsg, 0, constructed, prefixBytes.length, samlMsg.length);
+        System.arraycopy(trailerBytes, 0, constructed, prefixBytes.length + samlMsg.length, trailerBytes.length);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Constructed signed content string for HTTP-Post-SimpleSign {}",
+                    new String(constructed, StandardCharsets.UTF_8));
         }
-        log.debug("Constructed signed content string for HTTP-Post-SimpleSign {}", constructed);
 
-        try {
-            return constructed.getBytes("UTF-8");
-        } catch (final UnsupportedEncodingException e) {
-            log.error("UTF-8 encoding is not supported, this VM is not Java compliant");
-            throw new MessageHandlerException("Unable to process message, UTF-8 encoding is not supported");
-        }
+        return constructed;
     }
 
     /** {@inheritDoc} */
@@ -175,7 +198,7 @@ public class SAML2HTTPPostSimpleSignSecurityHandler extends BaseSAMLSimpleSignat
     @Nonnull @NonnullElements protected List<Credential> getRequestCredentials(
             @Nonnull final MessageContext samlContext) throws MessageHandlerException {
 
-        final String kiBase64 = getHttpServletRequest().getParameter("KeyInfo");
+        final String kiBase64 = HTTPPostDecoder.getFormParameter(getHttpServletRequest(), "KeyInfo");
         if (Strings.isNullOrEmpty(kiBase64)) {
             log.debug("Form control data did not contain a KeyInfo");
             return Collections.emptyList();
@@ -58,6 +58,14 @@ public class SAML2HTTPRedirectDeflateSignatureSecurityHandler extends BaseSAMLSi
         final String queryString = getHttpServletRequest().getQueryString();
         log.debug("Constructing signed content string from URL query string {}", queryString);
 
+        // The encoder sends the signed parameters contiguously and in signing order, so the signed content is
+        // usually just a range of the query string, which can be copied as-is.
+        final byte[] rangeContent = extractSignedContentRange(queryString);
+        if (rangeContent != null) {
+            log.debug("Extracted signed content for HTTP-Redirect DEFLATE directly from query string");
+            return rangeContent;
+        }
+
         final String constructed = buildSignedContentString(queryString);
         if (Strings.isNullOrEmpty(constructed)) {
             log.warn("Could not extract signed content string from query string");
@@ -73,6 +81,106 @@ public class SAML2HTTPRedirectDeflateSignatureSecurityHandler extends BaseSAMLSi
         }
     }
 
+    /**
+     * Extract the content that was signed as a single range of the raw query string, if the signed parameters
+     * appear in it contiguously and in the order in which they are signed.
+     * 
+     * <p>When this method returns a result it is identical to the string built by
+     * {@link #buildSignedContentString(String)}, but is copied into the returned array without building any
+     * intermediate strings. Query strings in which a parameter name first occurs other than at the start of a
+     * parameter, or which carry both a SAMLRequest and a SAMLResponse parameter, are left to the general
+     * case.</p>
+     * 
+     * @param queryString the raw HTTP query string from the request
+     * @return the signed content, or null if it is not a single ASCII range of the query string
+     */
+    @Nullable private byte[] extractSignedContentRange(@Nullable final String queryString) {
+        if (queryString == null) {
+            return null;
+        }
+
+        final int request = findParameter(queryString, "SAMLRequest");
+        final int response = findParameter(queryString, "SAMLResponse");
+        if ((request < 0) == (response < 0)) {
+            return null;
+        }
+        final int start = request >= 0 ? request : response;
+        if (!isParameterStart(queryString, start)) {
+            return null;
+        }
+
+        int next = parameterEnd(queryString, start) + 1;
+        final int relayState = findParameter(queryString, "RelayState");
+        if (relayState >= 0) {
+            if (relayState != next) {
+                return null;
+            }
+            next = parameterEnd(queryString, relayState) + 1;
+        }
+
+        final int sigAlg = findParameter(queryString, "SigAlg");
+        if (sigAlg != next) {
+            return null;
+        }
+        final int end = parameterEnd(queryString, sigAlg);
+
+        final byte[] content = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            final char c = queryString.charAt(i);
+            if (c > 0x7F) {
+                // Not a properly URL-encoded query string, leave it to the general case.
+                return null;
+            }
+            content[i - start] = (byte) c;
+        }
+        return content;
+    }
+
+    /**
+     * Find the first occurrence of a raw parameter in a query string.
+     * 
+     * <p>This is the first occurrence of the name followed by '=', which need not be at the start of a
+     * parameter.</p>
+     * 
+     * @param queryString the URL query string containing parameters
+     * @param paramName the name of the parameter to find
+     * @return the index of the start of the parameter, or -1 if it was not found
+     */
+    private int findParameter(@Nonnull final String queryString, @Nonnull @NotEmpty final String paramName) {
+        int index = queryString.indexOf(paramName);
+        while (index >= 0) {
+            final int nameEnd = index + paramName.length();
+            if (nameEnd < queryString.length() && queryString.charAt(nameEnd) == '=') {
+                return index;
+            }
+            index = queryString.indexOf(paramName, index + 1);
+        }
+        return -1;
+    }
+    
+    /**
+     * Get whether an index of a query string is the start of a parameter.
+     * 
+     * @param queryString the URL query string containing parameters
+     * @param index the index to check
+     * @return true iff the index is at the start of the query string or follows a '&amp;'
+     */
+    private boolean isParameterStart(@Nonnull final String queryString, final int index) {
+        return index == 0 || queryString.charAt(index - 1) == '&';
+    }
+
+    /**
+     * Find the end of the raw parameter starting at an index of a query string.
+     * 
+     * @param queryString the URL query string containing parameters
+     * @param start the index of the start of the parameter
+     * @return the index following the last character of the parameter
+     */
+    private int parameterEnd(@Nonnull final String queryString, final int start) {
+        final int end = queryString.indexOf('&', start);
+        return end < 0 ? queryString.length() : end;
+    }
+
     /**
      * Extract the raw request parameters and build a string representation of the content that was signed.
      * 
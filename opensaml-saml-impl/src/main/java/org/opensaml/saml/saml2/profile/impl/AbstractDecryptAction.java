@@ -38,6 +38,7 @@ import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.saml2.core.EncryptedElementType;
 import org.opensaml.saml.saml2.encryption.Decrypter;
 import org.opensaml.xmlsec.DecryptionParameters;
+import org.opensaml.xmlsec.context.DecryptedKeyCacheContext;
 import org.opensaml.xmlsec.context.SecurityParametersContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +53,10 @@ import com.google.common.base.Predicates;
  * <p>The {@link SecurityParametersContext} governing the decryption process is located by a lookup
  * strategy, by default a child of the inbound message context.</p>
  * 
+ * <p>A {@link DecryptedKeyCacheContext} is likewise located by a lookup strategy, by default a child of the
+ * inbound message context which is created if necessary, so that the decryption of EncryptedKey elements
+ * is shared by all of the decryption actions operating on a message.</p>
+ * 
  * @event {@link EventIds#PROCEED_EVENT_ID}
  * @event {@link EventIds#INVALID_MSG_CTX}
  */
@@ -66,6 +71,9 @@ public abstract class AbstractDecryptAction extends AbstractProfileAction {
     /** Strategy used to locate the {@link SecurityParametersContext}. */
     @Nonnull private Function<ProfileRequestContext,SecurityParametersContext> securityParamsLookupStrategy;
 
+    /** Strategy used to locate the {@link DecryptedKeyCacheContext}. */
+    @Nonnull private Function<ProfileRequestContext,DecryptedKeyCacheContext> keyCacheContextLookupStrategy;
+
     /** Strategy used to locate the SAML message to operate on. */
     @Nonnull private Function<ProfileRequestContext,Object> messageLookupStrategy;
     
@@ -84,6 +92,9 @@ public abstract class AbstractDecryptAction extends AbstractProfileAction {
         securityParamsLookupStrategy =
                 new ChildContextLookup<>(SecurityParametersContext.class).compose(
                         new InboundMessageContextLookup());
+        keyCacheContextLookupStrategy =
+                new ChildContextLookup<>(DecryptedKeyCacheContext.class, true).compose(
+                        new InboundMessageContextLookup());
         messageLookupStrategy = new MessageLookup<>(Object.class).compose(new InboundMessageContextLookup());
         decryptionPredicate = Predicates.alwaysTrue();
     }
@@ -123,6 +134,23 @@ public abstract class AbstractDecryptAction extends AbstractProfileAction {
                 Constraint.isNotNull(strategy, "SecurityParametersContext lookup strategy cannot be null");
     }
     
+    /**
+     * Set the strategy used to locate the {@link DecryptedKeyCacheContext} associated with a given
+     * {@link ProfileRequestContext}.
+     * 
+     * <p>The strategy may return null, in which case decrypted keys are not cached.</p>
+     * 
+     * @param strategy strategy used to locate the {@link DecryptedKeyCacheContext} associated with a given
+     *            {@link ProfileRequestContext}
+     */
+    public void setDecryptedKeyCacheContextLookupStrategy(
+            @Nonnull final Function<ProfileRequestContext,DecryptedKeyCacheContext> strategy) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        keyCacheContextLookupStrategy =
+                Constraint.isNotNull(strategy, "DecryptedKeyCacheContext lookup strategy cannot be null");
+    }
+    
     /**
      * Set the strategy used to locate the {@link SAMLObject} to operate on.
      * 
@@ -195,6 +223,10 @@ public abstract class AbstractDecryptAction extends AbstractProfileAction {
             final DecryptionParameters params = paramsCtx.getDecryptionParameters();
             decrypter = new Decrypter(params.getDataKeyInfoCredentialResolver(),
                     params.getKEKKeyInfoCredentialResolver(), params.getEncryptedKeyResolver());
+            final DecryptedKeyCacheContext keyCacheCtx = keyCacheContextLookupStrategy.apply(profileRequestContext);
+            if (keyCacheCtx != null) {
+                decrypter.setDecryptedKeyCache(keyCacheCtx.getDecryptedKeyCache());
+            }
         }
         
         return super.doPreExecute(profileRequestContext);
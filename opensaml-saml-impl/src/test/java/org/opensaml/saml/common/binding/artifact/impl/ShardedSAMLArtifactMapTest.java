@@ -0,0 +1,188 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.artifact.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.core.testing.XMLObjectBaseTestCase;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.common.binding.artifact.SAMLArtifactMap.SAMLArtifactMapEntry;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Element;
+import org.xmlunit.builder.DiffBuilder;
+import org.xmlunit.diff.Diff;
+
+/**
+ * Test the sharded in-memory SAML artifact map implementation.
+ */
+public class ShardedSAMLArtifactMapTest extends XMLObjectBaseTestCase {
+
+    private ShardedSAMLArtifactMap artifactMap;
+
+    private String artifact = "the-artifact";
+    private String issuerId = "urn:test:issuer";
+    private String rpId = "urn:test:rp";
+
+    private SAMLObject samlObject;
+    private Element origElement;
+
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        samlObject = (SAMLObject) unmarshallElement("/org/opensaml/saml/saml2/core/ResponseSuccessAuthnAttrib.xml");
+        origElement = samlObject.getDOM();
+        // Drop the DOM for a more realistic test, usually the artifact SAMLObject will be built, not unmarshalled
+        samlObject.releaseChildrenDOM(true);
+        samlObject.releaseDOM();
+
+        artifactMap = new ShardedSAMLArtifactMap();
+        artifactMap.setArtifactLifetime(Duration.ofMinutes(5));
+        artifactMap.initialize();
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        artifactMap.destroy();
+    }
+
+    @Test
+    public void testBasicPutGet() throws IOException, MarshallingException {
+        Assert.assertFalse(artifactMap.contains(artifact));
+
+        artifactMap.put(artifact, rpId, issuerId, samlObject);
+
+        Assert.assertTrue(artifactMap.contains(artifact));
+
+        final SAMLArtifactMapEntry entry = artifactMap.get(artifact);
+        Assert.assertNotNull(entry);
+
+        Assert.assertEquals(entry.getArtifact(), artifact, "Invalid value for artifact");
+        Assert.assertEquals(entry.getIssuerId(), issuerId, "Invalid value for issuer ID");
+        Assert.assertEquals(entry.getRelyingPartyId(), rpId, "Invalid value for relying party ID");
+
+        // Test SAMLObject reconstitution
+        final SAMLObject retrievedObject = entry.getSamlMessage();
+        final Element newElement =
+                marshallerFactory.getMarshaller(retrievedObject).marshall(retrievedObject);
+        
+        final Diff diff = DiffBuilder.compare(origElement).withTest(newElement).checkForIdentical().ignoreWhitespace().build();
+        Assert.assertFalse(diff.hasDifferences(), diff.toString());
+
+        Assert.assertEquals(artifactMap.getSize(), 1);
+        Assert.assertEquals(artifactMap.getIssuedCount(), 1);
+        Assert.assertEquals(artifactMap.getResolvedCount(), 1);
+    }
+
+    @Test
+    public void testRemove() throws IOException {
+        Assert.assertFalse(artifactMap.contains(artifact));
+
+        artifactMap.put(artifact, rpId, issuerId, samlObject);
+
+        Assert.assertTrue(artifactMap.contains(artifact));
+
+        artifactMap.remove(artifact);
+
+        Assert.assertFalse(artifactMap.contains(artifact));
+
+        SAMLArtifactMapEntry entry = artifactMap.get(artifact);
+        Assert.assertNull(entry, "Entry was removed");
+        Assert.assertEquals(artifactMap.getSize(), 0);
+        Assert.assertEquals(artifactMap.getResolvedCount(), 0);
+    }
+
+    @Test
+    public void testEntryExpiration() throws Exception {
+        artifactMap.destroy();
+        artifactMap = new ShardedSAMLArtifactMap();
+        artifactMap.setArtifactLifetime(Duration.ofSeconds(1));
+        artifactMap.initialize();
+
+        artifactMap.put(artifact, rpId, issuerId, samlObject);
+
+        Assert.assertTrue(artifactMap.contains(artifact));
+
+        // Sleep for 2 seconds, entry should expire
+        Thread.sleep(2000);
+
+        Assert.assertFalse(artifactMap.contains(artifact));
+        SAMLArtifactMapEntry entry = artifactMap.get(artifact);
+        Assert.assertNull(entry, "Entry should have expired");
+        Assert.assertEquals(artifactMap.getSize(), 0);
+        Assert.assertEquals(artifactMap.getExpiredCount(), 1);
+    }
+
+    @Test
+    public void testRemoveExpired() throws Exception {
+        artifactMap.destroy();
+        artifactMap = new ShardedSAMLArtifactMap();
+        artifactMap.setArtifactLifetime(Duration.ofSeconds(1));
+        artifactMap.setBucketWidth(Duration.ofMillis(100));
+        artifactMap.setCleanupInterval(Duration.ZERO);
+        artifactMap.initialize();
+
+        artifactMap.put(artifact, rpId, issuerId, samlObject);
+        artifactMap.put("removed-artifact", rpId, issuerId, samlObject);
+        artifactMap.remove("removed-artifact");
+
+        Assert.assertEquals(artifactMap.removeExpired(), 0);
+        Assert.assertEquals(artifactMap.getSize(), 1);
+
+        Thread.sleep(1500);
+
+        Assert.assertEquals(artifactMap.removeExpired(), 1);
+        Assert.assertEquals(artifactMap.getSize(), 0);
+        Assert.assertEquals(artifactMap.getExpiredCount(), 1);
+    }
+
+    @Test
+    public void testCapacity() throws IOException, ComponentInitializationException {
+        artifactMap.destroy();
+        artifactMap = new ShardedSAMLArtifactMap();
+        artifactMap.setMaxEntries(2);
+        artifactMap.setShardCount(3);
+        artifactMap.initialize();
+
+        artifactMap.put("artifact-1", rpId, issuerId, samlObject);
+        artifactMap.put("artifact-2", rpId, issuerId, samlObject);
+        // Replacing an entry does not take more space.
+        artifactMap.put("artifact-2", rpId, issuerId, samlObject);
+        Assert.assertEquals(artifactMap.getSize(), 2);
+
+        try {
+            artifactMap.put("artifact-3", rpId, issuerId, samlObject);
+            Assert.fail("Map should have been full");
+        } catch (final IOException e) {
+            Assert.assertEquals(artifactMap.getRefusedCount(), 1);
+        }
+        Assert.assertFalse(artifactMap.contains("artifact-3"));
+
+        artifactMap.remove("artifact-1");
+        artifactMap.put("artifact-3", rpId, issuerId, samlObject);
+        Assert.assertTrue(artifactMap.contains("artifact-3"));
+        Assert.assertEquals(artifactMap.getSize(), 2);
+        Assert.assertEquals(artifactMap.getIssuedCount(), 4);
+    }
+
+}
@@ -90,4 +90,53 @@ public class StorageServiceSAMLArtifactMapEntryFactoryTest extends XMLObjectBase
         Assert.assertFalse(diff.hasDifferences(), diff.toString());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testWithBinarySerialization() throws Exception {
+        final BinaryStorageServiceSAMLArtifactMapEntryFactory binaryFactory =
+                new BinaryStorageServiceSAMLArtifactMapEntryFactory();
+        binaryFactory.initialize();
+        
+        final BasicSAMLArtifactMapEntry basicEntry =
+                (BasicSAMLArtifactMapEntry) binaryFactory.newEntry(artifact, issuerId, rpId, samlObject);
+        
+        final String s = binaryFactory.serialize(basicEntry);
+        Assert.assertTrue(s.length() < factory.serialize(basicEntry).length(), "Binary form was not more compact");
+        
+        assertDeserializedEntry(basicEntry, (BasicSAMLArtifactMapEntry) binaryFactory.deserialize(
+                1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, basicEntry.getArtifact(), s, null));
+        
+        // Entries stored in XML form remain readable.
+        assertDeserializedEntry(basicEntry, (BasicSAMLArtifactMapEntry) binaryFactory.deserialize(
+                1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, basicEntry.getArtifact(),
+                factory.serialize(basicEntry), null));
+    }
+    
+    @Test
+    public void testWithUncompressedBinarySerialization() throws Exception {
+        final BinaryStorageServiceSAMLArtifactMapEntryFactory binaryFactory =
+                new BinaryStorageServiceSAMLArtifactMapEntryFactory();
+        binaryFactory.setCompression(false);
+        binaryFactory.initialize();
+        
+        final BasicSAMLArtifactMapEntry basicEntry =
+                (BasicSAMLArtifactMapEntry) binaryFactory.newEntry(artifact, issuerId, rpId, samlObject);
+        
+        final String s = binaryFactory.serialize(basicEntry);
+        assertDeserializedEntry(basicEntry, (BasicSAMLArtifactMapEntry) binaryFactory.deserialize(
+                1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, basicEntry.getArtifact(), s, null));
+    }
+    
+    private void assertDeserializedEntry(final BasicSAMLArtifactMapEntry basicEntry,
+            final BasicSAMLArtifactMapEntry newEntry) {
+        Assert.assertEquals(basicEntry.getArtifact(), newEntry.getArtifact());
+        Assert.assertEquals(basicEntry.getIssuerId(), newEntry.getIssuerId());
+        Assert.assertEquals(basicEntry.getRelyingPartyId(), newEntry.getRelyingPartyId());
+
+        final Element origElement = samlObject.getDOM();
+        final Element newElement = newEntry.getSamlMessage().getDOM();
+        
+        final Diff diff = DiffBuilder.compare(origElement).withTest(newElement).checkForIdentical().ignoreWhitespace().build();
+        Assert.assertFalse(diff.hasDifferences(), diff.toString());
+    }
+
+}
@@ -126,4 +126,50 @@ public class StorageServiceSAMLArtifactMapTest extends XMLObjectBaseTestCase {
         Assert.assertNull(entry, "Entry should have expired");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testNearCache() throws Exception {
+        artifactMap = new StorageServiceSAMLArtifactMap();
+        artifactMap.setStorageService(storageService);
+        artifactMap.setNearCacheSize(10);
+        artifactMap.initialize();
+
+        artifactMap.put(artifact, rpId, issuerId, samlObject);
+
+        SAMLArtifactMapEntry entry = artifactMap.get(artifact);
+        Assert.assertNotNull(entry);
+        Assert.assertSame(entry.getSamlMessage(), samlObject, "Entry was not taken from near-cache");
+
+        // A cached entry is only returned once.
+        entry = artifactMap.get(artifact);
+        Assert.assertNotNull(entry);
+        Assert.assertNotSame(entry.getSamlMessage(), samlObject, "Entry was taken from near-cache twice");
+        
+        // Storage remains authoritative.
+        artifactMap.put("another-artifact", rpId, issuerId, samlObject);
+        storageService.delete(StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, "another-artifact");
+        Assert.assertNull(artifactMap.get("another-artifact"), "Entry was removed from storage");
+    }
+
+    @Test
+    public void testBinaryEntryFactory() throws Exception {
+        artifactMap = new StorageServiceSAMLArtifactMap();
+        artifactMap.setStorageService(storageService);
+        artifactMap.setEntryFactory(new BinaryStorageServiceSAMLArtifactMapEntryFactory());
+        artifactMap.initialize();
+
+        artifactMap.put(artifact, rpId, issuerId, samlObject);
+
+        final SAMLArtifactMapEntry entry = artifactMap.get(artifact);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(entry.getIssuerId(), issuerId, "Invalid value for issuer ID");
+        Assert.assertEquals(entry.getRelyingPartyId(), rpId, "Invalid value for relying party ID");
+
+        final SAMLObject retrievedObject = entry.getSamlMessage();
+        final Element newElement =
+                marshallerFactory.getMarshaller(retrievedObject).marshall(retrievedObject);
+        
+        final Diff diff = DiffBuilder.compare(origElement).withTest(newElement).checkForIdentical().ignoreWhitespace().build();
+        Assert.assertFalse(diff.hasDifferences(), diff.toString());
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/** {@link DeflateCodec} unit test. */
+public class DeflateCodecTest {
+
+    @Test public void testCompatibility() throws IOException {
+        final DeflateCodec codec = new DeflateCodec(DeflateCodec.DEFAULT_LEVEL, 1);
+
+        // Exercise buffer growth and reuse of the pooled compressor.
+        for (final int size : new int[] {10, 100000, 1000}) {
+            final StringBuilder builder = new StringBuilder("<samlp:AuthnRequest ID=\"");
+            for (int i = 0; i < size; i++) {
+                builder.append(Integer.toHexString(i * 31));
+            }
+            final byte[] data = builder.append("\"/>").toString().getBytes(StandardCharsets.UTF_8);
+
+            final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+            final Deflater deflater = new Deflater(Deflater.DEFLATED, true);
+            try (final DeflaterOutputStream deflaterStream = new DeflaterOutputStream(bytesOut, deflater)) {
+                deflaterStream.write(data);
+            } finally {
+                deflater.end();
+            }
+
+            final String encoded = codec.deflateAndBase64Encode(data);
+            Assert.assertEquals(encoded, Base64.getEncoder().encodeToString(bytesOut.toByteArray()));
+
+            try (final InputStream in = codec.inflate(Base64.getDecoder().decode(encoded))) {
+                Assert.assertEquals(in.readAllBytes(), data);
+            }
+        }
+    }
+
+    @Test public void testClosedStream() throws IOException {
+        final DeflateCodec codec = new DeflateCodec(DeflateCodec.DEFAULT_LEVEL, 1);
+        final byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+
+        final InputStream in = codec.inflate(Base64.getDecoder().decode(codec.deflateAndBase64Encode(data)));
+        in.close();
+        in.close();
+        try {
+            in.read();
+            Assert.fail("Read from closed stream should have failed");
+        } catch (final IOException e) {
+        }
+    }
+
+}
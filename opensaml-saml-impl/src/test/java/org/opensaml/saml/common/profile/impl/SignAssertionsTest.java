@@ -28,11 +28,14 @@ import org.opensaml.profile.testing.ActionTestingSupport;
 import org.opensaml.profile.testing.RequestContextBuilder;
 import org.opensaml.saml.saml1.testing.SAML1ActionTestingSupport;
 import org.opensaml.saml.saml2.testing.SAML2ActionTestingSupport;
+import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.CredentialSupport;
 import org.opensaml.security.crypto.KeySupport;
 import org.opensaml.xmlsec.SignatureSigningParameters;
 import org.opensaml.xmlsec.context.SecurityParametersContext;
 import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.opensaml.xmlsec.signature.support.SignatureValidator;
+import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -133,6 +136,36 @@ public class SignAssertionsTest extends OpenSAMLInitBaseTestCase {
         ActionTestingSupport.assertProceedEvent(prc);
     }
 
+    @Test public void testSignMultipleSAML2Assertions() throws Exception {
+        final org.opensaml.saml.saml2.core.Response response =
+                (org.opensaml.saml.saml2.core.Response) prc.getOutboundMessageContext().getMessage();
+        for (int i = 0; i < 3; i++) {
+            final org.opensaml.saml.saml2.core.Assertion assertion = SAML2ActionTestingSupport.buildAssertion();
+            assertion.setID("assertion" + i);
+            response.getAssertions().add(assertion);
+        }
+
+        final SignatureSigningParameters signingParameters = new SignatureSigningParameters();
+        final KeyPair kp = KeySupport.generateKeyPair("RSA", 1024, null);
+        final Credential credential = CredentialSupport.getSimpleCredential(kp.getPublic(), kp.getPrivate());
+        signingParameters.setSigningCredential(credential);
+        signingParameters.setSignatureAlgorithm(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256);
+        signingParameters.setSignatureReferenceDigestMethod(SignatureConstants.ALGO_ID_DIGEST_SHA256);
+        signingParameters.setSignatureCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+
+        final SecurityParametersContext secParamCtx = new SecurityParametersContext();
+        secParamCtx.setSignatureSigningParameters(signingParameters);
+        prc.addSubcontext(secParamCtx);
+
+        action.execute(prc);
+        ActionTestingSupport.assertProceedEvent(prc);
+        
+        for (final org.opensaml.saml.saml2.core.Assertion assertion : response.getAssertions()) {
+            Assert.assertTrue(assertion.isSigned());
+            SignatureValidator.validate(assertion.getSignature(), credential);
+        }
+    }
+
     // TODO Test that assertion was signed correctly ?
 
     // TODO Test event id when signing throws an exception.
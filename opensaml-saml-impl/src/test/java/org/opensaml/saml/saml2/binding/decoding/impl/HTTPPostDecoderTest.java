@@ -17,6 +17,8 @@
 
 package org.opensaml.saml.saml2.binding.decoding.impl;
 
+import java.nio.charset.StandardCharsets;
+
 import org.opensaml.core.testing.XMLObjectBaseTestCase;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.decoder.MessageDecodingException;
@@ -112,4 +114,114 @@ public class HTTPPostDecoderTest extends XMLObjectBaseTestCase {
         Assert.assertEquals(SAMLBindingSupport.getRelayState(messageContext), expectedRelayValue);
     }
     
+    /**
+     * Test decoding a SAML response directly from the request body.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testStreamingResponseDecoding() throws Exception {
+        // Line breaks in the encoded message are tolerated, and the relay state follows the message.
+        final String body = "SAMLResponse=PD94bWwgdmVyc2lvbj0iMS4wIiBlbmNvZGluZz0iVVRGLTgiPz4KPHNhbWxwOlJlc3Bvbn"
+                + "NlIElEPSJmb28iIElzc3VlSW5zdGFudD0iMTk3MC0wMS0wMVQwMDowMDowMC4wMDBaIiBWZXJzaW9uPSIyLjAiIHhtbG5zOnN"
+                + "hbWxwPSJ1cm46b2FzaXM6bmFtZXM6dGM6U0FNTDoyLjA6cHJvdG9jb2wiPjxzYW1scDpTdGF0dXM%2BPHNhbWxwOlN0YXR1c0Nv"
+                + "ZGUgVmFsdWU9InVybjpvYXNpczpuYW1lczp0YzpTQU1MOjIuMDpzdGF0dXM6U3VjY2VzcyIvPjwvc2FtbHA6U3RhdHVzPjwvc"
+                + "%0D%0A2FtbHA6UmVzcG9uc2U%2B&RelayState=relay+%26+state";
+        
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setMethod("POST");
+        request.setContentType("application/x-www-form-urlencoded");
+        request.setContent(body.getBytes(StandardCharsets.US_ASCII));
+        
+        final HTTPPostDecoder streamingDecoder = new HTTPPostDecoder();
+        streamingDecoder.setParserPool(parserPool);
+        streamingDecoder.setHttpServletRequest(request);
+        streamingDecoder.setStreamingDecode(true);
+        streamingDecoder.initialize();
+        
+        streamingDecoder.decode();
+        MessageContext messageContext = streamingDecoder.getMessageContext();
+
+        Assert.assertTrue(messageContext.getMessage() instanceof Response);
+        Assert.assertEquals(((Response) messageContext.getMessage()).getID(), "foo");
+        Assert.assertEquals(SAMLBindingSupport.getRelayState(messageContext), "relay & state");
+        Assert.assertEquals(HTTPPostDecoder.getFormParameter(request, "RelayState"), "relay & state");
+        Assert.assertNull(HTTPPostDecoder.getFormParameter(request, "SAMLResponse"));
+    }
+    
+    /**
+     * Test that a streaming decode falls back to the request parameters if the body has been consumed.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testStreamingFallback() throws Exception {
+        httpRequest.setContentType("application/x-www-form-urlencoded");
+        httpRequest.setParameter("SAMLRequest", "PD94bWwgdmVyc2lvbj0iMS4wIiBlbmNvZGluZz0iVVRGLTgiPz4KPHNhbWxwOkF1dGhuUm"
+                + "VxdWVzdCBJRD0iZm9vIiBJc3N1ZUluc3RhbnQ9IjE5NzAtMDEtMDFUMDA6MDA6MDAuMDAwWiIgVmVyc2lvbj0iMi4wIiB4bW"
+                + "xuczpzYW1scD0idXJuOm9hc2lzOm5hbWVzOnRjOlNBTUw6Mi4wOnByb3RvY29sIi8+");
+        
+        final HTTPPostDecoder streamingDecoder = new HTTPPostDecoder();
+        streamingDecoder.setParserPool(parserPool);
+        streamingDecoder.setHttpServletRequest(httpRequest);
+        streamingDecoder.setStreamingDecode(true);
+        streamingDecoder.initialize();
+        
+        streamingDecoder.decode();
+        MessageContext messageContext = streamingDecoder.getMessageContext();
+
+        Assert.assertTrue(messageContext.getMessage() instanceof RequestAbstractType);
+        Assert.assertEquals(SAMLBindingSupport.getRelayState(messageContext), expectedRelayValue);
+    }
+
+    /**
+     * Test that a streaming decode rejects an unsupported character encoding, regardless of the case of the
+     * content type.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testStreamingUnsupportedCharacterEncoding() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setMethod("POST");
+        request.setContentType("Application/X-WWW-Form-URLEncoded");
+        request.setCharacterEncoding("no such charset");
+        request.setContent("RelayState=relay".getBytes(StandardCharsets.US_ASCII));
+        
+        final HTTPPostDecoder streamingDecoder = new HTTPPostDecoder();
+        streamingDecoder.setParserPool(parserPool);
+        streamingDecoder.setHttpServletRequest(request);
+        streamingDecoder.setStreamingDecode(true);
+        streamingDecoder.initialize();
+        
+        try {
+            streamingDecoder.decode();
+            Assert.fail("Unsupported character encoding should have been rejected");
+        } catch (final MessageDecodingException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    /**
+     * Test that a streaming decode rejects an oversized request body.
+     * 
+     * @throws Exception ...
+     */
+    @Test(expectedExceptions=MessageDecodingException.class)
+    public void testStreamingMaxContentLength() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setMethod("POST");
+        request.setContentType("application/x-www-form-urlencoded");
+        request.setContent(("RelayState=" + "x".repeat(2048)).getBytes(StandardCharsets.US_ASCII));
+        
+        final HTTPPostDecoder streamingDecoder = new HTTPPostDecoder();
+        streamingDecoder.setParserPool(parserPool);
+        streamingDecoder.setHttpServletRequest(request);
+        streamingDecoder.setStreamingDecode(true);
+        streamingDecoder.setMaxContentLength(1024);
+        streamingDecoder.initialize();
+        
+        streamingDecoder.decode();
+    }
+    
 }
@@ -179,6 +179,86 @@ public class HTTPPostEncoderTest extends XMLObjectBaseTestCase {
         
     }
 
+    /**
+     * Tests that the precompiled form produces the same page content as the Velocity template.
+     * 
+     * @throws Exception if something goes wrong
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPrecompiledResponseEncoding() throws Exception {
+        SAMLObjectBuilder<StatusCode> statusCodeBuilder =
+                (SAMLObjectBuilder<StatusCode>) builderFactory.<StatusCode>getBuilderOrThrow(
+                        StatusCode.DEFAULT_ELEMENT_NAME);
+        StatusCode statusCode = statusCodeBuilder.buildObject();
+        statusCode.setValue(StatusCode.SUCCESS);
+
+        SAMLObjectBuilder<Status> statusBuilder =
+                (SAMLObjectBuilder<Status>) builderFactory.<Status>getBuilderOrThrow(Status.DEFAULT_ELEMENT_NAME);
+        Status responseStatus = statusBuilder.buildObject();
+        responseStatus.setStatusCode(statusCode);
+
+        SAMLObjectBuilder<Response> responseBuilder =
+                (SAMLObjectBuilder<Response>) builderFactory.<Response>getBuilderOrThrow(Response.DEFAULT_ELEMENT_NAME);
+        Response samlMessage = responseBuilder.buildObject();
+        samlMessage.setID("foo");
+        samlMessage.setVersion(SAMLVersion.VERSION_20);
+        samlMessage.setIssueInstant(Instant.ofEpochMilli(0));
+        samlMessage.setStatus(responseStatus);
+
+        SAMLObjectBuilder<AssertionConsumerService> endpointBuilder =
+                (SAMLObjectBuilder<AssertionConsumerService>) builderFactory.<AssertionConsumerService>getBuilderOrThrow(
+                        AssertionConsumerService.DEFAULT_ELEMENT_NAME);
+        AssertionConsumerService samlEndpoint = endpointBuilder.buildObject();
+        samlEndpoint.setLocation("http://example.org");
+        samlEndpoint.setResponseLocation("http://example.org/response?a=b&c=\"d\"");
+
+        MessageContext messageContext = new MessageContext();
+        messageContext.setMessage(samlMessage);
+        SAMLBindingSupport.setRelayState(messageContext, "relay<&>\"");
+        messageContext.getSubcontext(SAMLPeerEntityContext.class, true)
+            .getSubcontext(SAMLEndpointContext.class, true).setEndpoint(samlEndpoint);
+        
+        SAMLOutboundDestinationHandler handler = new SAMLOutboundDestinationHandler();
+        handler.invoke(messageContext);
+        
+        MockHttpServletResponse velocityResponse = new MockHttpServletResponse();
+        HTTPPostEncoder encoder = new HTTPPostEncoder();
+        encoder.setMessageContext(messageContext);
+        encoder.setHttpServletResponse(velocityResponse);
+        encoder.setVelocityEngine(velocityEngine);
+        encoder.initialize();
+        encoder.prepareContext();
+        encoder.encode();
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        encoder = new HTTPPostEncoder();
+        encoder.setMessageContext(messageContext);
+        encoder.setHttpServletResponse(response);
+        encoder.setPrecompiledForm(true);
+        encoder.initialize();
+        encoder.prepareContext();
+        encoder.encode();
+
+        Assert.assertEquals(response.getContentType(), "text/html;charset=UTF-8", "Unexpected content type");
+        Assert.assertEquals("UTF-8", response.getCharacterEncoding(), "Unexpected character encoding");
+        Assert.assertEquals(response.getHeader("Cache-control"), "no-cache, no-store", "Unexpected cache controls");
+        
+        Document velocityDoc = Jsoup.parse(velocityResponse.getContentAsString());
+        Document webDoc = Jsoup.parse(response.getContentAsString());
+        
+        Assert.assertEquals(webDoc.selectFirst("html > body").attr("onload"), "document.forms[0].submit()");
+        Assert.assertEquals(webDoc.selectFirst("html > head > meta[charset]").attr("charset").toLowerCase(),
+                "utf-8");
+        Assert.assertEquals(webDoc.selectFirst("form").attr("action"), velocityDoc.selectFirst("form").attr("action"));
+        Assert.assertEquals(webDoc.selectFirst("form").attr("action"), "http://example.org/response?a=b&c=\"d\"");
+        Assert.assertEquals(webDoc.selectFirst("input[name=RelayState]").val(), "relay<&>\"");
+        Assert.assertEquals(webDoc.selectFirst("input[name=SAMLResponse]").val(),
+                velocityDoc.selectFirst("input[name=SAMLResponse]").val());
+        Assert.assertEquals(webDoc.select("input").size(), velocityDoc.select("input").size());
+        Assert.assertEquals(webDoc.selectFirst("noscript > div > input[type=submit]").val(), "Continue");
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testRequestEncoding() throws Exception {
@@ -19,12 +19,15 @@ package org.opensaml.saml.saml2.binding.security.impl;
 
 import java.io.ByteArrayInputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.XMLConstants;
 
@@ -42,11 +45,14 @@ import org.opensaml.messaging.encoder.MessageEncodingException;
 import org.opensaml.messaging.handler.MessageHandlerException;
 import org.opensaml.saml.common.SAMLObjectBuilder;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
+import org.opensaml.saml.common.messaging.context.SAMLBindingContext;
 import org.opensaml.saml.common.messaging.context.SAMLEndpointContext;
 import org.opensaml.saml.common.messaging.context.SAMLPeerEntityContext;
 import org.opensaml.saml.common.messaging.context.SAMLProtocolContext;
 import org.opensaml.saml.common.testing.SAMLTestSupport;
 import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.binding.decoding.impl.HTTPPostDecoder;
+import org.opensaml.saml.saml2.binding.decoding.impl.HTTPPostSimpleSignDecoder;
 import org.opensaml.saml.saml2.binding.encoding.impl.HTTPPostSimpleSignEncoder;
 import org.opensaml.saml.saml2.core.AuthnRequest;
 import org.opensaml.saml.saml2.metadata.AssertionConsumerService;
@@ -385,6 +391,113 @@ public class SAML2HTTPPostSimpleSignSecurityHandlerTest extends XMLObjectBaseTes
         handler.invoke(messageContext);
     }
 
+    /**
+     * Test a valid signature with trusted credential, with the form fields read by a streaming decode.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testStreamingSuccess() throws Exception {
+        trustedCredentials.add(signingX509Cred);
+        
+        final MockHttpServletRequest request =
+                buildStreamingRequest((MockHttpServletRequest) handler.getHttpServletRequest());
+        final MessageContext decodedContext = decodeStreaming(request);
+        
+        // The fields are only available from the body consumed by the decoder.
+        Assert.assertNull(request.getParameter("SAMLRequest"));
+        Assert.assertNotNull(HTTPPostDecoder.getFormParameter(request, "SAMLRequest"));
+        Assert.assertTrue(decodedContext.getMessage() instanceof AuthnRequest);
+        Assert.assertTrue(decodedContext.getSubcontext(SAMLBindingContext.class).hasBindingSignature());
+        
+        messageContext.setMessage(decodedContext.getMessage());
+        buildHandler(request).invoke(messageContext);
+        
+        Assert.assertTrue(messageContext.getSubcontext(SAMLPeerEntityContext.class, true).isAuthenticated(), 
+                "Unexpected value for context authentication state");
+    }
+    
+    /**
+     * Test an invalid signature with trusted credential, with the form fields read by a streaming decode.
+     * 
+     * @throws Exception ...
+     */
+    @Test(expectedExceptions=MessageHandlerException.class)
+    public void testStreamingInvalidSignature() throws Exception {
+        trustedCredentials.add(signingX509Cred);
+        
+        final MockHttpServletRequest formRequest = (MockHttpServletRequest) handler.getHttpServletRequest();
+        formRequest.setParameter("RelayState", "AlteredData" + formRequest.getParameter("RelayState"));
+        final MockHttpServletRequest request = buildStreamingRequest(formRequest);
+        final MessageContext decodedContext = decodeStreaming(request);
+        
+        messageContext.setMessage(decodedContext.getMessage());
+        buildHandler(request).invoke(messageContext);
+    }
+    
+    /**
+     * Build a request whose form-encoded body carries the parameters of another request.
+     * 
+     * @param formRequest the request whose parameters to encode
+     * 
+     * @return the request
+     */
+    private MockHttpServletRequest buildStreamingRequest(final MockHttpServletRequest formRequest) {
+        final StringBuilder body = new StringBuilder();
+        for (final Map.Entry<String,String[]> param : formRequest.getParameterMap().entrySet()) {
+            if (body.length() > 0) {
+                body.append('&');
+            }
+            body.append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8)).append('=')
+                .append(URLEncoder.encode(param.getValue()[0], StandardCharsets.UTF_8));
+        }
+        
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setMethod("POST");
+        request.setContentType("application/x-www-form-urlencoded");
+        request.setCharacterEncoding("UTF-8");
+        request.setContent(body.toString().getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+    
+    /**
+     * Decode a request using a streaming POST-SimpleSign decoder.
+     * 
+     * @param request the request to decode
+     * 
+     * @return the decoded message context
+     * 
+     * @throws Exception if the request cannot be decoded
+     */
+    private MessageContext decodeStreaming(final MockHttpServletRequest request) throws Exception {
+        final HTTPPostSimpleSignDecoder decoder = new HTTPPostSimpleSignDecoder();
+        decoder.setParserPool(parserPool);
+        decoder.setHttpServletRequest(request);
+        decoder.setStreamingDecode(true);
+        decoder.initialize();
+        decoder.decode();
+        return decoder.getMessageContext();
+    }
+    
+    /**
+     * Build a handler for a request.
+     * 
+     * @param request the request
+     * 
+     * @return the handler
+     * 
+     * @throws ComponentInitializationException if the handler cannot be initialized
+     */
+    private SAML2HTTPPostSimpleSignSecurityHandler buildHandler(final MockHttpServletRequest request)
+            throws ComponentInitializationException {
+        final SAML2HTTPPostSimpleSignSecurityHandler newHandler = new SAML2HTTPPostSimpleSignSecurityHandler();
+        newHandler.setHttpServletRequest(request);
+        newHandler.setParser(parserPool);
+        newHandler.setKeyInfoResolver(SAMLTestSupport.buildBasicInlineKeyInfoResolver());
+        newHandler.initialize();
+        return newHandler;
+    }
+
     protected AuthnRequest buildInboundSAMLMessage() {
         return unmarshallElement("/org/opensaml/saml/saml2/binding/AuthnRequest.xml");
     }
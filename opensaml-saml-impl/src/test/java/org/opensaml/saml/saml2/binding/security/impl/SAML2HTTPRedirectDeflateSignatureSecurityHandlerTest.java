@@ -23,6 +23,7 @@ import java.security.PrivateKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -230,6 +231,62 @@ public class SAML2HTTPRedirectDeflateSignatureSecurityHandlerTest extends XMLObj
                 "Unexpected value for context authentication state");
     }
     
+    /**
+     * Test context issuer set, valid signature with trusted credential, with the signed parameters reordered.
+     * 
+     * @throws MessageHandlerException ...
+     */
+    @Test
+    public void testSuccessReorderedParameters() throws MessageHandlerException {
+        trustedCredentials.add(signingX509Cred);
+        
+        final MockHttpServletRequest request = (MockHttpServletRequest) handler.getHttpServletRequest();
+        final String[] params = request.getQueryString().split("&");
+        Collections.reverse(Arrays.asList(params));
+        request.setQueryString(String.join("&", params));
+        
+        handler.invoke(messageContext);
+        
+        Assert.assertTrue(messageContext.getSubcontext(SAMLPeerEntityContext.class, true).isAuthenticated(), 
+                "Unexpected value for context authentication state");
+    }
+    
+    /**
+     * Test context issuer set, valid signature with trusted credential, with an unsigned SAMLResponse parameter
+     * alongside the signed SAMLRequest.
+     * 
+     * @throws MessageHandlerException ...
+     */
+    @Test
+    public void testSuccessRequestAndResponse() throws MessageHandlerException {
+        trustedCredentials.add(signingX509Cred);
+        
+        final MockHttpServletRequest request = (MockHttpServletRequest) handler.getHttpServletRequest();
+        request.setQueryString(request.getQueryString() + "&SAMLResponse=Unsigned");
+        
+        handler.invoke(messageContext);
+        
+        Assert.assertTrue(messageContext.getSubcontext(SAMLPeerEntityContext.class, true).isAuthenticated(), 
+                "Unexpected value for context authentication state");
+    }
+    
+    /**
+     * Test context issuer set, signature with trusted credential over content including a SAMLResponse parameter
+     * which is not the one the signed content is built from.
+     * 
+     * @throws MessageHandlerException ...
+     */
+    @Test(expectedExceptions=MessageHandlerException.class)
+    public void testInvalidSignatureRequestAndResponse() throws MessageHandlerException {
+        trustedCredentials.add(signingX509Cred);
+        
+        final MockHttpServletRequest request = (MockHttpServletRequest) handler.getHttpServletRequest();
+        final String queryString = request.getQueryString();
+        request.setQueryString(queryString.replaceFirst("SAMLRequest=", "SAMLRequest=Unsigned&SAMLResponse="));
+        
+        handler.invoke(messageContext);
+    }
+    
     /**
      * Test blacklisted signature algorithm.
      * 
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.soap.client;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+
+import org.opensaml.messaging.context.InOutOperationContext;
+
+/**
+ * A {@link SOAPClient} which is also able to send a message without blocking the calling thread.
+ *
+ * @since 4.1.0
+ */
+@ThreadSafe
+public interface AsyncSOAPClient extends SOAPClient {
+
+    /**
+     * Sends a message, returning a future which completes once the response has been received.
+     *
+     * <p>The future completes with the supplied operation context, populated with the inbound message context,
+     * or exceptionally with the same exceptions that {@link #send(String, InOutOperationContext)} would raise.</p>
+     *
+     * @param endpoint the endpoint to which to send the message
+     * @param context the operation context containing the outbound SOAP message
+     *
+     * @return a future for the operation context
+     */
+    @Nonnull CompletableFuture<InOutOperationContext> sendAsync(@Nonnull @NotEmpty final String endpoint,
+            @Nonnull final InOutOperationContext context);
+
+}
@@ -0,0 +1,321 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.soap.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.component.AbstractInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.messaging.context.InOutOperationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches a batch of SOAP exchanges with a single peer, such as a set of attribute queries or artifact
+ * resolution requests, through a wrapped {@link SOAPClient}.
+ *
+ * <p>The exchanges of a batch are sent concurrently, subject to a limit on the number of exchanges in progress
+ * with each peer, which is shared by all batches sent through this object. Peers are identified by the scheme,
+ * host and port of the endpoint. The results are returned in the order of the supplied operation contexts, and
+ * the failure of one exchange does not affect the others.</p>
+ *
+ * <p>If the wrapped client is an {@link AsyncSOAPClient}, exchanges are sent via
+ * {@link AsyncSOAPClient#sendAsync(String, InOutOperationContext)}. Otherwise they are run on the configured
+ * {@link Executor}, or one at a time on the calling thread if none is set.</p>
+ *
+ * <p>The wrapped client is shared by all exchanges, so a client that pools its HTTP connections will carry
+ * the batch over the connections it keeps alive to the peer.</p>
+ *
+ * @since 4.1.0
+ */
+@ThreadSafe
+public class BatchSOAPClient extends AbstractInitializableComponent {
+
+    /** Default maximum number of exchanges in progress with each peer. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(BatchSOAPClient.class);
+
+    /** Client used to send each exchange. */
+    @NonnullAfterInit private SOAPClient soapClient;
+
+    /** Executor on which to run exchanges with a synchronous client. */
+    @Nullable private Executor executor;
+
+    /** Maximum number of exchanges in progress with each peer. */
+    @Positive private int maxInFlight;
+
+    /** Permits for exchanges in progress, keyed by peer. */
+    @Nonnull private final Map<String,Semaphore> peerPermits;
+
+    /** Constructor. */
+    public BatchSOAPClient() {
+        maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        peerPermits = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Set the client used to send each exchange.
+     *
+     * @param client SOAP client
+     */
+    public void setSOAPClient(@Nonnull final SOAPClient client) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        soapClient = Constraint.isNotNull(client, "SOAPClient cannot be null");
+    }
+
+    /**
+     * Set the executor on which to run exchanges, if the client is not an {@link AsyncSOAPClient}.
+     *
+     * @param exec executor
+     */
+    public void setExecutor(@Nullable final Executor exec) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        executor = exec;
+    }
+
+    /**
+     * Set the maximum number of exchanges in progress with each peer.
+     *
+     * <p>Defaults to {@link #DEFAULT_MAX_IN_FLIGHT}.</p>
+     *
+     * @param max maximum number of exchanges
+     */
+    public void setMaxInFlight(@Positive final int max) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        maxInFlight = (int) Constraint.isGreaterThan(0, max, "Maximum in-flight exchanges must be greater than 0");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+
+        if (soapClient == null) {
+            throw new ComponentInitializationException("SOAPClient cannot be null");
+        }
+    }
+
+    /**
+     * Send each message of a batch to an endpoint and wait for all of the responses.
+     *
+     * <p>Each operation context is populated as it would be by {@link SOAPClient#send(String,
+     * InOutOperationContext)}. If the calling thread is interrupted, exchanges not yet started are reported as
+     * failed, and the method returns once those in progress have completed.</p>
+     *
+     * @param endpoint the endpoint to which to send the messages
+     * @param contexts the operation contexts containing the outbound SOAP messages
+     *
+     * @return the result of each exchange, in the order of the operation contexts
+     */
+    @Nonnull @NonnullElements @Unmodifiable public List<Result> send(@Nonnull @NotEmpty final String endpoint,
+            @Nonnull @NonnullElements final List<InOutOperationContext> contexts) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        Constraint.isNotNull(endpoint, "Endpoint cannot be null");
+        Constraint.isNotNull(contexts, "Operation contexts cannot be null");
+
+        final Semaphore permits = peerPermits.computeIfAbsent(getPeer(endpoint), k -> new Semaphore(maxInFlight));
+        final List<CompletableFuture<InOutOperationContext>> futures = new ArrayList<>(contexts.size());
+
+        log.debug("Sending batch of {} messages to {}", contexts.size(), endpoint);
+        boolean interrupted = false;
+        for (final InOutOperationContext context : contexts) {
+            if (!interrupted) {
+                try {
+                    permits.acquire();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                futures.add(CompletableFuture.failedFuture(
+                        new SOAPClientException("Interrupted before sending message to " + endpoint)));
+                continue;
+            }
+
+            final CompletableFuture<InOutOperationContext> future = dispatch(endpoint, context);
+            future.whenComplete((ctx, e) -> permits.release());
+            futures.add(future);
+        }
+
+        final List<Result> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            Exception failure = null;
+            try {
+                futures.get(i).join();
+            } catch (final CompletionException e) {
+                failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                log.debug("Exchange {} of batch sent to {} failed: {}", i, endpoint, failure.getMessage());
+            } catch (final CancellationException e) {
+                failure = new SOAPClientException("Exchange with " + endpoint + " was cancelled", e);
+                log.debug("Exchange {} of batch sent to {} was cancelled", i, endpoint);
+            }
+            results.add(new Result(contexts.get(i), failure));
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Start a single exchange.
+     *
+     * @param endpoint the endpoint to which to send the message
+     * @param context the operation context
+     *
+     * @return a future which completes with the exchange
+     */
+    @Nonnull private CompletableFuture<InOutOperationContext> dispatch(@Nonnull @NotEmpty final String endpoint,
+            @Nonnull final InOutOperationContext context) {
+        if (soapClient instanceof AsyncSOAPClient) {
+            try {
+                return ((AsyncSOAPClient) soapClient).sendAsync(endpoint, context);
+            } catch (final Throwable e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        final CompletableFuture<InOutOperationContext> future = new CompletableFuture<>();
+        final Runnable task = () -> {
+            try {
+                soapClient.send(endpoint, context);
+                future.complete(context);
+            } catch (final Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+
+        if (executor != null) {
+            try {
+                executor.execute(task);
+            } catch (final RejectedExecutionException e) {
+                future.completeExceptionally(new SOAPClientException("Exchange with " + endpoint + " was rejected", e));
+            }
+        } else {
+            task.run();
+        }
+        return future;
+    }
+
+    /**
+     * Get the key identifying the peer of an endpoint.
+     *
+     * <p>An endpoint without an explicit port is keyed by the default port of its scheme, so that it shares its
+     * limit with endpoints which name that port.</p>
+     *
+     * @param endpoint the endpoint
+     *
+     * @return the scheme, host and port of the endpoint, or the endpoint itself if it cannot be parsed
+     */
+    @Nonnull static String getPeer(@Nonnull final String endpoint) {
+        try {
+            final URI uri = new URI(endpoint);
+            if (uri.getScheme() != null && uri.getHost() != null) {
+                int port = uri.getPort();
+                if (port == -1) {
+                    port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+                }
+                return uri.getScheme().toLowerCase(Locale.ROOT) + "://" + uri.getHost() + ':' + port;
+            }
+        } catch (final Exception e) {
+            // Fall through to the endpoint.
+        }
+        return endpoint;
+    }
+
+    /** Outcome of one exchange of a batch. */
+    public static final class Result {
+
+        /** Operation context of the exchange. */
+        @Nonnull private final InOutOperationContext operationContext;
+
+        /** Cause of the failure of the exchange. */
+        @Nullable private final Exception exception;
+
+        /**
+         * Constructor.
+         *
+         * @param context operation context
+         * @param failure cause of failure, or null
+         */
+        Result(@Nonnull final InOutOperationContext context, @Nullable final Exception failure) {
+            operationContext = context;
+            exception = failure;
+        }
+
+        /**
+         * Get the operation context of the exchange.
+         *
+         * @return operation context
+         */
+        @Nonnull public InOutOperationContext getOperationContext() {
+            return operationContext;
+        }
+
+        /**
+         * Get whether the exchange succeeded.
+         *
+         * @return true iff no exception was raised
+         */
+        public boolean isSuccess() {
+            return exception == null;
+        }
+
+        /**
+         * Get the exception raised by the exchange, usually a {@link org.opensaml.soap.common.SOAPException}
+         * or {@link org.opensaml.security.SecurityException}.
+         *
+         * @return the exception, or null if the exchange succeeded
+         */
+        @Nullable public Exception getException() {
+            return exception;
+        }
+    }
+
+}
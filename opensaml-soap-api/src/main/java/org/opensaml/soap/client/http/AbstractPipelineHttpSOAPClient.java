@@ -186,6 +186,7 @@ public abstract class AbstractPipelineHttpSOAPClient
         Constraint.isNotNull(operationContext, "Operation context cannot be null");
         
         HttpClientMessagePipeline pipeline = null;
+        boolean exchangeComplete = false;
         try {
             // Store the endpoint URI
             operationContext.getSubcontext(SOAPClientContext.class, true).setDestinationURI(endpoint);
@@ -228,6 +229,7 @@ public abstract class AbstractPipelineHttpSOAPClient
                 pipeline.getInboundMessageHandler().invoke(operationContext.getInboundMessageContext());
             }
             
+            exchangeComplete = true;
         } catch (final SOAP11FaultDecodingException e) {
             final SOAPFaultException faultException = new SOAPFaultException(e.getMessage(), e);
             faultException.setFault(e.getFault());
@@ -248,13 +250,30 @@ public abstract class AbstractPipelineHttpSOAPClient
             throw new SOAPException("I/O problem with SOAP message exchange with: " + endpoint, e);
         } finally {
             if (pipeline != null) {
-                pipeline.getEncoder().destroy();
-                pipeline.getDecoder().destroy();
+                releasePipeline(pipeline, exchangeComplete);
             }
         }
     }
     // Checkstyle: CyclomaticComplexity|MethodLength ON
     
+    /**
+     * Release a pipeline instance once the message exchange for which it was resolved has ended.
+     * 
+     * <p>
+     * The default behavior is to destroy the pipeline's encoder and decoder.
+     * </p>
+     * 
+     * @param pipeline the pipeline instance
+     * @param exchangeComplete whether the message exchange completed without error
+     * 
+     * @since 4.1.0
+     */
+    protected void releasePipeline(@Nonnull final HttpClientMessagePipeline pipeline,
+            final boolean exchangeComplete) {
+        pipeline.getEncoder().destroy();
+        pipeline.getDecoder().destroy();
+    }
+    
     /**
      * Resolve and return a new instance of the {@link HttpClientMessagePipeline} to be processed.
      * 
@@ -0,0 +1,770 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.soap.client.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.component.AbstractInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.xml.ParserPool;
+import net.shibboleth.utilities.java.support.xml.SerializeSupport;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.Marshaller;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.Unmarshaller;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.messaging.context.InOutOperationContext;
+import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.messaging.context.navigate.ChildContextLookup;
+import org.opensaml.security.SecurityException;
+import org.opensaml.soap.client.AsyncSOAPClient;
+import org.opensaml.soap.client.SOAPClient.SOAPRequestParameters;
+import org.opensaml.soap.client.SOAPClientContext;
+import org.opensaml.soap.client.SOAPClientException;
+import org.opensaml.soap.client.SOAPFaultException;
+import org.opensaml.soap.common.SOAPException;
+import org.opensaml.soap.messaging.context.SOAP11Context;
+import org.opensaml.soap.soap11.Envelope;
+import org.opensaml.soap.soap11.Fault;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+
+/**
+ * SOAP client that uses HTTP as the underlying transport and POST as the binding, built on the
+ * {@link HttpClient} of the Java platform.
+ *
+ * <p>Requests are sent without blocking the calling thread, and the response is read and unmarshalled on the
+ * client's executor. Connections are pooled by the client, and HTTP/2 is negotiated where the peer supports it,
+ * allowing concurrent requests to a peer to be multiplexed over a single connection.</p>
+ *
+ * <p>Responses larger than {@link #getMaxResponseSize()} are rejected as they are received, so that a peer
+ * cannot exhaust memory with an unbounded response.</p>
+ *
+ * <p>Like {@link HttpSOAPClient}, this client applies no security policy of its own. Any TLS requirements
+ * must be met by the configuration of the supplied {@link HttpClient}.</p>
+ *
+ * <p>Request counts and latencies are tracked for each peer, identified by the scheme, host and port of the
+ * endpoint, and are available via {@link #getPeerStatistics()}.</p>
+ *
+ * @since 4.1.0
+ */
+@ThreadSafe
+public class AsyncHttpSOAPClient extends AbstractInitializableComponent implements AsyncSOAPClient {
+
+    /** Default request timeout. */
+    @Nonnull public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    /** Default maximum size of a response body in bytes: 1MB. */
+    public static final long DEFAULT_MAX_RESPONSE_SIZE = 1024 * 1024;
+
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(AsyncHttpSOAPClient.class);
+
+    /** HTTP client used to send requests and receive responses. */
+    @NonnullAfterInit private HttpClient httpClient;
+
+    /** Connection timeout of a client created by this object. */
+    @Nullable private Duration connectTimeout;
+
+    /** Executor of a client created by this object. */
+    @Nullable private Executor executor;
+
+    /** Timeout of each request. */
+    @Nonnull private Duration requestTimeout;
+
+    /** Maximum size of a response body in bytes. */
+    @Positive private long maxResponseSize;
+
+    /** Pool of XML parsers used to parse incoming responses. */
+    @NonnullAfterInit private ParserPool parserPool;
+
+    /**
+     * Strategy used to look up the {@link SOAPClientContext} associated with the
+     * outbound message context.
+     */
+    @Nonnull private Function<MessageContext,SOAPClientContext> soapClientContextLookupStrategy;
+
+    /**
+     * Strategy used to look up the {@link SOAP11Context} associated with the
+     * outbound message context.
+     */
+    @Nonnull private Function<MessageContext,SOAP11Context> soap11ContextLookupStrategy;
+
+    /** Statistics for each peer. */
+    @Nonnull private final Map<String,PeerStatistics> peerStatistics;
+
+    /** Constructor. */
+    public AsyncHttpSOAPClient() {
+        requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+        maxResponseSize = DEFAULT_MAX_RESPONSE_SIZE;
+        soapClientContextLookupStrategy = new ChildContextLookup<>(SOAPClientContext.class);
+        soap11ContextLookupStrategy = new ChildContextLookup<>(SOAP11Context.class);
+        peerStatistics = new ConcurrentHashMap<>();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+
+        if (parserPool == null) {
+            throw new ComponentInitializationException("ParserPool cannot be null");
+        }
+
+        if (httpClient == null) {
+            final HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .followRedirects(HttpClient.Redirect.NEVER);
+            if (connectTimeout != null) {
+                builder.connectTimeout(connectTimeout);
+            }
+            if (executor != null) {
+                builder.executor(executor);
+            }
+            httpClient = builder.build();
+        }
+    }
+
+    /**
+     * Set the client used to make outbound HTTP requests.
+     *
+     * <p>If not set, a client is created which prefers HTTP/2 and does not follow redirects.</p>
+     *
+     * @param client client object
+     */
+    public void setHttpClient(@Nullable final HttpClient client) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        httpClient = client;
+    }
+
+    /**
+     * Set the connection timeout of a client created by this object.
+     *
+     * @param timeout connection timeout
+     */
+    public void setConnectTimeout(@Nullable final Duration timeout) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        if (timeout != null) {
+            Constraint.isFalse(timeout.isNegative() || timeout.isZero(), "Connection timeout must be positive");
+        }
+
+        connectTimeout = timeout;
+    }
+
+    /**
+     * Set the executor of a client created by this object, on which responses are processed.
+     *
+     * @param exec executor
+     */
+    public void setExecutor(@Nullable final Executor exec) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        executor = exec;
+    }
+
+    /**
+     * Get the timeout of each request, which bounds the time from sending the request until the whole response
+     * body has been received.
+     *
+     * @return request timeout
+     */
+    @Nonnull public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Set the timeout of each request, which bounds the time from sending the request until the whole response
+     * body has been received.
+     *
+     * <p>The timeout covers both the arrival of the response headers and the reading of the response body, so a
+     * peer which sends its headers promptly but then stalls cannot hold the request open indefinitely.</p>
+     *
+     * <p>Defaults to {@link #DEFAULT_REQUEST_TIMEOUT}.</p>
+     *
+     * @param timeout request timeout
+     */
+    public void setRequestTimeout(@Nonnull final Duration timeout) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        Constraint.isNotNull(timeout, "Request timeout cannot be null");
+        Constraint.isFalse(timeout.isNegative() || timeout.isZero(), "Request timeout must be positive");
+
+        requestTimeout = timeout;
+    }
+
+    /**
+     * Get the maximum size of a response body.
+     *
+     * @return maximum response size in bytes
+     */
+    @Positive public long getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    /**
+     * Set the maximum size of a response body, beyond which the exchange fails.
+     *
+     * <p>Defaults to {@link #DEFAULT_MAX_RESPONSE_SIZE}.</p>
+     *
+     * @param size maximum response size in bytes
+     */
+    public void setMaxResponseSize(@Positive final long size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        maxResponseSize = Constraint.isGreaterThan(0, size, "Maximum response size must be greater than 0");
+    }
+
+    /**
+     * Set the pool of XML parsers used to parse incoming responses.
+     *
+     * @param parser parser pool
+     */
+    public void setParserPool(@Nonnull final ParserPool parser) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        parserPool = Constraint.isNotNull(parser, "ParserPool cannot be null");
+    }
+
+    /**
+     * Set the strategy used to look up the {@link SOAPClientContext} associated with the outbound message
+     * context.
+     *
+     * @param strategy strategy used to look up the {@link SOAPClientContext} associated with the outbound
+     *            message context
+     */
+    public void setSOAPClientContextLookupStrategy(@Nonnull final Function<MessageContext,SOAPClientContext> strategy) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        soapClientContextLookupStrategy =
+                Constraint.isNotNull(strategy, "SOAP client context lookup strategy cannot be null");
+    }
+
+    /**
+     * Set the strategy used to look up the {@link SOAP11Context} associated with the outbound message
+     * context.
+     *
+     * @param strategy strategy used to look up the {@link SOAP11Context} associated with the outbound
+     *            message context
+     */
+    public void setSOAP11ContextLookupStrategy(@Nonnull final Function<MessageContext,SOAP11Context> strategy) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        soap11ContextLookupStrategy =
+                Constraint.isNotNull(strategy, "SOAP 1.1 context lookup strategy cannot be null");
+    }
+
+    /**
+     * Get the statistics for each peer to which a request has been sent, keyed by the scheme, host and port of
+     * the peer.
+     *
+     * @return live view of the statistics for each peer
+     */
+    @Nonnull @Unmodifiable public Map<String,PeerStatistics> getPeerStatistics() {
+        return Collections.unmodifiableMap(peerStatistics);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void send(@Nonnull @NotEmpty final String endpoint, @Nonnull final InOutOperationContext context)
+            throws SOAPException, SecurityException {
+        try {
+            sendAsync(endpoint, context).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SOAPClientException("Interrupted while awaiting response from " + endpoint, e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof SOAPException) {
+                throw (SOAPException) cause;
+            } else if (cause instanceof SecurityException) {
+                throw (SecurityException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SOAPClientException("Unable to send request to " + endpoint, e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public CompletableFuture<InOutOperationContext> sendAsync(@Nonnull @NotEmpty final String endpoint,
+            @Nonnull final InOutOperationContext context) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        Constraint.isNotNull(endpoint, "Endpoint cannot be null");
+        Constraint.isNotNull(context, "Operation context cannot be null");
+
+        final SOAP11Context soapCtx = soap11ContextLookupStrategy.apply(context.getOutboundMessageContext());
+        final SOAPClientContext clientCtx = soapClientContextLookupStrategy.apply(context.getOutboundMessageContext());
+
+        final HttpRequest request;
+        try {
+            if (soapCtx == null || soapCtx.getEnvelope() == null) {
+                throw new SOAPClientException("Operation context did not contain an outbound SOAP Envelope");
+            }
+            final SOAPRequestParameters requestParams =
+                    clientCtx != null ? clientCtx.getSOAPRequestParameters() : null;
+            request = createRequest(endpoint, requestParams instanceof HttpSOAPRequestParameters
+                    ? (HttpSOAPRequestParameters) requestParams : null, soapCtx.getEnvelope());
+        } catch (final SOAPClientException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final PeerStatistics stats = peerStatistics.computeIfAbsent(getPeer(request.uri()), k -> new PeerStatistics());
+        stats.requestStarted();
+        final long start = System.nanoTime();
+        final long deadline = start + requestTimeout.toNanos();
+
+        // The request timeout only bounds the arrival of the headers, so the body subscriber enforces the rest.
+        final HttpResponse.BodyHandler<byte[]> bodyHandler =
+                info -> new LimitedBodySubscriber(maxResponseSize, deadline);
+        return httpClient.sendAsync(request, bodyHandler).handle((response, error) -> {
+            final boolean success = error == null && response.statusCode() == 200;
+            stats.requestCompleted(System.nanoTime() - start, success,
+                    response != null && response.version() == HttpClient.Version.HTTP_2);
+
+            if (error != null) {
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                throw new CompletionException(new SOAPClientException("Unable to send request to " + endpoint,
+                        cause instanceof Exception ? (Exception) cause : new Exception(cause)));
+            }
+
+            try {
+                final int code = response.statusCode();
+                log.debug("Received HTTP status code of {} when POSTing SOAP message to {}", code, endpoint);
+                if (code == 200) {
+                    processSuccessfulResponse(response.body(), context);
+                } else if (code == 500) {
+                    processFaultResponse(response.body(), context);
+                } else {
+                    throw new SOAPClientException("Received " + code
+                            + " HTTP response status code from HTTP request to " + endpoint);
+                }
+            } catch (final SOAPException e) {
+                throw new CompletionException(e);
+            }
+            return context;
+        });
+    }
+
+    /**
+     * Create the request used to send the SOAP message.
+     *
+     * @param endpoint endpoint to which the message is sent
+     * @param requestParams HTTP request parameters
+     * @param message message to be sent
+     *
+     * @return the request to be used to send this message
+     *
+     * @throws SOAPClientException thrown if the message could not be marshalled or the endpoint is invalid
+     */
+    @Nonnull protected HttpRequest createRequest(@Nonnull @NotEmpty final String endpoint,
+            @Nullable final HttpSOAPRequestParameters requestParams, @Nonnull final Envelope message)
+            throws SOAPClientException {
+        log.debug("POSTing SOAP message to {}", endpoint);
+
+        final HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(URI.create(endpoint));
+        } catch (final IllegalArgumentException e) {
+            throw new SOAPClientException("Invalid endpoint " + endpoint, e);
+        }
+
+        builder.timeout(requestTimeout)
+            .header("Content-Type", "text/xml; charset=UTF-8")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(marshallMessage(message)));
+        if (requestParams != null && requestParams.getSOAPAction() != null) {
+            builder.header(HttpSOAPRequestParameters.SOAP_ACTION_HEADER, requestParams.getSOAPAction());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Marshall and serialize the message to be sent.
+     *
+     * @param message message to be sent
+     *
+     * @return the serialized message
+     *
+     * @throws SOAPClientException thrown if the message could not be marshalled
+     */
+    @Nonnull protected byte[] marshallMessage(@Nonnull final Envelope message) throws SOAPClientException {
+        try {
+            final Marshaller marshaller = Constraint.isNotNull(
+                    XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(message),
+                    "SOAP Envelope marshaller not available");
+            final Element element = marshaller.marshall(message);
+
+            if (log.isDebugEnabled()) {
+                log.debug("Outbound SOAP message is:\n" + SerializeSupport.prettyPrintXML(element));
+            }
+            final ByteArrayOutputStream arrayOut = new ByteArrayOutputStream();
+            SerializeSupport.writeNode(element, arrayOut);
+            return arrayOut.toByteArray();
+        } catch (final MarshallingException e) {
+            throw new SOAPClientException("Unable to marshall SOAP envelope", e);
+        }
+    }
+
+    /**
+     * Process a successful, as determined by an HTTP 200 status code, response.
+     *
+     * @param body the HTTP response body
+     * @param context current operation context
+     *
+     * @throws SOAPClientException thrown if there is a problem reading the response
+     */
+    protected void processSuccessfulResponse(@Nullable final byte[] body,
+            @Nonnull final InOutOperationContext context) throws SOAPClientException {
+        if (body == null || body.length == 0) {
+            throw new SOAPClientException("No response body from server");
+        }
+        final Envelope response = unmarshallResponse(new ByteArrayInputStream(body));
+        context.setInboundMessageContext(new MessageContext());
+        context.getInboundMessageContext().getSubcontext(SOAP11Context.class, true).setEnvelope(response);
+    }
+
+    /**
+     * Process a SOAP fault, as determined by an HTTP 500 status code, response.
+     *
+     * @param body the HTTP response body
+     * @param context current operation context
+     *
+     * @throws SOAPClientException thrown if the response can not be read
+     * @throws SOAPFaultException an exception containing the SOAP fault
+     */
+    protected void processFaultResponse(@Nullable final byte[] body, @Nonnull final InOutOperationContext context)
+            throws SOAPClientException, SOAPFaultException {
+        if (body == null || body.length == 0) {
+            throw new SOAPClientException("No response body from server");
+        }
+        final Envelope response = unmarshallResponse(new ByteArrayInputStream(body));
+        context.setInboundMessageContext(new MessageContext());
+        context.getInboundMessageContext().getSubcontext(SOAP11Context.class, true).setEnvelope(response);
+
+        if (response.getBody() != null) {
+            final List<XMLObject> faults = response.getBody().getUnknownXMLObjects(Fault.DEFAULT_ELEMENT_NAME);
+            if (faults.size() < 1) {
+                throw new SOAPClientException("HTTP status code was 500 but SOAP response did not contain a Fault");
+            }
+
+            String code = "(not set)";
+            String msg = "(not set)";
+            final Fault fault = (Fault) faults.get(0);
+            if (fault.getCode() != null) {
+                code = fault.getCode().getValue().toString();
+            }
+            if (fault.getMessage() != null) {
+                msg = fault.getMessage().getValue();
+            }
+
+            log.debug("SOAP fault code {} with message {}", code, msg);
+            final SOAPFaultException faultException = new SOAPFaultException("SOAP Fault: " + code
+                    + " Fault Message: " + msg);
+            faultException.setFault(fault);
+            throw faultException;
+        }
+        throw new SOAPClientException("HTTP status code was 500 but SOAP response did not contain a Body");
+    }
+
+    /**
+     * Unmarshall the incoming response.
+     *
+     * @param responseStream input stream bearing the response
+     *
+     * @return the response
+     *
+     * @throws SOAPClientException thrown if the incoming response can not be unmarshalled into an {@link Envelope}
+     */
+    @Nonnull protected Envelope unmarshallResponse(@Nonnull final InputStream responseStream)
+            throws SOAPClientException {
+        try {
+            final Element responseElem = parserPool.parse(responseStream).getDocumentElement();
+            if (log.isDebugEnabled()) {
+                log.debug("Inbound SOAP message was:\n" + SerializeSupport.prettyPrintXML(responseElem));
+            }
+            final Unmarshaller unmarshaller = Constraint.isNotNull(
+                    XMLObjectProviderRegistrySupport.getUnmarshallerFactory().getUnmarshaller(responseElem),
+                    "SOAP envelope unmarshaller not available");
+            return (Envelope) unmarshaller.unmarshall(responseElem);
+        } catch (final XMLParserException e) {
+            throw new SOAPClientException("Unable to parse the XML within the response", e);
+        } catch (final UnmarshallingException e) {
+            throw new SOAPClientException("Unable to unmarshall the response DOM", e);
+        }
+    }
+
+    /**
+     * Get the key identifying the peer to which a request is sent.
+     *
+     * @param uri request URI
+     *
+     * @return the scheme, host and port of the URI
+     */
+    @Nonnull private static String getPeer(@Nonnull final URI uri) {
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme().toLowerCase() + "://" + uri.getHost() + ':' + port;
+    }
+
+    /**
+     * Subscriber which accumulates the response body into a byte array, failing if it exceeds a maximum size or
+     * is not complete by a deadline.
+     */
+    private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        /** Subscriber accumulating the response body. */
+        @Nonnull private final HttpResponse.BodySubscriber<byte[]> delegate;
+
+        /** The response body. */
+        @Nonnull private final CompletableFuture<byte[]> body;
+
+        /** Maximum size of the response body in bytes. */
+        private final long maxSize;
+
+        /** Number of bytes received so far. */
+        private long received;
+
+        /** The subscription to the response body. */
+        @Nullable private volatile Flow.Subscription subscription;
+
+        /**
+         * Constructor.
+         *
+         * @param max maximum size of the response body in bytes
+         * @param deadline value of {@link System#nanoTime()} by which the response body must be complete
+         */
+        LimitedBodySubscriber(final long max, final long deadline) {
+            delegate = HttpResponse.BodySubscribers.ofByteArray();
+            body = new CompletableFuture<>();
+            maxSize = max;
+            body.orTimeout(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)
+                .whenComplete((bytes, error) -> {
+                    final Flow.Subscription sub = subscription;
+                    if (error instanceof TimeoutException && sub != null) {
+                        sub.cancel();
+                    }
+                });
+        }
+
+        /** {@inheritDoc} */
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        /** {@inheritDoc} */
+        public void onSubscribe(final Flow.Subscription sub) {
+            subscription = sub;
+            if (body.isCompletedExceptionally()) {
+                // Timed out before the body arrived.
+                sub.cancel();
+                return;
+            }
+            delegate.getBody().whenComplete((bytes, error) -> {
+                if (error != null) {
+                    body.completeExceptionally(error);
+                } else {
+                    body.complete(bytes);
+                }
+            });
+            delegate.onSubscribe(sub);
+        }
+
+        /** {@inheritDoc} */
+        public void onNext(final List<ByteBuffer> items) {
+            if (body.isDone()) {
+                return;
+            }
+            for (final ByteBuffer item : items) {
+                received += item.remaining();
+            }
+            if (received > maxSize) {
+                subscription.cancel();
+                body.completeExceptionally(
+                        new IOException("Response body exceeded maximum size of " + maxSize + " bytes"));
+                return;
+            }
+            delegate.onNext(items);
+        }
+
+        /** {@inheritDoc} */
+        public void onError(final Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        /** {@inheritDoc} */
+        public void onComplete() {
+            delegate.onComplete();
+        }
+    }
+
+    /** Request statistics for a peer. */
+    @ThreadSafe
+    public static final class PeerStatistics {
+
+        /** Number of completed requests. */
+        @Nonnull private final LongAdder requests;
+
+        /** Number of requests which failed or received a status code other than 200. */
+        @Nonnull private final LongAdder failures;
+
+        /** Number of responses received over HTTP/2. */
+        @Nonnull private final LongAdder http2Responses;
+
+        /** Number of requests in progress. */
+        @Nonnull private final AtomicLong inFlight;
+
+        /** Total latency of completed requests in nanoseconds. */
+        @Nonnull private final LongAdder totalLatency;
+
+        /** Maximum latency of a completed request in nanoseconds. */
+        @Nonnull private final AtomicLong maxLatency;
+
+        /** Constructor. */
+        PeerStatistics() {
+            requests = new LongAdder();
+            failures = new LongAdder();
+            http2Responses = new LongAdder();
+            inFlight = new AtomicLong();
+            totalLatency = new LongAdder();
+            maxLatency = new AtomicLong();
+        }
+
+        /**
+         * Get the number of completed requests.
+         *
+         * @return number of completed requests
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * Get the number of requests which failed or received a status code other than 200.
+         *
+         * @return number of unsuccessful requests
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Get the number of responses received over HTTP/2.
+         *
+         * @return number of HTTP/2 responses
+         */
+        public long getHTTP2Responses() {
+            return http2Responses.sum();
+        }
+
+        /**
+         * Get the number of requests in progress.
+         *
+         * @return number of requests in progress
+         */
+        public long getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * Get the mean latency of completed requests, from sending the request to receiving the whole response.
+         *
+         * @return mean latency
+         */
+        @Nonnull public Duration getMeanLatency() {
+            final long count = requests.sum();
+            return count == 0 ? Duration.ZERO : Duration.ofNanos(totalLatency.sum() / count);
+        }
+
+        /**
+         * Get the maximum latency of a completed request.
+         *
+         * @return maximum latency
+         */
+        @Nonnull public Duration getMaxLatency() {
+            return Duration.ofNanos(maxLatency.get());
+        }
+
+        /** Record the start of a request. */
+        void requestStarted() {
+            inFlight.incrementAndGet();
+        }
+
+        /**
+         * Record the completion of a request.
+         *
+         * @param latency latency in nanoseconds
+         * @param success whether the request succeeded
+         * @param http2 whether the response was received over HTTP/2
+         */
+        void requestCompleted(final long latency, final boolean success, final boolean http2) {
+            inFlight.decrementAndGet();
+            requests.increment();
+            if (!success) {
+                failures.increment();
+            }
+            if (http2) {
+                http2Responses.increment();
+            }
+            totalLatency.add(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+}
@@ -17,6 +17,10 @@
 
 package org.opensaml.soap.client.http;
 
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.Function;
 
 import javax.annotation.Nonnull;
@@ -24,6 +28,11 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 import org.opensaml.messaging.context.InOutOperationContext;
+import org.opensaml.messaging.decoder.httpclient.HttpClientResponseMessageDecoder;
+import org.opensaml.messaging.encoder.httpclient.HttpClientRequestMessageEncoder;
+import org.opensaml.messaging.handler.MessageHandler;
+import org.opensaml.messaging.handler.MessageHandlerChain;
+import org.opensaml.messaging.pipeline.ResettableComponent;
 import org.opensaml.messaging.pipeline.httpclient.HttpClientMessagePipeline;
 import org.opensaml.messaging.pipeline.httpclient.HttpClientMessagePipelineFactory;
 import org.opensaml.soap.client.SOAPClientContext;
@@ -31,6 +40,7 @@ import org.opensaml.soap.common.SOAPException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
@@ -38,10 +48,22 @@ import net.shibboleth.utilities.java.support.logic.Constraint;
 /**
  * SOAP client that is based on {@link HttpClientMessagePipeline}, produced at runtime from an instance of
  * {@link HttpClientMessagePipelineFactory}.
+ * 
+ * <p>
+ * If pipeline pooling is enabled, pipelines whose encoder and decoder implement {@link ResettableComponent} are
+ * reset and retained once an exchange completes, and are reused by later exchanges which resolve the same
+ * pipeline name, avoiding the cost of constructing and initializing their components for each exchange.
+ * Any message handlers of such a pipeline which implement {@link ResettableComponent} are also reset, and any
+ * others must be safe to reuse for successive exchanges, as a {@link MessageHandler} generally is. A pipeline
+ * is only ever used by one exchange at a time.
+ * </p>
  */
 @ThreadSafe
 public class PipelineFactoryHttpSOAPClient extends AbstractPipelineHttpSOAPClient {
     
+    /** Default maximum number of idle pipelines retained for each pipeline name. */
+    public static final int DEFAULT_MAX_IDLE_PIPELINES = 16;
+    
     /** Logger. */
     private Logger log = LoggerFactory.getLogger(PipelineFactoryHttpSOAPClient.class);
     
@@ -51,6 +73,19 @@ public class PipelineFactoryHttpSOAPClient extends AbstractPipelineHttpSOAPClien
     /** Strategy function used to resolve the pipeline name to execute. */
     private Function<InOutOperationContext,String> pipelineNameStrategy;
     
+    /** Whether to reuse pipelines whose components may be reset. */
+    private boolean pipelinePooling;
+    
+    /** Maximum number of idle pipelines retained for each pipeline name. */
+    @Positive private int maxIdlePipelines = DEFAULT_MAX_IDLE_PIPELINES;
+    
+    /** Idle pipelines resolved without a name. */
+    private BlockingQueue<HttpClientMessagePipeline> defaultIdlePipelines;
+    
+    /** Idle pipelines, keyed by pipeline name. */
+    @Nonnull private final Map<String,BlockingQueue<HttpClientMessagePipeline>> idlePipelines =
+            new ConcurrentHashMap<>();
+    
     /**
      * Set the message pipeline factory.
      * 
@@ -75,6 +110,38 @@ public class PipelineFactoryHttpSOAPClient extends AbstractPipelineHttpSOAPClien
         
         pipelineNameStrategy = function;
     }
+    
+    /**
+     * Set whether to reuse pipelines whose encoder and decoder implement {@link ResettableComponent}.
+     * 
+     * <p>Defaults to false.</p>
+     * 
+     * @param flag flag to set
+     * 
+     * @since 4.1.0
+     */
+    public void setPipelinePooling(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        
+        pipelinePooling = flag;
+    }
+    
+    /**
+     * Set the maximum number of idle pipelines retained for each pipeline name, if pipeline pooling is enabled.
+     * 
+     * <p>Defaults to {@link #DEFAULT_MAX_IDLE_PIPELINES}.</p>
+     * 
+     * @param max maximum number of idle pipelines
+     * 
+     * @since 4.1.0
+     */
+    public void setMaxIdlePipelines(@Positive final int max) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        
+        maxIdlePipelines = (int) Constraint.isGreaterThan(0, max, "Maximum idle pipelines must be greater than 0");
+    }
 
     /** {@inheritDoc} */
     protected void doInitialize() throws ComponentInitializationException {
@@ -87,10 +154,18 @@ public class PipelineFactoryHttpSOAPClient extends AbstractPipelineHttpSOAPClien
         if (pipelineNameStrategy == null) {
             pipelineNameStrategy = new DefaultPipelineNameStrategy();
         }
+        
+        defaultIdlePipelines = new LinkedBlockingQueue<>(maxIdlePipelines);
     }
 
     /** {@inheritDoc} */
     protected void doDestroy() {
+        if (defaultIdlePipelines != null) {
+            destroyIdlePipelines(defaultIdlePipelines);
+        }
+        idlePipelines.values().forEach(this::destroyIdlePipelines);
+        idlePipelines.clear();
+        
         pipelineFactory = null;
         pipelineNameStrategy = null;
         
@@ -101,7 +176,9 @@ public class PipelineFactoryHttpSOAPClient extends AbstractPipelineHttpSOAPClien
      * Resolve and return a new instance of the {@link HttpClientMessagePipeline} to be processed.
      * 
      * <p>
-     * Each call to this (factory) method MUST produce a new instance of the pipeline.
+     * Each call to this (factory) method MUST produce a new instance of the pipeline, unless pipeline pooling
+     * is enabled, in which case an idle pipeline with the same name, which is not in use by any other exchange,
+     * may be returned.
      * </p>
      * 
      * <p>
@@ -124,6 +201,9 @@ public class PipelineFactoryHttpSOAPClient extends AbstractPipelineHttpSOAPClien
         try {
             resolvedPipelineName = resolvePipelineName(operationContext);
             log.debug("Resolved pipeline name: {}", resolvedPipelineName);
+            if (pipelinePooling) {
+                return resolvePooledPipeline(resolvedPipelineName);
+            }
             if (resolvedPipelineName != null) {
                 return newPipeline(resolvedPipelineName);
             }
@@ -174,6 +254,99 @@ public class PipelineFactoryHttpSOAPClient extends AbstractPipelineHttpSOAPClien
         return pipelineFactory.newInstance(name);
     }
     
+    /** {@inheritDoc}
+     * 
+     * <p>
+     * The behavior of this subclass specialization is to reset and retain a pooled pipeline whose exchange
+     * completed, if there is room for it among the idle pipelines, and otherwise to destroy it.
+     * </p>
+     */
+    @Override
+    protected void releasePipeline(@Nonnull final HttpClientMessagePipeline pipeline,
+            final boolean exchangeComplete) {
+        if (exchangeComplete && pipeline instanceof PooledPipeline && !isDestroyed()) {
+            final PooledPipeline pooled = (PooledPipeline) pipeline;
+            try {
+                resetPipeline(pooled);
+                if (pooled.getIdlePipelines().offer(pooled)) {
+                    return;
+                }
+            } catch (final RuntimeException e) {
+                log.warn("Problem resetting pipeline for reuse: {}", e.getMessage());
+            }
+        }
+        super.releasePipeline(pipeline, exchangeComplete);
+    }
+    
+    /**
+     * Obtain an idle pipeline with the given name, or a new instance if there is none.
+     * 
+     * @param name the name of the pipeline, may be null
+     * 
+     * @return the pipeline instance
+     * 
+     * @throws SOAPException if there is an error obtaining a new pipeline instance
+     */
+    @Nonnull private HttpClientMessagePipeline resolvePooledPipeline(@Nullable final String name)
+            throws SOAPException {
+        final BlockingQueue<HttpClientMessagePipeline> pool = name != null
+                ? idlePipelines.computeIfAbsent(name, k -> new LinkedBlockingQueue<>(maxIdlePipelines))
+                : defaultIdlePipelines;
+        
+        final HttpClientMessagePipeline idle = pool.poll();
+        if (idle != null) {
+            log.trace("Reusing idle pipeline with name {}", name);
+            return idle;
+        }
+        
+        final HttpClientMessagePipeline pipeline = name != null ? newPipeline(name) : newPipeline();
+        if (pipeline != null && pipeline.getEncoder() instanceof ResettableComponent
+                && pipeline.getDecoder() instanceof ResettableComponent) {
+            return new PooledPipeline(pipeline, pool);
+        }
+        log.debug("Pipeline with name {} does not support reuse", name);
+        return pipeline;
+    }
+    
+    /**
+     * Reset the components of a pipeline for reuse.
+     * 
+     * @param pipeline the pipeline
+     */
+    private void resetPipeline(@Nonnull final HttpClientMessagePipeline pipeline) {
+        ((ResettableComponent) pipeline.getEncoder()).reset();
+        ((ResettableComponent) pipeline.getDecoder()).reset();
+        resetHandler(pipeline.getOutboundPayloadMessageHandler());
+        resetHandler(pipeline.getOutboundTransportMessageHandler());
+        resetHandler(pipeline.getInboundMessageHandler());
+    }
+    
+    /**
+     * Reset a message handler, and any handlers it contains, which implement {@link ResettableComponent}.
+     * 
+     * @param handler the handler, may be null
+     */
+    private void resetHandler(@Nullable final MessageHandler handler) {
+        if (handler instanceof ResettableComponent) {
+            ((ResettableComponent) handler).reset();
+        }
+        if (handler instanceof MessageHandlerChain && ((MessageHandlerChain) handler).getHandlers() != null) {
+            ((MessageHandlerChain) handler).getHandlers().forEach(this::resetHandler);
+        }
+    }
+    
+    /**
+     * Destroy the components of each idle pipeline in a pool.
+     * 
+     * @param pool the pool
+     */
+    private void destroyIdlePipelines(@Nonnull final BlockingQueue<HttpClientMessagePipeline> pool) {
+        HttpClientMessagePipeline pipeline;
+        while ((pipeline = pool.poll()) != null) {
+            super.releasePipeline(pipeline, false);
+        }
+    }
+    
     /**
      * Resolve the name of the pipeline to use.
      * 
@@ -207,5 +380,62 @@ public class PipelineFactoryHttpSOAPClient extends AbstractPipelineHttpSOAPClien
         }
         
     }
+    
+    /** A pipeline which may be returned to a pool of idle pipelines. */
+    private static final class PooledPipeline implements HttpClientMessagePipeline {
+        
+        /** The wrapped pipeline. */
+        @Nonnull private final HttpClientMessagePipeline delegate;
+        
+        /** The pool to which the pipeline belongs. */
+        @Nonnull private final BlockingQueue<HttpClientMessagePipeline> idlePipelines;
+        
+        /**
+         * Constructor.
+         *
+         * @param pipeline the wrapped pipeline
+         * @param pool the pool to which the pipeline belongs
+         */
+        PooledPipeline(@Nonnull final HttpClientMessagePipeline pipeline,
+                @Nonnull final BlockingQueue<HttpClientMessagePipeline> pool) {
+            delegate = pipeline;
+            idlePipelines = pool;
+        }
+        
+        /**
+         * Get the pool to which the pipeline belongs.
+         * 
+         * @return the pool
+         */
+        @Nonnull BlockingQueue<HttpClientMessagePipeline> getIdlePipelines() {
+            return idlePipelines;
+        }
+
+        /** {@inheritDoc} */
+        public HttpClientRequestMessageEncoder getEncoder() {
+            return delegate.getEncoder();
+        }
+
+        /** {@inheritDoc} */
+        public HttpClientResponseMessageDecoder getDecoder() {
+            return delegate.getDecoder();
+        }
+
+        /** {@inheritDoc} */
+        public MessageHandler getOutboundPayloadMessageHandler() {
+            return delegate.getOutboundPayloadMessageHandler();
+        }
+
+        /** {@inheritDoc} */
+        public MessageHandler getOutboundTransportMessageHandler() {
+            return delegate.getOutboundTransportMessageHandler();
+        }
+
+        /** {@inheritDoc} */
+        public MessageHandler getInboundMessageHandler() {
+            return delegate.getInboundMessageHandler();
+        }
+        
+    }
 
 }
\ No newline at end of file
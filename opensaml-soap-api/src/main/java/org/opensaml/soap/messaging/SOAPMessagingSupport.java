@@ -30,18 +30,28 @@ import javax.xml.namespace.QName;
 
 import net.shibboleth.utilities.java.support.collection.LazyList;
 import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.xml.ElementSupport;
+import net.shibboleth.utilities.java.support.xml.QNameSupport;
 
 import org.opensaml.core.xml.XMLObject;
 import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.Unmarshaller;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.messaging.handler.MessageHandler;
+import org.opensaml.messaging.handler.MessageHandlerException;
 import org.opensaml.soap.messaging.context.InboundSOAPContext;
 import org.opensaml.soap.messaging.context.SOAP11Context;
 import org.opensaml.soap.soap11.ActorBearing;
+import org.opensaml.soap.soap11.Body;
 import org.opensaml.soap.soap11.Envelope;
 import org.opensaml.soap.soap11.Fault;
 import org.opensaml.soap.soap11.Header;
 import org.opensaml.soap.util.SOAPSupport;
 import org.opensaml.soap.util.SOAPVersion;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 /**
  * Support class for SOAP messaging.
@@ -465,4 +475,80 @@ public final class SOAPMessagingSupport {
         //TODO SOAP 1.2
     }
     
+    /**
+     * Unmarshall a SOAP 1.1 Envelope in two stages, so that its headers may be evaluated before the cost of
+     * unmarshalling its Body is incurred.
+     * 
+     * <p>
+     * The Envelope is first unmarshalled without its Body and stored in the {@link SOAP11Context} of the message
+     * context, and the header handler is invoked on the message context. Only if the handler succeeds is the Body
+     * unmarshalled and added to the Envelope, which then has the same content and cached DOM as it would if it had
+     * been unmarshalled in one step. Header objects seen by the handler, such as those registered as understood,
+     * are retained in the completed Envelope.
+     * </p>
+     * 
+     * @param envelopeElement the parsed Envelope element
+     * @param messageContext the message context in which to store the Envelope
+     * @param headerHandler the handler to invoke once the headers have been unmarshalled
+     * 
+     * @return the completed Envelope
+     * 
+     * @throws UnmarshallingException if the element is not a SOAP 1.1 Envelope or cannot be unmarshalled
+     * @throws MessageHandlerException if the header handler rejects the message, in which case the Body is not
+     *          unmarshalled
+     * 
+     * @since 4.1.0
+     */
+    @Nonnull public static Envelope unmarshallSOAP11Envelope(@Nonnull final Element envelopeElement,
+            @Nonnull final MessageContext messageContext, @Nonnull final MessageHandler headerHandler)
+                    throws UnmarshallingException, MessageHandlerException {
+        Constraint.isNotNull(envelopeElement, "Envelope element cannot be null");
+        Constraint.isNotNull(messageContext, "Message context cannot be null");
+        Constraint.isNotNull(headerHandler, "Header handler cannot be null");
+        
+        if (!Envelope.DEFAULT_ELEMENT_NAME.equals(QNameSupport.getNodeQName(envelopeElement))) {
+            throw new UnmarshallingException("Element was not a SOAP 1.1 Envelope");
+        }
+        
+        final Unmarshaller envelopeUnmarshaller = XMLObjectSupport.getUnmarshaller(envelopeElement);
+        if (envelopeUnmarshaller == null) {
+            throw new UnmarshallingException("No unmarshaller available for SOAP 1.1 Envelope");
+        }
+        
+        // Detach the Body while the rest of the Envelope is unmarshalled.
+        final Element bodyElement = ElementSupport.getFirstChildElement(envelopeElement, Body.DEFAULT_ELEMENT_NAME);
+        final Node bodySibling = bodyElement != null ? bodyElement.getNextSibling() : null;
+        if (bodyElement != null) {
+            envelopeElement.removeChild(bodyElement);
+        }
+        
+        final Envelope envelope;
+        try {
+            envelope = (Envelope) envelopeUnmarshaller.unmarshall(envelopeElement);
+        } finally {
+            if (bodyElement != null) {
+                envelopeElement.insertBefore(bodyElement, bodySibling);
+            }
+        }
+        
+        getSOAP11Context(messageContext, true).setEnvelope(envelope);
+        headerHandler.invoke(messageContext);
+        
+        if (bodyElement != null) {
+            final Unmarshaller bodyUnmarshaller = XMLObjectSupport.getUnmarshaller(bodyElement);
+            if (bodyUnmarshaller == null) {
+                throw new UnmarshallingException("No unmarshaller available for SOAP 1.1 Body");
+            }
+            final Body body = (Body) bodyUnmarshaller.unmarshall(bodyElement);
+            final boolean domRetained = envelope.getDOM() != null;
+            envelope.setBody(body);
+            if (domRetained) {
+                // Assigning the Body releases the cached DOM, which is complete again unless the handler altered it.
+                envelope.setDOM(envelopeElement);
+            }
+        }
+        
+        return envelope;
+    }
+    
 }
@@ -20,20 +20,26 @@ package org.opensaml.soap.client.soap11.decoder.http.impl;
 import java.io.IOException;
 import java.util.List;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.xml.namespace.QName;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.io.UnmarshallingException;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.decoder.MessageDecodingException;
 import org.opensaml.messaging.decoder.httpclient.BaseHttpClientResponseXMLMessageDecoder;
 import org.opensaml.messaging.handler.MessageHandler;
 import org.opensaml.messaging.handler.MessageHandlerException;
+import org.opensaml.messaging.pipeline.ResettableComponent;
 import org.opensaml.soap.common.SOAP11FaultDecodingException;
+import org.opensaml.soap.messaging.SOAPMessagingSupport;
 import org.opensaml.soap.messaging.context.SOAP11Context;
 import org.opensaml.soap.soap11.Envelope;
 import org.opensaml.soap.soap11.Fault;
@@ -53,8 +59,16 @@ import org.slf4j.LoggerFactory;
  *  An application-specific payload-oriented message exchange would handle a specific type
  * of payload structure.  
  * </p>
+ * 
+ * <p>
+ * An optional header {@link MessageHandler} may also be supplied, in which case a successful response is decoded
+ * in stages: the Envelope is unmarshalled without its Body, the header handler is invoked, and the Body is only
+ * unmarshalled if the handler succeeds. If the header handler fails, the partially-decoded message context remains
+ * available via {@link #getMessageContext()}.
+ * </p>
  */
-public class HttpClientResponseSOAP11Decoder extends BaseHttpClientResponseXMLMessageDecoder {
+public class HttpClientResponseSOAP11Decoder extends BaseHttpClientResponseXMLMessageDecoder
+        implements ResettableComponent {
     
     /** Logger. */
     private final Logger log = LoggerFactory.getLogger(HttpClientResponseSOAP11Decoder.class);
@@ -62,6 +76,9 @@ public class HttpClientResponseSOAP11Decoder extends BaseHttpClientResponseXMLMe
     /** Message handler to use in processing the message body. */
     private MessageHandler bodyHandler;
     
+    /** Optional message handler to use in processing the message headers before the body is unmarshalled. */
+    @Nullable private MessageHandler headerHandler;
+    
     /**
      * Get the configured body handler MessageHandler.
      * 
@@ -79,6 +96,28 @@ public class HttpClientResponseSOAP11Decoder extends BaseHttpClientResponseXMLMe
     public void setBodyHandler(final MessageHandler newBodyHandler) {
         bodyHandler = newBodyHandler;
     }
+    
+    /**
+     * Get the optional header handler MessageHandler.
+     * 
+     * @return the header handler, or null
+     * 
+     * @since 4.1.0
+     */
+    @Nullable public MessageHandler getHeaderHandler() {
+        return headerHandler;
+    }
+    
+    /**
+     * Set the optional header handler MessageHandler, invoked before the message body is unmarshalled.
+     * 
+     * @param newHeaderHandler the header handler, or null
+     * 
+     * @since 4.1.0
+     */
+    public void setHeaderHandler(@Nullable final MessageHandler newHeaderHandler) {
+        headerHandler = newHeaderHandler;
+    }
 
     /** {@inheritDoc} */
     protected void doDecode() throws MessageDecodingException {
@@ -91,8 +130,12 @@ public class HttpClientResponseSOAP11Decoder extends BaseHttpClientResponseXMLMe
             
             switch(responseStatusCode) {
                 case HttpStatus.SC_OK:
-                    final SOAP11Context soapContext = messageContext.getSubcontext(SOAP11Context.class, true);
-                    processSuccessResponse(response, soapContext);
+                    if (getHeaderHandler() != null) {
+                        processStagedSuccessResponse(response, messageContext);
+                    } else {
+                        final SOAP11Context soapContext = messageContext.getSubcontext(SOAP11Context.class, true);
+                        processSuccessResponse(response, soapContext);
+                    }
                     break;
                 case HttpStatus.SC_INTERNAL_SERVER_ERROR:
                     throw buildFaultException(response);
@@ -157,6 +200,49 @@ public class HttpClientResponseSOAP11Decoder extends BaseHttpClientResponseXMLMe
         soapContext.setHTTPResponseStatus(httpResponse.getStatusLine().getStatusCode());
     }
 
+    /**
+     * Process a successful response in stages, invoking the header handler before the body is unmarshalled.
+     * 
+     * @param httpResponse the HTTP response
+     * @param messageContext the message context to populate
+     * 
+     * @throws MessageDecodingException if the response cannot be unmarshalled, the header handler fails,
+     *          or the response contains a fault
+     * @throws IOException if there is a problem reading the response
+     * 
+     * @since 4.1.0
+     */
+    protected void processStagedSuccessResponse(@Nonnull final HttpResponse httpResponse,
+            @Nonnull final MessageContext messageContext) throws MessageDecodingException, IOException {
+        
+        if (httpResponse.getEntity() == null) {
+            throw new MessageDecodingException("No response body from server");
+        }
+        
+        final Envelope soapMessage;
+        try {
+            soapMessage = SOAPMessagingSupport.unmarshallSOAP11Envelope(
+                    getParserPool().parse(httpResponse.getEntity().getContent()).getDocumentElement(),
+                    messageContext, getHeaderHandler());
+        } catch (final XMLParserException | UnmarshallingException e) {
+            log.error("Error unmarshalling message from input stream: {}", e.getMessage());
+            throw new MessageDecodingException("Error unmarshalling message from input stream", e);
+        } catch (final MessageHandlerException e) {
+            log.warn("SOAP Envelope header processing failed, message body was not unmarshalled: {}",
+                    e.getMessage());
+            setMessageContext(messageContext);
+            throw new MessageDecodingException("Error processing SOAP Envelope header", e);
+        }
+        
+        final Fault fault = getFault(soapMessage);
+        if (fault != null) {
+            throw new SOAP11FaultDecodingException(fault);
+        }
+        
+        messageContext.getSubcontext(SOAP11Context.class, true).setHTTPResponseStatus(
+                httpResponse.getStatusLine().getStatusCode());
+    }
+
     /**
      * Build an exception by processing a fault response, i.e. one where the HTTP response code was 500.
      * 
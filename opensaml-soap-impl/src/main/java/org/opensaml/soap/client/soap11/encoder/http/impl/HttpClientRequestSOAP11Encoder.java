@@ -39,6 +39,7 @@ import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.encoder.MessageEncodingException;
 import org.opensaml.messaging.encoder.httpclient.BaseHttpClientRequestXMLMessageEncoder;
+import org.opensaml.messaging.pipeline.ResettableComponent;
 import org.opensaml.soap.common.SOAPObjectBuilder;
 import org.opensaml.soap.messaging.context.SOAP11Context;
 import org.opensaml.soap.soap11.Body;
@@ -51,7 +52,8 @@ import org.slf4j.LoggerFactory;
 /**
  * Basic SOAP 1.1 encoder for HTTP transport via an HttpClient's {@link HttpRequest}.
  */
-public class HttpClientRequestSOAP11Encoder extends BaseHttpClientRequestXMLMessageEncoder {
+public class HttpClientRequestSOAP11Encoder extends BaseHttpClientRequestXMLMessageEncoder
+        implements ResettableComponent {
     
     /** Class logger. */
     private final Logger log = LoggerFactory.getLogger(HttpClientRequestSOAP11Encoder.class);
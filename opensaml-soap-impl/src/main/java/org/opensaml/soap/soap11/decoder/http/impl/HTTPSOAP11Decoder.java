@@ -18,17 +18,22 @@
 package org.opensaml.soap.soap11.decoder.http.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.Set;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 
 import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.io.UnmarshallingException;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.decoder.MessageDecodingException;
 import org.opensaml.messaging.decoder.servlet.BaseHttpServletRequestXMLMessageDecoder;
 import org.opensaml.messaging.handler.MessageHandler;
 import org.opensaml.messaging.handler.MessageHandlerException;
+import org.opensaml.soap.messaging.SOAPMessagingSupport;
 import org.opensaml.soap.messaging.context.SOAP11Context;
 import org.opensaml.soap.soap11.Envelope;
 import org.slf4j.Logger;
@@ -38,6 +43,7 @@ import com.google.common.net.MediaType;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.net.HttpServletSupport;
+import net.shibboleth.utilities.java.support.xml.XMLParserException;
 
 /**
  * Basic SOAP 1.1 decoder for HTTP transport.
@@ -52,6 +58,14 @@ import net.shibboleth.utilities.java.support.net.HttpServletSupport;
  *  An application-specific payload-oriented message exchange would handle a specific type
  * of payload structure.  
  * </p>
+ * 
+ * <p>
+ * An optional header {@link MessageHandler} may also be supplied, in which case the message is decoded in stages:
+ * the Envelope is unmarshalled without its Body, the header handler is invoked, and the Body is only unmarshalled
+ * if the handler succeeds. This allows a message which header processing would reject to be rejected without
+ * the cost of unmarshalling the Body. If the header handler fails, the partially-decoded message context remains
+ * available via {@link #getMessageContext()}.
+ * </p>
  */
 public class HTTPSOAP11Decoder extends BaseHttpServletRequestXMLMessageDecoder {
 
@@ -64,6 +78,9 @@ public class HTTPSOAP11Decoder extends BaseHttpServletRequestXMLMessageDecoder {
     /** Message handler to use in processing the message body. */
     private MessageHandler bodyHandler;
     
+    /** Optional message handler to use in processing the message headers before the body is unmarshalled. */
+    @Nullable private MessageHandler headerHandler;
+    
     /**
      * Get the configured body handler MessageHandler.
      * 
@@ -81,6 +98,28 @@ public class HTTPSOAP11Decoder extends BaseHttpServletRequestXMLMessageDecoder {
     public void setBodyHandler(final MessageHandler newBodyHandler) {
         bodyHandler = newBodyHandler;
     }
+    
+    /**
+     * Get the optional header handler MessageHandler.
+     * 
+     * @return the header handler, or null
+     * 
+     * @since 4.1.0
+     */
+    @Nullable public MessageHandler getHeaderHandler() {
+        return headerHandler;
+    }
+    
+    /**
+     * Set the optional header handler MessageHandler, invoked before the message body is unmarshalled.
+     * 
+     * @param newHeaderHandler the header handler, or null
+     * 
+     * @since 4.1.0
+     */
+    public void setHeaderHandler(@Nullable final MessageHandler newHeaderHandler) {
+        headerHandler = newHeaderHandler;
+    }
 
     /** {@inheritDoc} */
     @Override
@@ -93,10 +132,13 @@ public class HTTPSOAP11Decoder extends BaseHttpServletRequestXMLMessageDecoder {
         }
 
         log.debug("Unmarshalling SOAP message");
-        final Envelope soapMessage;
         try {
-            soapMessage = (Envelope) unmarshallMessage(request.getInputStream());
-            messageContext.getSubcontext(SOAP11Context.class, true).setEnvelope(soapMessage);
+            if (getHeaderHandler() != null) {
+                unmarshallStaged(request.getInputStream(), messageContext);
+            } else {
+                final Envelope soapMessage = (Envelope) unmarshallMessage(request.getInputStream());
+                messageContext.getSubcontext(SOAP11Context.class, true).setEnvelope(soapMessage);
+            }
         } catch (final IOException e) {
             log.error("Unable to obtain input stream from HttpServletRequest: {}", e.getMessage());
             throw new MessageDecodingException("Unable to obtain input stream from HttpServletRequest", e);
@@ -118,6 +160,30 @@ public class HTTPSOAP11Decoder extends BaseHttpServletRequestXMLMessageDecoder {
         
     }
     
+    /**
+     * Unmarshall the message in stages, invoking the header handler before the body is unmarshalled.
+     * 
+     * @param messageStream the message stream
+     * @param messageContext the message context to populate
+     * 
+     * @throws MessageDecodingException if the message cannot be unmarshalled or the header handler fails
+     */
+    protected void unmarshallStaged(@Nonnull final InputStream messageStream,
+            @Nonnull final MessageContext messageContext) throws MessageDecodingException {
+        try {
+            SOAPMessagingSupport.unmarshallSOAP11Envelope(
+                    getParserPool().parse(messageStream).getDocumentElement(), messageContext, getHeaderHandler());
+        } catch (final XMLParserException | UnmarshallingException e) {
+            log.error("Error unmarshalling message from input stream: {}", e.getMessage());
+            throw new MessageDecodingException("Error unmarshalling message from input stream", e);
+        } catch (final MessageHandlerException e) {
+            log.warn("SOAP Envelope header processing failed, message body was not unmarshalled: {}",
+                    e.getMessage());
+            setMessageContext(messageContext);
+            throw new MessageDecodingException("Error processing SOAP Envelope header", e);
+        }
+    }
+    
     /** {@inheritDoc} */
     @Override
     protected void doInitialize() throws ComponentInitializationException {
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.soap.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.messaging.context.InOutOperationContext;
+import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.security.SecurityException;
+import org.opensaml.soap.common.SOAPException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BatchSOAPClientTest {
+
+    private ExecutorService executor;
+
+    private AtomicInteger inFlight;
+
+    private AtomicInteger maxInFlight;
+
+    private SOAPClient mockClient;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+        inFlight = new AtomicInteger();
+        maxInFlight = new AtomicInteger();
+        mockClient = (endpoint, context) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                if ("fail".equals(context.getOutboundMessageContext().getMessage())) {
+                    throw new SOAPClientException("Failed");
+                }
+                final MessageContext inbound = new MessageContext();
+                inbound.setMessage(context.getOutboundMessageContext().getMessage());
+                context.setInboundMessageContext(inbound);
+            } catch (final InterruptedException e) {
+                throw new SOAPClientException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrderAndErrors() throws ComponentInitializationException {
+        final BatchSOAPClient client = new BatchSOAPClient();
+        client.setSOAPClient(mockClient);
+        client.setExecutor(executor);
+        client.setMaxInFlight(2);
+        client.initialize();
+
+        final List<InOutOperationContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            contexts.add(buildOperationContext(i == 3 ? "fail" : "message" + i));
+        }
+
+        final List<BatchSOAPClient.Result> results = client.send("https://sp.example.org/soap", contexts);
+        Assert.assertEquals(results.size(), 6);
+        for (int i = 0; i < 6; i++) {
+            final BatchSOAPClient.Result result = results.get(i);
+            Assert.assertSame(result.getOperationContext(), contexts.get(i));
+            if (i == 3) {
+                Assert.assertFalse(result.isSuccess());
+                Assert.assertTrue(result.getException() instanceof SOAPClientException);
+            } else {
+                Assert.assertTrue(result.isSuccess());
+                Assert.assertNull(result.getException());
+                Assert.assertEquals(result.getOperationContext().getInboundMessageContext().getMessage(),
+                        "message" + i);
+            }
+        }
+
+        Assert.assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test
+    public void testNoExecutor() throws ComponentInitializationException {
+        final BatchSOAPClient client = new BatchSOAPClient();
+        client.setSOAPClient(mockClient);
+        client.initialize();
+
+        final List<BatchSOAPClient.Result> results = client.send("https://sp.example.org/soap",
+                List.of(buildOperationContext("fail"), buildOperationContext("message")));
+        Assert.assertFalse(results.get(0).isSuccess());
+        Assert.assertTrue(results.get(1).isSuccess());
+        Assert.assertEquals(maxInFlight.get(), 1);
+    }
+
+    @Test
+    public void testCancellation() throws ComponentInitializationException {
+        final AsyncSOAPClient asyncClient = new AsyncSOAPClient() {
+            public void send(final String endpoint, final InOutOperationContext context)
+                    throws SOAPException, SecurityException {
+                mockClient.send(endpoint, context);
+            }
+
+            public CompletableFuture<InOutOperationContext> sendAsync(final String endpoint,
+                    final InOutOperationContext context) {
+                final CompletableFuture<InOutOperationContext> future = new CompletableFuture<>();
+                if ("cancel".equals(context.getOutboundMessageContext().getMessage())) {
+                    future.cancel(false);
+                } else {
+                    future.complete(context);
+                }
+                return future;
+            }
+        };
+
+        final BatchSOAPClient client = new BatchSOAPClient();
+        client.setSOAPClient(asyncClient);
+        client.initialize();
+
+        final List<BatchSOAPClient.Result> results = client.send("https://sp.example.org/soap",
+                List.of(buildOperationContext("cancel"), buildOperationContext("message")));
+        Assert.assertEquals(results.size(), 2);
+        Assert.assertFalse(results.get(0).isSuccess());
+        Assert.assertTrue(results.get(0).getException() instanceof SOAPClientException);
+        Assert.assertTrue(results.get(1).isSuccess());
+    }
+
+    @Test(timeOut = 10000)
+    public void testError() throws ComponentInitializationException {
+        final SOAPClient errorClient = (endpoint, context) -> {
+            if ("error".equals(context.getOutboundMessageContext().getMessage())) {
+                throw new AssertionError("Failed");
+            }
+            mockClient.send(endpoint, context);
+        };
+
+        final BatchSOAPClient client = new BatchSOAPClient();
+        client.setSOAPClient(errorClient);
+        client.setExecutor(executor);
+        client.setMaxInFlight(1);
+        client.initialize();
+
+        // The permit held by the failed exchange must be released, or the second exchange never starts.
+        final List<BatchSOAPClient.Result> results = client.send("https://sp.example.org/soap",
+                List.of(buildOperationContext("error"), buildOperationContext("message")));
+        Assert.assertFalse(results.get(0).isSuccess());
+        Assert.assertTrue(results.get(0).getException().getCause() instanceof AssertionError);
+        Assert.assertTrue(results.get(1).isSuccess());
+    }
+
+    @Test
+    public void testPeer() {
+        Assert.assertEquals(BatchSOAPClient.getPeer("https://sp.example.org/soap"), "https://sp.example.org:443");
+        Assert.assertEquals(BatchSOAPClient.getPeer("HTTPS://sp.example.org:443/other"),
+                "https://sp.example.org:443");
+        Assert.assertEquals(BatchSOAPClient.getPeer("http://sp.example.org/soap"), "http://sp.example.org:80");
+        Assert.assertEquals(BatchSOAPClient.getPeer("https://sp.example.org:8443/soap"),
+                "https://sp.example.org:8443");
+        Assert.assertEquals(BatchSOAPClient.getPeer("not a uri"), "not a uri");
+    }
+
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void testNoClient() throws ComponentInitializationException {
+        new BatchSOAPClient().initialize();
+    }
+
+    private InOutOperationContext buildOperationContext(final String message) {
+        final MessageContext outbound = new MessageContext();
+        outbound.setMessage(message);
+        return new InOutOperationContext(null, outbound);
+    }
+
+}
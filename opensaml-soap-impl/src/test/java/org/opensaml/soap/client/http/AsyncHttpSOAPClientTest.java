@@ -0,0 +1,272 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.soap.client.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.xml.SerializeSupport;
+
+import org.opensaml.core.testing.XMLObjectBaseTestCase;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.mock.SimpleXMLObject;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.messaging.context.InOutOperationContext;
+import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.soap.client.SOAPClient;
+import org.opensaml.soap.client.SOAPClientContext;
+import org.opensaml.soap.client.SOAPClientException;
+import org.opensaml.soap.client.SOAPFaultException;
+import org.opensaml.soap.messaging.context.SOAP11Context;
+import org.opensaml.soap.soap11.Body;
+import org.opensaml.soap.soap11.Envelope;
+import org.opensaml.soap.util.SOAPSupport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class AsyncHttpSOAPClientTest extends XMLObjectBaseTestCase {
+
+    private HttpServer server;
+
+    private String endpoint;
+
+    private int responseStatus;
+
+    private byte[] responseBody;
+
+    private String receivedSOAPAction;
+
+    private AsyncHttpSOAPClient client;
+
+    private CountDownLatch stalled;
+
+    @BeforeMethod
+    public void setUp() throws IOException, ComponentInitializationException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/soap", exchange -> {
+            try (final InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+            }
+            receivedSOAPAction = exchange.getRequestHeaders().getFirst(HttpSOAPRequestParameters.SOAP_ACTION_HEADER);
+            exchange.getResponseHeaders().add("Content-Type", "text/xml");
+            exchange.sendResponseHeaders(responseStatus, responseBody.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(responseBody);
+            }
+        });
+        stalled = new CountDownLatch(1);
+        server.createContext("/stalled", exchange -> {
+            try (final InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/xml");
+            exchange.sendResponseHeaders(200, 0);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write("<soap11:Envelope".getBytes("UTF-8"));
+                out.flush();
+                stalled.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/soap";
+
+        client = new AsyncHttpSOAPClient();
+        client.setParserPool(parserPool);
+        client.initialize();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        stalled.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSendAsync() throws Exception {
+        final Envelope response = buildMessageSkeleton();
+        response.getBody().getUnknownXMLObjects().add(buildXMLObject(simpleXMLObjectQName));
+        setResponse(200, response);
+
+        final InOutOperationContext opContext = buildOperationContext();
+        opContext.getOutboundMessageContext().getSubcontext(SOAPClientContext.class, true).setSOAPRequestParameters(
+                new HttpSOAPRequestParameters("urn:test:action"));
+
+        final CompletableFuture<InOutOperationContext> future = client.sendAsync(endpoint, opContext);
+        Assert.assertSame(future.get(), opContext);
+        Assert.assertEquals(receivedSOAPAction, "urn:test:action");
+
+        final MessageContext inbound = opContext.getInboundMessageContext();
+        Assert.assertNotNull(inbound);
+        final Envelope envelope = inbound.getSubcontext(SOAP11Context.class).getEnvelope();
+        Assert.assertNotNull(envelope);
+        Assert.assertTrue(envelope.getBody().getUnknownXMLObjects().get(0) instanceof SimpleXMLObject);
+
+        final AsyncHttpSOAPClient.PeerStatistics stats =
+                client.getPeerStatistics().get("http://127.0.0.1:" + server.getAddress().getPort());
+        Assert.assertNotNull(stats);
+        Assert.assertEquals(stats.getRequests(), 1);
+        Assert.assertEquals(stats.getFailures(), 0);
+        Assert.assertEquals(stats.getInFlight(), 0);
+        Assert.assertTrue(stats.getMaxLatency().compareTo(stats.getMeanLatency()) >= 0);
+    }
+
+    @Test
+    public void testSend() throws Exception {
+        final Envelope response = buildMessageSkeleton();
+        response.getBody().getUnknownXMLObjects().add(buildXMLObject(simpleXMLObjectQName));
+        setResponse(200, response);
+
+        final InOutOperationContext opContext = buildOperationContext();
+        client.send(endpoint, opContext);
+
+        Assert.assertNull(receivedSOAPAction);
+        Assert.assertNotNull(opContext.getInboundMessageContext().getSubcontext(SOAP11Context.class).getEnvelope());
+    }
+
+    @Test
+    public void testFault() throws Exception {
+        final Envelope response = buildMessageSkeleton();
+        response.getBody().getUnknownXMLObjects().add(SOAPSupport.buildSOAP11Fault(
+                new QName("urn:test:soap:fault:foo", "TestFault", "foo"), "Test fault", null, null, null));
+        setResponse(500, response);
+
+        final InOutOperationContext opContext = buildOperationContext();
+        try {
+            client.sendAsync(endpoint, opContext).get();
+            Assert.fail("Fault response should have failed");
+        } catch (final ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SOAPFaultException);
+            Assert.assertEquals(((SOAPFaultException) e.getCause()).getFault().getMessage().getValue(), "Test fault");
+        }
+
+        try {
+            client.send(endpoint, opContext);
+            Assert.fail("Fault response should have failed");
+        } catch (final SOAPFaultException e) {
+            Assert.assertNotNull(e.getFault());
+        }
+
+        Assert.assertEquals(client.getPeerStatistics().values().iterator().next().getFailures(), 2);
+    }
+
+    @Test(expectedExceptions = SOAPClientException.class)
+    public void testUnexpectedStatus() throws Exception {
+        setResponse(404, buildMessageSkeleton());
+        client.send(endpoint, buildOperationContext());
+    }
+
+    @Test
+    public void testMaxResponseSize() throws Exception {
+        final Envelope response = buildMessageSkeleton();
+        response.getBody().getUnknownXMLObjects().add(buildXMLObject(simpleXMLObjectQName));
+        setResponse(200, response);
+
+        final AsyncHttpSOAPClient limited = new AsyncHttpSOAPClient();
+        limited.setParserPool(parserPool);
+        limited.setMaxResponseSize(responseBody.length - 1);
+        limited.initialize();
+
+        try {
+            limited.send(endpoint, buildOperationContext());
+            Assert.fail("Oversized response should have failed");
+        } catch (final SOAPClientException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+
+        final AsyncHttpSOAPClient sufficient = new AsyncHttpSOAPClient();
+        sufficient.setParserPool(parserPool);
+        sufficient.setMaxResponseSize(responseBody.length);
+        sufficient.initialize();
+
+        final InOutOperationContext opContext = buildOperationContext();
+        sufficient.send(endpoint, opContext);
+        Assert.assertNotNull(opContext.getInboundMessageContext().getSubcontext(SOAP11Context.class).getEnvelope());
+    }
+
+    @Test
+    public void testStalledResponseBody() throws Exception {
+        final AsyncHttpSOAPClient impatient = new AsyncHttpSOAPClient();
+        impatient.setParserPool(parserPool);
+        impatient.setRequestTimeout(Duration.ofMillis(500));
+        impatient.initialize();
+
+        final String stalledEndpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/stalled";
+        final long start = System.nanoTime();
+        try {
+            impatient.send(stalledEndpoint, buildOperationContext());
+            Assert.fail("Stalled response body should have timed out");
+        } catch (final SOAPClientException e) {
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+    @Test
+    public void testNonHttpRequestParameters() throws Exception {
+        setResponse(200, buildMessageSkeleton());
+
+        final InOutOperationContext opContext = buildOperationContext();
+        opContext.getOutboundMessageContext().getSubcontext(SOAPClientContext.class, true).setSOAPRequestParameters(
+                new SOAPClient.SOAPRequestParameters() {});
+        client.send(endpoint, opContext);
+
+        Assert.assertNull(receivedSOAPAction);
+    }
+
+    @Test(expectedExceptions = SOAPClientException.class)
+    public void testNoEnvelope() throws Exception {
+        client.send(endpoint, new InOutOperationContext(null, new MessageContext()));
+    }
+
+    private void setResponse(final int status, final Envelope envelope) throws MarshallingException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SerializeSupport.writeNode(XMLObjectSupport.marshall(envelope), baos);
+        responseStatus = status;
+        responseBody = baos.toByteArray();
+    }
+
+    private InOutOperationContext buildOperationContext() {
+        final MessageContext outbound = new MessageContext();
+        outbound.getSubcontext(SOAP11Context.class, true).setEnvelope(buildMessageSkeleton());
+        return new InOutOperationContext(null, outbound);
+    }
+
+    private Envelope buildMessageSkeleton() {
+        final Envelope envelope = buildXMLObject(Envelope.DEFAULT_ELEMENT_NAME);
+        final Body body = buildXMLObject(Body.DEFAULT_ELEMENT_NAME);
+        envelope.setBody(body);
+        return envelope;
+    }
+
+}
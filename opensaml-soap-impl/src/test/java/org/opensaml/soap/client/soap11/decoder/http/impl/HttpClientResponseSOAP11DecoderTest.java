@@ -43,6 +43,7 @@ import org.opensaml.soap.messaging.context.SOAP11Context;
 import org.opensaml.soap.soap11.Body;
 import org.opensaml.soap.soap11.Envelope;
 import org.opensaml.soap.soap11.Fault;
+import org.opensaml.soap.soap11.Header;
 import org.opensaml.soap.util.SOAPSupport;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -122,6 +123,125 @@ public class HttpClientResponseSOAP11DecoderTest extends XMLObjectBaseTestCase {
         decoder.decode();
     }
     
+    @Test
+    public void testReset() throws ComponentInitializationException, MessageDecodingException, MarshallingException, IOException {
+        Envelope envelope = buildMessageSkeleton();
+        envelope.getBody().getUnknownXMLObjects().add(buildXMLObject(simpleXMLObjectQName));
+        
+        decoder.setBodyHandler(new TestPayloadBodyHandler());
+        decoder.setHttpResponse(buildResponse(HttpStatus.SC_OK, envelope));
+        decoder.initialize();
+        decoder.decode();
+        MessageContext firstContext = decoder.getMessageContext();
+        Assert.assertNotNull(firstContext);
+        
+        decoder.reset();
+        Assert.assertNull(decoder.getMessageContext());
+        Assert.assertNull(decoder.getHttpResponse());
+        
+        decoder.setHttpResponse(buildResponse(HttpStatus.SC_OK, envelope));
+        decoder.decode();
+        
+        Assert.assertNotNull(decoder.getMessageContext());
+        Assert.assertNotSame(decoder.getMessageContext(), firstContext);
+        Assert.assertTrue(decoder.getMessageContext().getMessage() instanceof SimpleXMLObject);
+    }
+    
+    @Test(expectedExceptions = MessageDecodingException.class)
+    public void testResetWithoutResponse() throws ComponentInitializationException, MessageDecodingException, MarshallingException, IOException {
+        Envelope envelope = buildMessageSkeleton();
+        envelope.getBody().getUnknownXMLObjects().add(buildXMLObject(simpleXMLObjectQName));
+        
+        decoder.setBodyHandler(new TestPayloadBodyHandler());
+        decoder.setHttpResponse(buildResponse(HttpStatus.SC_OK, envelope));
+        decoder.initialize();
+        decoder.decode();
+        
+        decoder.reset();
+        decoder.decode();
+    }
+    
+    @Test
+    public void testStagedDecode() throws ComponentInitializationException, MessageDecodingException, MarshallingException, IOException {
+        Envelope envelope = buildMessageSkeleton();
+        envelope.setHeader(buildHeader());
+        envelope.getBody().getUnknownXMLObjects().add(buildXMLObject(simpleXMLObjectQName));
+        
+        final TestHeaderHandler headerHandler = new TestHeaderHandler(false);
+        decoder.setHeaderHandler(headerHandler);
+        decoder.setBodyHandler(new TestPayloadBodyHandler());
+        decoder.setHttpResponse(buildResponse(HttpStatus.SC_OK, envelope));
+        decoder.initialize();
+        
+        decoder.decode();
+        
+        MessageContext messageContext = decoder.getMessageContext();
+        
+        Assert.assertTrue(headerHandler.isBodyAbsent());
+        Assert.assertNotNull(messageContext);
+        Assert.assertTrue(messageContext.getMessage() instanceof SimpleXMLObject);
+        
+        SOAP11Context soapContext = messageContext.getSubcontext(SOAP11Context.class, false);
+        Assert.assertNotNull(soapContext);
+        Assert.assertSame(soapContext.getEnvelope().getHeader(), headerHandler.getHeader());
+        Assert.assertNotNull(soapContext.getEnvelope().getBody());
+        Assert.assertEquals(soapContext.getHTTPResponseStatus(), Integer.valueOf(HttpStatus.SC_OK));
+    }
+    
+    @Test
+    public void testStagedDecodeRejected() throws ComponentInitializationException, MarshallingException, IOException {
+        Envelope envelope = buildMessageSkeleton();
+        envelope.setHeader(buildHeader());
+        envelope.getBody().getUnknownXMLObjects().add(buildXMLObject(simpleXMLObjectQName));
+        
+        decoder.setHeaderHandler(new TestHeaderHandler(true));
+        decoder.setBodyHandler(new TestPayloadBodyHandler());
+        decoder.setHttpResponse(buildResponse(HttpStatus.SC_OK, envelope));
+        decoder.initialize();
+        
+        try {
+            decoder.decode();
+            Assert.fail("Header handler should have rejected message");
+        } catch (final MessageDecodingException e) {
+            Assert.assertTrue(e.getCause() instanceof MessageHandlerException);
+        }
+        
+        MessageContext messageContext = decoder.getMessageContext();
+        Assert.assertNotNull(messageContext);
+        Assert.assertNull(messageContext.getMessage());
+        
+        Envelope decodedEnvelope = messageContext.getSubcontext(SOAP11Context.class).getEnvelope();
+        Assert.assertNotNull(decodedEnvelope);
+        Assert.assertNotNull(decodedEnvelope.getHeader());
+        Assert.assertNull(decodedEnvelope.getBody());
+    }
+    
+    @Test
+    public void testStagedFault() throws ComponentInitializationException, MarshallingException, IOException {
+        Fault fault = SOAPSupport.buildSOAP11Fault(new QName("urn:test:soap:fault:foo", "TestFault", "foo"), "Test fault", null, null, null);
+        
+        Envelope envelope = buildMessageSkeleton();
+        envelope.setHeader(buildHeader());
+        envelope.getBody().getUnknownXMLObjects().add(fault);
+        
+        final TestHeaderHandler headerHandler = new TestHeaderHandler(false);
+        decoder.setHeaderHandler(headerHandler);
+        decoder.setBodyHandler(new TestPayloadBodyHandler());
+        decoder.setHttpResponse(buildResponse(HttpStatus.SC_OK, envelope));
+        decoder.initialize();
+        
+        try {
+            decoder.decode();
+            Assert.fail("Fault in success response should have been detected");
+        } catch (final MessageDecodingException e) {
+            Assert.assertTrue(e instanceof SOAP11FaultDecodingException);
+            Assert.assertEquals(((SOAP11FaultDecodingException) e).getFault().getMessage().getValue(), "Test fault");
+        }
+        
+        Assert.assertTrue(headerHandler.isBodyAbsent());
+        Assert.assertNull(decoder.getMessageContext());
+    }
+    
     private HttpResponse buildResponse(int statusResponseCode, Envelope envelope) throws MarshallingException, IOException {
         BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusResponseCode, null);
         Element envelopeElement = XMLObjectSupport.marshall(envelope);
@@ -142,6 +262,43 @@ public class HttpClientResponseSOAP11DecoderTest extends XMLObjectBaseTestCase {
         return envelope;
     }
     
+    private Header buildHeader() {
+        Header header = buildXMLObject(Header.DEFAULT_ELEMENT_NAME);
+        header.getUnknownXMLObjects().add(buildXMLObject(simpleXMLObjectQName));
+        return header;
+    }
+    
+    public class TestHeaderHandler extends AbstractMessageHandler {
+        
+        private final boolean reject;
+        
+        private boolean bodyAbsent;
+        
+        private Header header;
+        
+        public TestHeaderHandler(boolean shouldReject) {
+            reject = shouldReject;
+        }
+        
+        public boolean isBodyAbsent() {
+            return bodyAbsent;
+        }
+        
+        public Header getHeader() {
+            return header;
+        }
+        
+        /** {@inheritDoc} */
+        protected void doInvoke(MessageContext msgContext) throws MessageHandlerException {
+            Envelope env = (Envelope) msgContext.getSubcontext(SOAP11Context.class).getEnvelope();
+            bodyAbsent = env.getBody() == null;
+            header = env.getHeader();
+            if (reject) {
+                throw new MessageHandlerException("Rejected");
+            }
+        }
+    }
+    
     public class TestEnvelopeBodyHandler extends AbstractMessageHandler {
         /** {@inheritDoc} */
         protected void doInvoke(MessageContext msgContext) throws MessageHandlerException {
@@ -18,6 +18,7 @@
 package org.opensaml.soap.client.soap11.encoder.http.impl;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.UnmodifiableComponentException;
 
 import org.apache.http.client.methods.HttpPost;
 import org.opensaml.core.testing.XMLObjectBaseTestCase;
@@ -103,4 +104,48 @@ public class HttpClientRequestSOAP11EncoderTest extends XMLObjectBaseTestCase {
         Assert.assertEquals(request.getFirstHeader("SOAPAction").getValue(), "urn:test:action:foo");
     }
 
+    @Test
+    public void testReset() throws ComponentInitializationException, MessageEncodingException {
+        messageContext.setMessage(buildXMLObject(SimpleXMLObject.ELEMENT_NAME));
+        
+        encoder.initialize();
+        encoder.prepareContext();
+        encoder.encode();
+        Assert.assertNotNull(request.getEntity());
+        
+        encoder.reset();
+        
+        final MessageContext secondContext = new MessageContext();
+        secondContext.setMessage(buildXMLObject(SimpleXMLObject.ELEMENT_NAME));
+        final HttpPost secondRequest = new HttpPost("http://example.org/soap/receiver");
+        encoder.setMessageContext(secondContext);
+        encoder.setHttpRequest(secondRequest);
+        encoder.initialize();
+        encoder.prepareContext();
+        encoder.encode();
+        
+        Assert.assertNotNull(secondContext.getSubcontext(SOAP11Context.class).getEnvelope());
+        Assert.assertNotNull(secondRequest.getEntity());
+        
+        try {
+            encoder.setMessageContext(new MessageContext());
+            Assert.fail("Encoder inputs should be unmodifiable once used");
+        } catch (final UnmodifiableComponentException e) {
+            // expected
+        }
+    }
+    
+    @Test(expectedExceptions = MessageEncodingException.class)
+    public void testResetWithoutRequest() throws ComponentInitializationException, MessageEncodingException {
+        messageContext.setMessage(buildXMLObject(SimpleXMLObject.ELEMENT_NAME));
+        
+        encoder.initialize();
+        encoder.prepareContext();
+        encoder.encode();
+        
+        encoder.reset();
+        encoder.setMessageContext(messageContext);
+        encoder.encode();
+    }
+
 }
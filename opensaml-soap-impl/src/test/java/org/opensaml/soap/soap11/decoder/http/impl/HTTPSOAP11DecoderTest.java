@@ -28,6 +28,7 @@ import org.opensaml.messaging.handler.MessageHandlerException;
 import org.opensaml.security.SecurityException;
 import org.opensaml.soap.messaging.context.SOAP11Context;
 import org.opensaml.soap.soap11.Envelope;
+import org.opensaml.soap.soap11.Header;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -142,6 +143,64 @@ public class HTTPSOAP11DecoderTest extends XMLObjectBaseTestCase {
         decoder.decode();
     }
     
+    /**
+     * Test staged decoding where the header handler accepts the message.
+     * 
+     * @throws ComponentInitializationException ...
+     * @throws MessageDecodingException ...
+     * @throws IOException ...
+     */
+    @Test
+    public void testStagedDecode() throws ComponentInitializationException, MessageDecodingException, IOException {
+        httpRequest.setContent(getServletRequestContent("/org/opensaml/soap/soap11/SOAPHeaderMustUnderstand.xml"));
+        
+        final TestHeaderHandler headerHandler = new TestHeaderHandler(false);
+        decoder.setHeaderHandler(headerHandler);
+        decoder.setBodyHandler(new TestPayloadBodyHandler());
+        decoder.initialize();
+        
+        decoder.decode();
+        MessageContext msgContext = decoder.getMessageContext();
+        
+        Assert.assertTrue(headerHandler.isBodyAbsent());
+        Assert.assertTrue(msgContext.getMessage() instanceof XSAny);
+        
+        Envelope envelope = msgContext.getSubcontext(SOAP11Context.class).getEnvelope();
+        Assert.assertSame(envelope.getHeader(), headerHandler.getHeader());
+        Assert.assertNotNull(envelope.getBody());
+        Assert.assertNotNull(envelope.getDOM());
+        Assert.assertSame(envelope.getBody().getDOM().getParentNode(), envelope.getDOM());
+    }
+    
+    /**
+     * Test staged decoding where the header handler rejects the message.
+     * 
+     * @throws ComponentInitializationException ...
+     * @throws IOException ...
+     */
+    @Test
+    public void testStagedDecodeRejected() throws ComponentInitializationException, IOException {
+        httpRequest.setContent(getServletRequestContent("/org/opensaml/soap/soap11/SOAPHeaderMustUnderstand.xml"));
+        
+        decoder.setHeaderHandler(new TestHeaderHandler(true));
+        decoder.setBodyHandler(new TestPayloadBodyHandler());
+        decoder.initialize();
+        
+        try {
+            decoder.decode();
+            Assert.fail("Header handler should have rejected message");
+        } catch (final MessageDecodingException e) {
+            Assert.assertTrue(e.getCause() instanceof MessageHandlerException);
+        }
+        
+        MessageContext msgContext = decoder.getMessageContext();
+        Assert.assertNotNull(msgContext);
+        Assert.assertNull(msgContext.getMessage());
+        Envelope envelope = msgContext.getSubcontext(SOAP11Context.class).getEnvelope();
+        Assert.assertNotNull(envelope.getHeader());
+        Assert.assertNull(envelope.getBody());
+    }
+    
     //
     // Helper stuff
     //
@@ -167,6 +226,37 @@ public class HTTPSOAP11DecoderTest extends XMLObjectBaseTestCase {
         }
     }
     
+    public class TestHeaderHandler extends AbstractMessageHandler {
+        
+        private final boolean reject;
+        
+        private boolean bodyAbsent;
+        
+        private Header header;
+        
+        public TestHeaderHandler(boolean shouldReject) {
+            reject = shouldReject;
+        }
+        
+        public boolean isBodyAbsent() {
+            return bodyAbsent;
+        }
+        
+        public Header getHeader() {
+            return header;
+        }
+        
+        /** {@inheritDoc} */
+        protected void doInvoke(MessageContext msgContext) throws MessageHandlerException {
+            Envelope env = (Envelope) msgContext.getSubcontext(SOAP11Context.class).getEnvelope();
+            bodyAbsent = env.getBody() == null;
+            header = env.getHeader();
+            if (reject) {
+                throw new MessageHandlerException("Rejected");
+            }
+        }
+    }
+    
     public class TestPayloadBodyHandler extends AbstractMessageHandler {
         /** {@inheritDoc} */
         protected void doInvoke(MessageContext msgContext) throws MessageHandlerException {
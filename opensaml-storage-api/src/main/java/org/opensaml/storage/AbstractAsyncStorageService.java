@@ -0,0 +1,146 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Abstract base class for {@link AsyncStorageService} implementations whose record operations are
+ * natively asynchronous.
+ * 
+ * <p>The blocking forms of the basic record operations are implemented by awaiting the result of the
+ * corresponding asynchronous operation, so that such implementations remain usable by callers of the
+ * {@link StorageService} interface. The wait is bounded by {@link #getOperationTimeout()}, beyond which
+ * the operation is reported as failed.</p>
+ */
+public abstract class AbstractAsyncStorageService extends AbstractStorageService implements AsyncStorageService {
+
+    /** Default time to wait for an asynchronous operation to complete: 30 seconds. */
+    @Nonnull public static final Duration DEFAULT_OPERATION_TIMEOUT = Duration.ofSeconds(30);
+
+    /** Time to wait for an asynchronous operation to complete, when performed by a blocking operation. */
+    @Nonnull private Duration operationTimeout;
+
+    /** Constructor. */
+    public AbstractAsyncStorageService() {
+        operationTimeout = DEFAULT_OPERATION_TIMEOUT;
+    }
+
+    /**
+     * Gets the time to wait for an asynchronous operation to complete, when performed by a blocking operation.
+     * 
+     * @return time to wait for an asynchronous operation to complete
+     */
+    @Nonnull public Duration getOperationTimeout() {
+        return operationTimeout;
+    }
+
+    /**
+     * Sets the time to wait for an asynchronous operation to complete, when performed by a blocking operation.
+     * 
+     * Defaults to {@link #DEFAULT_OPERATION_TIMEOUT}.
+     * 
+     * This setting cannot be changed after the service has been initialized.
+     * 
+     * @param timeout time to wait for an asynchronous operation to complete
+     */
+    public void setOperationTimeout(@Nonnull final Duration timeout) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        Constraint.isNotNull(timeout, "Timeout cannot be null");
+        Constraint.isFalse(timeout.isNegative() || timeout.isZero(), "Timeout must be greater than zero");
+
+        operationTimeout = timeout;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        return awaitResult(createAsync(context, key, value, expiration));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public <T> StorageRecord<T> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException {
+        return awaitResult(this.<T>readAsync(context, key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        return awaitResult(updateAsync(context, key, value, expiration));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean delete(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
+            throws IOException {
+        return awaitResult(deleteAsync(context, key));
+    }
+
+    /**
+     * Wait for the result of an asynchronous operation, restoring the exception the blocking form of
+     * the operation would have thrown on failure.
+     * 
+     * @param <T> type of result
+     * @param future the result of the asynchronous operation
+     * 
+     * @return the result of the operation
+     * 
+     * @throws IOException if the operation failed or was cancelled, or the wait was interrupted or timed out
+     */
+    @Nullable protected <T> T awaitResult(@Nonnull final CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get(operationTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while awaiting storage operation", e);
+        } catch (final TimeoutException e) {
+            future.cancel(false);
+            throw new IOException("Timed out after " + operationTimeout + " awaiting storage operation", e);
+        } catch (final CancellationException e) {
+            throw new IOException("Storage operation was cancelled", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Storage operation failed", cause);
+        }
+    }
+
+}
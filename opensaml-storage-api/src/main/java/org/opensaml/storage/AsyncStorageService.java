@@ -0,0 +1,95 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
+
+/**
+ * Extension of {@link StorageService} supplying non-blocking variants of the basic record operations.
+ * 
+ * <p>Each operation returns a {@link CompletableFuture} which completes with the result of the
+ * corresponding {@link StorageService} operation. Errors which would cause the blocking operation to
+ * throw an {@link java.io.IOException} instead complete the future exceptionally with that exception.
+ * Invalid arguments may be reported immediately by a runtime exception.</p>
+ * 
+ * <p>Implementations with a natively asynchronous client may implement this interface directly, or extend
+ * {@link AbstractAsyncStorageService} to derive the blocking operations from the asynchronous ones, while
+ * blocking implementations may be adapted to it with an {@link ExecutorAsyncStorageService}.</p>
+ */
+@ThreadSafeAfterInit
+public interface AsyncStorageService extends StorageService {
+
+    /**
+     * Creates a new record in the store with an expiration.
+     * 
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * @param value         value to store
+     * @param expiration    expiration for record, or null
+     * 
+     * @return  a future completing with true iff record was inserted, false iff a duplicate was found
+     */
+    @Nonnull CompletableFuture<Boolean> createAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable @Positive final Long expiration);
+
+    /**
+     * Returns an existing record from the store, if one exists.
+     *
+     * @param <T>           type of record
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * 
+     * @return  a future completing with the record read back, if present, or null
+     */
+    @Nonnull <T> CompletableFuture<StorageRecord<T>> readAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key);
+
+    /**
+     * Updates an existing record in the store.
+     * 
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * @param value         updated value
+     * @param expiration    expiration for record, or null
+     * 
+     * @return a future completing with true if the update succeeded, false if the record does not exist
+     */
+    @Nonnull CompletableFuture<Boolean> updateAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable @Positive final Long expiration);
+
+    /**
+     * Deletes an existing record from the store.
+     * 
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * 
+     * @return a future completing with true iff the record existed and was deleted
+     */
+    @Nonnull CompletableFuture<Boolean> deleteAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key);
+
+}
@@ -0,0 +1,690 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.AbstractIdentifiableInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.storage.annotation.AnnotationSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorator for a {@link StorageService} that caches records read from it, avoiding a round trip to a remote
+ * store for records read repeatedly within a short period.
+ * 
+ * <p>The cache is bounded in size, evicting in least-recently-used order, and each entry is retained for no
+ * longer than the configured entry lifetime or the expiration of the record, whichever is sooner. Caching may
+ * be limited to particular contexts.</p>
+ * 
+ * <p>Every modification made through this decorator invalidates the affected entries, including failed
+ * versioned operations, since a {@link VersionMismatchException} indicates that the cached copy is stale.
+ * Reads racing with a modification do not re-populate the cache with the record they read. Modifications made
+ * directly to the underlying store, or by other nodes sharing it, are of course only observed once the entry
+ * lifetime elapses, which should be chosen accordingly.</p>
+ */
+@ThreadSafeAfterInit
+public class CachingStorageService extends AbstractIdentifiableInitializableComponent implements StorageService {
+
+    /** Default maximum number of cache entries: 1000. */
+    public static final int DEFAULT_MAX_CACHE_SIZE = 1000;
+
+    /** Default cache entry lifetime: 10 seconds. */
+    @Nonnull public static final Duration DEFAULT_CACHE_ENTRY_LIFETIME = Duration.ofSeconds(10);
+
+    /** Time for which an invalidated record is protected from re-population by concurrent reads: 1 second. */
+    private static final long INVALIDATION_MARKER_LIFETIME = 1000;
+
+    /** Logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(CachingStorageService.class);
+
+    /** The underlying store. */
+    @Nonnull private final StorageService storage;
+
+    /** The cache, in access order. */
+    @Nonnull private final Map<String,CacheEntry> cache;
+
+    /** Markers for recently invalidated records, in order of invalidation, guarded by the cache. */
+    @Nonnull private final Map<String,CacheEntry> invalidated;
+
+    /** Sequence number of the most recent invalidation. */
+    @Nonnull private final AtomicLong invalidations;
+
+    /**
+     * Invalidation sequence number before which reads may not populate the cache, owing to a context-wide
+     * invalidation or a discarded marker, guarded by the cache.
+     */
+    private long flushSequence;
+
+    /** Number of reads satisfied from the cache. */
+    @Nonnull private final LongAdder hits;
+
+    /** Number of reads passed to the underlying store. */
+    @Nonnull private final LongAdder misses;
+
+    /** Maximum number of cache entries. */
+    @Positive private int maxCacheSize;
+
+    /** Lifetime of a cache entry. */
+    @Nonnull private Duration cacheEntryLifetime;
+
+    /** Contexts to cache, or empty for all. */
+    @Nonnull @NonnullElements private Set<String> cachedContexts;
+
+    /**
+     * Constructor.
+     *
+     * @param storageService the underlying store
+     */
+    public CachingStorageService(@Nonnull final StorageService storageService) {
+        storage = Constraint.isNotNull(storageService, "StorageService cannot be null");
+        maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+        cacheEntryLifetime = DEFAULT_CACHE_ENTRY_LIFETIME;
+        cachedContexts = Collections.emptySet();
+        invalidations = new AtomicLong();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        invalidated = new LinkedHashMap<>();
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            /** Serial version UID. */
+            private static final long serialVersionUID = 4296316447417398617L;
+
+            /** {@inheritDoc} */
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String,CacheEntry> eldest) {
+                return size() > maxCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Get the underlying store.
+     *
+     * @return the underlying store
+     */
+    @Nonnull public StorageService getStorageService() {
+        return storage;
+    }
+
+    /**
+     * Get the maximum number of cache entries.
+     *
+     * @return the maximum cache size
+     */
+    @Positive public int getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * Set the maximum number of cache entries.
+     *
+     * <p>Defaults to {@link #DEFAULT_MAX_CACHE_SIZE}.</p>
+     *
+     * @param size the maximum cache size
+     */
+    public void setMaxCacheSize(@Positive final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        maxCacheSize = (int) Constraint.isGreaterThan(0, size, "Maximum cache size must be greater than 0");
+    }
+
+    /**
+     * Get the maximum lifetime of a cache entry.
+     *
+     * @return the cache entry lifetime
+     */
+    @Nonnull public Duration getCacheEntryLifetime() {
+        return cacheEntryLifetime;
+    }
+
+    /**
+     * Set the maximum lifetime of a cache entry.
+     *
+     * <p>Defaults to {@link #DEFAULT_CACHE_ENTRY_LIFETIME}.</p>
+     *
+     * @param lifetime the cache entry lifetime
+     */
+    public void setCacheEntryLifetime(@Nonnull final Duration lifetime) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        Constraint.isNotNull(lifetime, "Cache entry lifetime cannot be null");
+        Constraint.isFalse(lifetime.isNegative() || lifetime.isZero(), "Cache entry lifetime must be positive");
+        cacheEntryLifetime = lifetime;
+    }
+
+    /**
+     * Get the contexts whose records are cached.
+     *
+     * @return the cached contexts, or an empty set if all contexts are cached
+     */
+    @Nonnull @NonnullElements @Unmodifiable public Set<String> getCachedContexts() {
+        return cachedContexts;
+    }
+
+    /**
+     * Set the contexts whose records are cached.
+     *
+     * <p>Defaults to an empty collection, in which case all contexts are cached.</p>
+     *
+     * @param contexts the contexts to cache
+     */
+    public void setCachedContexts(@Nullable @NonnullElements final Collection<String> contexts) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        if (contexts == null || contexts.isEmpty()) {
+            cachedContexts = Collections.emptySet();
+        } else {
+            cachedContexts = Collections.unmodifiableSet(new HashSet<>(contexts));
+        }
+    }
+
+    /**
+     * Get the number of reads satisfied from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of cacheable reads passed to the underlying store.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the proportion of cacheable reads satisfied from the cache.
+     *
+     * @return the hit ratio, or 0 if there have been no reads
+     */
+    public double getHitRatio() {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Get the current number of cached records.
+     *
+     * @return the cache size
+     */
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /** Remove all cached entries. */
+    public void clearCache() {
+        synchronized (cache) {
+            flushSequence = invalidations.incrementAndGet();
+            cache.clear();
+            invalidated.clear();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public StorageCapabilities getCapabilities() {
+        return storage.getCapabilities();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        try {
+            return storage.create(context, key, value, expiration);
+        } finally {
+            invalidate(context, key);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T> boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull final T value, @Nonnull final StorageSerializer<T> serializer,
+            @Nullable @Positive final Long expiration) throws IOException {
+        return create(context, key, serializer.serialize(value), expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean create(@Nonnull final Object value) throws IOException {
+        return create(AnnotationSupport.getContext(value), AnnotationSupport.getKey(value),
+                AnnotationSupport.getValue(value), AnnotationSupport.getExpiration(value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public <T> StorageRecord<T> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException {
+        if (!isCached(context)) {
+            return storage.read(context, key);
+        }
+
+        final String cacheKey = cacheKey(context, key);
+        final CacheEntry entry = lookup(cacheKey);
+        if (entry != null) {
+            return entry.toRecord();
+        }
+
+        final long sequence = invalidations.get();
+        final StorageRecord<T> record = storage.read(context, key);
+        if (record != null) {
+            populate(cacheKey, record, sequence);
+        }
+        return record;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public Object read(@Nonnull final Object value) throws IOException {
+        final StorageRecord<?> record = read(AnnotationSupport.getContext(value), AnnotationSupport.getKey(value));
+        if (record != null) {
+            AnnotationSupport.setValue(value, record.getValue());
+            AnnotationSupport.setExpiration(value, record.getExpiration());
+            return value;
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public <T> Pair<Long, StorageRecord<T>> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Positive final long version) throws IOException {
+        if (!isCached(context)) {
+            return storage.read(context, key, version);
+        }
+
+        final String cacheKey = cacheKey(context, key);
+        final CacheEntry entry = lookup(cacheKey);
+        if (entry != null) {
+            if (entry.version == version) {
+                return new Pair<>(version, null);
+            }
+            return new Pair<>(entry.version, entry.toRecord());
+        }
+
+        final long sequence = invalidations.get();
+        final Pair<Long, StorageRecord<T>> result = storage.read(context, key, version);
+        if (result.getSecond() != null) {
+            populate(cacheKey, result.getSecond(), sequence);
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        try {
+            return storage.update(context, key, value, expiration);
+        } finally {
+            invalidate(context, key);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public Long updateWithVersion(@Positive final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable @Positive final Long expiration) throws IOException, VersionMismatchException {
+        try {
+            return storage.updateWithVersion(version, context, key, value, expiration);
+        } finally {
+            invalidate(context, key);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T> boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull final T value, @Nonnull final StorageSerializer<T> serializer,
+            @Nullable @Positive final Long expiration) throws IOException {
+        return update(context, key, serializer.serialize(value), expiration);
+    }
+
+    /** {@inheritDoc} */
+    // Checkstyle: ParameterNumber OFF
+    @Override
+    @Nullable public <T> Long updateWithVersion(@Positive final long version,
+            @Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key, @Nonnull final T value,
+            @Nonnull final StorageSerializer<T> serializer, @Nullable @Positive final Long expiration)
+                    throws IOException, VersionMismatchException {
+        return updateWithVersion(version, context, key, serializer.serialize(value), expiration);
+    }
+    // Checkstyle: ParameterNumber ON
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean update(@Nonnull final Object value) throws IOException {
+        return update(AnnotationSupport.getContext(value), AnnotationSupport.getKey(value),
+                AnnotationSupport.getValue(value), AnnotationSupport.getExpiration(value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public Long updateWithVersion(@Positive final long version, @Nonnull final Object value)
+            throws IOException, VersionMismatchException {
+        return updateWithVersion(version, AnnotationSupport.getContext(value), AnnotationSupport.getKey(value),
+                AnnotationSupport.getValue(value), AnnotationSupport.getExpiration(value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean updateExpiration(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nullable @Positive final Long expiration) throws IOException {
+        try {
+            return storage.updateExpiration(context, key, expiration);
+        } finally {
+            invalidate(context, key);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean updateExpiration(@Nonnull final Object value) throws IOException {
+        return updateExpiration(AnnotationSupport.getContext(value), AnnotationSupport.getKey(value),
+                AnnotationSupport.getExpiration(value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean delete(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
+            throws IOException {
+        try {
+            return storage.delete(context, key);
+        } finally {
+            invalidate(context, key);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean deleteWithVersion(@Positive final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        try {
+            return storage.deleteWithVersion(version, context, key);
+        } finally {
+            invalidate(context, key);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean delete(@Nonnull final Object value) throws IOException {
+        return delete(AnnotationSupport.getContext(value), AnnotationSupport.getKey(value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean deleteWithVersion(@Positive final long version, @Nonnull final Object value)
+            throws IOException, VersionMismatchException {
+        return deleteWithVersion(version, AnnotationSupport.getContext(value), AnnotationSupport.getKey(value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reap(@Nonnull @NotEmpty final String context) throws IOException {
+        storage.reap(context);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateContextExpiration(@Nonnull @NotEmpty final String context, @Nullable final Long expiration)
+            throws IOException {
+        try {
+            storage.updateContextExpiration(context, expiration);
+        } finally {
+            invalidate(context);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
+        try {
+            storage.deleteContext(context);
+        } finally {
+            invalidate(context);
+        }
+    }
+
+    /**
+     * Get whether records in a context are cached.
+     * 
+     * @param context the context
+     * 
+     * @return true iff records in the context are cached
+     */
+    private boolean isCached(@Nonnull final String context) {
+        return cachedContexts.isEmpty() || cachedContexts.contains(context);
+    }
+
+    /**
+     * Look up a live cache entry, maintaining the hit and miss counts.
+     * 
+     * @param cacheKey the cache key
+     * 
+     * @return the live entry, or null
+     */
+    @Nullable private CacheEntry lookup(@Nonnull final String cacheKey) {
+        final long now = System.currentTimeMillis();
+        synchronized (cache) {
+            final CacheEntry entry = cache.get(cacheKey);
+            if (entry != null) {
+                if (now < entry.cachedUntil) {
+                    hits.increment();
+                    return entry;
+                }
+                cache.remove(cacheKey);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache a record read from the underlying store, unless an invalidation affecting it occurred after the
+     * read began.
+     * 
+     * @param cacheKey the cache key
+     * @param record the record read
+     * @param sequence invalidation sequence number at the start of the read
+     */
+    private void populate(@Nonnull final String cacheKey, @Nonnull final StorageRecord<?> record,
+            final long sequence) {
+        long cachedUntil = System.currentTimeMillis() + cacheEntryLifetime.toMillis();
+        final Long exp = record.getExpiration();
+        if (exp != null) {
+            cachedUntil = Math.min(cachedUntil, exp);
+        }
+
+        synchronized (cache) {
+            final CacheEntry existing = cache.get(cacheKey);
+            final CacheEntry marker = invalidated.get(cacheKey);
+            if (flushSequence > sequence || (existing != null && existing.sequence > sequence)
+                    || (marker != null && marker.sequence > sequence)) {
+                log.trace("Not caching record '{}' read concurrently with a modification", cacheKey);
+                return;
+            }
+            cache.put(cacheKey, new CacheEntry(record, cachedUntil, sequence));
+        }
+    }
+
+    /**
+     * Invalidate any cache entry for a record, leaving a marker that prevents concurrent reads from
+     * re-populating it.
+     * 
+     * <p>Markers are held apart from the cache, so that they do not displace cached records, and are discarded
+     * once they are older than {@link #INVALIDATION_MARKER_LIFETIME} or more numerous than the maximum cache
+     * size. A discarded marker advances {@link #flushSequence}, so that any read still outstanding from before
+     * it was left does not populate the cache.</p>
+     * 
+     * @param context the record's context
+     * @param key the record's key
+     */
+    private void invalidate(@Nonnull final String context, @Nonnull final String key) {
+        if (isCached(context)) {
+            final String cacheKey = cacheKey(context, key);
+            final long now = System.currentTimeMillis();
+            synchronized (cache) {
+                cache.remove(cacheKey);
+                invalidated.remove(cacheKey);
+                invalidated.put(cacheKey,
+                        new CacheEntry(null, now + INVALIDATION_MARKER_LIFETIME, invalidations.incrementAndGet()));
+                
+                final Iterator<CacheEntry> markers = invalidated.values().iterator();
+                while (markers.hasNext()) {
+                    final CacheEntry marker = markers.next();
+                    if (marker.cachedUntil > now && invalidated.size() <= maxCacheSize) {
+                        break;
+                    }
+                    flushSequence = Math.max(flushSequence, marker.sequence);
+                    markers.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidate all cache entries for a context.
+     * 
+     * @param context the context
+     */
+    private void invalidate(@Nonnull final String context) {
+        if (isCached(context)) {
+            final String prefix = cacheKey(context, "");
+            synchronized (cache) {
+                flushSequence = invalidations.incrementAndGet();
+                final Iterator<Map.Entry<String,CacheEntry>> entries = cache.entrySet().iterator();
+                while (entries.hasNext()) {
+                    final Map.Entry<String,CacheEntry> entry = entries.next();
+                    if (entry.getKey().startsWith(prefix)) {
+                        entries.remove();
+                    }
+                }
+                invalidated.keySet().removeIf(k -> k.startsWith(prefix));
+            }
+        }
+    }
+
+    /**
+     * Build the cache key for a record.
+     * 
+     * @param context the record's context
+     * @param key the record's key
+     * 
+     * @return the cache key
+     */
+    @Nonnull private static String cacheKey(@Nonnull final String context, @Nonnull final String key) {
+        return context.length() + ":" + context + key;
+    }
+
+    /** A cached record, or a marker for an invalidated record. */
+    private static final class CacheEntry {
+
+        /** The cached record, or null for an invalidation marker. */
+        @Nullable private final StorageRecord<?> record;
+
+        /** Version of the cached record. */
+        private final long version;
+
+        /** Time until which the entry may be used. */
+        private final long cachedUntil;
+
+        /** Invalidation sequence number current when the entry was created. */
+        private final long sequence;
+
+        /**
+         * Constructor.
+         *
+         * @param cachedRecord the record to cache, or null
+         * @param until time until which the entry may be used
+         * @param seq invalidation sequence number
+         */
+        CacheEntry(@Nullable final StorageRecord<?> cachedRecord, final long until, final long seq) {
+            record = cachedRecord != null
+                    ? new CachedStorageRecord<>(cachedRecord.getValue(), cachedRecord.getExpiration(),
+                            cachedRecord.getVersion())
+                    : null;
+            version = cachedRecord != null ? cachedRecord.getVersion() : 0;
+            cachedUntil = until;
+            sequence = seq;
+        }
+
+        /**
+         * Produce a copy of the cached record, so that callers cannot modify the cached instance.
+         *
+         * @param <T> type of record
+         * 
+         * @return a copy of the cached record
+         */
+        @Nonnull <T> StorageRecord<T> toRecord() {
+            return new CachedStorageRecord<>(record.getValue(), record.getExpiration(), version);
+        }
+    }
+
+    /**
+     * A record with a specified version.
+     * 
+     * @param <T> type of record
+     */
+    private static final class CachedStorageRecord<T> extends StorageRecord<T> {
+
+        /**
+         * Constructor.
+         *
+         * @param val the value
+         * @param exp the expiration
+         * @param ver the version
+         */
+        CachedStorageRecord(@Nonnull final String val, @Nullable final Long exp, final long ver) {
+            super(val, exp);
+            setVersion(ver);
+        }
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Adapts a blocking {@link StorageService} to the {@link AsyncStorageService} interface by running
+ * the blocking operations on an {@link Executor}.
+ * 
+ * <p>This relieves the calling thread of waiting on the store, though of course each operation still
+ * occupies a thread of the executor for its duration, so the executor should be sized according to the
+ * concurrency the underlying store can usefully support. All {@link StorageService} operations are
+ * passed through to the underlying store unchanged.</p>
+ */
+@ThreadSafeAfterInit
+public class ExecutorAsyncStorageService implements AsyncStorageService {
+
+    /** The underlying store. */
+    @Nonnull private final StorageService storage;
+
+    /** Executor on which to run blocking operations. */
+    @Nonnull private final Executor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param storageService the underlying store
+     * @param exec executor on which to run blocking operations
+     */
+    public ExecutorAsyncStorageService(@Nonnull final StorageService storageService, @Nonnull final Executor exec) {
+        storage = Constraint.isNotNull(storageService, "StorageService cannot be null");
+        executor = Constraint.isNotNull(exec, "Executor cannot be null");
+    }
+
+    /**
+     * Get the underlying store.
+     *
+     * @return the underlying store
+     */
+    @Nonnull public StorageService getStorageService() {
+        return storage;
+    }
+
+    /**
+     * Returns an {@link AsyncStorageService} view of a store, which is the store itself if it supports
+     * asynchronous operations natively.
+     *
+     * @param storageService the store
+     * @param exec executor on which to run blocking operations, if required
+     *
+     * @return an {@link AsyncStorageService} view of the store
+     */
+    @Nonnull public static AsyncStorageService adapt(@Nonnull final StorageService storageService,
+            @Nonnull final Executor exec) {
+        if (storageService instanceof AsyncStorageService) {
+            return (AsyncStorageService) storageService;
+        }
+        return new ExecutorAsyncStorageService(storageService, exec);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public String getId() {
+        return storage.getId();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public StorageCapabilities getCapabilities() {
+        return storage.getCapabilities();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public CompletableFuture<Boolean> createAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable @Positive final Long expiration) {
+        return submit(() -> storage.create(context, key, value, expiration));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public <T> CompletableFuture<StorageRecord<T>> readAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) {
+        return submit(() -> storage.<T>read(context, key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public CompletableFuture<Boolean> updateAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable @Positive final Long expiration) {
+        return submit(() -> storage.update(context, key, value, expiration));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public CompletableFuture<Boolean> deleteAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) {
+        return submit(() -> storage.delete(context, key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        return storage.create(context, key, value, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T> boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull final T value, @Nonnull final StorageSerializer<T> serializer,
+            @Nullable @Positive final Long expiration) throws IOException {
+        return storage.create(context, key, value, serializer, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean create(@Nonnull final Object value) throws IOException {
+        return storage.create(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public <T> StorageRecord<T> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException {
+        return storage.read(context, key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public Object read(@Nonnull final Object value) throws IOException {
+        return storage.read(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public <T> Pair<Long, StorageRecord<T>> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Positive final long version) throws IOException {
+        return storage.read(context, key, version);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        return storage.update(context, key, value, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public Long updateWithVersion(@Positive final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable @Positive final Long expiration) throws IOException, VersionMismatchException {
+        return storage.updateWithVersion(version, context, key, value, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T> boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull final T value, @Nonnull final StorageSerializer<T> serializer,
+            @Nullable @Positive final Long expiration) throws IOException {
+        return storage.update(context, key, value, serializer, expiration);
+    }
+
+    /** {@inheritDoc} */
+    // Checkstyle: ParameterNumber OFF
+    @Override
+    @Nullable public <T> Long updateWithVersion(@Positive final long version,
+            @Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key, @Nonnull final T value,
+            @Nonnull final StorageSerializer<T> serializer, @Nullable @Positive final Long expiration)
+                    throws IOException, VersionMismatchException {
+        return storage.updateWithVersion(version, context, key, value, serializer, expiration);
+    }
+    // Checkstyle: ParameterNumber ON
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean update(@Nonnull final Object value) throws IOException {
+        return storage.update(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public Long updateWithVersion(@Positive final long version, @Nonnull final Object value)
+            throws IOException, VersionMismatchException {
+        return storage.updateWithVersion(version, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean updateExpiration(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nullable @Positive final Long expiration) throws IOException {
+        return storage.updateExpiration(context, key, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean updateExpiration(@Nonnull final Object value) throws IOException {
+        return storage.updateExpiration(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean delete(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
+            throws IOException {
+        return storage.delete(context, key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean deleteWithVersion(@Positive final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        return storage.deleteWithVersion(version, context, key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean delete(@Nonnull final Object value) throws IOException {
+        return storage.delete(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean deleteWithVersion(@Positive final long version, @Nonnull final Object value)
+            throws IOException, VersionMismatchException {
+        return storage.deleteWithVersion(version, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reap(@Nonnull @NotEmpty final String context) throws IOException {
+        storage.reap(context);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateContextExpiration(@Nonnull @NotEmpty final String context, @Nullable final Long expiration)
+            throws IOException {
+        storage.updateContextExpiration(context, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
+        storage.deleteContext(context);
+    }
+
+    /**
+     * Run a blocking operation on the executor.
+     *
+     * @param <T> type of result
+     * @param operation the operation to run
+     *
+     * @return a future completing with the result of the operation, or exceptionally with any exception it raises
+     */
+    @Nonnull private <T> CompletableFuture<T> submit(@Nonnull final Callable<T> operation) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(operation.call());
+                } catch (final Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+}
@@ -20,11 +20,16 @@ package org.opensaml.storage;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
 import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
 import net.shibboleth.utilities.java.support.codec.StringDigester;
 import net.shibboleth.utilities.java.support.codec.StringDigester.OutputFormat;
@@ -39,12 +44,23 @@ import org.slf4j.LoggerFactory;
 /**
  * Tracks non-replayable values in order to detect replays of the values, commonly used to track message identifiers.
  * 
- * <p>This class is thread-safe and uses a synchronized method to prevent race conditions within the underlying
- * store (lacking an atomic "check and insert" operation).</p>
+ * <p>This class is thread-safe. By default, it relies on the duplicate detection of
+ * {@link StorageService#create(String, String, String, Long)} to perform an atomic "check and insert"
+ * operation, so concurrent checks do not contend with one another. For a store lacking an atomic create
+ * operation, {@link #setAtomicCreate(boolean)} may be disabled, in which case each value is read before it is
+ * created, and checks are serialized per value by a set of lock stripes (which of course only guards against
+ * races within this process).</p>
+ * 
+ * <p>An optional local cache of values recently inserted by this instance may be enabled via
+ * {@link #setLocalCacheSize(int)}, allowing obvious replays to be detected without a round trip to
+ * the store.</p>
  */
 @ThreadSafeAfterInit
 public class ReplayCache extends AbstractIdentifiableInitializableComponent {
 
+    /** Default number of lock stripes. */
+    public static final int DEFAULT_LOCK_STRIPES = 32;
+
     /** Logger. */
     private final Logger log = LoggerFactory.getLogger(ReplayCache.class);
 
@@ -57,6 +73,27 @@ public class ReplayCache extends AbstractIdentifiableInitializableComponent {
     /** Flag controlling behavior on storage failure. */
     private boolean strict;
     
+    /** Whether the backing store's create operation is atomic. */
+    private boolean atomicCreate;
+    
+    /** Number of lock stripes. */
+    @Positive private int lockStripes;
+    
+    /** Maximum number of locally cached values, 0 to disable. */
+    @NonNegative private int localCacheSize;
+    
+    /** Lock stripes, used when the create operation is not atomic. */
+    @NonnullAfterInit private Object[] locks;
+    
+    /** Local cache stripes, mapping values to their expiration, or null if disabled. */
+    @Nullable private Map<String,Long>[] localCaches;
+    
+    /** Constructor. */
+    public ReplayCache() {
+        atomicCreate = true;
+        lockStripes = DEFAULT_LOCK_STRIPES;
+    }
+    
     /**
      * Get the backing store for the cache.
      * 
@@ -100,6 +137,74 @@ public class ReplayCache extends AbstractIdentifiableInitializableComponent {
         
         strict = flag;
     }
+    
+    /**
+     * Get whether the backing store's create operation atomically detects duplicates.
+     * 
+     * @return true iff the store's create operation is atomic
+     */
+    public boolean isAtomicCreate() {
+        return atomicCreate;
+    }
+    
+    /**
+     * Set whether the backing store's create operation atomically detects duplicates.
+     * 
+     * <p>Defaults to true. If false, each value is read before it is created, and checks are serialized per
+     * value using lock stripes.</p>
+     * 
+     * @param flag true iff the store's create operation is atomic
+     */
+    public void setAtomicCreate(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        atomicCreate = flag;
+    }
+    
+    /**
+     * Get the number of lock stripes used when the create operation is not atomic.
+     * 
+     * @return number of lock stripes
+     */
+    @Positive public int getLockStripes() {
+        return lockStripes;
+    }
+    
+    /**
+     * Set the number of lock stripes used when the create operation is not atomic, and
+     * over which the local cache is partitioned.
+     * 
+     * <p>Defaults to {@link #DEFAULT_LOCK_STRIPES}.</p>
+     * 
+     * @param stripes number of lock stripes
+     */
+    public void setLockStripes(@Positive final int stripes) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        lockStripes = (int) Constraint.isGreaterThan(0, stripes, "Lock stripes must be greater than 0");
+    }
+    
+    /**
+     * Get the maximum number of values inserted by this instance to cache locally.
+     * 
+     * @return maximum local cache size, 0 if disabled
+     */
+    @NonNegative public int getLocalCacheSize() {
+        return localCacheSize;
+    }
+    
+    /**
+     * Set the maximum number of values inserted by this instance to cache locally.
+     * 
+     * <p>Defaults to 0, which disables the local cache.</p>
+     * 
+     * @param size maximum local cache size
+     */
+    public void setLocalCacheSize(@NonNegative final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        localCacheSize = (int) Constraint.isGreaterThanOrEqual(0, size, "Local cache size cannot be negative");
+    }
 
 
     /** {@inheritDoc} */
@@ -114,6 +219,15 @@ public class ReplayCache extends AbstractIdentifiableInitializableComponent {
         } catch (final NoSuchAlgorithmException e) {
             throw new ComponentInitializationException(e);
         }
+        
+        locks = new Object[lockStripes];
+        for (int i = 0; i < lockStripes; i++) {
+            locks[i] = new Object();
+        }
+        
+        if (localCacheSize > 0) {
+            localCaches = newLocalCaches(lockStripes, Math.max(1, (localCacheSize + lockStripes - 1) / lockStripes));
+        }
     }
 
     /**
@@ -125,7 +239,7 @@ public class ReplayCache extends AbstractIdentifiableInitializableComponent {
      * 
      * @return true iff the check value is not found in the cache
      */
-    public synchronized boolean check(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s,
+    public boolean check(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s,
             @Nonnull final Instant expires) {
 
         final String key;
@@ -139,17 +253,40 @@ public class ReplayCache extends AbstractIdentifiableInitializableComponent {
         } else {
             key = s;
         }
+        
+        final int stripe = ((31 * context.hashCode() + key.hashCode()) & Integer.MAX_VALUE) % lockStripes;
+        final String localKey = context.length() + ":" + context + key;
+        
+        if (isLocallyCached(stripe, localKey)) {
+            log.debug("Replay of value '{}' detected in local cache", s);
+            return false;
+        }
 
         try {
-            final StorageRecord<?> entry = storage.read(context, key);
-            if (entry == null) {
-                log.debug("Value '{}' was not a replay, adding to cache with expiration time {}", s, expires);
-                storage.create(context, key, "x", expires.toEpochMilli());
+            final boolean created;
+            if (atomicCreate) {
+                created = storage.create(context, key, "x", expires.toEpochMilli());
+            } else {
+                synchronized (locks[stripe]) {
+                    // The store's create operation may not detect duplicates, so check for one first.
+                    final StorageRecord<?> entry = storage.read(context, key);
+                    if (entry == null) {
+                        created = storage.create(context, key, "x", expires.toEpochMilli());
+                    } else {
+                        log.debug("Replay of value '{}' detected in cache, expires at {}", s,
+                                entry.getExpiration() != null ? Instant.ofEpochMilli(entry.getExpiration()) : null);
+                        return false;
+                    }
+                }
+            }
+            
+            if (created) {
+                log.debug("Value '{}' was not a replay, added to cache with expiration time {}", s, expires);
+                cacheLocally(stripe, localKey, expires);
                 return true;
             }
             
-            log.debug("Replay of value '{}' detected in cache, expires at {}", s,
-                    Instant.ofEpochMilli(entry.getExpiration()));
+            log.debug("Replay of value '{}' detected in cache", s);
             return false;
             
         } catch (final IOException e) {
@@ -157,5 +294,73 @@ public class ReplayCache extends AbstractIdentifiableInitializableComponent {
             return !strict;
         }
     }
+    
+    /**
+     * Check whether an unexpired value is present in the local cache.
+     * 
+     * @param stripe the stripe of the local cache to check
+     * @param localKey the local cache key
+     * 
+     * @return true iff the value is present and unexpired
+     */
+    private boolean isLocallyCached(final int stripe, @Nonnull final String localKey) {
+        if (localCaches == null) {
+            return false;
+        }
+        
+        final Map<String,Long> localCache = localCaches[stripe];
+        synchronized (localCache) {
+            final Long expiration = localCache.get(localKey);
+            if (expiration == null) {
+                return false;
+            } else if (System.currentTimeMillis() < expiration) {
+                return true;
+            }
+            localCache.remove(localKey);
+            return false;
+        }
+    }
+    
+    /**
+     * Add a value to the local cache, if enabled.
+     * 
+     * @param stripe the stripe of the local cache to update
+     * @param localKey the local cache key
+     * @param expires expiration of the value
+     */
+    private void cacheLocally(final int stripe, @Nonnull final String localKey, @Nonnull final Instant expires) {
+        if (localCaches != null) {
+            final Map<String,Long> localCache = localCaches[stripe];
+            synchronized (localCache) {
+                localCache.put(localKey, expires.toEpochMilli());
+            }
+        }
+    }
+    
+    /**
+     * Build the local cache stripes, each of which evicts its oldest entries beyond a maximum size.
+     * 
+     * @param stripes number of stripes
+     * @param maxSize maximum size of each stripe
+     * 
+     * @return the local cache stripes
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull private static Map<String,Long>[] newLocalCaches(final int stripes, final int maxSize) {
+        final Map<String,Long>[] caches = new Map[stripes];
+        for (int i = 0; i < stripes; i++) {
+            caches[i] = new LinkedHashMap<>() {
+                /** Serial version UID. */
+                private static final long serialVersionUID = 6513497440745329716L;
+
+                /** {@inheritDoc} */
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String,Long> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+        return caches;
+    }
 
-}
\ No newline at end of file
+}
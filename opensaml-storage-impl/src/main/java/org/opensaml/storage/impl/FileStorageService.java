@@ -0,0 +1,851 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TimerTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.Live;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.storage.AbstractMapBackedStorageService;
+import org.opensaml.storage.MutableStorageRecord;
+import org.opensaml.storage.StorageCapabilitiesEx;
+import org.opensaml.storage.VersionMismatchException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link AbstractMapBackedStorageService} that stores data in-memory, and persists it to an
+ * append-only log file on local disk so that it survives a restart.
+ * 
+ * <p>Every modification is appended to a memory-mapped log file while holding the write lock, so that the order
+ * of the log matches the order in which modifications were applied. If the log entry cannot be written, the
+ * modification is rolled back in memory and the operation fails, so memory never runs ahead of the log. Each
+ * log entry carries a checksum, and on startup the log is replayed up to the first incomplete or corrupt entry,
+ * which is how a crash part way through a write is tolerated. Modifications are written to the mapped file
+ * immediately, but are only guaranteed to reach the disk in the event of an operating system crash if
+ * {@link #setSyncWrites(boolean)} is enabled, at some cost in write latency.</p>
+ * 
+ * <p>The background cleanup task purges expired records from memory, and compacts the log once it has grown
+ * beyond {@link #setCompactionThreshold(long)} bytes and twice its size following the previous compaction.
+ * Compaction writes the live records to a new file which atomically replaces the old one, and the old log
+ * remains in use if that fails.</p>
+ * 
+ * <p>The log directory must not be shared between instances.</p>
+ */
+public class FileStorageService extends AbstractMapBackedStorageService implements StorageCapabilitiesEx {
+
+    /** Default compaction threshold in bytes: 1MB. */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1024 * 1024;
+
+    /** Name of the log file. */
+    @Nonnull @NotEmpty public static final String LOG_FILE_NAME = "storage.log";
+
+    /** Name of the file written during compaction. */
+    @Nonnull @NotEmpty private static final String COMPACTION_FILE_NAME = "storage.log.compact";
+    
+    /** Increment in bytes by which the mapped region of the log grows. */
+    private static final int MAP_INCREMENT = 8 * 1024 * 1024;
+    
+    /** Size of an entry's length and checksum fields. */
+    private static final int ENTRY_HEADER_SIZE = 8;
+    
+    /** Entry type indicating a record's creation, or a change to its value. */
+    private static final byte ENTRY_PUT = 1;
+    
+    /** Entry type indicating a change to a record's expiration only. */
+    private static final byte ENTRY_EXPIRE = 2;
+    
+    /** Entry type indicating a record's deletion. */
+    private static final byte ENTRY_DELETE = 3;
+    
+    /** Entry type indicating a change to the expiration of a context's valid records. */
+    private static final byte ENTRY_CONTEXT_EXPIRE = 4;
+    
+    /** Entry type indicating a context's deletion. */
+    private static final byte ENTRY_DELETE_CONTEXT = 5;
+    
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(FileStorageService.class);
+
+    /** Directory containing the log file. */
+    @NonnullAfterInit private File directory;
+    
+    /** Whether each modification is forced to disk. */
+    private boolean syncWrites;
+    
+    /** Log size in bytes below which compaction is not performed. */
+    @Positive private long compactionThreshold;
+    
+    /** Map of contexts. */
+    @NonnullAfterInit @NonnullElements private Map<String, Map<String, MutableStorageRecord<?>>> contextMap;
+    
+    /** A shared lock to synchronize access. */
+    @NonnullAfterInit private ReadWriteLock lock;
+    
+    /** Channel of the log file. */
+    @Nullable private FileChannel channel;
+    
+    /** Mapped region of the log file. */
+    @Nullable private MappedByteBuffer mappedLog;
+    
+    /** Size of the log following the most recent compaction or replay. */
+    private long compactedSize;
+    
+    /** Constructor. */
+    public FileStorageService() {
+        compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    }
+    
+    /**
+     * Get the directory containing the log file.
+     * 
+     * @return the log directory
+     */
+    @NonnullAfterInit public File getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Set the directory containing the log file, which will be created if necessary.
+     * 
+     * @param dir the log directory
+     */
+    public void setDirectory(@Nonnull final File dir) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        directory = Constraint.isNotNull(dir, "Directory cannot be null");
+    }
+    
+    /**
+     * Get whether each modification is forced to disk before the operation returns.
+     * 
+     * @return whether writes are synchronous
+     */
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+    
+    /**
+     * Set whether each modification is forced to disk before the operation returns.
+     * 
+     * <p>Defaults to false, in which case modifications survive a crash of the JVM, but not necessarily
+     * of the operating system.</p>
+     * 
+     * @param flag whether writes are synchronous
+     */
+    public void setSyncWrites(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        syncWrites = flag;
+    }
+    
+    /**
+     * Get the log size in bytes below which compaction is not performed.
+     * 
+     * @return compaction threshold
+     */
+    @Positive public long getCompactionThreshold() {
+        return compactionThreshold;
+    }
+    
+    /**
+     * Set the log size in bytes below which compaction is not performed.
+     * 
+     * <p>Defaults to {@link #DEFAULT_COMPACTION_THRESHOLD}.</p>
+     * 
+     * @param threshold compaction threshold
+     */
+    public void setCompactionThreshold(@Positive final long threshold) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        compactionThreshold = Constraint.isGreaterThan(0, threshold, "Compaction threshold must be greater than 0");
+    }
+
+    /** {@inheritDoc} */
+    public boolean isServerSide() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isClustered() {
+        return false;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        if (directory == null) {
+            throw new ComponentInitializationException("Directory cannot be null");
+        }
+        
+        contextMap = new HashMap<>();
+        lock = new ReentrantReadWriteLock();
+        
+        try {
+            Files.createDirectories(directory.toPath());
+            Files.deleteIfExists(directory.toPath().resolve(COMPACTION_FILE_NAME));
+            
+            channel = FileChannel.open(directory.toPath().resolve(LOG_FILE_NAME), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final long end = replay();
+            
+            // Discard anything following the last valid entry, such as the remains of an incomplete write.
+            channel.truncate(end);
+            mapLog(end);
+            compactedSize = end;
+        } catch (final IOException e) {
+            closeLog();
+            throw new ComponentInitializationException("Error loading storage log", e);
+        }
+        
+        super.doInitialize();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        super.doDestroy();
+        
+        if (lock != null) {
+            final Lock writeLock = lock.writeLock();
+            try {
+                writeLock.lock();
+                if (mappedLog != null) {
+                    mappedLog.force();
+                }
+                closeLog();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        
+        contextMap = null;
+        lock = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull @NonnullElements @Live protected Map<String, Map<String, MutableStorageRecord<?>>> getContextMap() {
+        return contextMap;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull protected ReadWriteLock getLock() {
+        return lock;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable final Long expiration) throws IOException {
+        final Lock writeLock = getLock().writeLock();
+        try {
+            writeLock.lock();
+            final MutableStorageRecord<?> previous = getRecord(context, key);
+            if (!super.create(context, key, value, expiration)) {
+                return false;
+            }
+            try {
+                append(ENTRY_PUT, 1, expiration, context, key, value);
+            } catch (final IOException e) {
+                restoreRecord(context, key, previous);
+                throw e;
+            }
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    @Nullable protected Long updateImpl(@Nullable final Long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable final String value, @Nullable final Long expiration)
+                    throws IOException, VersionMismatchException {
+        final Lock writeLock = getLock().writeLock();
+        try {
+            writeLock.lock();
+            final MutableStorageRecord<?> current = getRecord(context, key);
+            final MutableStorageRecord<?> previous = current != null
+                    ? new FileStorageRecord<>(current.getValue(), current.getExpiration(), current.getVersion())
+                    : null;
+            final Long newVersion = super.updateImpl(version, context, key, value, expiration);
+            if (newVersion != null) {
+                try {
+                    if (value != null) {
+                        append(ENTRY_PUT, newVersion, expiration, context, key, value);
+                    } else {
+                        append(ENTRY_EXPIRE, newVersion, expiration, context, key, "");
+                    }
+                } catch (final IOException e) {
+                    restoreRecord(context, key, previous);
+                    throw e;
+                }
+            }
+            return newVersion;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected boolean deleteImpl(@Nullable @Positive final Long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        final Lock writeLock = getLock().writeLock();
+        try {
+            writeLock.lock();
+            final MutableStorageRecord<?> previous = getRecord(context, key);
+            if (!super.deleteImpl(version, context, key)) {
+                return false;
+            }
+            try {
+                append(ENTRY_DELETE, 0, null, context, key, "");
+            } catch (final IOException e) {
+                restoreRecord(context, key, previous);
+                throw e;
+            }
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void updateContextExpiration(@Nonnull @NotEmpty final String context, @Nullable final Long expiration)
+            throws IOException {
+        final Lock writeLock = getLock().writeLock();
+        try {
+            writeLock.lock();
+            final long now = System.currentTimeMillis();
+            final Map<MutableStorageRecord<?>, Long> previous = new IdentityHashMap<>();
+            final Map<String, MutableStorageRecord<?>> dataMap = contextMap.get(context);
+            if (dataMap != null) {
+                for (final MutableStorageRecord<?> record : dataMap.values()) {
+                    previous.put(record, record.getExpiration());
+                }
+            }
+            applyContextExpiration(context, expiration, now);
+            
+            // The time of the update is logged, so that the same records are affected on replay.
+            try {
+                append(ENTRY_CONTEXT_EXPIRE, now, expiration, context, "", "");
+            } catch (final IOException e) {
+                previous.forEach(MutableStorageRecord::setExpiration);
+                throw e;
+            }
+            log.debug("Updated expiration of valid records in context '{}' to '{}'", context, expiration);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
+        final Lock writeLock = getLock().writeLock();
+        try {
+            writeLock.lock();
+            final Map<String, MutableStorageRecord<?>> previous = contextMap.get(context);
+            super.deleteContext(context);
+            try {
+                append(ENTRY_DELETE_CONTEXT, 0, null, context, "", "");
+            } catch (final IOException e) {
+                if (previous != null) {
+                    contextMap.put(context, previous);
+                }
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+// Checkstyle: AnonInnerLength OFF
+    /** {@inheritDoc} */
+    @Override
+    @Nullable protected TimerTask getCleanupTask() {
+        return new TimerTask() {
+            
+            /** {@inheritDoc} */
+            @Override
+            public void run() {
+                log.debug("Running cleanup task");
+                
+                final Long now = System.currentTimeMillis();
+                final Lock writeLock = getLock().writeLock();
+                boolean purged = false;
+                
+                try {
+                    writeLock.lock();
+                    
+                    // Expired records need not be logged, since they are discarded on replay.
+                    final Iterator<Map<String, MutableStorageRecord<?>>> i = getContextMap().values().iterator();
+                    while (i.hasNext()) {
+                        final Map<String, MutableStorageRecord<?>> context = i.next(); 
+                        if (reapWithLock(context, now)) {
+                            purged = true;
+                            if (context.isEmpty()) {
+                                i.remove();
+                            }
+                        }
+                    }
+                    
+                    final long size = mappedLog.position();
+                    if (size > compactionThreshold && size > 2 * compactedSize) {
+                        compact();
+                    }
+                    
+                } catch (final IOException e) {
+                    log.error("Error compacting storage log", e);
+                } finally {
+                    writeLock.unlock();
+                }
+                
+                if (purged) {
+                    log.debug("Purged expired record(s) from storage");
+                } else {
+                    log.debug("No expired records found in storage");
+                }
+            }
+        };
+    }
+// Checkstyle: AnonInnerLength ON
+    
+    /**
+     * Rewrite the log so that it contains only the live records.
+     * 
+     * <p>This method <strong>MUST</strong> be called while holding the write lock.</p>
+     * 
+     * @throws IOException if the log cannot be rewritten
+     */
+    protected void compact() throws IOException {
+        final Path logFile = directory.toPath().resolve(LOG_FILE_NAME);
+        final Path compactionFile = directory.toPath().resolve(COMPACTION_FILE_NAME);
+        final long oldSize = mappedLog.position();
+        final long now = System.currentTimeMillis();
+        
+        // The old log remains in use until the compacted log has replaced it, so that a failure leaves it intact.
+        final FileChannel out = FileChannel.open(compactionFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer compactedLog;
+        try {
+            for (final Map.Entry<String, Map<String, MutableStorageRecord<?>>> context : contextMap.entrySet()) {
+                for (final Map.Entry<String, MutableStorageRecord<?>> entry : context.getValue().entrySet()) {
+                    final MutableStorageRecord<?> record = entry.getValue();
+                    final Long exp = record.getExpiration();
+                    if (exp == null || now < exp) {
+                        final ByteBuffer buffer = encode(ENTRY_PUT, record.getVersion(), exp, context.getKey(),
+                                entry.getKey(), record.getValue());
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                    }
+                }
+            }
+            out.force(true);
+            compactedLog = mapLog(out, out.size(), out.size());
+            Files.move(compactionFile, logFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException | RuntimeException e) {
+            try {
+                out.close();
+                Files.deleteIfExists(compactionFile);
+            } catch (final IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw e;
+        }
+        
+        closeLog();
+        channel = out;
+        mappedLog = compactedLog;
+        compactedSize = compactedLog.position();
+        
+        log.debug("Compacted storage log from {} to {} bytes", oldSize, compactedSize);
+    }
+    
+    /**
+     * Update the expiration of the records in a context which are valid at a given time.
+     * 
+     * @param context a storage context label
+     * @param expiration expiration for records, or null
+     * @param time the time at which records must be valid
+     */
+    private void applyContextExpiration(@Nonnull final String context, @Nullable final Long expiration,
+            final long time) {
+        final Map<String, MutableStorageRecord<?>> dataMap = contextMap.get(context);
+        if (dataMap != null) {
+            for (final MutableStorageRecord<?> record : dataMap.values()) {
+                final Long exp = record.getExpiration();
+                if (exp == null || time < exp) {
+                    record.setExpiration(expiration);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get a record, whether or not it has expired.
+     * 
+     * @param context a storage context label
+     * @param key a key unique to context
+     * 
+     * @return the record, or null
+     */
+    @Nullable private MutableStorageRecord<?> getRecord(@Nonnull final String context, @Nonnull final String key) {
+        final Map<String, MutableStorageRecord<?>> dataMap = contextMap.get(context);
+        return dataMap != null ? dataMap.get(key) : null;
+    }
+    
+    /**
+     * Restore a record to its state prior to a modification which could not be logged.
+     * 
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param record the prior record, or null if there was none
+     */
+    private void restoreRecord(@Nonnull final String context, @Nonnull final String key,
+            @Nullable final MutableStorageRecord<?> record) {
+        if (record != null) {
+            contextMap.computeIfAbsent(context, c -> new HashMap<>()).put(key, record);
+        } else {
+            final Map<String, MutableStorageRecord<?>> dataMap = contextMap.get(context);
+            if (dataMap != null) {
+                dataMap.remove(key);
+                if (dataMap.isEmpty()) {
+                    contextMap.remove(context);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Map the log file for writing, from the start of the file, positioned at the end of the log.
+     * 
+     * @param position the end of the log
+     * @param minimum the minimum size of the mapped region
+     * 
+     * @throws IOException if the file cannot be mapped
+     */
+    private void mapLog(final long position, final long minimum) throws IOException {
+        mappedLog = mapLog(channel, position, minimum);
+    }
+    
+    /**
+     * Map a log file for writing, from the start of the file, positioned at the end of the log.
+     * 
+     * @param logChannel channel of the log file
+     * @param position the end of the log
+     * @param minimum the minimum size of the mapped region
+     * 
+     * @return the mapped region
+     * 
+     * @throws IOException if the file cannot be mapped
+     */
+    @Nonnull private static MappedByteBuffer mapLog(@Nonnull final FileChannel logChannel, final long position,
+            final long minimum) throws IOException {
+        final long size = (minimum / MAP_INCREMENT + 1) * MAP_INCREMENT;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Storage log has exceeded its maximum size");
+        }
+        final MappedByteBuffer buffer = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.position((int) position);
+        return buffer;
+    }
+    
+    /**
+     * Map the log file for writing, from the start of the file, positioned at the end of the log.
+     * 
+     * @param position the end of the log
+     * 
+     * @throws IOException if the file cannot be mapped
+     */
+    private void mapLog(final long position) throws IOException {
+        mapLog(position, position);
+    }
+    
+    /** Close the log file. */
+    private void closeLog() {
+        mappedLog = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                log.warn("Error closing storage log", e);
+            }
+            channel = null;
+        }
+    }
+    
+    /**
+     * Append an entry to the log.
+     * 
+     * <p>This method <strong>MUST</strong> be called while holding the write lock.</p>
+     * 
+     * <p>If the entry cannot be written, any part of it already written is erased, so that the log remains
+     * consistent with the in-memory records once the caller has rolled back its modification.</p>
+     * 
+     * @param type entry type
+     * @param version record version, or time for a context expiration entry
+     * @param expiration record expiration, or null
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param value record value
+     * 
+     * @throws IOException if the entry cannot be written
+     */
+    private void append(final byte type, final long version, @Nullable final Long expiration,
+            @Nonnull final String context, @Nonnull final String key, @Nonnull final String value)
+                    throws IOException {
+        final ByteBuffer entry = encode(type, version, expiration, context, key, value);
+        if (entry.remaining() > mappedLog.remaining()) {
+            mapLog(mappedLog.position(), mappedLog.position() + entry.remaining());
+        }
+        final int start = mappedLog.position();
+        try {
+            mappedLog.put(entry);
+            if (syncWrites) {
+                mappedLog.force();
+            }
+        } catch (final RuntimeException e) {
+            final int end = mappedLog.position();
+            for (int i = start; i < end; i++) {
+                mappedLog.put(i, (byte) 0);
+            }
+            mappedLog.position(start);
+            throw new IOException("Error writing storage log entry", e);
+        }
+    }
+    
+    /**
+     * Encode a log entry.
+     * 
+     * @param type entry type
+     * @param version record version, or time for a context expiration entry
+     * @param expiration record expiration, or null
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param value record value
+     * 
+     * @return a buffer containing the entry
+     */
+    @Nonnull private static ByteBuffer encode(final byte type, final long version, @Nullable final Long expiration,
+            @Nonnull final String context, @Nonnull final String key, @Nonnull final String value) {
+        final byte[] contextBytes = context.getBytes(StandardCharsets.UTF_8);
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        final int bodySize = 1 + 8 + 8 + 12 + contextBytes.length + keyBytes.length + valueBytes.length;
+        
+        final ByteBuffer buffer = ByteBuffer.allocate(ENTRY_HEADER_SIZE + bodySize);
+        buffer.putInt(bodySize);
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putLong(version);
+        buffer.putLong(expiration != null ? expiration : 0);
+        buffer.putInt(contextBytes.length).put(contextBytes);
+        buffer.putInt(keyBytes.length).put(keyBytes);
+        buffer.putInt(valueBytes.length).put(valueBytes);
+        
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), ENTRY_HEADER_SIZE, bodySize);
+        buffer.putInt(4, (int) crc.getValue());
+        
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * Replay the log into memory, stopping at the first incomplete or corrupt entry.
+     * 
+     * @return the position following the last valid entry
+     * 
+     * @throws IOException if the log cannot be read
+     */
+    private long replay() throws IOException {
+        final long size = channel.size();
+        if (size == 0) {
+            return 0;
+        } else if (size > Integer.MAX_VALUE) {
+            throw new IOException("Storage log has exceeded its maximum size");
+        }
+        
+        final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // Keep reading until the buffer is full.
+        }
+        buffer.flip();
+        
+        final CRC32 crc = new CRC32();
+        int entries = 0;
+        
+        while (buffer.remaining() >= ENTRY_HEADER_SIZE) {
+            final int start = buffer.position();
+            final int bodySize = buffer.getInt();
+            final int checksum = buffer.getInt();
+            if (bodySize == 0) {
+                // The unused, zero-filled remainder of the mapped region.
+                buffer.position(start);
+                break;
+            } else if (bodySize < 0 || bodySize > buffer.remaining()) {
+                log.warn("Storage log entry at position {} is incomplete, discarding remainder of log", start);
+                buffer.position(start);
+                break;
+            }
+            
+            final ByteBuffer body = buffer.slice();
+            body.limit(bodySize);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Storage log entry at position {} is corrupt, discarding remainder of log", start);
+                buffer.position(start);
+                break;
+            }
+            
+            apply(body);
+            buffer.position(start + ENTRY_HEADER_SIZE + bodySize);
+            entries++;
+        }
+        
+        // Records which have since expired are not loaded.
+        final long now = System.currentTimeMillis();
+        contextMap.values().removeIf(dataMap -> {
+            reapWithLock(dataMap, now);
+            return dataMap.isEmpty();
+        });
+        
+        log.info("Replayed {} storage log entries", entries);
+        return buffer.position();
+    }
+    
+    /**
+     * Apply a log entry to the in-memory records.
+     * 
+     * @param body the entry body
+     */
+    private void apply(@Nonnull final ByteBuffer body) {
+        final byte type = body.get();
+        final long version = body.getLong();
+        final long exp = body.getLong();
+        final Long expiration = exp != 0 ? exp : null;
+        final String context = readString(body);
+        final String key = readString(body);
+        final String value = readString(body);
+        
+        switch (type) {
+            case ENTRY_PUT:
+                contextMap.computeIfAbsent(context, c -> new HashMap<>()).put(key,
+                        new FileStorageRecord<>(value, expiration, version));
+                break;
+                
+            case ENTRY_EXPIRE: {
+                final Map<String, MutableStorageRecord<?>> dataMap = contextMap.get(context);
+                if (dataMap != null && dataMap.containsKey(key)) {
+                    dataMap.get(key).setExpiration(expiration);
+                }
+                break;
+            }
+                
+            case ENTRY_DELETE: {
+                final Map<String, MutableStorageRecord<?>> dataMap = contextMap.get(context);
+                if (dataMap != null) {
+                    dataMap.remove(key);
+                    if (dataMap.isEmpty()) {
+                        contextMap.remove(context);
+                    }
+                }
+                break;
+            }
+                
+            case ENTRY_CONTEXT_EXPIRE:
+                applyContextExpiration(context, expiration, version);
+                break;
+                
+            case ENTRY_DELETE_CONTEXT:
+                contextMap.remove(context);
+                break;
+                
+            default:
+                log.warn("Ignoring storage log entry of unknown type {}", type);
+        }
+    }
+    
+    /**
+     * Read a length-prefixed UTF-8 string.
+     * 
+     * @param buffer the buffer to read from
+     * 
+     * @return the string
+     */
+    @Nonnull private static String readString(@Nonnull final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * A record loaded from the log, with its logged version.
+     * 
+     * @param <T> type of record
+     */
+    private static final class FileStorageRecord<T> extends MutableStorageRecord<T> {
+        
+        /**
+         * Constructor.
+         *
+         * @param val value
+         * @param exp expiration, or null
+         * @param ver version
+         */
+        FileStorageRecord(@Nonnull @NotEmpty final String val, @Nullable final Long exp, final long ver) {
+            super(val, exp);
+            setVersion(ver);
+        }
+    }
+
+}
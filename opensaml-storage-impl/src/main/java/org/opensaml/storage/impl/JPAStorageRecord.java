@@ -27,6 +27,7 @@ import javax.persistence.Embeddable;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
@@ -42,7 +43,7 @@ import org.opensaml.storage.MutableStorageRecord;
  * @param <T> type of object
  */
 @Entity
-@Table(name = "StorageRecords")
+@Table(name = "StorageRecords", indexes = @Index(name = "StorageRecords_expires", columnList = "expires"))
 @NamedQueries({
     @NamedQuery(name = "JPAStorageRecord.findAll",
             query = "SELECT r FROM JPAStorageRecord r"),
@@ -58,7 +59,35 @@ import org.opensaml.storage.MutableStorageRecord;
     @NamedQuery(name = "JPAStorageRecord.deleteByContextAndExpiration",
             query = "DELETE FROM JPAStorageRecord r WHERE r.context = :context AND r.expiration <= :exp"),
     @NamedQuery(name = "JPAStorageRecord.deleteByExpiration",
-            query = "DELETE FROM JPAStorageRecord r WHERE r.expiration <= :exp")})
+            query = "DELETE FROM JPAStorageRecord r WHERE r.expiration <= :exp"),
+    @NamedQuery(name = "JPAStorageRecord.findByContextAndKeys",
+            query = "SELECT r FROM JPAStorageRecord r WHERE r.context = :context AND r.key IN :keys"),
+    @NamedQuery(name = "JPAStorageRecord.findExpirations",
+            query = "SELECT r.expiration FROM JPAStorageRecord r WHERE r.expiration <= :exp ORDER BY r.expiration"),
+    @NamedQuery(name = "JPAStorageRecord.replaceExpired",
+            query = "UPDATE JPAStorageRecord r SET r.value = :value, r.expiration = :exp, r.version = 1"
+                    + " WHERE r.context = :context AND r.key = :key AND r.expiration <= :now"),
+    @NamedQuery(name = "JPAStorageRecord.update",
+            query = "UPDATE JPAStorageRecord r SET r.value = :value, r.expiration = :exp, r.version = r.version + 1"
+                    + " WHERE r.context = :context AND r.key = :key"
+                    + " AND (r.expiration IS NULL OR r.expiration > :now)"),
+    @NamedQuery(name = "JPAStorageRecord.updateByVersion",
+            query = "UPDATE JPAStorageRecord r SET r.value = :value, r.expiration = :exp, r.version = r.version + 1"
+                    + " WHERE r.context = :context AND r.key = :key AND r.version = :version"
+                    + " AND (r.expiration IS NULL OR r.expiration > :now)"),
+    @NamedQuery(name = "JPAStorageRecord.updateExpiration",
+            query = "UPDATE JPAStorageRecord r SET r.expiration = :exp"
+                    + " WHERE r.context = :context AND r.key = :key"
+                    + " AND (r.expiration IS NULL OR r.expiration > :now)"),
+    @NamedQuery(name = "JPAStorageRecord.updateExpirationByVersion",
+            query = "UPDATE JPAStorageRecord r SET r.expiration = :exp"
+                    + " WHERE r.context = :context AND r.key = :key AND r.version = :version"
+                    + " AND (r.expiration IS NULL OR r.expiration > :now)"),
+    @NamedQuery(name = "JPAStorageRecord.deleteByKey",
+            query = "DELETE FROM JPAStorageRecord r WHERE r.context = :context AND r.key = :key"),
+    @NamedQuery(name = "JPAStorageRecord.deleteByVersion",
+            query = "DELETE FROM JPAStorageRecord r"
+                    + " WHERE r.context = :context AND r.key = :key AND r.version = :version")})
 @IdClass(JPAStorageRecord.RecordId.class)
 public class JPAStorageRecord<T> extends MutableStorageRecord<T> {
 
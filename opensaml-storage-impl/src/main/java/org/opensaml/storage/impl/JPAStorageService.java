@@ -20,8 +20,10 @@ package org.opensaml.storage.impl;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimerTask;
 
 import javax.annotation.Nonnull;
@@ -31,6 +33,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.LockModeType;
+import javax.persistence.PersistenceException;
 import javax.persistence.Query;
 import javax.persistence.RollbackException;
 
@@ -51,6 +54,12 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Implementation of {@link org.opensaml.storage.StorageService} that uses JPA to persist to a database.
+ * 
+ * <p>Updates and deletions are performed by single conditional statements which check the expiration and,
+ * where required, the version of the record, rather than by reading the record under a pessimistic lock.
+ * Expired records are reaped in chunks, and bursts of records may be created together with
+ * {@link #createBatch(String, Map, Long)}, which benefits from configuring the JPA provider for JDBC
+ * batching (e.g. the <code>hibernate.jdbc.batch_size</code> property).</p>
  */
 public class JPAStorageService extends AbstractStorageService implements StorageCapabilitiesEx {
 
@@ -63,6 +72,12 @@ public class JPAStorageService extends AbstractStorageService implements Storage
     /** Number of times to retry a transaction if it rolls back. */
     @NonNegative private int transactionRetry;
 
+    /** Number of records to write together when creating records in bulk. */
+    @Positive private int batchSize;
+
+    /** Approximate number of expired records to delete in each transaction. */
+    @Positive private int reapChunkSize;
+
     /**
      * Creates a new JPA storage service.
      * 
@@ -75,6 +90,8 @@ public class JPAStorageService extends AbstractStorageService implements Storage
         setKeySize(JPAStorageRecord.KEY_SIZE);
         setValueSize(Integer.MAX_VALUE);
         setTransactionRetry(3);
+        setBatchSize(50);
+        setReapChunkSize(1000);
     }
 
     /**
@@ -98,6 +115,47 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                         "Transaction retry must be greater than or equal to zero");
     }
 
+    /**
+     * Returns the number of records written together by {@link #createBatch(String, Map, Long)}.
+     * 
+     * @return batch size
+     */
+    @Positive public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of records written together by {@link #createBatch(String, Map, Long)} (default is 50).
+     * 
+     * <p>This should normally match the JDBC batch size configured for the JPA provider.</p>
+     * 
+     * @param size batch size
+     */
+    public void setBatchSize(@Positive final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        batchSize = (int) Constraint.isGreaterThan(0, size, "Batch size must be greater than zero");
+    }
+
+    /**
+     * Returns the approximate number of expired records deleted in each transaction by the cleanup task.
+     * 
+     * @return reap chunk size
+     */
+    @Positive public int getReapChunkSize() {
+        return reapChunkSize;
+    }
+
+    /**
+     * Sets the approximate number of expired records deleted in each transaction by the cleanup task
+     * (default is 1000).
+     * 
+     * @param size reap chunk size
+     */
+    public void setReapChunkSize(@Positive final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        reapChunkSize = (int) Constraint.isGreaterThan(0, size, "Reap chunk size must be greater than zero");
+    }
+
     /** {@inheritDoc} */
     public boolean isServerSide() {
         return true;
@@ -123,39 +181,55 @@ public class JPAStorageService extends AbstractStorageService implements Storage
         EntityManager manager = null;
         try {
             int retry = -1;
-            RollbackException lastThrown;
+            RollbackException lastThrown = null;
             do {
                 EntityTransaction transaction = null;
                 try {
                     manager = entityManagerFactory.createEntityManager();
                     transaction = manager.getTransaction();
                     transaction.begin();
-                    JPAStorageRecord<?> entity =
-                            manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key),
-                                    LockModeType.PESSIMISTIC_WRITE);
-                    if (entity != null) {
-                        // Not yet expired?
-                        final Long exp = entity.getExpiration();
-                        if (exp == null || System.currentTimeMillis() < exp) {
-                            log.debug("Duplicate record '{}' in context '{}'", key, context);
-                            return false;
-                        }
-
-                        // It's dead, reset the version for merge.
-                        entity.resetVersion();
-                    } else {
-                        entity = new JPAStorageRecord<>();
-                        entity.setContext(context);
-                        entity.setKey(key);
+                    final JPAStorageRecord<?> entity =
+                            manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key));
+                    if (entity == null) {
+                        // A concurrent insert of the same record will cause the commit to roll back,
+                        // and the retry will then find the duplicate.
+                        final JPAStorageRecord<?> newEntity = new JPAStorageRecord<>();
+                        newEntity.setContext(context);
+                        newEntity.setKey(key);
+                        newEntity.setValue(value);
+                        newEntity.setExpiration(expiration);
+                        manager.persist(newEntity);
+                        transaction.commit();
+                        log.debug("Create record '{}' in context '{}' with expiration '{}'", key, context,
+                                expiration);
+                        return true;
+                    }
+                    
+                    // Not yet expired?
+                    final long now = System.currentTimeMillis();
+                    final Long exp = entity.getExpiration();
+                    if (exp == null || now < exp) {
+                        log.debug("Duplicate record '{}' in context '{}'", key, context);
+                        return false;
                     }
 
-                    entity.setValue(value);
-                    entity.setExpiration(expiration);
-                    manager.merge(entity);
+                    // It's dead, so replace it with a reset version, provided nobody else has done so first.
+                    final Query query = manager.createNamedQuery("JPAStorageRecord.replaceExpired");
+                    query.setParameter("context", context);
+                    query.setParameter("key", key);
+                    query.setParameter("value", value);
+                    query.setParameter("exp", expiration);
+                    query.setParameter("now", now);
+                    final int count = query.executeUpdate();
                     transaction.commit();
-                    log.debug("Create record '{}' in context '{}' with expiration '{}'", new Object[] {key, context,
-                            expiration,});
-                    return true;
+                    if (count > 0) {
+                        log.debug("Create record '{}' in context '{}' with expiration '{}'", key, context,
+                                expiration);
+                        return true;
+                    }
+                    log.debug("Expired record '{}' in context '{}' was concurrently modified", key, context);
+                    lastThrown = null;
+                    retry++;
                 } catch (final EntityExistsException e) {
                     rollbackTransaction(transaction);
                     log.debug("Duplicate record '{}' in context '{}' with expiration '{}'", key, context, expiration);
@@ -173,7 +247,99 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                     closeEntityManager(manager);
                 }
             } while (retry < transactionRetry);
-            throw lastThrown;
+            if (lastThrown != null) {
+                throw lastThrown;
+            }
+            throw new IOException("Record '" + key + "' in context '" + context + "' was repeatedly modified");
+        } finally {
+            closeEntityManager(manager);
+        }
+    }
+// Checkstyle: CyclomaticComplexity|MethodLength ON
+
+// Checkstyle: CyclomaticComplexity|MethodLength OFF
+    /**
+     * Creates a number of new records in a single context with a common expiration, in a single transaction.
+     * 
+     * <p>Existing records are looked up, and new records inserted, in groups of {@link #getBatchSize()} records,
+     * allowing a JPA provider configured for JDBC batching to insert each group in a single round trip.
+     * As with {@link #create(String, String, String, Long)}, a key whose record exists and has not expired is
+     * not created.</p>
+     * 
+     * @param context a storage context label
+     * @param records map of keys to values to store
+     * @param expiration expiration for records, or null
+     * 
+     * @return the keys of the records created
+     * @throws IOException if fatal errors occur in the insertion process
+     */
+    @Nonnull @NonnullElements public Set<String> createBatch(@Nonnull @NotEmpty final String context,
+            @Nonnull @NonnullElements final Map<String,String> records, @Nullable @Positive final Long expiration)
+                    throws IOException {
+        final List<String> keys = new ArrayList<>(records.keySet());
+        EntityManager manager = null;
+        try {
+            int retry = -1;
+            PersistenceException lastThrown;
+            do {
+                EntityTransaction transaction = null;
+                try {
+                    manager = entityManagerFactory.createEntityManager();
+                    transaction = manager.getTransaction();
+                    transaction.begin();
+                    final long now = System.currentTimeMillis();
+                    final Set<String> created = new LinkedHashSet<>(keys.size());
+                    final Query query = manager.createNamedQuery("JPAStorageRecord.findByContextAndKeys");
+                    query.setParameter("context", context);
+                    for (int i = 0; i < keys.size(); i += batchSize) {
+                        final List<String> batch = keys.subList(i, Math.min(i + batchSize, keys.size()));
+                        query.setParameter("keys", batch);
+                        final Map<String,JPAStorageRecord<?>> existing = new HashMap<>();
+                        for (final Object entity : query.getResultList()) {
+                            existing.put(((JPAStorageRecord<?>) entity).getKey(), (JPAStorageRecord<?>) entity);
+                        }
+                        for (final String key : batch) {
+                            JPAStorageRecord<?> entity = existing.get(key);
+                            if (entity == null) {
+                                entity = new JPAStorageRecord<>();
+                                entity.setContext(context);
+                                entity.setKey(key);
+                                entity.setValue(records.get(key));
+                                entity.setExpiration(expiration);
+                                manager.persist(entity);
+                            } else if (entity.getExpiration() == null || now < entity.getExpiration()) {
+                                log.debug("Duplicate record '{}' in context '{}'", key, context);
+                                continue;
+                            } else {
+                                // It's dead, reset the version for update.
+                                entity.resetVersion();
+                                entity.setValue(records.get(key));
+                                entity.setExpiration(expiration);
+                            }
+                            created.add(key);
+                        }
+                        manager.flush();
+                        manager.clear();
+                    }
+                    transaction.commit();
+                    log.debug("Created {} of {} record(s) in context '{}' with expiration '{}'", created.size(),
+                            keys.size(), context, expiration);
+                    return created;
+                } catch (final PersistenceException e) {
+                    // Includes constraint violations on flush caused by concurrent inserts.
+                    rollbackTransaction(transaction);
+                    lastThrown = e;
+                    retry++;
+                } catch (final Exception e) {
+                    rollbackTransaction(transaction);
+                    log.error("Error creating records in context '{}' with expiration '{}'", context, expiration, e);
+                    throw new IOException(e);
+                } finally {
+                    commitTransaction(transaction);
+                    closeEntityManager(manager);
+                }
+            } while (retry < transactionRetry);
+            throw new IOException(lastThrown);
         } finally {
             closeEntityManager(manager);
         }
@@ -271,8 +437,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
             transaction = manager.getTransaction();
             transaction.begin();
             final JPAStorageRecord<T> entity =
-                    manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key),
-                            LockModeType.PESSIMISTIC_READ);
+                    manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key));
             if (entity == null) {
                 log.debug("Read failed, key '{}' not found in context '{}'", key, context);
                 return new Pair<>();
@@ -335,7 +500,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
      * @param version to check
      * @param context to search for
      * @param key to search for
-     * @param value to update
+     * @param value to update, or null to update only the expiration
      * @param expiration to update
      * 
      * @return whether the record was updated
@@ -343,7 +508,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
      * @throws VersionMismatchException if the record found contains a version that does not match the parameter
      */
     @Nullable protected Long updateImpl(@Nullable final Long version, @Nonnull @NotEmpty final String context,
-            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nonnull @NotEmpty final String key, @Nullable final String value,
             @Nullable @Positive final Long expiration) throws IOException, VersionMismatchException {
         EntityManager manager = null;
         try {
@@ -355,35 +520,49 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                     manager = entityManagerFactory.createEntityManager();
                     transaction = manager.getTransaction();
                     transaction.begin();
+                    
+                    // The update is conditional on the record being unexpired and, if supplied, on its version,
+                    // so no lock is taken beyond that acquired on the row by the update itself.
+                    final Query query;
+                    if (value != null) {
+                        query = manager.createNamedQuery(version != null
+                                ? "JPAStorageRecord.updateByVersion" : "JPAStorageRecord.update");
+                        query.setParameter("value", value);
+                    } else {
+                        query = manager.createNamedQuery(version != null
+                                ? "JPAStorageRecord.updateExpirationByVersion" : "JPAStorageRecord.updateExpiration");
+                    }
+                    if (version != null) {
+                        query.setParameter("version", version);
+                    }
+                    query.setParameter("context", context);
+                    query.setParameter("key", key);
+                    query.setParameter("exp", expiration);
+                    query.setParameter("now", System.currentTimeMillis());
+                    final int count = query.executeUpdate();
+                    
+                    // Read back the outcome, which our update (if any) prevents from changing before commit.
                     final JPAStorageRecord<?> entity =
-                            manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key),
-                                    LockModeType.PESSIMISTIC_WRITE);
-                    if (entity == null) {
+                            manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key));
+                    transaction.commit();
+                    
+                    if (count > 0 && entity != null) {
+                        log.debug("Update record '{}' in context '{}' with expiration '{}'", key, context,
+                                expiration);
+                        return entity.getVersion();
+                    } else if (entity == null) {
                         log.debug("Update failed, key '{}' not found in context '{}'", key, context);
                         return null;
                     }
                     
                     final Long exp = entity.getExpiration();
-                    if (exp != null && System.currentTimeMillis() >= exp) {
+                    if (version == null || (exp != null && System.currentTimeMillis() >= exp)) {
                         log.debug("Update failed, key '{}' expired in context '{}'", key, context);
                         return null;
                     }
-
-                    if (version != null && entity.getVersion() != version) {
-                        // Caller is out of sync.
-                        throw new VersionMismatchException();
-                    }
-
-                    if (value != null) {
-                        entity.setValue(value);
-                        entity.incrementVersion();
-                    }
-                    entity.setExpiration(expiration);
-                    manager.merge(entity);
-                    transaction.commit();
-                    log.debug("Update record '{}' in context '{}' with expiration '{}'", new Object[] {key, context,
-                            expiration,});
-                    return entity.getVersion();
+                    
+                    // Caller is out of sync.
+                    throw new VersionMismatchException();
                 } catch (final VersionMismatchException e) {
                     throw e;
                 } catch (final RollbackException e) {
@@ -447,20 +626,28 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                     manager = entityManagerFactory.createEntityManager();
                     transaction = manager.getTransaction();
                     transaction.begin();
-                    final JPAStorageRecord<?> entity =
-                            manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key),
-                                    LockModeType.PESSIMISTIC_WRITE);
-                    if (entity == null) {
-                        log.debug("Deleting record '{}' in context '{}'....key not found", key, context);
-                        return false;
-                    } else if (version != null && entity.getVersion() != version) {
-                        throw new VersionMismatchException();
+                    final Query query;
+                    if (version != null) {
+                        query = manager.createNamedQuery("JPAStorageRecord.deleteByVersion");
+                        query.setParameter("version", version);
                     } else {
-                        manager.remove(entity);
+                        query = manager.createNamedQuery("JPAStorageRecord.deleteByKey");
+                    }
+                    query.setParameter("context", context);
+                    query.setParameter("key", key);
+                    if (query.executeUpdate() > 0) {
                         transaction.commit();
                         log.debug("Deleted record '{}' in context '{}'", key, context);
                         return true;
+                    } else if (version != null
+                            && manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key))
+                                != null) {
+                        transaction.commit();
+                        throw new VersionMismatchException();
                     }
+                    transaction.commit();
+                    log.debug("Deleting record '{}' in context '{}'....key not found", key, context);
+                    return false;
                 } catch (final VersionMismatchException e) {
                     throw e;
                 } catch (final RollbackException e) {
@@ -597,6 +784,10 @@ public class JPAStorageService extends AbstractStorageService implements Storage
     /**
      * Deletes every record with an expiration before the supplied expiration.
      * 
+     * <p>Records are deleted in chunks of approximately {@link #getReapChunkSize()} records in order of
+     * expiration, each in its own transaction, to limit the time for which locks are held. The same queries
+     * are reused for every chunk.</p>
+     * 
      * @param expiration of records to delete
      * 
      * @throws IOException if errors occur in the cleanup process
@@ -604,34 +795,42 @@ public class JPAStorageService extends AbstractStorageService implements Storage
     protected void deleteImpl(@Nonnull final Long expiration) throws IOException {
         EntityManager manager = null;
         try {
+            manager = entityManagerFactory.createEntityManager();
+            // cannot set lock mode on a non-select query
+            final Query boundQuery = manager.createNamedQuery("JPAStorageRecord.findExpirations");
+            boundQuery.setParameter("exp", expiration);
+            boundQuery.setFirstResult(reapChunkSize - 1);
+            boundQuery.setMaxResults(1);
+            final Query deleteQuery = manager.createNamedQuery("JPAStorageRecord.deleteByExpiration");
             int retry = -1;
-            RollbackException lastThrown;
+            int total = 0;
+            Long bound = null;
             do {
                 EntityTransaction transaction = null;
                 try {
-                    manager = entityManagerFactory.createEntityManager();
                     transaction = manager.getTransaction();
                     transaction.begin();
-                    // cannot set lock mode on a non-select query
-                    final Query queryResults = manager.createNamedQuery("JPAStorageRecord.deleteByExpiration");
-                    queryResults.setParameter("exp", expiration);
-                    final int count = queryResults.executeUpdate();
+                    // The expiration of the last record in the chunk bounds the chunk, unless fewer remain.
+                    final List<?> results = boundQuery.getResultList();
+                    bound = results.isEmpty() ? expiration : (Long) results.get(0);
+                    deleteQuery.setParameter("exp", bound);
+                    total += deleteQuery.executeUpdate();
                     transaction.commit();
-                    log.debug("Deleted {} record(s) with expiration '{}'", count, expiration);
-                    return;
                 } catch (final RollbackException e) {
-                    lastThrown = e;
-                    retry++;
+                    if (++retry >= transactionRetry) {
+                        log.error("Error deleting with expiration '{}'", expiration, e);
+                        throw new IOException(e);
+                    }
+                    bound = null;
                 } catch (final Exception e) {
                     log.error("Error deleting with expiration '{}'", expiration, e);
                     rollbackTransaction(transaction);
                     throw new IOException(e);
                 } finally {
                     commitTransaction(transaction);
-                    closeEntityManager(manager);
                 }
-            } while (retry < transactionRetry);
-            throw lastThrown;
+            } while (bound == null || bound < expiration);
+            log.debug("Deleted {} record(s) with expiration '{}'", total, expiration);
         } finally {
             closeEntityManager(manager);
         }
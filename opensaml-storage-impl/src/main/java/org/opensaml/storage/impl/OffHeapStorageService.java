@@ -0,0 +1,1277 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimerTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.storage.AbstractStorageService;
+import org.opensaml.storage.StorageCapabilitiesEx;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.VersionMismatchException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link org.opensaml.storage.StorageService} that stores data in-memory, but outside of the
+ * Java heap, with no persistence.
+ * 
+ * <p>This implementation is intended for very large numbers of small, short-lived records, such as replay
+ * cache entries, for which the per-record objects of {@link MemoryStorageService} place excessive pressure
+ * on the garbage collector.</p>
+ * 
+ * <p>Each record's context, key, value, version and expiration is stored in a fixed-size slot within a direct
+ * {@link ByteBuffer}. Slots are allocated from slabs of power-of-two size classes, and located by an
+ * open-addressing hash index of primitive arrays. Records are partitioned across a number of segments, each
+ * with its own lock, index and share of the memory limit.</p>
+ * 
+ * <p>The total memory used for record storage is bounded by {@link #setMaxMemory(long)}. Once a segment's
+ * share is exhausted, storing a record evicts the least recently used record of the same size class, or if
+ * that size class holds no records, reclaims a slab from the size class occupying the most memory by evicting
+ * all of the records in it. Unlike other implementations, records may therefore be lost before they expire, so
+ * this class is only suitable where that is an acceptable trade-off.</p>
+ * 
+ * <p>The context, key and value size limits default to 255, 255 and 16384 characters respectively, and
+ * determine the largest slot size.</p>
+ */
+public class OffHeapStorageService extends AbstractStorageService implements StorageCapabilitiesEx {
+
+    /** Default number of segments. */
+    public static final int DEFAULT_SEGMENT_COUNT = 16;
+
+    /** Default maximum memory in bytes: 256MB. */
+    public static final long DEFAULT_MAX_MEMORY = 256L * 1024 * 1024;
+    
+    /** Size in bytes of the slabs from which slots are allocated. */
+    private static final int SLAB_SIZE = 256 * 1024;
+    
+    /** Size in bytes of the smallest slot size class. */
+    private static final int MIN_SLOT_SIZE = 64;
+    
+    /** Maximum number of index positions examined per acquisition of a segment's lock when reaping. */
+    private static final int REAP_BATCH_SIZE = 4096;
+
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(OffHeapStorageService.class);
+    
+    /** Number of segments. */
+    @Positive private int segmentCount;
+    
+    /** Maximum memory in bytes. */
+    @Positive private long maxMemory;
+    
+    /** The segments. */
+    @NonnullAfterInit private Segment[] segments;
+    
+    /** Constructor. */
+    public OffHeapStorageService() {
+        setContextSize(255);
+        setKeySize(255);
+        setValueSize(16384);
+        segmentCount = DEFAULT_SEGMENT_COUNT;
+        maxMemory = DEFAULT_MAX_MEMORY;
+    }
+    
+    /**
+     * Get the number of segments across which records are partitioned.
+     * 
+     * @return number of segments
+     */
+    @Positive public int getSegmentCount() {
+        return segmentCount;
+    }
+    
+    /**
+     * Set the number of segments across which records are partitioned.
+     * 
+     * <p>Defaults to {@link #DEFAULT_SEGMENT_COUNT}.</p>
+     * 
+     * @param count number of segments
+     */
+    public void setSegmentCount(@Positive final int count) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        segmentCount = (int) Constraint.isGreaterThan(0, count, "Segment count must be greater than 0");
+    }
+    
+    /**
+     * Get the maximum memory in bytes used for record storage.
+     * 
+     * @return maximum memory in bytes
+     */
+    @Positive public long getMaxMemory() {
+        return maxMemory;
+    }
+    
+    /**
+     * Set the maximum memory in bytes used for record storage.
+     * 
+     * <p>Defaults to {@link #DEFAULT_MAX_MEMORY}.</p>
+     * 
+     * @param bytes maximum memory in bytes
+     */
+    public void setMaxMemory(@Positive final long bytes) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        maxMemory = Constraint.isGreaterThan(0, bytes, "Maximum memory must be greater than 0");
+    }
+
+    /** {@inheritDoc} */
+    public boolean isServerSide() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isClustered() {
+        return false;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        final long maxRecordSize =
+                Segment.HEADER_SIZE + 2L * (getContextSize() + getKeySize() + getValueSize());
+        final long segmentMemory = maxMemory / segmentCount;
+        if (maxRecordSize > Integer.MAX_VALUE / 2) {
+            throw new ComponentInitializationException("Context, key and value size limits are too large");
+        } else if (Math.max(maxRecordSize, SLAB_SIZE) > segmentMemory) {
+            throw new ComponentInitializationException(
+                    "Maximum memory is insufficient for the number of segments and size limits");
+        }
+        
+        final List<Integer> slotSizes = new ArrayList<>();
+        int slotSize = MIN_SLOT_SIZE;
+        slotSizes.add(slotSize);
+        while (slotSize < maxRecordSize) {
+            slotSize <<= 1;
+            slotSizes.add(slotSize);
+        }
+        
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(slotSizes, segmentMemory);
+        }
+        
+        super.doInitialize();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        super.doDestroy();
+        segments = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable final Long expiration) throws IOException {
+        final int hash = hash(context, key);
+        final boolean result = getSegment(hash).create(hash, context, key, value, expiration);
+        if (result) {
+            log.trace("Inserted record '{}' in context '{}' with expiration '{}'", key, context, expiration);
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public <T> StorageRecord<T> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException {
+        return this.<T>readImpl(context, key, null).getSecond();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public <T> Pair<Long, StorageRecord<T>> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, final long version) throws IOException {
+        return readImpl(context, key, version);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable final Long expiration) throws IOException {
+        try {
+            return updateImpl(null, context, key, value, expiration) != null;
+        } catch (final VersionMismatchException e) {
+            throw new IOException("Unexpected exception thrown by update.", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public Long updateWithVersion(final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value, @Nullable final Long expiration)
+                    throws IOException, VersionMismatchException {
+        return updateImpl(version, context, key, value, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean updateExpiration(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nullable final Long expiration) throws IOException {
+        try {
+            return updateImpl(null, context, key, null, expiration) != null;
+        } catch (final VersionMismatchException e) {
+            throw new IOException("Unexpected exception thrown by update.", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean deleteWithVersion(final long version, final String context, final String key) throws IOException,
+            VersionMismatchException {
+        return deleteImpl(version, context, key);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public boolean delete(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
+            throws IOException {
+        try {
+            return deleteImpl(null, context, key);
+        } catch (final VersionMismatchException e) {
+            throw new IOException("Unexpected exception thrown by delete.", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateContextExpiration(@Nonnull @NotEmpty final String context, @Nullable final Long expiration)
+            throws IOException {
+        for (final Segment segment : segments) {
+            segment.updateContextExpiration(context, expiration);
+        }
+        log.debug("Updated expiration of valid records in context '{}' to '{}'", context, expiration);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
+        for (final Segment segment : segments) {
+            segment.removeAll(context, null);
+        }
+        log.debug("Deleted context '{}'", context);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reap(@Nonnull @NotEmpty final String context) throws IOException {
+        final long now = System.currentTimeMillis();
+        for (final Segment segment : segments) {
+            segment.removeAll(context, now);
+        }
+    }
+    
+    /**
+     * Internal method to implement read functions.
+     *
+     * @param <T>           type of object 
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * @param version       only return record if newer than optionally supplied version
+     * 
+     * @return  a pair consisting of the version of the record read back, if any, and the record itself
+     * @throws IOException  if errors occur in the read process 
+     */
+    @Nonnull protected <T> Pair<Long,StorageRecord<T>> readImpl(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable final Long version) throws IOException {
+        final int hash = hash(context, key);
+        final Pair<Long,StorageRecord<T>> result = getSegment(hash).read(hash, context, key, version);
+        if (result.getFirst() == null) {
+            log.debug("Read failed, key '{}' not found or expired in context '{}'", key, context);
+        }
+        return result;
+    }
+
+    /**
+     * Internal method to implement update functions.
+     * 
+     * @param version       only update if the current version matches this value
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * @param value         updated value
+     * @param expiration    expiration for record. or null
+     * 
+     * @return the version of the record after update, null if no record exists
+     * @throws IOException  if errors occur in the update process
+     * @throws VersionMismatchException if the record has already been updated to a newer version
+     */
+    @Nullable protected Long updateImpl(@Nullable final Long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable final String value, @Nullable final Long expiration)
+                    throws IOException, VersionMismatchException {
+        final int hash = hash(context, key);
+        final Long result = getSegment(hash).update(version, hash, context, key, value, expiration);
+        if (result == null) {
+            log.debug("Update failed, key '{}' not found or expired in context '{}'", key, context);
+        } else {
+            log.trace("Updated record '{}' in context '{}' with expiration '{}'", key, context, expiration);
+        }
+        return result;
+    }
+    
+    /**
+     * Internal method to implement delete functions.
+     * 
+     * @param version       only update if the current version matches this value
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * 
+     * @return true iff the record existed and was deleted
+     * @throws IOException  if errors occur in the update process
+     * @throws VersionMismatchException if the record has already been updated to a newer version
+     */
+    protected boolean deleteImpl(@Nullable @Positive final Long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        final int hash = hash(context, key);
+        final boolean result = getSegment(hash).delete(version, hash, context, key);
+        if (result) {
+            log.trace("Deleted record '{}' in context '{}'", key, context);
+        } else {
+            log.debug("Deleting record '{}' in context '{}'....key not found", key, context);
+        }
+        return result;
+    }
+    
+    /**
+     * Compute the hash of a record's context and key.
+     * 
+     * @param context a storage context label
+     * @param key a key unique to context
+     * 
+     * @return the hash
+     */
+    private static int hash(@Nonnull final String context, @Nonnull final String key) {
+        final int h = 31 * context.hashCode() + key.hashCode();
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * Get the segment responsible for a record, using different bits of the hash than the segment's index.
+     * 
+     * @param hash the hash of the record's context and key
+     * 
+     * @return the responsible segment
+     */
+    @Nonnull private Segment getSegment(final int hash) {
+        return segments[((hash * 0x9E3779B9) >>> 16) % segments.length];
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    @Nullable protected TimerTask getCleanupTask() {
+        return new TimerTask() {
+            
+            /** {@inheritDoc} */
+            @Override
+            public void run() {
+                log.debug("Running cleanup task");
+                
+                final long now = System.currentTimeMillis();
+                int purged = 0;
+                for (final Segment segment : segments) {
+                    purged += segment.removeAll(null, now);
+                }
+                
+                if (purged > 0) {
+                    log.debug("Purged {} expired record(s) from storage", purged);
+                } else {
+                    log.debug("No expired records found in storage");
+                }
+            }
+        };
+    }
+    
+    /**
+     * A record read from off-heap storage.
+     * 
+     * @param <T> type of record
+     */
+    private static final class OffHeapStorageRecord<T> extends StorageRecord<T> {
+        
+        /**
+         * Constructor.
+         *
+         * @param val value
+         * @param exp expiration, or null
+         * @param ver version
+         */
+        OffHeapStorageRecord(@Nonnull @NotEmpty final String val, @Nullable final Long exp, final long ver) {
+            super(val, exp);
+            setVersion(ver);
+        }
+    }
+    
+    /** A slab size class, with its own free list and least recently used list. */
+    private static final class SlabClass {
+
+        /** Slot size in bytes. */
+        private final int slotSize;
+        
+        /** Slab size in bytes. */
+        private final int slabSize;
+        
+        /** Allocated slabs. */
+        @Nonnull private final List<ByteBuffer> slabs;
+        
+        /** Number of slots used in the most recently allocated slab. */
+        private int carved;
+        
+        /** Head of the free list. */
+        private long freeHead;
+        
+        /** Most recently used slot. */
+        private long lruHead;
+        
+        /** Least recently used slot. */
+        private long lruTail;
+        
+        /**
+         * Constructor.
+         *
+         * @param size slot size in bytes
+         */
+        SlabClass(final int size) {
+            slotSize = size;
+            slabSize = Math.max(size, SLAB_SIZE);
+            slabs = new ArrayList<>();
+            freeHead = Segment.NONE;
+            lruHead = Segment.NONE;
+            lruTail = Segment.NONE;
+        }
+    }
+    
+    /**
+     * A partition of the stored records, with its own lock, slabs and index.
+     * 
+     * <p>A slot handle encodes the size class, slab and slot numbers of a record. Each slot holds the LRU list
+     * (or free list) pointers, version, expiration, hash and lengths of the record, followed by the
+     * characters of the context, key and value.</p>
+     */
+    private static final class Segment {
+        
+        /** Null slot handle. */
+        static final long NONE = -1;
+        
+        /** Offset of the previous slot pointer. */
+        static final int PREV = 0;
+        
+        /** Offset of the next slot pointer. */
+        static final int NEXT = 8;
+        
+        /** Offset of the version. */
+        static final int VERSION = 16;
+        
+        /** Offset of the expiration, 0 if none. */
+        static final int EXPIRATION = 24;
+        
+        /** Offset of the hash. */
+        static final int HASH = 32;
+        
+        /** Offset of the context length. */
+        static final int CONTEXT_LENGTH = 36;
+        
+        /** Offset of the key length. */
+        static final int KEY_LENGTH = 40;
+        
+        /** Offset of the value length. */
+        static final int VALUE_LENGTH = 44;
+        
+        /** Size of the slot header. */
+        static final int HEADER_SIZE = 48;
+        
+        /** Lock guarding the segment. */
+        @Nonnull private final Lock lock;
+        
+        /** Size classes. */
+        @Nonnull private final SlabClass[] slabClasses;
+        
+        /** Maximum memory in bytes. */
+        private final long maxMemory;
+        
+        /** Allocated memory in bytes. */
+        private long allocatedMemory;
+        
+        /** Index of slot handles, using linear probing. */
+        @Nonnull private long[] index;
+        
+        /** Hashes corresponding to the index entries. */
+        @Nonnull private int[] hashes;
+        
+        /** Number of index entries. */
+        private int size;
+        
+        /** Number of index entries removed, used to detect entries shifted during a batched scan. */
+        private long removals;
+        
+        /**
+         * Constructor.
+         *
+         * @param slotSizes the slot sizes of each size class
+         * @param memory maximum memory in bytes
+         */
+        Segment(@Nonnull final List<Integer> slotSizes, final long memory) {
+            lock = new ReentrantLock();
+            slabClasses = new SlabClass[slotSizes.size()];
+            for (int i = 0; i < slabClasses.length; i++) {
+                slabClasses[i] = new SlabClass(slotSizes.get(i));
+            }
+            maxMemory = memory;
+            index = new long[16];
+            Arrays.fill(index, NONE);
+            hashes = new int[16];
+        }
+        
+        /**
+         * Create a record.
+         * 
+         * @param hash the hash of the context and key
+         * @param context a storage context label
+         * @param key a key unique to context
+         * @param value value to store
+         * @param expiration expiration, or null
+         * 
+         * @return true iff the record was created, false if an unexpired record exists
+         * 
+         * @throws IOException if the record cannot be stored
+         */
+        boolean create(final int hash, @Nonnull final String context, @Nonnull final String key,
+                @Nonnull final String value, @Nullable final Long expiration) throws IOException {
+            lock.lock();
+            try {
+                final int pos = find(hash, context, key);
+                if (pos >= 0) {
+                    final long handle = index[pos];
+                    if (!isExpired(handle, System.currentTimeMillis())) {
+                        return false;
+                    }
+                    
+                    // It's dead, so we can just replace it.
+                    removeAt(pos);
+                    free(handle);
+                }
+                
+                final long handle = allocate(sizeClass(context, key, value), -1);
+                write(handle, hash, 1, expiration, context, key, value);
+                linkFirst(handle);
+                insert(hash, handle);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Read a record.
+         * 
+         * @param <T> type of record
+         * @param hash the hash of the context and key
+         * @param context a storage context label
+         * @param key a key unique to context
+         * @param version only return record if newer than optionally supplied version
+         * 
+         * @return a pair consisting of the version of the record read back, if any, and the record itself
+         */
+        @Nonnull <T> Pair<Long,StorageRecord<T>> read(final int hash, @Nonnull final String context,
+                @Nonnull final String key, @Nullable final Long version) {
+            lock.lock();
+            try {
+                final int pos = find(hash, context, key);
+                if (pos < 0 || isExpired(index[pos], System.currentTimeMillis())) {
+                    return new Pair<>();
+                }
+                
+                final long handle = index[pos];
+                unlink(handle);
+                linkFirst(handle);
+                
+                final ByteBuffer buffer = buffer(handle);
+                final int offset = offset(handle);
+                final long currentVersion = buffer.getLong(offset + VERSION);
+                if (version != null && currentVersion == version) {
+                    // Nothing's changed, so just echo back the version.
+                    return new Pair<>(version, null);
+                }
+                
+                final int valueOffset = offset + HEADER_SIZE
+                        + 2 * (buffer.getInt(offset + CONTEXT_LENGTH) + buffer.getInt(offset + KEY_LENGTH));
+                final String value = readString(buffer, valueOffset, buffer.getInt(offset + VALUE_LENGTH));
+                return new Pair<>(currentVersion,
+                        new OffHeapStorageRecord<>(value, getExpiration(buffer, offset), currentVersion));
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Update a record.
+         * 
+         * @param version only update if the current version matches this value
+         * @param hash the hash of the context and key
+         * @param context a storage context label
+         * @param key a key unique to context
+         * @param value updated value, or null to update only the expiration
+         * @param expiration expiration, or null
+         * 
+         * @return the version of the record after update, null if no record exists
+         * 
+         * @throws IOException if the record cannot be stored
+         * @throws VersionMismatchException if the record has already been updated to a newer version
+         */
+        @Nullable Long update(@Nullable final Long version, final int hash, @Nonnull final String context,
+                @Nonnull final String key, @Nullable final String value, @Nullable final Long expiration)
+                        throws IOException, VersionMismatchException {
+            lock.lock();
+            try {
+                final int pos = find(hash, context, key);
+                if (pos < 0 || isExpired(index[pos], System.currentTimeMillis())) {
+                    return null;
+                }
+                
+                final long handle = index[pos];
+                final long currentVersion = buffer(handle).getLong(offset(handle) + VERSION);
+                if (version != null && version != currentVersion) {
+                    // Caller is out of sync.
+                    throw new VersionMismatchException();
+                }
+                
+                if (value == null) {
+                    buffer(handle).putLong(offset(handle) + EXPIRATION, expiration != null ? expiration : 0);
+                    unlink(handle);
+                    linkFirst(handle);
+                    return currentVersion;
+                }
+                
+                final int sizeClass = sizeClass(context, key, value);
+                if (sizeClass == sizeClass(handle)) {
+                    write(handle, hash, currentVersion + 1, expiration, context, key, value);
+                    unlink(handle);
+                    linkFirst(handle);
+                } else {
+                    // Allocation must not reclaim this record's slab, but may evict others and move its entry.
+                    final long newHandle = allocate(sizeClass, sizeClass(handle));
+                    removeAt(findHandle(hash, handle));
+                    free(handle);
+                    write(newHandle, hash, currentVersion + 1, expiration, context, key, value);
+                    linkFirst(newHandle);
+                    insert(hash, newHandle);
+                }
+                return currentVersion + 1;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Delete a record.
+         * 
+         * @param version only delete if the current version matches this value
+         * @param hash the hash of the context and key
+         * @param context a storage context label
+         * @param key a key unique to context
+         * 
+         * @return true iff the record existed and was deleted
+         * 
+         * @throws VersionMismatchException if the record has already been updated to a newer version
+         */
+        boolean delete(@Nullable final Long version, final int hash, @Nonnull final String context,
+                @Nonnull final String key) throws VersionMismatchException {
+            lock.lock();
+            try {
+                final int pos = find(hash, context, key);
+                if (pos < 0) {
+                    return false;
+                }
+                
+                final long handle = index[pos];
+                if (version != null && buffer(handle).getLong(offset(handle) + VERSION) != version) {
+                    throw new VersionMismatchException();
+                }
+                
+                removeAt(pos);
+                free(handle);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Update the expiration of all unexpired records in a context.
+         * 
+         * @param context a storage context label
+         * @param expiration expiration, or null
+         */
+        void updateContextExpiration(@Nonnull final String context, @Nullable final Long expiration) {
+            lock.lock();
+            try {
+                final long now = System.currentTimeMillis();
+                for (final long handle : index) {
+                    if (handle != NONE && contextMatches(handle, context) && !isExpired(handle, now)) {
+                        buffer(handle).putLong(offset(handle) + EXPIRATION, expiration != null ? expiration : 0);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Remove all records matching a context, an expiration time, or both.
+         * 
+         * <p>The index is processed in batches, releasing the lock between them. If the index is resized, or
+         * another removal shifts entries not yet examined back into the part already scanned, between batches,
+         * processing starts again from the beginning without releasing the lock.</p>
+         * 
+         * @param context a storage context label, or null for all contexts
+         * @param now remove only records expired at this time, or null for all records
+         * 
+         * @return the number of records removed
+         */
+        int removeAll(@Nullable final String context, @Nullable final Long now) {
+            int removed = 0;
+            int pos = 0;
+            long[] scanned = null;
+            long expectedRemovals = 0;
+            boolean exclusive = false;
+            boolean more = true;
+            while (more) {
+                lock.lock();
+                try {
+                    if (scanned == null) {
+                        scanned = index;
+                    } else if (scanned != index || removals != expectedRemovals) {
+                        scanned = index;
+                        pos = 0;
+                        exclusive = true;
+                    }
+                    final int end = exclusive ? index.length : Math.min(pos + REAP_BATCH_SIZE, index.length);
+                    while (pos < end) {
+                        final long handle = index[pos];
+                        if (handle != NONE && (context == null || contextMatches(handle, context))
+                                && (now == null || isExpired(handle, now))) {
+                            // Deletion shifts a later entry into this position, so examine it again.
+                            removeAt(pos);
+                            free(handle);
+                            removed++;
+                        } else {
+                            pos++;
+                        }
+                    }
+                    more = pos < index.length;
+                    expectedRemovals = removals;
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return removed;
+        }
+        
+        /**
+         * Get whether a record has expired.
+         * 
+         * @param handle slot handle
+         * @param now the current time
+         * 
+         * @return true iff the record has expired
+         */
+        private boolean isExpired(final long handle, final long now) {
+            final long exp = buffer(handle).getLong(offset(handle) + EXPIRATION);
+            return exp != 0 && exp <= now;
+        }
+        
+        /**
+         * Get the expiration of a record.
+         * 
+         * @param buffer the slab buffer
+         * @param offset the slot offset
+         * 
+         * @return the expiration, or null
+         */
+        @Nullable private Long getExpiration(@Nonnull final ByteBuffer buffer, final int offset) {
+            final long exp = buffer.getLong(offset + EXPIRATION);
+            return exp != 0 ? exp : null;
+        }
+        
+        /**
+         * Get the size class for a record.
+         * 
+         * @param context a storage context label
+         * @param key a key unique to context
+         * @param value value to store
+         * 
+         * @return the size class
+         * 
+         * @throws IOException if the record is too large
+         */
+        private int sizeClass(@Nonnull final String context, @Nonnull final String key,
+                @Nonnull final String value) throws IOException {
+            final long recordSize = HEADER_SIZE + 2L * (context.length() + key.length() + value.length());
+            for (int i = 0; i < slabClasses.length; i++) {
+                if (recordSize <= slabClasses[i].slotSize) {
+                    return i;
+                }
+            }
+            throw new IOException("Record exceeds the configured context, key and value size limits");
+        }
+        
+        /**
+         * Get the size class of a slot handle.
+         * 
+         * @param handle slot handle
+         * 
+         * @return the size class
+         */
+        private static int sizeClass(final long handle) {
+            return (int) (handle >>> 56);
+        }
+        
+        /**
+         * Get the slab buffer of a slot handle.
+         * 
+         * @param handle slot handle
+         * 
+         * @return the slab buffer
+         */
+        @Nonnull private ByteBuffer buffer(final long handle) {
+            return slabClasses[sizeClass(handle)].slabs.get((int) (handle >>> 32) & 0xFFFFFF);
+        }
+        
+        /**
+         * Get the offset within its slab buffer of a slot handle.
+         * 
+         * @param handle slot handle
+         * 
+         * @return the slot offset
+         */
+        private int offset(final long handle) {
+            return (int) handle * slabClasses[sizeClass(handle)].slotSize;
+        }
+        
+        /**
+         * Allocate a slot, evicting the least recently used record of the size class if necessary, or if it holds
+         * no records, reclaiming a slab from another size class.
+         * 
+         * @param sizeClass the size class
+         * @param retainedClass a size class whose slabs must not be reclaimed, or -1
+         * 
+         * @return the slot handle
+         * 
+         * @throws IOException if no slot can be allocated
+         */
+        private long allocate(final int sizeClass, final int retainedClass) throws IOException {
+            final SlabClass slabClass = slabClasses[sizeClass];
+            
+            if (slabClass.freeHead != NONE) {
+                final long handle = slabClass.freeHead;
+                slabClass.freeHead = buffer(handle).getLong(offset(handle) + NEXT);
+                return handle;
+            } else if (!slabClass.slabs.isEmpty() && slabClass.carved < slabClass.slabSize / slabClass.slotSize) {
+                return ((long) sizeClass << 56) | ((long) (slabClass.slabs.size() - 1) << 32) | slabClass.carved++;
+            } else if (allocatedMemory + slabClass.slabSize <= maxMemory) {
+                slabClass.slabs.add(ByteBuffer.allocateDirect(slabClass.slabSize));
+                allocatedMemory += slabClass.slabSize;
+                slabClass.carved = 1;
+                return ((long) sizeClass << 56) | ((long) (slabClass.slabs.size() - 1) << 32);
+            }
+            
+            final long victim = slabClass.lruTail;
+            if (victim != NONE) {
+                removeAt(findHandle(buffer(victim).getInt(offset(victim) + HASH), victim));
+                unlink(victim);
+                return victim;
+            }
+            
+            slabClass.slabs.add(reclaimSlab(sizeClass, retainedClass));
+            slabClass.carved = 1;
+            return ((long) sizeClass << 56) | ((long) (slabClass.slabs.size() - 1) << 32);
+        }
+        
+        /**
+         * Reclaim memory for a slab of a size class from the other size classes, taking the last slab of the
+         * size class occupying the most memory until enough is available.
+         * 
+         * @param sizeClass the size class requiring a slab
+         * @param retainedClass a size class whose slabs must not be reclaimed, or -1
+         * 
+         * @return the slab buffer, which has been accounted for in the allocated memory
+         * 
+         * @throws IOException if not enough memory can be reclaimed
+         */
+        @Nonnull private ByteBuffer reclaimSlab(final int sizeClass, final int retainedClass) throws IOException {
+            final int slabSize = slabClasses[sizeClass].slabSize;
+            while (true) {
+                int victimClass = -1;
+                long victimMemory = 0;
+                for (int i = 0; i < slabClasses.length; i++) {
+                    final long memory = (long) slabClasses[i].slabs.size() * slabClasses[i].slabSize;
+                    if (i != sizeClass && i != retainedClass && memory > victimMemory) {
+                        victimClass = i;
+                        victimMemory = memory;
+                    }
+                }
+                if (victimClass < 0) {
+                    throw new IOException("Insufficient memory available to store record");
+                }
+                
+                final ByteBuffer slab = releaseLastSlab(victimClass);
+                if (slab.capacity() == slabSize) {
+                    allocatedMemory += slabSize;
+                    return slab;
+                } else if (allocatedMemory + slabSize <= maxMemory) {
+                    allocatedMemory += slabSize;
+                    return ByteBuffer.allocateDirect(slabSize);
+                }
+            }
+        }
+        
+        /**
+         * Release the last slab of a size class, evicting the records it holds.
+         * 
+         * @param sizeClass the size class
+         * 
+         * @return the released slab buffer, which is no longer accounted for in the allocated memory
+         */
+        @Nonnull private ByteBuffer releaseLastSlab(final int sizeClass) {
+            final SlabClass slabClass = slabClasses[sizeClass];
+            final long slab = slabClass.slabs.size() - 1;
+            
+            for (int i = 0; i < slabClass.carved; i++) {
+                final long handle = ((long) sizeClass << 56) | (slab << 32) | i;
+                final ByteBuffer buffer = buffer(handle);
+                final int offset = offset(handle);
+                if (buffer.getInt(offset + VALUE_LENGTH) >= 0) {
+                    removeAt(findHandle(buffer.getInt(offset + HASH), handle));
+                    unlink(handle);
+                }
+            }
+            
+            // Drop the slab's free slots from the free list.
+            long prev = NONE;
+            long handle = slabClass.freeHead;
+            while (handle != NONE) {
+                final long next = buffer(handle).getLong(offset(handle) + NEXT);
+                if (((handle >>> 32) & 0xFFFFFF) == slab) {
+                    if (prev == NONE) {
+                        slabClass.freeHead = next;
+                    } else {
+                        buffer(prev).putLong(offset(prev) + NEXT, next);
+                    }
+                } else {
+                    prev = handle;
+                }
+                handle = next;
+            }
+            
+            // Any remaining slab is fully carved.
+            slabClass.carved = slabClass.slabSize / slabClass.slotSize;
+            allocatedMemory -= slabClass.slabSize;
+            return slabClass.slabs.remove((int) slab);
+        }
+        
+        /**
+         * Free a slot, marking it as holding no record.
+         * 
+         * @param handle slot handle
+         */
+        private void free(final long handle) {
+            unlink(handle);
+            final SlabClass slabClass = slabClasses[sizeClass(handle)];
+            buffer(handle).putInt(offset(handle) + VALUE_LENGTH, -1);
+            buffer(handle).putLong(offset(handle) + NEXT, slabClass.freeHead);
+            slabClass.freeHead = handle;
+        }
+        
+        /**
+         * Link a slot at the head of its size class's LRU list.
+         * 
+         * @param handle slot handle
+         */
+        private void linkFirst(final long handle) {
+            final SlabClass slabClass = slabClasses[sizeClass(handle)];
+            final ByteBuffer buffer = buffer(handle);
+            final int offset = offset(handle);
+            buffer.putLong(offset + PREV, NONE);
+            buffer.putLong(offset + NEXT, slabClass.lruHead);
+            if (slabClass.lruHead != NONE) {
+                buffer(slabClass.lruHead).putLong(offset(slabClass.lruHead) + PREV, handle);
+            } else {
+                slabClass.lruTail = handle;
+            }
+            slabClass.lruHead = handle;
+        }
+        
+        /**
+         * Unlink a slot from its size class's LRU list.
+         * 
+         * @param handle slot handle
+         */
+        private void unlink(final long handle) {
+            final SlabClass slabClass = slabClasses[sizeClass(handle)];
+            final long prev = buffer(handle).getLong(offset(handle) + PREV);
+            final long next = buffer(handle).getLong(offset(handle) + NEXT);
+            if (prev != NONE) {
+                buffer(prev).putLong(offset(prev) + NEXT, next);
+            } else {
+                slabClass.lruHead = next;
+            }
+            if (next != NONE) {
+                buffer(next).putLong(offset(next) + PREV, prev);
+            } else {
+                slabClass.lruTail = prev;
+            }
+        }
+        
+        /**
+         * Write a record into a slot.
+         * 
+         * @param handle slot handle
+         * @param hash the hash of the context and key
+         * @param version record version
+         * @param expiration expiration, or null
+         * @param context a storage context label
+         * @param key a key unique to context
+         * @param value value to store
+         */
+        private void write(final long handle, final int hash, final long version, @Nullable final Long expiration,
+                @Nonnull final String context, @Nonnull final String key, @Nonnull final String value) {
+            final ByteBuffer buffer = buffer(handle);
+            final int offset = offset(handle);
+            buffer.putLong(offset + VERSION, version);
+            buffer.putLong(offset + EXPIRATION, expiration != null ? expiration : 0);
+            buffer.putInt(offset + HASH, hash);
+            buffer.putInt(offset + CONTEXT_LENGTH, context.length());
+            buffer.putInt(offset + KEY_LENGTH, key.length());
+            buffer.putInt(offset + VALUE_LENGTH, value.length());
+            int pos = offset + HEADER_SIZE;
+            pos = writeString(buffer, pos, context);
+            pos = writeString(buffer, pos, key);
+            writeString(buffer, pos, value);
+        }
+        
+        /**
+         * Write the characters of a string.
+         * 
+         * @param buffer the slab buffer
+         * @param pos the position at which to write
+         * @param s the string
+         * 
+         * @return the position following the string
+         */
+        private static int writeString(@Nonnull final ByteBuffer buffer, final int pos, @Nonnull final String s) {
+            int p = pos;
+            for (int i = 0; i < s.length(); i++) {
+                buffer.putChar(p, s.charAt(i));
+                p += 2;
+            }
+            return p;
+        }
+        
+        /**
+         * Read the characters of a string.
+         * 
+         * @param buffer the slab buffer
+         * @param pos the position at which to read
+         * @param length the number of characters
+         * 
+         * @return the string
+         */
+        @Nonnull private static String readString(@Nonnull final ByteBuffer buffer, final int pos,
+                final int length) {
+            final char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = buffer.getChar(pos + 2 * i);
+            }
+            return new String(chars);
+        }
+        
+        /**
+         * Compare the characters of a string.
+         * 
+         * @param buffer the slab buffer
+         * @param pos the position at which to compare
+         * @param s the string
+         * 
+         * @return true iff the characters match
+         */
+        private static boolean stringMatches(@Nonnull final ByteBuffer buffer, final int pos,
+                @Nonnull final String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (buffer.getChar(pos + 2 * i) != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Get whether a slot holds a record in a given context.
+         * 
+         * @param handle slot handle
+         * @param context a storage context label
+         * 
+         * @return true iff the record's context matches
+         */
+        private boolean contextMatches(final long handle, @Nonnull final String context) {
+            final ByteBuffer buffer = buffer(handle);
+            final int offset = offset(handle);
+            return buffer.getInt(offset + CONTEXT_LENGTH) == context.length()
+                    && stringMatches(buffer, offset + HEADER_SIZE, context);
+        }
+        
+        /**
+         * Get whether a slot holds a record with a given context and key.
+         * 
+         * @param handle slot handle
+         * @param context a storage context label
+         * @param key a key unique to context
+         * 
+         * @return true iff the record's context and key match
+         */
+        private boolean matches(final long handle, @Nonnull final String context, @Nonnull final String key) {
+            final ByteBuffer buffer = buffer(handle);
+            final int offset = offset(handle);
+            return buffer.getInt(offset + KEY_LENGTH) == key.length() && contextMatches(handle, context)
+                    && stringMatches(buffer, offset + HEADER_SIZE + 2 * context.length(), key);
+        }
+        
+        /**
+         * Find the index position of a record.
+         * 
+         * @param hash the hash of the context and key
+         * @param context a storage context label
+         * @param key a key unique to context
+         * 
+         * @return the index position, or -1
+         */
+        private int find(final int hash, @Nonnull final String context, @Nonnull final String key) {
+            final int mask = index.length - 1;
+            int pos = hash & mask;
+            while (index[pos] != NONE) {
+                if (hashes[pos] == hash && matches(index[pos], context, key)) {
+                    return pos;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return -1;
+        }
+        
+        /**
+         * Find the index position of a slot handle.
+         * 
+         * @param hash the hash of the record's context and key
+         * @param handle slot handle
+         * 
+         * @return the index position
+         */
+        private int findHandle(final int hash, final long handle) {
+            final int mask = index.length - 1;
+            int pos = hash & mask;
+            while (index[pos] != handle) {
+                pos = (pos + 1) & mask;
+            }
+            return pos;
+        }
+        
+        /**
+         * Add a slot handle to the index, growing it if necessary.
+         * 
+         * @param hash the hash of the record's context and key
+         * @param handle slot handle
+         */
+        private void insert(final int hash, final long handle) {
+            if ((size + 1) * 4L > index.length * 3L) {
+                final long[] oldIndex = index;
+                final int[] oldHashes = hashes;
+                index = new long[oldIndex.length * 2];
+                Arrays.fill(index, NONE);
+                hashes = new int[oldIndex.length * 2];
+                for (int i = 0; i < oldIndex.length; i++) {
+                    if (oldIndex[i] != NONE) {
+                        place(oldHashes[i], oldIndex[i]);
+                    }
+                }
+            }
+            place(hash, handle);
+            size++;
+        }
+        
+        /**
+         * Place a slot handle at the first free index position.
+         * 
+         * @param hash the hash of the record's context and key
+         * @param handle slot handle
+         */
+        private void place(final int hash, final long handle) {
+            final int mask = index.length - 1;
+            int pos = hash & mask;
+            while (index[pos] != NONE) {
+                pos = (pos + 1) & mask;
+            }
+            index[pos] = handle;
+            hashes[pos] = hash;
+        }
+        
+        /**
+         * Remove an index entry, shifting subsequent entries of the probe sequence back into the gap.
+         * 
+         * @param pos the index position
+         */
+        private void removeAt(final int pos) {
+            final int mask = index.length - 1;
+            int gap = pos;
+            int next = pos;
+            index[gap] = NONE;
+            while (true) {
+                next = (next + 1) & mask;
+                if (index[next] == NONE) {
+                    break;
+                }
+                final int home = hashes[next] & mask;
+                final boolean inPlace = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+                if (!inPlace) {
+                    index[gap] = index[next];
+                    hashes[gap] = hashes[next];
+                    index[next] = NONE;
+                    gap = next;
+                }
+            }
+            size--;
+            removals++;
+        }
+    }
+
+}
@@ -0,0 +1,663 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.storage.AbstractStorageService;
+import org.opensaml.storage.MutableStorageRecord;
+import org.opensaml.storage.StorageCapabilitiesEx;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.VersionMismatchException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link org.opensaml.storage.StorageService} that stores data in-memory in a shared data
+ * structure with no persistence, suited to heavily concurrent use.
+ * 
+ * <p>Unlike {@link MemoryStorageService}, which guards all of its data with a single lock, records are
+ * partitioned across a number of shards by a hash of their context and key, each shard having its own lock, so
+ * that operations on unrelated records do not contend. Operations on an entire context visit each shard in turn,
+ * and are therefore not atomic with respect to concurrent operations on that context's records.</p>
+ * 
+ * <p>Each shard also maintains an index of record expirations in buckets of {@link #EXPIRATION_TICK}
+ * milliseconds, so that the background cleanup task only visits records which have expired, and does so in
+ * bounded batches, releasing each shard's lock between them.</p>
+ * 
+ * @since 4.1.0
+ */
+public class ShardedMemoryStorageService extends AbstractStorageService implements StorageCapabilitiesEx {
+
+    /** Default number of shards. */
+    public static final int DEFAULT_SHARD_COUNT = 16;
+    
+    /** Granularity in milliseconds of the expiration index. */
+    public static final long EXPIRATION_TICK = 1000;
+    
+    /** Maximum number of index entries processed by the cleanup task per acquisition of a shard's lock. */
+    private static final int REAP_BATCH_SIZE = 1000;
+    
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(ShardedMemoryStorageService.class);
+
+    /** Number of shards. */
+    @Positive private int shardCount;
+    
+    /** The shards. */
+    @NonnullAfterInit @NonnullElements private Shard[] shards;
+    
+    /** Constructor. */
+    public ShardedMemoryStorageService() {
+        setContextSize(Integer.MAX_VALUE);
+        setKeySize(Integer.MAX_VALUE);
+        setValueSize(Integer.MAX_VALUE);
+        shardCount = DEFAULT_SHARD_COUNT;
+    }
+    
+    /**
+     * Get the number of shards across which records are partitioned.
+     * 
+     * @return number of shards
+     */
+    @Positive public int getShardCount() {
+        return shardCount;
+    }
+    
+    /**
+     * Set the number of shards across which records are partitioned.
+     * 
+     * <p>Defaults to {@link #DEFAULT_SHARD_COUNT}.</p>
+     * 
+     * @param count number of shards
+     */
+    public void setShardCount(@Positive final int count) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        shardCount = (int) Constraint.isGreaterThan(0, count, "Shard count must be greater than 0");
+    }
+
+    /** {@inheritDoc} */
+    public boolean isServerSide() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isClustered() {
+        return false;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        super.doInitialize();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        super.doDestroy();
+        shards = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable final Long expiration) throws IOException {
+        final Shard shard = getShard(context, key);
+        final Lock writeLock = shard.getLock().writeLock();
+        
+        try {
+            writeLock.lock();
+            
+            // Create new context if necessary.
+            final Map<String, MutableStorageRecord<?>> dataMap =
+                    shard.getContextMap().computeIfAbsent(context, c -> new HashMap<>());
+            
+            // Check for a duplicate.
+            final StorageRecord<?> record = dataMap.get(key);
+            final Long oldExpiration = record != null ? record.getExpiration() : null;
+            if (record != null) {
+                // Not yet expired?
+                final Long exp = record.getExpiration();
+                if (exp == null || System.currentTimeMillis() < exp) {
+                    return false;
+                }
+                
+                // It's dead, so we can just replace it.
+            }
+            
+            dataMap.put(key, new MutableStorageRecord<>(value, expiration));
+            shard.reindex(context, key, oldExpiration, expiration);
+            log.trace("Inserted record '{}' in context '{}' with expiration '{}'", key, context, expiration);
+            return true;
+            
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public <T> StorageRecord<T> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException {
+        return this.<T>readImpl(context, key, null).getSecond();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull public <T> Pair<Long, StorageRecord<T>> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, final long version) throws IOException {
+        return readImpl(context, key, version);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable final Long expiration) throws IOException {
+        try {
+            return updateImpl(null, context, key, value, expiration) != null;
+        } catch (final VersionMismatchException e) {
+            throw new IOException("Unexpected exception thrown by update.", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable public Long updateWithVersion(final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value, @Nullable final Long expiration)
+                    throws IOException, VersionMismatchException {
+        return updateImpl(version, context, key, value, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean updateExpiration(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nullable final Long expiration) throws IOException {
+        try {
+            return updateImpl(null, context, key, null, expiration) != null;
+        } catch (final VersionMismatchException e) {
+            throw new IOException("Unexpected exception thrown by update.", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean deleteWithVersion(final long version, final String context, final String key) throws IOException,
+            VersionMismatchException {
+        return deleteImpl(version, context, key);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public boolean delete(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
+            throws IOException {
+        try {
+            return deleteImpl(null, context, key);
+        } catch (final VersionMismatchException e) {
+            throw new IOException("Unexpected exception thrown by delete.", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateContextExpiration(@Nonnull @NotEmpty final String context, @Nullable final Long expiration)
+            throws IOException {
+        
+        for (final Shard shard : shards) {
+            final Lock writeLock = shard.getLock().writeLock();
+            try {
+                writeLock.lock();
+
+                final Map<String, MutableStorageRecord<?>> dataMap = shard.getContextMap().get(context);
+                if (dataMap != null) {
+                    final Long now = System.currentTimeMillis();
+                    for (final Map.Entry<String, MutableStorageRecord<?>> entry : dataMap.entrySet()) {
+                        final Long exp = entry.getValue().getExpiration();
+                        if (exp == null || now < exp) {
+                            entry.getValue().setExpiration(expiration);
+                            shard.reindex(context, entry.getKey(), exp, expiration);
+                        }
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        
+        log.debug("Updated expiration of valid records in context '{}' to '{}'", context, expiration);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
+        
+        for (final Shard shard : shards) {
+            final Lock writeLock = shard.getLock().writeLock();
+            try {
+                writeLock.lock();
+                shard.getContextMap().remove(context);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        
+        log.debug("Deleted context '{}'", context);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reap(@Nonnull @NotEmpty final String context) throws IOException {
+        
+        for (final Shard shard : shards) {
+            final Lock writeLock = shard.getLock().writeLock();
+            try {
+                writeLock.lock();
+                
+                final Map<String, MutableStorageRecord<?>> dataMap = shard.getContextMap().get(context);
+                if (dataMap != null) {
+                    final long now = System.currentTimeMillis();
+                    dataMap.values().removeIf(record -> {
+                        final Long exp = record.getExpiration();
+                        return exp != null && exp <= now;
+                    });
+                    if (dataMap.isEmpty()) {
+                        shard.getContextMap().remove(context);
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Internal method to implement read functions.
+     *
+     * @param <T>           type of object 
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * @param version       only return record if newer than optionally supplied version
+     * 
+     * @return  a pair consisting of the version of the record read back, if any, and the record itself
+     * @throws IOException  if errors occur in the read process 
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull protected <T> Pair<Long,StorageRecord<T>> readImpl(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable final Long version) throws IOException {
+
+        final Shard shard = getShard(context, key);
+        final Lock readLock = shard.getLock().readLock();
+        try {
+            readLock.lock();
+            
+            final Map<String, MutableStorageRecord<?>> dataMap = shard.getContextMap().get(context);
+            if (dataMap == null) {
+                log.debug("Read failed, context '{}' not found", context);
+                return new Pair<>();
+            }
+
+            final StorageRecord<?> record = dataMap.get(key);
+            if (record == null) {
+                log.debug("Read failed, key '{}' not found in context '{}'", key, context);
+                return new Pair<>();
+            }
+            
+            final Long exp = record.getExpiration();
+            if (exp != null && System.currentTimeMillis() >= exp) {
+                log.debug("Read failed, key '{}' expired in context '{}'", key, context);
+                return new Pair<>();
+            }
+            
+            if (version != null && record.getVersion() == version) {
+                // Nothing's changed, so just echo back the version.
+                return new Pair<>(version, null);
+            }
+            
+            return new Pair<>(record.getVersion(), (StorageRecord<T>) record);
+            
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Internal method to implement update functions.
+     * 
+     * @param version       only update if the current version matches this value
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * @param value         updated value
+     * @param expiration    expiration for record. or null
+     * 
+     * @return the version of the record after update, null if no record exists
+     * @throws IOException  if errors occur in the update process
+     * @throws VersionMismatchException if the record has already been updated to a newer version
+     */
+    @Nullable protected Long updateImpl(@Nullable final Long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable final String value, @Nullable final Long expiration)
+                    throws IOException, VersionMismatchException {
+
+        final Shard shard = getShard(context, key);
+        final Lock writeLock = shard.getLock().writeLock();
+        try {
+            writeLock.lock();
+            
+            final Map<String, MutableStorageRecord<?>> dataMap = shard.getContextMap().get(context);
+            if (dataMap == null) {
+                log.debug("Update failed, context '{}' not found", context);
+                return null;
+            }
+            
+            final MutableStorageRecord<?> record = dataMap.get(key);
+            if (record == null) {
+                log.debug("Update failed, key '{}' not found in context '{}'", key, context);
+                return null;
+            }
+            
+            final Long exp = record.getExpiration();
+            if (exp != null && System.currentTimeMillis() >= exp) {
+                log.debug("Update failed, key '{}' expired in context '{}'", key, context);
+                return null;
+            }
+    
+            if (version != null && version != record.getVersion()) {
+                // Caller is out of sync.
+                throw new VersionMismatchException();
+            }
+    
+            if (value != null) {
+                record.setValue(value);
+                record.incrementVersion();
+            }
+    
+            record.setExpiration(expiration);
+            shard.reindex(context, key, exp, expiration);
+    
+            log.trace("Updated record '{}' in context '{}' with expiration '{}'", key, context, expiration);
+
+            return record.getVersion();
+            
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Internal method to implement delete functions.
+     * 
+     * @param version       only update if the current version matches this value
+     * @param context       a storage context label
+     * @param key           a key unique to context
+     * 
+     * @return true iff the record existed and was deleted
+     * @throws IOException  if errors occur in the update process
+     * @throws VersionMismatchException if the record has already been updated to a newer version
+     */
+    protected boolean deleteImpl(@Nullable @Positive final Long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+
+        final Shard shard = getShard(context, key);
+        final Lock writeLock = shard.getLock().writeLock();
+        try {
+            writeLock.lock();
+
+            final Map<String, MutableStorageRecord<?>> dataMap = shard.getContextMap().get(context);
+            if (dataMap == null) {
+                log.debug("Deleting record '{}' in context '{}'....context not found", key, context);
+                return false;
+            }
+
+            final MutableStorageRecord<?> record = dataMap.get(key);
+            if (record == null) {
+                log.debug("Deleting record '{}' in context '{}'....key not found", key, context);
+                return false;
+            } else if (version != null && record.getVersion() != version) {
+                throw new VersionMismatchException();
+            } else {
+                dataMap.remove(key);
+                shard.reindex(context, key, record.getExpiration(), null);
+                log.trace("Deleted record '{}' in context '{}'", key, context);
+                if (dataMap.isEmpty()) {
+                    shard.getContextMap().remove(context);
+                }
+                return true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Get the shard responsible for a record.
+     * 
+     * @param context a storage context label
+     * @param key a key unique to context
+     * 
+     * @return the responsible shard
+     */
+    @Nonnull private Shard getShard(@Nonnull final String context, @Nonnull final String key) {
+        return shards[((31 * context.hashCode() + key.hashCode()) & Integer.MAX_VALUE) % shards.length];
+    }
+    
+// Checkstyle: AnonInnerLength OFF
+    /** {@inheritDoc} */
+    @Override
+    @Nullable protected TimerTask getCleanupTask() {
+        return new TimerTask() {
+            
+            /** {@inheritDoc} */
+            @Override
+            public void run() {
+                log.debug("Running cleanup task");
+                
+                final long now = System.currentTimeMillis();
+                int purged = 0;
+                for (final Shard shard : shards) {
+                    boolean more;
+                    do {
+                        // Release the lock between batches, so that writers are never held up for long.
+                        final Lock writeLock = shard.getLock().writeLock();
+                        try {
+                            writeLock.lock();
+                            purged += shard.reapExpired(now, REAP_BATCH_SIZE);
+                            more = shard.hasElapsedBuckets(now);
+                        } finally {
+                            writeLock.unlock();
+                        }
+                    } while (more);
+                }
+                
+                if (purged > 0) {
+                    log.debug("Purged {} expired record(s) from storage", purged);
+                } else {
+                    log.debug("No expired records found in storage");
+                }
+            }
+        };
+    }
+// Checkstyle: AnonInnerLength ON
+
+    /** A partition of the stored records, with its own lock and expiration index. */
+    private static final class Shard {
+        
+        /** Lock guarding the shard's data. */
+        @Nonnull private final ReadWriteLock lock;
+        
+        /** Map of contexts. */
+        @Nonnull @NonnullElements private final Map<String, Map<String, MutableStorageRecord<?>>> contextMap;
+        
+        /**
+         * Index of context/key pairs by expiration bucket.
+         * 
+         * <p>A record's entry is moved when its expiration changes bucket, and dropped when it is deleted
+         * individually. Entries for records removed along with their whole context are left behind, so each
+         * entry is re-checked against the record when its bucket is processed.</p>
+         */
+        @Nonnull private final NavigableMap<Long, Set<Pair<String,String>>> expirations;
+        
+        /** Constructor. */
+        Shard() {
+            lock = new ReentrantReadWriteLock();
+            contextMap = new HashMap<>();
+            expirations = new TreeMap<>();
+        }
+        
+        /**
+         * Get the lock guarding the shard's data.
+         * 
+         * @return the lock
+         */
+        @Nonnull ReadWriteLock getLock() {
+            return lock;
+        }
+        
+        /**
+         * Get the map of contexts.
+         * 
+         * <p>Must be called while holding the shard's lock.</p>
+         * 
+         * @return map of contexts
+         */
+        @Nonnull @NonnullElements Map<String, Map<String, MutableStorageRecord<?>>> getContextMap() {
+            return contextMap;
+        }
+        
+        /**
+         * Move a record within the expiration index following a change to its expiration.
+         * 
+         * <p>Nothing is done if the old and new expirations fall in the same bucket, so that records whose
+         * expiration is extended frequently don't churn the index.</p>
+         * 
+         * <p>Must be called while holding the shard's write lock.</p>
+         * 
+         * @param context a storage context label
+         * @param key a key unique to context
+         * @param oldExpiration previous expiration of the record, or null
+         * @param newExpiration new expiration of the record, or null
+         */
+        void reindex(@Nonnull final String context, @Nonnull final String key, @Nullable final Long oldExpiration,
+                @Nullable final Long newExpiration) {
+            final Long oldTick = oldExpiration != null ? oldExpiration / EXPIRATION_TICK : null;
+            final Long newTick = newExpiration != null ? newExpiration / EXPIRATION_TICK : null;
+            if (Objects.equals(oldTick, newTick)) {
+                return;
+            }
+            
+            final Pair<String,String> entry = new Pair<>(context, key);
+            if (oldTick != null) {
+                final Set<Pair<String,String>> bucket = expirations.get(oldTick);
+                if (bucket != null && bucket.remove(entry) && bucket.isEmpty()) {
+                    expirations.remove(oldTick);
+                }
+            }
+            if (newTick != null) {
+                expirations.computeIfAbsent(newTick, t -> new HashSet<>()).add(entry);
+            }
+        }
+        
+        /**
+         * Get whether any expiration buckets have fully elapsed.
+         * 
+         * <p>Must be called while holding the shard's lock.</p>
+         * 
+         * @param now the current time
+         * 
+         * @return true iff the index contains buckets which have fully elapsed
+         */
+        boolean hasElapsedBuckets(final long now) {
+            return !expirations.isEmpty() && expirations.firstKey() < now / EXPIRATION_TICK;
+        }
+        
+        /**
+         * Remove up to a maximum number of index entries from expiration buckets which have fully elapsed,
+         * purging the corresponding records if they have expired.
+         * 
+         * <p>Must be called while holding the shard's write lock.</p>
+         * 
+         * @param now the current time
+         * @param max maximum number of index entries to process
+         * 
+         * @return the number of records purged
+         */
+        int reapExpired(final long now, final int max) {
+            final long currentTick = now / EXPIRATION_TICK;
+            int processed = 0;
+            int purged = 0;
+            
+            final Iterator<Map.Entry<Long, Set<Pair<String,String>>>> buckets =
+                    expirations.headMap(currentTick, false).entrySet().iterator();
+            while (processed < max && buckets.hasNext()) {
+                final Set<Pair<String,String>> bucket = buckets.next().getValue();
+                final Iterator<Pair<String,String>> entries = bucket.iterator();
+                while (processed < max && entries.hasNext()) {
+                    final Pair<String,String> entry = entries.next();
+                    entries.remove();
+                    processed++;
+                    
+                    final Map<String, MutableStorageRecord<?>> dataMap = contextMap.get(entry.getFirst());
+                    if (dataMap != null) {
+                        final MutableStorageRecord<?> record = dataMap.get(entry.getSecond());
+                        final Long exp = record != null ? record.getExpiration() : null;
+                        if (exp != null && exp <= now) {
+                            dataMap.remove(entry.getSecond());
+                            purged++;
+                            if (dataMap.isEmpty()) {
+                                contextMap.remove(entry.getFirst());
+                            }
+                        }
+                    }
+                }
+                if (bucket.isEmpty()) {
+                    buckets.remove();
+                }
+            }
+            
+            return purged;
+        }
+    }
+
+}
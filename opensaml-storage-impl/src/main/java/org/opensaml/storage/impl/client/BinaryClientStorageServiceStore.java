@@ -0,0 +1,504 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.opensaml.storage.MutableStorageRecord;
+import org.opensaml.storage.impl.client.ClientStorageService.ClientStorageSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.component.AbstractInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.security.DataSealerException;
+
+/**
+ * Compact binary storage for {@link ClientStorageService}.
+ * 
+ * <p>Records are written as length-prefixed UTF-8 strings and variable-length expirations, optionally
+ * deflated, and base64-encoded prior to encryption. A digest of the data last loaded or saved is retained
+ * so that a store marked dirty by operations that leave its content unchanged is not re-sealed, unless the
+ * remaining lifetime of the sealed data held by the client has fallen below a threshold, in which case it is
+ * re-sealed to refresh it.</p>
+ * 
+ * @since 4.1.0
+ */
+public class BinaryClientStorageServiceStore extends AbstractClientStorageServiceStore {
+
+    /** Format version written as the first byte of the data. */
+    private static final byte FORMAT_VERSION = 1;
+
+    /** Flag indicating the body is deflated. */
+    private static final byte FLAG_DEFLATED = 1;
+
+    /** Flag indicating the expiration of the sealed data precedes the body. */
+    private static final byte FLAG_SEALED_UNTIL = 2;
+
+    /** Lifetime of sealed data whose records do not expire. */
+    @Nonnull private static final Duration DEFAULT_SEAL_LIFETIME = Duration.ofDays(1);
+
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(BinaryClientStorageServiceStore.class);
+
+    /** Minimum size of data to compress, or -1 to disable compression. */
+    private final int compressionThreshold;
+
+    /** Remaining lifetime of sealed data below which unchanged data is re-sealed. */
+    @Nonnull private final Duration resealThreshold;
+
+    /** Digest of the data held by the client, if known. */
+    @Nullable private byte[] baseline;
+
+    /** Expiration of the sealed data held by the client, or 0 if unknown. */
+    private long sealedUntil;
+
+    /**
+     * Constructor.
+     *
+     * @param threshold minimum size of data to compress, or -1 to disable compression
+     */
+    public BinaryClientStorageServiceStore(final int threshold) {
+        this(threshold, BinaryClientStorageServiceStoreFactory.DEFAULT_RESEAL_THRESHOLD);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param threshold minimum size of data to compress, or -1 to disable compression
+     * @param reseal remaining lifetime of sealed data below which unchanged data is re-sealed
+     */
+    public BinaryClientStorageServiceStore(final int threshold, @Nonnull final Duration reseal) {
+        compressionThreshold = threshold;
+        resealThreshold = Constraint.isNotNull(reseal, "Re-seal threshold cannot be null");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void markStale() {
+        baseline = null;
+        setDirty(true);
+    }
+
+    /** {@inheritDoc} */
+    public void doLoad(@Nullable @NotEmpty final String raw) throws IOException {
+        final byte[] data;
+        try {
+            data = Base64.getDecoder().decode(raw);
+        } catch (final IllegalArgumentException e) {
+            log.error("Found invalid encoding while parsing context map");
+            throw new IOException(e);
+        }
+
+        if (data.length < 2 || data[0] != FORMAT_VERSION) {
+            log.error("Found unsupported data format while parsing context map");
+            throw new IOException("Unsupported data format");
+        }
+
+        int offset = 2;
+        long sealed = 0;
+        if ((data[1] & FLAG_SEALED_UNTIL) != 0) {
+            final ByteArrayInputStream header = new ByteArrayInputStream(data, offset, data.length - offset);
+            try {
+                sealed = readVarLong(new DataInputStream(header));
+            } catch (final EOFException e) {
+                log.error("Found truncated data while parsing context map");
+                throw new IOException(e);
+            }
+            offset = data.length - header.available();
+        }
+
+        final byte[] body;
+        if ((data[1] & FLAG_DEFLATED) != 0) {
+            body = inflate(data, offset);
+        } else {
+            body = Arrays.copyOfRange(data, offset, data.length);
+        }
+
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            final int contexts = readCount(in);
+            for (int i = 0; i < contexts; i++) {
+                final String context = readString(in);
+                final int records = readCount(in);
+                final Map<String,MutableStorageRecord<?>> dataMap =
+                        getContextMap().computeIfAbsent(context, c -> new HashMap<>(records));
+                for (int j = 0; j < records; j++) {
+                    final String key = readString(in);
+                    final String value = readString(in);
+                    final long exp = readVarLong(in);
+                    dataMap.put(key, new MutableStorageRecord<>(value, exp > 0 ? exp : null));
+                }
+            }
+            if (in.read() != -1) {
+                throw new IOException("Found trailing data after context map");
+            }
+        } catch (final EOFException e) {
+            log.error("Found truncated data while parsing context map");
+            throw new IOException(e);
+        }
+
+        baseline = digest(body);
+        sealedUntil = sealed;
+        setDirty(false);
+    }
+
+//Checkstyle: CyclomaticComplexity|MethodLength OFF
+    /** {@inheritDoc} */
+    @Nullable public ClientStorageServiceOperation save(@Nonnull final ClientStorageService storageService)
+            throws IOException {
+
+        if (!isDirty()) {
+            log.trace("{} Storage state has not been modified, save operation skipped", storageService.getLogPrefix());
+            return null;
+        }
+
+        final long start = System.nanoTime();
+        long exp = 0L;
+        final long now = System.currentTimeMillis();
+        int contexts = 0;
+
+        final ByteArrayOutputStream contextSink = new ByteArrayOutputStream(256);
+        final ByteArrayOutputStream recordSink = new ByteArrayOutputStream(256);
+        for (final Map.Entry<String,Map<String,MutableStorageRecord<?>>> context : getContextMap().entrySet()) {
+            recordSink.reset();
+            int records = 0;
+            for (final Map.Entry<String,MutableStorageRecord<?>> entry : context.getValue().entrySet()) {
+                final MutableStorageRecord<?> record = entry.getValue();
+                final Long recexp = record.getExpiration();
+                if (recexp == null || recexp > now) {
+                    records++;
+                    writeString(recordSink, entry.getKey());
+                    writeString(recordSink, record.getValue());
+                    writeVarLong(recordSink, recexp != null ? recexp : 0);
+                    if (recexp != null) {
+                        exp = Math.max(exp, recexp);
+                    }
+                }
+            }
+            if (records > 0) {
+                contexts++;
+                writeString(contextSink, context.getKey());
+                writeVarLong(contextSink, records);
+                recordSink.writeTo(contextSink);
+            }
+        }
+
+        if (contexts == 0) {
+            log.trace("{} Data is empty", storageService.getLogPrefix());
+            baseline = null;
+            sealedUntil = 0;
+            setDirty(false);
+            return new ClientStorageServiceOperation(storageService.getId(), storageService.getStorageName(), null,
+                    getSource());
+        }
+
+        final ByteArrayOutputStream bodySink = new ByteArrayOutputStream(contextSink.size() + 5);
+        writeVarLong(bodySink, contexts);
+        contextSink.writeTo(bodySink);
+        final byte[] body = bodySink.toByteArray();
+
+        final long sealExp = exp > 0 ? exp : now + DEFAULT_SEAL_LIFETIME.toMillis();
+        final byte[] bodyDigest = digest(body);
+        if (Arrays.equals(bodyDigest, baseline)) {
+            // Data sealed until the expiration of its records cannot be extended by re-sealing it.
+            if (sealedUntil - now >= resealThreshold.toMillis() || (exp > 0 && exp <= sealedUntil)) {
+                log.trace("{} Storage state is unchanged from client copy, save operation skipped",
+                        storageService.getLogPrefix());
+                setDirty(false);
+                return null;
+            }
+            log.trace("{} Storage state is unchanged from client copy, but is due to be re-sealed",
+                    storageService.getLogPrefix());
+        }
+
+        byte[] payload = body;
+        byte flags = FLAG_SEALED_UNTIL;
+        if (compressionThreshold >= 0 && body.length >= compressionThreshold) {
+            final byte[] deflated = deflate(body);
+            if (deflated.length < body.length) {
+                payload = deflated;
+                flags |= FLAG_DEFLATED;
+            }
+        }
+
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream(payload.length + 12);
+        sink.write(FORMAT_VERSION);
+        sink.write(flags);
+        writeVarLong(sink, sealExp);
+        sink.write(payload);
+
+        final String raw = Base64.getEncoder().encodeToString(sink.toByteArray());
+        log.trace("{} Size of data before encryption is {} ({} uncompressed)", storageService.getLogPrefix(),
+                raw.length(), body.length);
+        try {
+            final String wrapped = storageService.getDataSealer().wrap(raw, Instant.ofEpochMilli(sealExp));
+            log.trace("{} Size of data after encryption is {}", storageService.getLogPrefix(), wrapped.length());
+            baseline = bodyDigest;
+            sealedUntil = sealExp;
+            setDirty(false);
+            return new ClientStorageServiceOperation(storageService.getId(), storageService.getStorageName(),
+                    wrapped, getSource(), body.length, Duration.ofNanos(System.nanoTime() - start));
+        } catch (final DataSealerException e) {
+            throw new IOException(e);
+        }
+    }
+//Checkstyle: CyclomaticComplexity|MethodLength ON
+
+    /**
+     * Deflate data.
+     * 
+     * @param data data to deflate
+     * 
+     * @return the deflated data
+     * 
+     * @throws IOException if an error occurs
+     */
+    @Nonnull private static byte[] deflate(@Nonnull final byte[] data) throws IOException {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            final ByteArrayOutputStream sink = new ByteArrayOutputStream(data.length);
+            try (final DeflaterOutputStream out = new DeflaterOutputStream(sink, deflater)) {
+                out.write(data);
+            }
+            return sink.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflate data.
+     * 
+     * @param data data to inflate
+     * @param offset offset of the deflated data
+     * 
+     * @return the inflated data
+     * 
+     * @throws IOException if an error occurs
+     */
+    @Nonnull private static byte[] inflate(@Nonnull final byte[] data, final int offset) throws IOException {
+        final Inflater inflater = new Inflater(true);
+        try (final InputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(data, offset, data.length - offset), inflater)) {
+            return in.readAllBytes();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Compute the digest of data.
+     * 
+     * @param data data to digest
+     * 
+     * @return the digest
+     * 
+     * @throws IOException if the digest algorithm is unavailable
+     */
+    @Nonnull private static byte[] digest(@Nonnull final byte[] data) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Write a length-prefixed UTF-8 string.
+     * 
+     * @param out output stream
+     * @param s string to write
+     */
+    private static void writeString(@Nonnull final ByteArrayOutputStream out, @Nonnull final String s) {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write a non-negative value in a variable number of bytes, seven bits at a time.
+     * 
+     * @param out output stream
+     * @param value value to write
+     */
+    private static void writeVarLong(@Nonnull final ByteArrayOutputStream out, @NonNegative final long value) {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    /**
+     * Read a length-prefixed UTF-8 string.
+     * 
+     * @param in input stream
+     * 
+     * @return the string
+     * 
+     * @throws IOException if an error occurs
+     */
+    @Nonnull private static String readString(@Nonnull final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[readCount(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a count or length, which must fit in the remaining data.
+     * 
+     * @param in input stream
+     * 
+     * @return the count
+     * 
+     * @throws IOException if an error occurs
+     */
+    @NonNegative private static int readCount(@Nonnull final DataInputStream in) throws IOException {
+        final long count = readVarLong(in);
+        if (count > in.available()) {
+            throw new EOFException("Count exceeds remaining data");
+        }
+        return (int) count;
+    }
+
+    /**
+     * Read a value written by {@link #writeVarLong(ByteArrayOutputStream, long)}.
+     * 
+     * @param in input stream
+     * 
+     * @return the value
+     * 
+     * @throws IOException if an error occurs
+     */
+    private static long readVarLong(@Nonnull final DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length value");
+    }
+
+    /** Factory for binary store. */
+    public static class BinaryClientStorageServiceStoreFactory extends AbstractInitializableComponent
+            implements Factory {
+
+        /** Default minimum size of data to compress. */
+        public static final int DEFAULT_COMPRESSION_THRESHOLD = 128;
+
+        /** Default remaining lifetime of sealed data below which unchanged data is re-sealed: 12 hours. */
+        @Nonnull public static final Duration DEFAULT_RESEAL_THRESHOLD = Duration.ofHours(12);
+
+        /** Whether to compress data. */
+        private boolean compression;
+
+        /** Minimum size of data to compress. */
+        @NonNegative private int compressionThreshold;
+
+        /** Remaining lifetime of sealed data below which unchanged data is re-sealed. */
+        @Nonnull private Duration resealThreshold;
+
+        /** Constructor. */
+        public BinaryClientStorageServiceStoreFactory() {
+            compression = true;
+            compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+            resealThreshold = DEFAULT_RESEAL_THRESHOLD;
+        }
+
+        /**
+         * Set whether to compress data prior to encryption.
+         * 
+         * <p>Defaults to true.</p>
+         * 
+         * @param flag flag to set
+         */
+        public void setCompression(final boolean flag) {
+            ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+            compression = flag;
+        }
+
+        /**
+         * Set the minimum size of data to compress.
+         * 
+         * <p>Defaults to {@link #DEFAULT_COMPRESSION_THRESHOLD}.</p>
+         * 
+         * @param threshold minimum size in bytes
+         */
+        public void setCompressionThreshold(@NonNegative final int threshold) {
+            ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+            compressionThreshold = (int) Constraint.isGreaterThanOrEqual(0, threshold,
+                    "Compression threshold cannot be negative");
+        }
+
+        /**
+         * Set the remaining lifetime of the sealed data held by the client below which the data is re-sealed,
+         * even if it is unchanged, so that the sealed data and the client's copy are refreshed.
+         * 
+         * <p>Defaults to {@link #DEFAULT_RESEAL_THRESHOLD}.</p>
+         * 
+         * @param threshold re-seal threshold
+         */
+        public void setResealThreshold(@Nonnull final Duration threshold) {
+            ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+            Constraint.isNotNull(threshold, "Re-seal threshold cannot be null");
+            Constraint.isFalse(threshold.isNegative(), "Re-seal threshold cannot be negative");
+            resealThreshold = threshold;
+        }
+
+        /** {@inheritDoc} */
+        @Nonnull public ClientStorageServiceStore load(@Nullable @NotEmpty final String raw,
+                @Nonnull final ClientStorageSource src) {
+            final ClientStorageServiceStore store =
+                    new BinaryClientStorageServiceStore(compression ? compressionThreshold : -1, resealThreshold);
+            store.load(raw, src);
+            return store;
+        }
+    }
+
+}
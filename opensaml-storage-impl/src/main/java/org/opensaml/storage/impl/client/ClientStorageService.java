@@ -424,6 +424,10 @@ public class ClientStorageService extends AbstractMapBackedStorageService implem
     /**
      * Reconstitute stored data and inject it into the session.
      * 
+     * <p>Decryption and parsing of the data is deferred until the data is first accessed, so requests
+     * that never use this service do not pay for it. Data sealed with a key other than the default key, or
+     * whose key cannot be determined, is nevertheless rewritten when the storage is saved.</p>
+     * 
      * <p>This method should <strong>not</strong> be called while holding the session lock
      * returned by {@link #getLock()}.</p>
      * 
@@ -432,47 +436,16 @@ public class ClientStorageService extends AbstractMapBackedStorageService implem
      */
     void load(@Nullable @NotEmpty final String raw, @Nonnull final ClientStorageSource source) {
 
-        ClientStorageServiceStore storageObject;
+        final ClientStorageServiceStore storageObject;
         
         if (raw != null) {
-            log.trace("{} Loading storage state into session", getLogPrefix());
-            try {
-                final StringBuffer keyAliasUsed = new StringBuffer();
-                final String decrypted = dataSealer.unwrap(raw, keyAliasUsed);
-                
-                log.trace("{} Data after decryption: {}", getLogPrefix(), decrypted);
-                
-                storageObject = storeFactory.load(decrypted, source);
-                
-                if (keyStrategy != null) {
-                    try {
-                        if (!keyStrategy.getDefaultKey().getFirst().equals(keyAliasUsed.toString())) {
-                            storageObject.setDirty(true);
-                        }
-                    } catch (final KeyException e) {
-                        log.error("{} Exception while accessing default key during stale key detection",
-                                getLogPrefix(), e);
-                    }
-                }
-                
-                log.debug("{} Successfully decrypted and loaded storage state from client", getLogPrefix());
-            } catch (final DataExpiredException e) {
-                log.debug("{} Secured data or key has expired", getLogPrefix());
-                storageObject = storeFactory.load(null, source);
-                storageObject.setDirty(true);
-            } catch (final DataSealerException e) {
-                log.error("{} Exception unwrapping secured data", getLogPrefix(), e);
-                storageObject = storeFactory.load(null, source);
-                storageObject.setDirty(true);
-            }
+            log.trace("{} Deferring load of storage state into session", getLogPrefix());
+            storageObject = new DeferredStore(raw, source);
         } else {
             log.trace("{} Initializing empty storage state into session", getLogPrefix());
             storageObject = storeFactory.load(null, source);
         }
         
-        // The object should be loaded, and marked "clean", or in the event of just about any failure
-        // it should be empty and marked "dirty" to force an overwrite of the expired or corrupted data.
-        
         final Lock lock = getLock().writeLock();
         try {
             lock.lock();
@@ -485,6 +458,85 @@ public class ClientStorageService extends AbstractMapBackedStorageService implem
         }
     }
     
+    /**
+     * Decrypt and parse stored data.
+     * 
+     * @param raw encrypted data to load as storage contents
+     * @param source indicates source of the data for later use
+     * 
+     * @return the reconstituted data
+     */
+    @Nonnull private ClientStorageServiceStore unseal(@Nonnull @NotEmpty final String raw,
+            @Nonnull final ClientStorageSource source) {
+
+        ClientStorageServiceStore storageObject;
+        
+        log.trace("{} Loading storage state into session", getLogPrefix());
+        try {
+            final StringBuffer keyAliasUsed = new StringBuffer();
+            final String decrypted = dataSealer.unwrap(raw, keyAliasUsed);
+            
+            log.trace("{} Data after decryption: {}", getLogPrefix(), decrypted);
+            
+            storageObject = storeFactory.load(decrypted, source);
+            
+            if (keyStrategy != null) {
+                try {
+                    if (!keyStrategy.getDefaultKey().getFirst().equals(keyAliasUsed.toString())) {
+                        storageObject.markStale();
+                    }
+                } catch (final KeyException e) {
+                    log.error("{} Exception while accessing default key during stale key detection",
+                            getLogPrefix(), e);
+                }
+            }
+            
+            log.debug("{} Successfully decrypted and loaded storage state from client", getLogPrefix());
+        } catch (final DataExpiredException e) {
+            log.debug("{} Secured data or key has expired", getLogPrefix());
+            storageObject = storeFactory.load(null, source);
+            storageObject.setDirty(true);
+        } catch (final DataSealerException e) {
+            log.error("{} Exception unwrapping secured data", getLogPrefix(), e);
+            storageObject = storeFactory.load(null, source);
+            storageObject.setDirty(true);
+        }
+        
+        // The object should be loaded, and marked "clean", or in the event of just about any failure
+        // it should be empty and marked "dirty" to force an overwrite of the expired or corrupted data.
+        return storageObject;
+    }
+    
+    /**
+     * Check whether stored data must be rewritten, because it was sealed with a key other than the default key,
+     * or the key used cannot be determined because the data is corrupt.
+     * 
+     * <p>This requires only the key alias to be extracted, not the data to be decrypted.</p>
+     * 
+     * @param raw encrypted data
+     * 
+     * @return true iff the data must be rewritten
+     */
+    private boolean isRewriteRequired(@Nonnull @NotEmpty final String raw) {
+        final String keyAliasUsed;
+        try {
+            keyAliasUsed = dataSealer.extractAlias(raw);
+        } catch (final DataSealerException e) {
+            log.debug("{} Unable to extract key alias from secured data", getLogPrefix(), e);
+            return true;
+        }
+        
+        if (keyStrategy != null) {
+            try {
+                return !keyStrategy.getDefaultKey().getFirst().equals(keyAliasUsed);
+            } catch (final KeyException e) {
+                log.error("{} Exception while accessing default key during stale key detection",
+                        getLogPrefix(), e);
+            }
+        }
+        return false;
+    }
+    
     /**
      * Serialize the stored data if it's in a "modified/dirty" state.
      * 
@@ -529,5 +581,121 @@ public class ClientStorageService extends AbstractMapBackedStorageService implem
     @Nonnull @NotEmpty String getLogPrefix() {
         return "StorageService " + getId() + ":";
     }
-        
-}
\ No newline at end of file
+
+    /**
+     * Store wrapping data from the client that is decrypted and parsed on first access.
+     * 
+     * <p>Until then, the data is known to be unmodified, so saving it is a no-op, unless it must be
+     * rewritten due to a stale key or corruption, in which case it is accessed in order to be saved.</p>
+     */
+    private final class DeferredStore implements ClientStorageServiceStore {
+
+        /** Encrypted data. */
+        @Nullable private String raw;
+
+        /** Data source. */
+        @Nonnull private final ClientStorageSource source;
+
+        /** The reconstituted data, once accessed. */
+        @Nullable private ClientStorageServiceStore delegate;
+
+        /**
+         * Constructor.
+         *
+         * @param data encrypted data
+         * @param src data source
+         */
+        DeferredStore(@Nonnull @NotEmpty final String data, @Nonnull final ClientStorageSource src) {
+            raw = data;
+            source = src;
+        }
+
+        /**
+         * Get the reconstituted data, decrypting and parsing it if necessary.
+         * 
+         * @return the reconstituted data
+         */
+        @Nonnull private synchronized ClientStorageServiceStore getDelegate() {
+            if (delegate == null) {
+                delegate = unseal(raw, source);
+                raw = null;
+            }
+            return delegate;
+        }
+
+        /**
+         * Get the reconstituted data if it has been accessed.
+         * 
+         * @return the reconstituted data, or null
+         */
+        @Nullable private synchronized ClientStorageServiceStore getDelegateIfLoaded() {
+            return delegate;
+        }
+
+        /**
+         * Get the encrypted data if it has not been accessed.
+         * 
+         * @return the encrypted data, or null
+         */
+        @Nullable private synchronized String getRawIfNotLoaded() {
+            return delegate == null ? raw : null;
+        }
+
+        /** {@inheritDoc} */
+        @Nonnull public ClientStorageSource getSource() {
+            final ClientStorageServiceStore store = getDelegateIfLoaded();
+            return store != null ? store.getSource() : source;
+        }
+
+        /** {@inheritDoc} */
+        public boolean isDirty() {
+            final ClientStorageServiceStore store = getDelegateIfLoaded();
+            return store != null && store.isDirty();
+        }
+
+        /** {@inheritDoc} */
+        public void setDirty(final boolean flag) {
+            getDelegate().setDirty(flag);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void markStale() {
+            getDelegate().markStale();
+        }
+
+        /** {@inheritDoc} */
+        @Nonnull @NonnullElements @Live public Map<String,Map<String,MutableStorageRecord<?>>> getContextMap() {
+            return getDelegate().getContextMap();
+        }
+
+        /** {@inheritDoc} */
+        public void load(@Nullable @NotEmpty final String data, @Nonnull final ClientStorageSource src) {
+            final ClientStorageServiceStore store;
+            synchronized (this) {
+                // The deferred data is superseded, so there's no need to decrypt it.
+                if (delegate == null) {
+                    delegate = storeFactory.load(null, src);
+                    raw = null;
+                }
+                store = delegate;
+            }
+            store.load(data, src);
+        }
+
+        /** {@inheritDoc} */
+        @Nullable public ClientStorageServiceOperation save(@Nonnull final ClientStorageService storageService)
+                throws IOException {
+            final String data = getRawIfNotLoaded();
+            if (data != null) {
+                if (!isRewriteRequired(data)) {
+                    log.trace("{} Storage state was never accessed, save operation skipped", getLogPrefix());
+                    return null;
+                }
+                log.debug("{} Storage state was never accessed, but must be rewritten", getLogPrefix());
+            }
+            return getDelegate().save(storageService);
+        }
+    }
+
+}
@@ -17,11 +17,14 @@
 
 package org.opensaml.storage.impl.client;
 
+import java.time.Duration;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.opensaml.storage.impl.client.ClientStorageService.ClientStorageSource;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 
@@ -43,6 +46,12 @@ public class ClientStorageServiceOperation {
     /** Storage source. */
     @Nonnull private final ClientStorageSource storageSource;
     
+    /** Size of the serialized data prior to compression and encryption. */
+    @NonNegative private final int serializedSize;
+    
+    /** Time taken to produce the storage value. */
+    @Nonnull private final Duration saveTime;
+    
     /**
      * Constructor.
      *
@@ -53,10 +62,30 @@ public class ClientStorageServiceOperation {
      */
     public ClientStorageServiceOperation(@Nonnull @NotEmpty final String id, @Nonnull @NotEmpty final String key,
             @Nullable final String value, @Nonnull final ClientStorageSource source) {
+        this(id, key, value, source, 0, Duration.ZERO);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param id storage service ID
+     * @param key storage key to update
+     * @param value storage value
+     * @param source storage source
+     * @param size size of the serialized data prior to compression and encryption
+     * @param elapsed time taken to produce the storage value
+     * 
+     * @since 4.1.0
+     */
+    public ClientStorageServiceOperation(@Nonnull @NotEmpty final String id, @Nonnull @NotEmpty final String key,
+            @Nullable final String value, @Nonnull final ClientStorageSource source, @NonNegative final int size,
+            @Nonnull final Duration elapsed) {
         storageServiceId = Constraint.isNotEmpty(id, "StorageService ID cannot be null or empty");
         storageKey = Constraint.isNotEmpty(key, "Key cannot be null or empty");
         storageValue = value;
         storageSource = Constraint.isNotNull(source, "Storage source cannot be null");
+        serializedSize = size;
+        saveTime = Constraint.isNotNull(elapsed, "Elapsed time cannot be null");
     }
     
     /**
@@ -95,4 +124,26 @@ public class ClientStorageServiceOperation {
         return storageSource;
     }
     
-}
\ No newline at end of file
+    /**
+     * Get the size of the serialized data prior to compression and encryption.
+     * 
+     * @return serialized size, or 0 if not known
+     * 
+     * @since 4.1.0
+     */
+    @NonNegative public int getSerializedSize() {
+        return serializedSize;
+    }
+    
+    /**
+     * Get the time taken to produce the storage value.
+     * 
+     * @return time taken, or zero if not known
+     * 
+     * @since 4.1.0
+     */
+    @Nonnull public Duration getSaveTime() {
+        return saveTime;
+    }
+    
+}
@@ -58,6 +58,16 @@ public interface ClientStorageServiceStore {
      */
     void setDirty(final boolean flag);
 
+    /**
+     * Mark the current data as requiring a save even if it is unchanged from the data held by the client,
+     * as when the data was secured with a stale key.
+     * 
+     * <p>The default implementation sets the dirty bit.</p>
+     */
+    default void markStale() {
+        setDirty(true);
+    }
+
     /**
      * Get the map of contexts to manipulate during operations.
      * 
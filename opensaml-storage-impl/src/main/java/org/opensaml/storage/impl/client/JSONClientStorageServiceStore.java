@@ -108,6 +108,7 @@ public class JSONClientStorageServiceStore extends AbstractClientStorageServiceS
                     getSource());
         }
 
+        final long start = System.nanoTime();
         long exp = 0L;
         final long now = System.currentTimeMillis();
         boolean empty = true;
@@ -156,7 +157,7 @@ public class JSONClientStorageServiceStore extends AbstractClientStorageServiceS
                 log.trace("{} Size of data after encryption is {}", storageService.getLogPrefix(), wrapped.length());
                 setDirty(false);
                 return new ClientStorageServiceOperation(storageService.getId(), storageService.getStorageName(),
-                        wrapped, getSource());
+                        wrapped, getSource(), raw.length(), Duration.ofNanos(System.nanoTime() - start));
             } catch (final DataSealerException e) {
                 throw new IOException(e);
             }
@@ -78,8 +78,10 @@ public class LogLocalStorageSaveResults extends AbstractProfileAction {
                 String param = request.getParameter(
                         LoadClientStorageServices.SUCCESS_FORM_FIELD + '.' + operation.getKey());
                 if (param != null || Boolean.valueOf(param)) {
-                    log.debug("{} Save to local storage for StorageService '{}' succeeded", getLogPrefix(),
-                            operation.getStorageServiceID());
+                    log.debug("{} Save to local storage for StorageService '{}' succeeded, {} characters "
+                            + "from {} serialized in {}ms", getLogPrefix(), operation.getStorageServiceID(),
+                            operation.getValue() != null ? operation.getValue().length() : 0,
+                            operation.getSerializedSize(), operation.getSaveTime().toMillis());
                 } else {
                     param = request.getParameter(EXCEPTION_FORM_FIELD + '.' + operation.getKey());
                     log.warn("{} Save to local storage for StorageService '{}' failed: {}",
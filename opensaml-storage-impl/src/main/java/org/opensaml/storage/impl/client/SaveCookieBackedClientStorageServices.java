@@ -127,8 +127,10 @@ public class SaveCookieBackedClientStorageServices
                 continue;
             }
             if (operation.getValue() != null) {
-                log.debug("{} Saving data for ClientStorageService '{}' to cookie named '{}'", getLogPrefix(),
-                        operation.getStorageServiceID(), operation.getKey());
+                log.debug("{} Saving data for ClientStorageService '{}' to cookie named '{}', {} characters "
+                        + "from {} serialized in {}ms", getLogPrefix(), operation.getStorageServiceID(),
+                        operation.getKey(), operation.getValue().length(), operation.getSerializedSize(),
+                        operation.getSaveTime().toMillis());
                 storageService.getCookieManager().addCookie(operation.getKey(),
                         escaper.escape(operation.getValue()));
             } else {
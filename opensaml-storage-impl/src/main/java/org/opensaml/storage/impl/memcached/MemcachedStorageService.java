@@ -31,6 +31,7 @@ import net.spy.memcached.transcoders.Transcoder;
 import org.cryptacular.util.ByteUtil;
 import org.cryptacular.util.CodecUtil;
 import org.cryptacular.util.HashUtil;
+import org.opensaml.storage.AsyncStorageService;
 import org.opensaml.storage.StorageCapabilities;
 import org.opensaml.storage.StorageRecord;
 import org.opensaml.storage.StorageSerializer;
@@ -45,10 +46,16 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -76,6 +83,12 @@ import java.util.concurrent.TimeoutException;
  * slab size, which decreases overall cache memory consumption efficiency. When key tracking is disabled, there is no
  * limit on the number of keys per context other than overall cache capacity.
  * <p>
+ * In addition to the {@link StorageService} operations, bulk operations are provided which issue the memcached
+ * operations for many keys before awaiting any of them, so that they are pipelined by the client, e.g.
+ * {@link #readBulk(String, Collection)} and {@link #readContext(String)}. The non-blocking operations of
+ * {@link AsyncStorageService} are supported natively, returning {@link CompletableFuture} instances completed
+ * by the client's I/O thread.
+ * <p>
  * <strong>Limitations and requirements</strong>
  * <ol>
  *     <li>The memcached binary protocol is strong recommended for efficiency and full versioning support.
@@ -88,7 +101,8 @@ import java.util.concurrent.TimeoutException;
  *
  * @author Marvin S. Addison
  */
-public class MemcachedStorageService extends AbstractIdentifiableInitializableComponent implements StorageService {
+public class MemcachedStorageService extends AbstractIdentifiableInitializableComponent
+        implements AsyncStorageService {
 
     /** Key suffix for entry that contains a list of context keys. */
     protected static final String CTX_KEY_LIST_SUFFIX = ":contextKeyList";
@@ -206,7 +220,8 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
                 handleAsyncResult(memcacheClient.add(cacheKey, expiry, record, storageRecordTranscoder));
         if (success && trackContextKeys) {
             logger.debug("Tracking key {} for context {}", cacheKey, context);
-            final boolean result = updateContextKeyList(CTX_KEY_LIST_SUFFIX, namespace, cacheKey);
+            final boolean result =
+                    updateContextKeyList(CTX_KEY_LIST_SUFFIX, namespace, Collections.singletonList(cacheKey));
             if (!result) {
                 logger.debug("Failed appending {} to list of keys for context {}", cacheKey, context);
                 // Try to clean up record we just created
@@ -259,11 +274,7 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         } catch (final RuntimeException e) {
             throw new IOException("Memcached operation failed", e);
         }
-        if (record == null) {
-            return null;
-        }
-        record.getValue().setVersion(record.getCas());
-        return (StorageRecord<T>) record.getValue();
+        return toStorageRecord(record);
     }
 
     /** {@inheritDoc} */
@@ -450,7 +461,7 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         final boolean success = handleAsyncResult(memcacheClient.delete(cacheKey));
         if (success && trackContextKeys) {
             logger.debug("Blacklisting key {} for context {}", cacheKey, context);
-            if (!updateContextKeyList(CTX_KEY_BLACKLIST_SUFFIX, namespace, cacheKey)) {
+            if (!updateContextKeyList(CTX_KEY_BLACKLIST_SUFFIX, namespace, Collections.singletonList(cacheKey))) {
                 logger.debug("Failed appending {} to list of blacklisted keys for context {}", cacheKey, context);
             }
         }
@@ -484,7 +495,7 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         final boolean success = handleAsyncResult(memcacheClient.delete(cacheKey, version));
         if (success && trackContextKeys) {
             logger.debug("Blacklisting key {} for context {}", cacheKey, context);
-            if (!updateContextKeyList(CTX_KEY_BLACKLIST_SUFFIX, namespace, cacheKey)) {
+            if (!updateContextKeyList(CTX_KEY_BLACKLIST_SUFFIX, namespace, Collections.singletonList(cacheKey))) {
                 logger.debug("Failed appending {} to list of blacklisted keys for context {}", cacheKey, context);
             }
         }
@@ -525,26 +536,21 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
             logger.debug("Cannot update context expiration since context namespace does not exist");
             return;
         }
-        final CASValue<String> keys = handleAsyncResult(
-                memcacheClient.asyncGets(namespace + CTX_KEY_LIST_SUFFIX, stringTranscoder));
-        if (keys == null) {
+        final Set<String> keySet = readContextKeys(namespace);
+        if (keySet.isEmpty()) {
             logger.debug("No context keys found to update expiration");
             return;
         }
-        final Set<String> keySet = new HashSet<>(Arrays.asList(keys.getValue().split(CTX_KEY_LIST_DELIMITER)));
-        final CASValue<String> blacklistKeys = handleAsyncResult(
-                memcacheClient.asyncGets(namespace + CTX_KEY_BLACKLIST_SUFFIX, stringTranscoder));
-        if (blacklistKeys != null) {
-            keySet.removeAll(Arrays.asList(blacklistKeys.getValue().split(CTX_KEY_LIST_DELIMITER)));
-        }
-        final List<OperationFuture<Boolean>> results = new ArrayList<>(keySet.size());
-        for (final String key : keySet) {
-            logger.debug("Updating expiration of key {} to {}", key, expiry);
-            results.add(memcacheClient.touch(key, expiry));
-        }
-        for (final OperationFuture<Boolean> result : results) {
-            handleAsyncResult(result);
+        final List<Future<Boolean>> results = new ArrayList<>(keySet.size());
+        try {
+            for (final String key : keySet) {
+                logger.debug("Updating expiration of key {} to {}", key, expiry);
+                results.add(memcacheClient.touch(key, expiry));
+            }
+        } catch (final RuntimeException e) {
+            throw new IOException("Memcached operation failed", e);
         }
+        handleAsyncResults(results);
     }
 // Checkstyle: ReturnCount ON
 
@@ -557,17 +563,325 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
             logger.debug("Namespace for context {} does not exist. Context values effectively deleted.", context);
             return;
         }
-        final OperationFuture<Boolean> ctxResult = memcacheClient.delete(context);
-        final OperationFuture<Boolean> nsResult = memcacheClient.delete(namespace);
+        final List<Future<Boolean>> results = new ArrayList<>(4);
+        results.add(memcacheClient.delete(context));
+        results.add(memcacheClient.delete(namespace));
         if (trackContextKeys) {
-            final OperationFuture<Boolean> keyListResult = memcacheClient.delete(namespace + CTX_KEY_LIST_SUFFIX);
-            final OperationFuture<Boolean> blackListResult =
-                    memcacheClient.delete(namespace + CTX_KEY_BLACKLIST_SUFFIX);
-            handleAsyncResult(keyListResult);
-            handleAsyncResult(blackListResult);
+            results.add(memcacheClient.delete(namespace + CTX_KEY_LIST_SUFFIX));
+            results.add(memcacheClient.delete(namespace + CTX_KEY_BLACKLIST_SUFFIX));
+        }
+        handleAsyncResults(results);
+    }
+
+    /**
+     * Reads the records stored under a number of keys in a given context.
+     *
+     * <p>The get operations for all keys are issued before any result is awaited, so that they are pipelined
+     * by the client and the call completes in about one round trip, subject to a single operation timeout.</p>
+     *
+     * @param context context to read from
+     * @param keys keys of the records to read
+     * @param <T> type of record value
+     *
+     * @return map of keys to the records found, omitting keys for which no record exists
+     *
+     * @throws IOException if errors occur in the read process
+     */
+    @Nonnull public <T> Map<String,StorageRecord<T>> readBulk(@Nonnull @NotEmpty final String context,
+            @Nonnull final Collection<String> keys) throws IOException {
+        Constraint.isNotNull(StringSupport.trimOrNull(context), "Context cannot be null or empty");
+        Constraint.isNotNull(keys, "Keys cannot be null");
+        final String namespace = lookupNamespace(context);
+        if (namespace == null) {
+            logger.debug("Namespace for context {} does not exist", context);
+            return Collections.emptyMap();
+        }
+        final Map<String,String> cacheKeys = new LinkedHashMap<>(keys.size());
+        for (final String key : keys) {
+            Constraint.isNotNull(StringSupport.trimOrNull(key), "Key cannot be null or empty");
+            cacheKeys.put(memcachedKey(namespace, key), key);
+        }
+        logger.debug("Reading {} entries for context={}", cacheKeys.size(), context);
+        return readRecords(cacheKeys);
+    }
+
+    /**
+     * Reads all live records in a given context.
+     *
+     * <p>This operation requires context key tracking. The context key list and blacklist are read together
+     * with a single bulk get, after which all records are read with pipelined get operations.</p>
+     *
+     * <p>Records are keyed by the storage key used to create them, except for keys which were too long to be
+     * stored in memcached unchanged. Such records are keyed by the hashed memcached key.</p>
+     *
+     * @param context context to read
+     * @param <T> type of record value
+     *
+     * @return map of keys to the records in the context
+     *
+     * @throws IOException if errors occur in the read process
+     */
+    @Nonnull public <T> Map<String,StorageRecord<T>> readContext(@Nonnull @NotEmpty final String context)
+            throws IOException {
+        if (!trackContextKeys) {
+            throw new UnsupportedOperationException("readContext not supported when trackContextKeys == false");
+        }
+        Constraint.isNotNull(StringSupport.trimOrNull(context), "Context cannot be null or empty");
+        final String namespace = lookupNamespace(context);
+        if (namespace == null) {
+            logger.debug("Namespace for context {} does not exist", context);
+            return Collections.emptyMap();
+        }
+        final String prefix = namespace + ':';
+        final Set<String> keySet = readContextKeys(namespace);
+        final Map<String,String> cacheKeys = new LinkedHashMap<>(keySet.size());
+        for (final String cacheKey : keySet) {
+            cacheKeys.put(cacheKey, cacheKey.startsWith(prefix) ? cacheKey.substring(prefix.length()) : cacheKey);
+        }
+        logger.debug("Reading {} entries for context={}", cacheKeys.size(), context);
+        return readRecords(cacheKeys);
+    }
+
+    /**
+     * Updates the expiration of the records stored under a number of keys in a given context, using
+     * pipelined touch operations.
+     *
+     * @param context context to update
+     * @param keys keys of the records to update
+     * @param expiration expiration for the records, or null for none
+     *
+     * @return number of records updated
+     *
+     * @throws IOException if errors occur in the update process
+     */
+    public int updateExpirationBulk(@Nonnull @NotEmpty final String context, @Nonnull final Collection<String> keys,
+            @Nullable @Positive final Long expiration) throws IOException {
+        Constraint.isNotNull(StringSupport.trimOrNull(context), "Context cannot be null or empty");
+        Constraint.isNotNull(keys, "Keys cannot be null");
+        final int expiry = MemcachedStorageRecord.expiry(expiration);
+        Constraint.isGreaterThan(-1, expiry, "Expiration must be null or positive");
+        final String namespace = lookupNamespace(context);
+        if (namespace == null) {
+            logger.debug("Namespace for context {} does not exist", context);
+            return 0;
+        }
+        final List<Future<Boolean>> results = new ArrayList<>(keys.size());
+        try {
+            for (final String key : keys) {
+                Constraint.isNotNull(StringSupport.trimOrNull(key), "Key cannot be null or empty");
+                results.add(memcacheClient.touch(memcachedKey(namespace, key), expiry));
+            }
+        } catch (final RuntimeException e) {
+            throw new IOException("Memcached operation failed", e);
+        }
+        logger.debug("Updating expiration of {} entries for context={}, exp={}", results.size(), context, expiry);
+        int updated = 0;
+        for (final Boolean success : handleAsyncResults(results)) {
+            if (Boolean.TRUE.equals(success)) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Deletes the records stored under a number of keys in a given context, using pipelined delete operations.
+     *
+     * <p>When context key tracking is enabled, all deleted keys are blacklisted with a single append.</p>
+     *
+     * @param context context to delete from
+     * @param keys keys of the records to delete
+     *
+     * @return number of records deleted
+     *
+     * @throws IOException if errors occur in the deletion process
+     */
+    public int deleteBulk(@Nonnull @NotEmpty final String context, @Nonnull final Collection<String> keys)
+            throws IOException {
+        Constraint.isNotNull(StringSupport.trimOrNull(context), "Context cannot be null or empty");
+        Constraint.isNotNull(keys, "Keys cannot be null");
+        final String namespace = lookupNamespace(context);
+        if (namespace == null) {
+            logger.debug("Namespace for context {} does not exist", context);
+            return 0;
         }
-        handleAsyncResult(ctxResult);
-        handleAsyncResult(nsResult);
+        final List<String> cacheKeys = new ArrayList<>(keys.size());
+        final List<Future<Boolean>> results = new ArrayList<>(keys.size());
+        try {
+            for (final String key : keys) {
+                Constraint.isNotNull(StringSupport.trimOrNull(key), "Key cannot be null or empty");
+                final String cacheKey = memcachedKey(namespace, key);
+                cacheKeys.add(cacheKey);
+                results.add(memcacheClient.delete(cacheKey));
+            }
+        } catch (final RuntimeException e) {
+            throw new IOException("Memcached operation failed", e);
+        }
+        logger.debug("Deleting {} entries for context={}", cacheKeys.size(), context);
+        final List<Boolean> successes = handleAsyncResults(results);
+        final List<String> deleted = new ArrayList<>(successes.size());
+        for (int i = 0; i < successes.size(); i++) {
+            if (Boolean.TRUE.equals(successes.get(i))) {
+                deleted.add(cacheKeys.get(i));
+            }
+        }
+        if (!deleted.isEmpty() && trackContextKeys) {
+            logger.debug("Blacklisting {} keys for context {}", deleted.size(), context);
+            if (!updateContextKeyList(CTX_KEY_BLACKLIST_SUFFIX, namespace, deleted)) {
+                logger.debug("Failed appending to list of blacklisted keys for context {}", context);
+            }
+        }
+        return deleted.size();
+    }
+
+    /**
+     * Asynchronously creates a new record in the store with an expiration.
+     *
+     * <p>Unlike {@link #create(String, String, String, Long)}, the calling thread does not wait on any
+     * memcached operation. Each stage of the operation is started on completion of the previous one.</p>
+     *
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param value value to store
+     * @param expiration expiration for record, or null
+     *
+     * @return a future completing with true iff the record was created, or exceptionally on error
+     */
+    @Override
+    @Nonnull public CompletableFuture<Boolean> createAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable @Positive final Long expiration) {
+        Constraint.isNotNull(StringSupport.trimOrNull(context), "Context cannot be null or empty");
+        Constraint.isNotNull(StringSupport.trimOrNull(key), "Key cannot be null or empty");
+        Constraint.isNotNull(StringSupport.trimOrNull(value), "Value cannot be null or empty");
+        final MemcachedStorageRecord<?> record = new MemcachedStorageRecord<>(value, expiration);
+        final int expiry = record.getExpiry();
+        Constraint.isGreaterThan(-1, expiry, "Expiration must be null or positive");
+        return lookupNamespaceAsync(context)
+                .thenCompose(ns -> ns != null ? CompletableFuture.completedFuture(ns) : createNamespaceAsync(context))
+                .thenCompose(namespace -> {
+                    final String cacheKey = memcachedKey(namespace, key);
+                    logger.debug("Creating new entry at {} for context={}, key={}, exp={}",
+                            cacheKey, context, key, expiry);
+                    final CompletableFuture<Boolean> result =
+                            toCompletableFuture(memcacheClient.add(cacheKey, expiry, record, storageRecordTranscoder));
+                    if (!trackContextKeys) {
+                        return result;
+                    }
+                    return result.thenCompose(success -> {
+                        if (!success) {
+                            return CompletableFuture.completedFuture(false);
+                        }
+                        logger.debug("Tracking key {} for context {}", cacheKey, context);
+                        return updateContextKeyListAsync(CTX_KEY_LIST_SUFFIX, namespace, cacheKey)
+                                .thenApply(tracked -> {
+                                    if (!tracked) {
+                                        logger.debug("Failed appending {} to list of keys for context {}",
+                                                cacheKey, context);
+                                        memcacheClient.delete(cacheKey);
+                                    }
+                                    return tracked;
+                                });
+                    });
+                });
+    }
+
+    /**
+     * Asynchronously retrieves the record matching the supplied key.
+     *
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param <T> type of record value
+     *
+     * @return a future completing with the record, or null, or exceptionally on error
+     */
+    @Override
+    @Nonnull public <T> CompletableFuture<StorageRecord<T>> readAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) {
+        Constraint.isNotNull(StringSupport.trimOrNull(context), "Context cannot be null or empty");
+        Constraint.isNotNull(StringSupport.trimOrNull(key), "Key cannot be null or empty");
+        return lookupNamespaceAsync(context).thenCompose(namespace -> {
+            if (namespace == null) {
+                logger.debug("Namespace for context {} does not exist", context);
+                return CompletableFuture.completedFuture(null);
+            }
+            final String cacheKey = memcachedKey(namespace, key);
+            logger.debug("Reading entry at {} for context={}, key={}", cacheKey, context, key);
+            return toCompletableFuture(memcacheClient.asyncGets(cacheKey, storageRecordTranscoder))
+                    .thenApply(this::<T>toStorageRecord);
+        });
+    }
+
+    /**
+     * Asynchronously updates an existing record in the store.
+     *
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param value updated value
+     * @param expiration expiration for record, or null
+     *
+     * @return a future completing with true iff the record was updated, or exceptionally on error
+     */
+    @Override
+    @Nonnull public CompletableFuture<Boolean> updateAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable @Positive final Long expiration) {
+        Constraint.isNotNull(StringSupport.trimOrNull(context), "Context cannot be null or empty");
+        Constraint.isNotNull(StringSupport.trimOrNull(key), "Key cannot be null or empty");
+        Constraint.isNotNull(StringSupport.trimOrNull(value), "Value cannot be null or empty");
+        final MemcachedStorageRecord<?> record = new MemcachedStorageRecord<>(value, expiration);
+        final int expiry = record.getExpiry();
+        Constraint.isGreaterThan(-1, expiry, "Expiration must be null or positive");
+        return lookupNamespaceAsync(context).thenCompose(namespace -> {
+            if (namespace == null) {
+                logger.debug("Namespace for context {} does not exist", context);
+                return CompletableFuture.completedFuture(false);
+            }
+            final String cacheKey = memcachedKey(namespace, key);
+            logger.debug("Updating entry at {} for context={}, key={}, exp={}", cacheKey, context, key, expiry);
+            return toCompletableFuture(memcacheClient.replace(cacheKey, expiry, record, storageRecordTranscoder));
+        });
+    }
+
+    /**
+     * Asynchronously deletes an existing record from the store.
+     *
+     * @param context a storage context label
+     * @param key a key unique to context
+     *
+     * @return a future completing with true iff the record existed and was deleted, or exceptionally on error
+     */
+    @Override
+    @Nonnull public CompletableFuture<Boolean> deleteAsync(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) {
+        Constraint.isNotNull(StringSupport.trimOrNull(context), "Context cannot be null or empty");
+        Constraint.isNotNull(StringSupport.trimOrNull(key), "Key cannot be null or empty");
+        return lookupNamespaceAsync(context).thenCompose(namespace -> {
+            if (namespace == null) {
+                logger.debug("Namespace for context {} does not exist", context);
+                return CompletableFuture.completedFuture(false);
+            }
+            final String cacheKey = memcachedKey(namespace, key);
+            logger.debug("Deleting entry at {} for context={}, key={}", cacheKey, context, key);
+            final CompletableFuture<Boolean> result = toCompletableFuture(memcacheClient.delete(cacheKey));
+            if (!trackContextKeys) {
+                return result;
+            }
+            return result.thenCompose(success -> {
+                if (!success) {
+                    return CompletableFuture.completedFuture(false);
+                }
+                logger.debug("Blacklisting key {} for context {}", cacheKey, context);
+                return updateContextKeyListAsync(CTX_KEY_BLACKLIST_SUFFIX, namespace, cacheKey)
+                        .thenApply(tracked -> {
+                            if (!tracked) {
+                                logger.debug("Failed appending {} to list of blacklisted keys for context {}",
+                                        cacheKey, context);
+                            }
+                            return true;
+                        });
+            });
+        });
     }
 
     /** {@inheritDoc} */
@@ -650,6 +964,156 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         return key;
     }
 
+    /**
+     * Looks up the namespace for the given context name in the cache without blocking.
+     *
+     * @param context Context name.
+     *
+     * @return Future completing with the namespace for the given context, or null if no namespace exists.
+     */
+    @Nonnull private CompletableFuture<String> lookupNamespaceAsync(@Nonnull final String context) {
+        try {
+            return toCompletableFuture(memcacheClient.asyncGets(memcachedKey(context), stringTranscoder))
+                    .thenApply(result -> result == null ? null : result.getValue());
+        } catch (final RuntimeException e) {
+            return CompletableFuture.failedFuture(new IOException("Memcached operation failed", e));
+        }
+    }
+
+    /**
+     * Creates a cache-wide unique namespace for the given context name without blocking.
+     *
+     * @param context Context name.
+     *
+     * @return Future completing with the namespace name for the given context.
+     *
+     * @see #createNamespace(String)
+     */
+    @Nonnull private CompletableFuture<String> createNamespaceAsync(@Nonnull final String context) {
+        final String namespace = CodecUtil.hex(ByteUtil.toBytes(System.currentTimeMillis()));
+        return toCompletableFuture(memcacheClient.add(namespace, 0, context, stringTranscoder))
+                .thenCompose(success -> {
+                    if (!success) {
+                        // Retry until we obtain a unique namespace
+                        return createNamespaceAsync(context);
+                    }
+                    return toCompletableFuture(
+                            memcacheClient.add(memcachedKey(context), 0, namespace, stringTranscoder))
+                            .thenApply(added -> {
+                                if (!added) {
+                                    throw new IllegalStateException(context + " already exists");
+                                }
+                                return namespace;
+                            });
+                });
+    }
+
+    /**
+     * Reads the context keys tracked for a namespace, less any blacklisted keys. The key list and blacklist
+     * are read with a single bulk get.
+     *
+     * @param namespace the namespace
+     *
+     * @return the memcached keys of the live records in the namespace
+     *
+     * @throws IOException if an error occurs
+     */
+    @Nonnull private Set<String> readContextKeys(@Nonnull final String namespace) throws IOException {
+        final String listKey = namespace + CTX_KEY_LIST_SUFFIX;
+        final String blacklistKey = namespace + CTX_KEY_BLACKLIST_SUFFIX;
+        final Map<String,String> lists;
+        try {
+            lists = handleAsyncResult(memcacheClient.asyncGetBulk(stringTranscoder, listKey, blacklistKey));
+        } catch (final RuntimeException e) {
+            throw new IOException("Memcached operation failed", e);
+        }
+        final String keys = lists.get(listKey);
+        if (keys == null) {
+            return Collections.emptySet();
+        }
+        final Set<String> keySet = new HashSet<>(Arrays.asList(keys.split(CTX_KEY_LIST_DELIMITER)));
+        final String blacklistKeys = lists.get(blacklistKey);
+        if (blacklistKeys != null) {
+            keySet.removeAll(Arrays.asList(blacklistKeys.split(CTX_KEY_LIST_DELIMITER)));
+        }
+        keySet.remove("");
+        return keySet;
+    }
+
+    /**
+     * Reads a number of records using pipelined gets operations, which unlike a bulk get return the
+     * CAS value used as the record version.
+     *
+     * @param cacheKeys map of memcached keys to the storage keys under which to return the records
+     * @param <T> type of record value
+     *
+     * @return map of storage keys to the records found
+     *
+     * @throws IOException if an error occurs
+     */
+    @Nonnull private <T> Map<String,StorageRecord<T>> readRecords(@Nonnull final Map<String,String> cacheKeys)
+            throws IOException {
+        final List<Future<CASValue<MemcachedStorageRecord<?>>>> results = new ArrayList<>(cacheKeys.size());
+        try {
+            for (final String cacheKey : cacheKeys.keySet()) {
+                results.add(memcacheClient.asyncGets(cacheKey, storageRecordTranscoder));
+            }
+        } catch (final RuntimeException e) {
+            throw new IOException("Memcached operation failed", e);
+        }
+        final List<CASValue<MemcachedStorageRecord<?>>> values = handleAsyncResults(results);
+        final Map<String,StorageRecord<T>> records = new LinkedHashMap<>(values.size());
+        int i = 0;
+        for (final String key : cacheKeys.values()) {
+            final StorageRecord<T> record = toStorageRecord(values.get(i++));
+            if (record != null) {
+                records.put(key, record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Converts the result of a gets operation to a storage record whose version is the CAS value.
+     *
+     * @param value the gets result
+     * @param <T> type of record value
+     *
+     * @return the storage record, or null
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable private <T> StorageRecord<T> toStorageRecord(@Nullable final CASValue<MemcachedStorageRecord<?>> value) {
+        if (value == null) {
+            return null;
+        }
+        value.getValue().setVersion(value.getCas());
+        return (StorageRecord<T>) value.getValue();
+    }
+
+    /**
+     * Adapts a memcached operation future to a {@link CompletableFuture} completed by the client's I/O thread.
+     *
+     * @param result the operation future
+     * @param <T> type of result
+     *
+     * @return a future completing with the result, or exceptionally with an {@link IOException} on error or a
+     *  {@link TimeoutException} if the operation does not complete within the operation timeout
+     */
+    @Nonnull private <T> CompletableFuture<T> toCompletableFuture(@Nonnull final OperationFuture<T> result) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        result.addListener(f -> {
+            try {
+                future.complete(result.get());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(new IOException("Memcached operation interrupted"));
+            } catch (final ExecutionException | RuntimeException e) {
+                future.completeExceptionally(new IOException("Memcached operation error", e));
+            }
+        });
+        return future.orTimeout(operationTimeout, TimeUnit.SECONDS);
+    }
+
     /**
      * Handle async result.
      * 
@@ -658,9 +1122,22 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
      * @return the result
      * @throws IOException if an error occurs
      */
-    private <T> T handleAsyncResult(final OperationFuture<T> result) throws IOException {
+    private <T> T handleAsyncResult(final Future<T> result) throws IOException {
+        return handleAsyncResult(result, TimeUnit.SECONDS.toNanos(operationTimeout));
+    }
+
+    /**
+     * Handle async result, waiting no longer than a given time.
+     * 
+     * @param result the result 
+     * @param timeout time to wait in nanoseconds
+     * @param <T> type of result
+     * @return the result
+     * @throws IOException if an error occurs
+     */
+    private <T> T handleAsyncResult(final Future<T> result, final long timeout) throws IOException {
         try {
-            return result.get(operationTimeout, TimeUnit.SECONDS);
+            return result.get(timeout, TimeUnit.NANOSECONDS);
         } catch (final InterruptedException e) {
             throw new IOException("Memcached operation interrupted");
         } catch (final TimeoutException e) {
@@ -670,19 +1147,41 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         }
     }
 
+    /**
+     * Handle a number of async results issued together, which are collectively subject to a single
+     * operation timeout rather than one timeout apiece.
+     * 
+     * @param results the results
+     * @param <T> type of result
+     * @return the results, in order
+     * @throws IOException if an error occurs
+     */
+    private <T> List<T> handleAsyncResults(final List<? extends Future<T>> results) throws IOException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(operationTimeout);
+        final List<T> values = new ArrayList<>(results.size());
+        for (final Future<T> result : results) {
+            values.add(handleAsyncResult(result, Math.max(0, deadline - System.nanoTime())));
+        }
+        return values;
+    }
+
     /**
      * Update context key list.
      * 
      * @param suffix the suffix
      * @param namespace the namespace
-     * @param key the storage key
+     * @param keys the storage keys to append
      * @return whether the update was a success
      * @throws IOException if an error occurs
      */
-    private boolean updateContextKeyList(final String suffix, final String namespace, final String key)
+    private boolean updateContextKeyList(final String suffix, final String namespace, final Collection<String> keys)
             throws IOException {
         final String listKey = namespace + suffix;
-        final String newItem = key + CTX_KEY_LIST_DELIMITER;
+        final StringBuilder newItems = new StringBuilder();
+        for (final String key : keys) {
+            newItems.append(key).append(CTX_KEY_LIST_DELIMITER);
+        }
+        final String newItem = newItems.toString();
         final boolean success = handleAsyncResult(memcacheClient.append(listKey, newItem, stringTranscoder));
         if (!success) {
             // Assume list does not exist and create it
@@ -690,4 +1189,26 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         }
         return success;
     }
-}
\ No newline at end of file
+
+    /**
+     * Update context key list without blocking.
+     * 
+     * @param suffix the suffix
+     * @param namespace the namespace
+     * @param key the storage key
+     * @return future completing with whether the update was a success
+     */
+    private CompletableFuture<Boolean> updateContextKeyListAsync(final String suffix, final String namespace,
+            final String key) {
+        final String listKey = namespace + suffix;
+        final String newItem = key + CTX_KEY_LIST_DELIMITER;
+        return toCompletableFuture(memcacheClient.append(listKey, newItem, stringTranscoder))
+                .thenCompose(success -> {
+                    if (!success) {
+                        // Assume list does not exist and create it
+                        return toCompletableFuture(memcacheClient.add(listKey, 0, newItem, stringTranscoder));
+                    }
+                    return CompletableFuture.completedFuture(true);
+                });
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.storage.AbstractAsyncStorageService;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.VersionMismatchException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link AbstractAsyncStorageService} blocking operations.
+ */
+public class AbstractAsyncStorageServiceTest {
+
+    private MemoryStorageService storageService;
+
+    private MockAsyncStorageService asyncService;
+
+    @BeforeMethod
+    protected void setUp() throws ComponentInitializationException {
+        storageService = new MemoryStorageService();
+        storageService.setId("test");
+        storageService.initialize();
+
+        asyncService = new MockAsyncStorageService(storageService);
+        asyncService.setId("async");
+        asyncService.setOperationTimeout(Duration.ofMillis(100));
+        asyncService.initialize();
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        asyncService.destroy();
+        storageService.destroy();
+    }
+
+    @Test
+    public void testOperations() throws IOException {
+        final long exp = System.currentTimeMillis() + 60000;
+
+        Assert.assertTrue(asyncService.create("context", "key", "value", exp));
+        Assert.assertFalse(asyncService.create("context", "key", "value", exp));
+
+        StorageRecord<?> record = asyncService.read("context", "key");
+        Assert.assertNotNull(record);
+        Assert.assertEquals(record.getValue(), "value");
+
+        Assert.assertTrue(asyncService.update("context", "key", "value2", exp));
+        Assert.assertFalse(asyncService.update("context", "missing", "value2", exp));
+        record = storageService.read("context", "key");
+        Assert.assertEquals(record.getValue(), "value2");
+
+        Assert.assertTrue(asyncService.delete("context", "key"));
+        Assert.assertFalse(asyncService.delete("context", "key"));
+        Assert.assertNull(asyncService.read("context", "key"));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTimeout() throws IOException {
+        asyncService.pending = new CompletableFuture<>();
+        try {
+            asyncService.create("context", "key", "value", null);
+        } finally {
+            Assert.assertTrue(asyncService.pending.isCancelled());
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testCancellation() throws IOException {
+        asyncService.pending = new CompletableFuture<>();
+        asyncService.pending.cancel(false);
+        asyncService.read("context", "key");
+    }
+
+    @Test
+    public void testFailure() {
+        final IOException failure = new IOException();
+        asyncService.pending = new CompletableFuture<>();
+        asyncService.pending.completeExceptionally(failure);
+        try {
+            asyncService.delete("context", "key");
+            Assert.fail("Operation should have failed");
+        } catch (final IOException e) {
+            Assert.assertSame(e, failure);
+        }
+    }
+
+    /**
+     * Asynchronous storage service which completes its asynchronous operations using an underlying store,
+     * or returns a supplied future in their place.
+     */
+    private static class MockAsyncStorageService extends AbstractAsyncStorageService {
+
+        /** The underlying store. */
+        @Nonnull private final MemoryStorageService storage;
+
+        /** Future to return from the asynchronous operations in place of the result, if set. */
+        @Nullable private CompletableFuture<Object> pending;
+
+        /**
+         * Constructor.
+         *
+         * @param storageService the underlying store
+         */
+        MockAsyncStorageService(@Nonnull final MemoryStorageService storageService) {
+            storage = storageService;
+        }
+
+        /**
+         * Get the result of an operation on the underlying store as a future.
+         *
+         * @param <T> type of result
+         * @param operation the operation
+         * 
+         * @return the future
+         */
+        @SuppressWarnings("unchecked")
+        @Nonnull private <T> CompletableFuture<T> complete(@Nonnull final Operation<T> operation) {
+            if (pending != null) {
+                return (CompletableFuture<T>) pending;
+            }
+            try {
+                return CompletableFuture.completedFuture(operation.apply());
+            } catch (final IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        /** {@inheritDoc} */
+        public CompletableFuture<Boolean> createAsync(final String context, final String key, final String value,
+                final Long expiration) {
+            return complete(() -> storage.create(context, key, value, expiration));
+        }
+
+        /** {@inheritDoc} */
+        public <T> CompletableFuture<StorageRecord<T>> readAsync(final String context, final String key) {
+            return complete(() -> storage.<T>read(context, key));
+        }
+
+        /** {@inheritDoc} */
+        public CompletableFuture<Boolean> updateAsync(final String context, final String key, final String value,
+                final Long expiration) {
+            return complete(() -> storage.update(context, key, value, expiration));
+        }
+
+        /** {@inheritDoc} */
+        public CompletableFuture<Boolean> deleteAsync(final String context, final String key) {
+            return complete(() -> storage.delete(context, key));
+        }
+
+        /** {@inheritDoc} */
+        public <T> Pair<Long, StorageRecord<T>> read(final String context, final String key, final long version)
+                throws IOException {
+            return storage.read(context, key, version);
+        }
+
+        /** {@inheritDoc} */
+        public Long updateWithVersion(final long version, final String context, final String key,
+                final String value, final Long expiration) throws IOException, VersionMismatchException {
+            return storage.updateWithVersion(version, context, key, value, expiration);
+        }
+
+        /** {@inheritDoc} */
+        public boolean updateExpiration(final String context, final String key, final Long expiration)
+                throws IOException {
+            return storage.updateExpiration(context, key, expiration);
+        }
+
+        /** {@inheritDoc} */
+        public boolean deleteWithVersion(final long version, final String context, final String key)
+                throws IOException, VersionMismatchException {
+            return storage.deleteWithVersion(version, context, key);
+        }
+
+        /** {@inheritDoc} */
+        public void reap(final String context) throws IOException {
+            storage.reap(context);
+        }
+
+        /** {@inheritDoc} */
+        public void updateContextExpiration(final String context, final Long expiration) throws IOException {
+            storage.updateContextExpiration(context, expiration);
+        }
+
+        /** {@inheritDoc} */
+        public void deleteContext(final String context) throws IOException {
+            storage.deleteContext(context);
+        }
+    }
+
+    /**
+     * An operation on the underlying store.
+     *
+     * @param <T> type of result
+     */
+    private interface Operation<T> {
+
+        /**
+         * Perform the operation.
+         *
+         * @return the result
+         * 
+         * @throws IOException if the operation fails
+         */
+        T apply() throws IOException;
+    }
+
+}
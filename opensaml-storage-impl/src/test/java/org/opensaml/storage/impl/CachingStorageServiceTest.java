@@ -0,0 +1,220 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.storage.CachingStorageService;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.StorageService;
+import org.opensaml.storage.VersionMismatchException;
+import org.opensaml.storage.testing.StorageServiceTest;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link CachingStorageService} implementation.
+ */
+public class CachingStorageServiceTest extends StorageServiceTest {
+
+    private MemoryStorageService delegate;
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull protected StorageService getStorageService() {
+        delegate = newDelegate();
+        final CachingStorageService ss = new CachingStorageService(delegate);
+        ss.setId("test");
+        return ss;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @AfterClass
+    protected void tearDown() {
+        super.tearDown();
+        delegate.destroy();
+    }
+
+    @Test
+    public void cacheHits() throws ComponentInitializationException, IOException {
+        final MemoryStorageService store = newDelegate();
+        final CachingStorageService ss = new CachingStorageService(store);
+        ss.setId("test");
+        ss.initialize();
+
+        try {
+            final long exp = System.currentTimeMillis() + 60000;
+            Assert.assertTrue(ss.create("context", "key", "value", exp));
+            Assert.assertEquals(ss.read("context", "key").getValue(), "value");
+            Assert.assertEquals(ss.getMissCount(), 1);
+
+            // Removing the record from the underlying store demonstrates the cache satisfied the read.
+            store.delete("context", "key");
+            final StorageRecord<?> record = ss.read("context", "key");
+            Assert.assertNotNull(record);
+            Assert.assertEquals(record.getValue(), "value");
+            Assert.assertEquals(record.getExpiration(), Long.valueOf(exp));
+            Assert.assertEquals(record.getVersion(), 1);
+            Assert.assertEquals(ss.getHitCount(), 1);
+            Assert.assertEquals(ss.getHitRatio(), 0.5);
+
+            final Pair<Long,StorageRecord<Object>> result = ss.read("context", "key", 1);
+            Assert.assertEquals(result.getFirst(), Long.valueOf(1));
+            Assert.assertNull(result.getSecond());
+
+            ss.clearCache();
+            Assert.assertNull(ss.read("context", "key"));
+        } finally {
+            store.destroy();
+        }
+    }
+
+    @Test
+    public void invalidation() throws ComponentInitializationException, IOException, VersionMismatchException {
+        final MemoryStorageService store = newDelegate();
+        final CachingStorageService ss = new CachingStorageService(store);
+        ss.setId("test");
+        ss.initialize();
+
+        try {
+            final long exp = System.currentTimeMillis() + 60000;
+            ss.create("context", "key", "value", exp);
+            ss.create("context", "key2", "value", exp);
+            ss.read("context", "key");
+            ss.read("context", "key2");
+
+            ss.update("context", "key", "value2", exp);
+            Assert.assertEquals(ss.read("context", "key").getValue(), "value2");
+
+            try {
+                ss.updateWithVersion(1, "context", "key", "value3", exp);
+                Assert.fail("Version mismatch should have been detected");
+            } catch (final VersionMismatchException e) {
+            }
+            ss.read("context", "key");
+            store.updateWithVersion(2, "context", "key", "value3", exp);
+            try {
+                ss.deleteWithVersion(2, "context", "key");
+                Assert.fail("Version mismatch should have been detected");
+            } catch (final VersionMismatchException e) {
+            }
+            final StorageRecord<?> record = ss.read("context", "key");
+            Assert.assertEquals(record.getValue(), "value3");
+            Assert.assertEquals(record.getVersion(), 3);
+
+            Assert.assertTrue(ss.deleteWithVersion(3, "context", "key"));
+            Assert.assertNull(ss.read("context", "key"));
+
+            ss.deleteContext("context");
+            Assert.assertNull(ss.read("context", "key2"));
+        } finally {
+            store.destroy();
+        }
+    }
+
+    @Test
+    public void limits() throws ComponentInitializationException, IOException, InterruptedException {
+        final MemoryStorageService store = newDelegate();
+        final CachingStorageService ss = new CachingStorageService(store);
+        ss.setId("test");
+        ss.setMaxCacheSize(2);
+        ss.setCacheEntryLifetime(Duration.ofMillis(500));
+        ss.setCachedContexts(Collections.singleton("context"));
+        ss.initialize();
+
+        try {
+            final long exp = System.currentTimeMillis() + 60000;
+            for (int i = 0; i < 3; i++) {
+                ss.create("context", "key" + i, "value", exp);
+                ss.read("context", "key" + i);
+            }
+            Assert.assertEquals(ss.getCacheSize(), 2);
+
+            ss.create("other", "key", "value", exp);
+            ss.read("other", "key");
+            Assert.assertEquals(ss.getCacheSize(), 2);
+            Assert.assertEquals(ss.getMissCount(), 3);
+
+            Thread.sleep(1000);
+            store.delete("context", "key2");
+            Assert.assertNull(ss.read("context", "key2"));
+            Assert.assertEquals(ss.getHitCount(), 0);
+        } finally {
+            store.destroy();
+        }
+    }
+
+    @Test
+    public void invalidationMarkers() throws ComponentInitializationException, IOException {
+        final MemoryStorageService store = newDelegate();
+        final CachingStorageService ss = new CachingStorageService(store);
+        ss.setId("test");
+        ss.setMaxCacheSize(2);
+        ss.initialize();
+
+        try {
+            final long exp = System.currentTimeMillis() + 60000;
+            ss.create("context", "key", "value", exp);
+            ss.read("context", "key");
+            Assert.assertEquals(ss.getCacheSize(), 1);
+
+            // Invalidating other records should not displace the cached one.
+            for (int i = 0; i < 5; i++) {
+                ss.delete("context", "missing" + i);
+            }
+            Assert.assertEquals(ss.getCacheSize(), 1);
+            Assert.assertNotNull(ss.read("context", "key"));
+            Assert.assertEquals(ss.getHitCount(), 1);
+
+            // Records invalidated after the markers have been discarded should still be cached by later reads.
+            ss.update("context", "missing0", "value", exp);
+            ss.create("context", "key2", "value", exp);
+            ss.read("context", "key2");
+            Assert.assertNotNull(ss.read("context", "key2"));
+            Assert.assertEquals(ss.getHitCount(), 2);
+        } finally {
+            store.destroy();
+        }
+    }
+
+    /**
+     * Build and initialize a new underlying store.
+     * 
+     * @return the underlying store
+     */
+    @Nonnull private MemoryStorageService newDelegate() {
+        final MemoryStorageService ss = new MemoryStorageService();
+        ss.setId("delegate");
+        try {
+            ss.initialize();
+        } catch (final ComponentInitializationException e) {
+            throw new IllegalStateException(e);
+        }
+        return ss;
+    }
+
+}
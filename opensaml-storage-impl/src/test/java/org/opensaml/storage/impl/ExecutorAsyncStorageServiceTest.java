@@ -0,0 +1,105 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.storage.AsyncStorageService;
+import org.opensaml.storage.ExecutorAsyncStorageService;
+import org.opensaml.storage.StorageRecord;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link ExecutorAsyncStorageService} implementation.
+ */
+public class ExecutorAsyncStorageServiceTest {
+
+    private MemoryStorageService storageService;
+
+    private ExecutorService executor;
+
+    private AsyncStorageService asyncService;
+
+    @BeforeMethod
+    protected void setUp() throws ComponentInitializationException {
+        storageService = new MemoryStorageService();
+        storageService.setId("test");
+        storageService.initialize();
+
+        executor = Executors.newFixedThreadPool(2);
+        asyncService = ExecutorAsyncStorageService.adapt(storageService, executor);
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        executor.shutdownNow();
+        storageService.destroy();
+    }
+
+    @Test
+    public void testAdapt() {
+        Assert.assertTrue(asyncService instanceof ExecutorAsyncStorageService);
+        Assert.assertSame(((ExecutorAsyncStorageService) asyncService).getStorageService(), storageService);
+        Assert.assertSame(ExecutorAsyncStorageService.adapt(asyncService, executor), asyncService);
+        Assert.assertEquals(asyncService.getId(), "test");
+    }
+
+    @Test
+    public void testOperations() throws InterruptedException, ExecutionException, IOException {
+        final long exp = System.currentTimeMillis() + 60000;
+
+        Assert.assertTrue(asyncService.createAsync("context", "key", "value", exp).get());
+        Assert.assertFalse(asyncService.createAsync("context", "key", "value", exp).get());
+
+        StorageRecord<?> record = asyncService.readAsync("context", "key").get();
+        Assert.assertNotNull(record);
+        Assert.assertEquals(record.getValue(), "value");
+
+        Assert.assertTrue(asyncService.updateAsync("context", "key", "value2", exp).get());
+        Assert.assertFalse(asyncService.updateAsync("context", "missing", "value2", exp).get());
+        record = storageService.read("context", "key");
+        Assert.assertEquals(record.getValue(), "value2");
+
+        Assert.assertTrue(asyncService.deleteAsync("context", "key").get());
+        Assert.assertFalse(asyncService.deleteAsync("context", "key").get());
+        Assert.assertNull(asyncService.readAsync("context", "key").get());
+    }
+
+    @Test
+    public void testRejection() throws InterruptedException {
+        final AsyncStorageService rejecting = new ExecutorAsyncStorageService(storageService, r -> {
+            throw new RejectedExecutionException();
+        });
+        try {
+            rejecting.createAsync("context", "key", "value", null).get();
+            Assert.fail("Operation should have been rejected");
+        } catch (final ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+}
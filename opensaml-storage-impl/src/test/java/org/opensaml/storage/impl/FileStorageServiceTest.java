@@ -0,0 +1,206 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.storage.StorageService;
+import org.opensaml.storage.testing.StorageServiceTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link FileStorageService} implementation.
+ */
+public class FileStorageServiceTest extends StorageServiceTest {
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull protected StorageService getStorageService() {
+        try {
+            FileStorageService ss = new FileStorageService();
+            ss.setId("test");
+            ss.setDirectory(Files.createTempDirectory("FileStorageServiceTest").toFile());
+            ss.setCleanupInterval(Duration.ofSeconds(1));
+            return ss;
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    @Test
+    public void restart() throws ComponentInitializationException, IOException {
+        final File dir = Files.createTempDirectory("FileStorageServiceTest").toFile();
+        
+        FileStorageService ss = newStorageService(dir);
+        ss.create("context", "a", "1", null);
+        ss.create("context", "b", "2", System.currentTimeMillis() + 60000);
+        ss.update("context", "a", "3", null);
+        ss.updateExpiration("context", "b", System.currentTimeMillis() + 120000);
+        ss.create("context", "c", "4", null);
+        ss.delete("context", "c");
+        ss.create("other", "d", "5", null);
+        ss.deleteContext("other");
+        final Long expiration = ss.read("context", "b").getExpiration();
+        ss.destroy();
+        
+        ss = newStorageService(dir);
+        try {
+            Assert.assertEquals(ss.read("context", "a").getValue(), "3");
+            Assert.assertEquals(ss.read("context", "a").getVersion(), 2);
+            Assert.assertEquals(ss.read("context", "b").getExpiration(), expiration);
+            Assert.assertNull(ss.read("context", "c"));
+            Assert.assertNull(ss.read("other", "d"));
+        } finally {
+            ss.destroy();
+        }
+    }
+    
+    @Test
+    public void compaction() throws ComponentInitializationException, IOException {
+        final File dir = Files.createTempDirectory("FileStorageServiceTest").toFile();
+        
+        FileStorageService ss = newStorageService(dir);
+        ss.create("context", "key", "initial", null);
+        for (int i = 0; i < 1000; i++) {
+            ss.update("context", "key", Integer.toString(i), null);
+        }
+        ss.getCleanupTask().run();
+        ss.update("context", "key", "final", null);
+        ss.destroy();
+        
+        ss = newStorageService(dir);
+        try {
+            Assert.assertEquals(ss.read("context", "key").getValue(), "final");
+            Assert.assertEquals(ss.read("context", "key").getVersion(), 1002);
+        } finally {
+            ss.destroy();
+        }
+    }
+    
+    @Test
+    public void failedCompaction() throws ComponentInitializationException, IOException {
+        final File dir = Files.createTempDirectory("FileStorageServiceTest").toFile();
+        final Path logFile = dir.toPath().resolve(FileStorageService.LOG_FILE_NAME);
+        
+        FileStorageService ss = newStorageService(dir);
+        try {
+            ss.create("context", "key", "initial", null);
+            for (int i = 0; i < 1000; i++) {
+                ss.update("context", "key", Integer.toString(i), null);
+            }
+            
+            // Block the log file's replacement with a non-empty directory, leaving the open log unlinked.
+            Files.delete(logFile);
+            Files.createDirectory(logFile);
+            Files.createFile(logFile.resolve("blocker"));
+            try {
+                ss.compact();
+                Assert.fail("Compaction should have failed");
+            } catch (final IOException e) {
+                // expected
+            }
+            
+            ss.update("context", "key", "after", null);
+            Assert.assertEquals(ss.read("context", "key").getValue(), "after");
+            ss.getCleanupTask().run();
+            ss.create("context", "other", "value", null);
+            
+            // Once the replacement is possible, compaction recovers the log from memory.
+            Files.delete(logFile.resolve("blocker"));
+            Files.delete(logFile);
+            ss.compact();
+            ss.update("context", "key", "final", null);
+        } finally {
+            ss.destroy();
+        }
+        
+        ss = newStorageService(dir);
+        try {
+            Assert.assertEquals(ss.read("context", "key").getValue(), "final");
+            Assert.assertEquals(ss.read("context", "key").getVersion(), 1003);
+            Assert.assertEquals(ss.read("context", "other").getValue(), "value");
+        } finally {
+            ss.destroy();
+        }
+    }
+    
+    @Test
+    public void corruptEntry() throws ComponentInitializationException, IOException {
+        final File dir = Files.createTempDirectory("FileStorageServiceTest").toFile();
+        
+        FileStorageService ss = newStorageService(dir);
+        ss.create("context", "a", "1", null);
+        ss.create("context", "b", "2", null);
+        ss.destroy();
+        
+        // Damage the final entry, as an incomplete write might.
+        final Path logFile = dir.toPath().resolve(FileStorageService.LOG_FILE_NAME);
+        final byte[] data = Files.readAllBytes(logFile);
+        int end = data.length;
+        while (end > 0 && data[end - 1] == 0) {
+            end--;
+        }
+        data[end - 1] ^= 0x55;
+        Files.write(logFile, data);
+        
+        ss = newStorageService(dir);
+        try {
+            Assert.assertNotNull(ss.read("context", "a"));
+            Assert.assertNull(ss.read("context", "b"));
+            Assert.assertTrue(ss.create("context", "b", "3", null));
+        } finally {
+            ss.destroy();
+        }
+        
+        ss = newStorageService(dir);
+        try {
+            Assert.assertEquals(ss.read("context", "b").getValue(), "3");
+        } finally {
+            ss.destroy();
+        }
+    }
+    
+    /**
+     * Create and initialize a service using a given directory.
+     * 
+     * @param dir log directory
+     * 
+     * @return the service
+     * 
+     * @throws ComponentInitializationException if initialization fails
+     */
+    @Nonnull private FileStorageService newStorageService(@Nonnull final File dir)
+            throws ComponentInitializationException {
+        final FileStorageService ss = new FileStorageService();
+        ss.setId("test");
+        ss.setDirectory(dir);
+        ss.setCompactionThreshold(1024);
+        ss.initialize();
+        return ss;
+    }
+    
+}
@@ -20,7 +20,11 @@ package org.opensaml.storage.impl;
 import java.io.IOException;
 import java.security.SecureRandom;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nonnull;
@@ -32,6 +36,8 @@ import net.shibboleth.utilities.java.support.component.ComponentInitializationEx
 import org.opensaml.storage.StorageRecord;
 import org.opensaml.storage.StorageService;
 import org.opensaml.storage.testing.StorageServiceTest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.io.ClassPathResource;
@@ -47,6 +53,9 @@ import org.testng.annotations.Test;
  */
 public class JPAStorageServiceTest extends StorageServiceTest {
 
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(JPAStorageServiceTest.class);
+
     /** Storage service. */
     private JPAStorageService storageService;
 
@@ -69,6 +78,8 @@ public class JPAStorageServiceTest extends StorageServiceTest {
         storageService.setId("test");
         storageService.setCleanupInterval(Duration.ofSeconds(5));
         storageService.setTransactionRetry(2);
+        storageService.setBatchSize(20);
+        storageService.setReapChunkSize(10);
         super.setUp();
     }
 
@@ -258,6 +269,80 @@ public class JPAStorageServiceTest extends StorageServiceTest {
         Assert.assertNull(rec2);
     }
 
+    @Test
+    public void createBatch() throws IOException {
+        final String context = Long.toString(random.nextLong());
+        storageService.create(context, "live", "value", null);
+        storageService.create(context, "dead", "value", System.currentTimeMillis() - 1000);
+
+        final Map<String, String> records = new LinkedHashMap<>();
+        records.put("live", "value2");
+        records.put("dead", "value2");
+        for (int i = 0; i < 50; i++) {
+            records.put(Integer.toString(i), Integer.toString(i + 1));
+        }
+        final Set<String> created = storageService.createBatch(context, records, null);
+        Assert.assertEquals(created.size(), 51);
+        Assert.assertFalse(created.contains("live"));
+        Assert.assertTrue(created.contains("dead"));
+
+        Assert.assertEquals(storageService.read(context, "live").getValue(), "value");
+        final StorageRecord<?> rec = storageService.read(context, "dead");
+        Assert.assertEquals(rec.getValue(), "value2");
+        Assert.assertEquals(rec.getVersion(), 1);
+        Assert.assertEquals(storageService.read(context, "49").getValue(), "50");
+        Assert.assertTrue(storageService.createBatch(context, records, null).isEmpty());
+        Assert.assertEquals(storageService.readAll(context).size(), 52);
+        storageService.deleteContext(context);
+    }
+
+    @Test
+    public void reapInChunks() throws IOException {
+        final String context = Long.toString(random.nextLong());
+        final long now = System.currentTimeMillis();
+        for (int i = 1; i <= 55; i++) {
+            storageService.create(context, Integer.toString(i), Integer.toString(i + 1), now - 1000 + i % 7);
+        }
+        storageService.create(context, "live", "value", now + 300000);
+        storageService.deleteImpl(now);
+        final List<?> recs = storageService.readAll(context);
+        Assert.assertEquals(recs.size(), 1);
+        storageService.deleteContext(context);
+    }
+
+    @Test(enabled = false)
+    public void benchmarkCreate() throws IOException {
+        // Compares individual and batched creation against the embedded database; enable to run.
+        final int count = 5000;
+        final Map<String, String> records = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            records.put(Integer.toString(i), UUID.randomUUID().toString());
+        }
+
+        final String context1 = Long.toString(random.nextLong());
+        long start = System.nanoTime();
+        for (final Map.Entry<String, String> entry : records.entrySet()) {
+            storageService.create(context1, entry.getKey(), entry.getValue(), null);
+        }
+        final long individual = System.nanoTime() - start;
+
+        final String context2 = Long.toString(random.nextLong());
+        start = System.nanoTime();
+        storageService.createBatch(context2, records, null);
+        final long batched = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        storageService.updateContextExpiration(context1, System.currentTimeMillis() - 1);
+        storageService.updateContextExpiration(context2, System.currentTimeMillis() - 1);
+        storageService.deleteImpl(System.currentTimeMillis());
+        final long reaped = System.nanoTime() - start;
+
+        log.info("Created {} records individually in {}ms, in batches in {}ms, reaped {} in {}ms", count,
+                individual / 1000000, batched / 1000000, 2 * count, reaped / 1000000);
+        Assert.assertTrue(storageService.readAll(context1).isEmpty());
+        Assert.assertTrue(storageService.readAll(context2).isEmpty());
+    }
+
     @Test(enabled = false)
     public void largeValue() throws IOException {
         // hsqldb defaults LOB length to 255 chars; disabled for now
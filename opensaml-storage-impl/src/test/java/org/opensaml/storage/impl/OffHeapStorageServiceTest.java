@@ -0,0 +1,115 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.storage.StorageService;
+import org.opensaml.storage.testing.StorageServiceTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link OffHeapStorageService} implementation.
+ */
+public class OffHeapStorageServiceTest extends StorageServiceTest {
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull protected StorageService getStorageService() {
+        OffHeapStorageService ss = new OffHeapStorageService();
+        ss.setId("test");
+        ss.setCleanupInterval(Duration.ofSeconds(1));
+        return ss;
+    }
+        
+    @Test
+    public void validConfig() throws ComponentInitializationException {
+        OffHeapStorageService ss = new OffHeapStorageService();
+        ss.setId("test");
+        ss.initialize();
+        ss.destroy();
+    }
+    
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void insufficientMemory() throws ComponentInitializationException {
+        OffHeapStorageService ss = new OffHeapStorageService();
+        ss.setId("test");
+        ss.setMaxMemory(1024);
+        ss.initialize();
+    }
+    
+    @Test
+    public void eviction() throws ComponentInitializationException, IOException {
+        OffHeapStorageService ss = new OffHeapStorageService();
+        ss.setId("test");
+        ss.setSegmentCount(1);
+        ss.setMaxMemory(256 * 1024);
+        ss.setContextSize(10);
+        ss.setKeySize(10);
+        ss.setValueSize(100);
+        ss.initialize();
+        
+        try {
+            // Each of these records occupies a 64 byte slot, so exactly fill the single slab permitted.
+            for (int i = 0; i < 4096; i++) {
+                Assert.assertTrue(ss.create("c", "k" + i, "v", null));
+            }
+            Assert.assertNotNull(ss.read("c", "k0"));
+            
+            Assert.assertTrue(ss.create("c", "k4096", "v", null));
+            Assert.assertNotNull(ss.read("c", "k0"));
+            Assert.assertNull(ss.read("c", "k1"));
+            Assert.assertNotNull(ss.read("c", "k2"));
+            Assert.assertNotNull(ss.read("c", "k4096"));
+            
+            Assert.assertTrue(ss.update("c", "k2", "abcd", null));
+            Assert.assertEquals(ss.read("c", "k2").getValue(), "abcd");
+            Assert.assertEquals(ss.read("c", "k2").getVersion(), 2);
+            
+            // A record of a different size class reclaims the slab, evicting all of the records in it.
+            final String bigValue = "0123456789012345678901234567890123456789";
+            Assert.assertTrue(ss.create("c", "big", bigValue, null));
+            Assert.assertEquals(ss.read("c", "big").getValue(), bigValue);
+            Assert.assertNull(ss.read("c", "k0"));
+            Assert.assertNull(ss.read("c", "k2"));
+            Assert.assertNull(ss.read("c", "k4096"));
+            
+            Assert.assertTrue(ss.create("c", "k0", "v", null));
+            Assert.assertNotNull(ss.read("c", "k0"));
+            Assert.assertNull(ss.read("c", "big"));
+            
+            // Growing the record cannot reclaim its own slab, and no other slab exists.
+            try {
+                ss.update("c", "k0", bigValue, null);
+                Assert.fail("Record should not have been able to reclaim its own slab");
+            } catch (final IOException e) {
+                // expected
+            }
+            Assert.assertEquals(ss.read("c", "k0").getValue(), "v");
+        } finally {
+            ss.destroy();
+        }
+    }
+    
+}
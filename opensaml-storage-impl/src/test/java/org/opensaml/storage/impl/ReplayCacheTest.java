@@ -17,7 +17,14 @@
 
 package org.opensaml.storage.impl;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.opensaml.storage.ReplayCache;
 import org.opensaml.storage.impl.client.ClientStorageService;
@@ -132,4 +139,106 @@ public class ReplayCacheTest {
         Assert.assertTrue(replayCache.check(context, messageID, Instant.now().plusSeconds(1)),
                 "Message was not replay, previous cache entry should have expired");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test replay detection with lock striping in place of atomic creation.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testReplayNonAtomic() throws Exception {
+        replayCache = new ReplayCache();
+        replayCache.setStorage(storageService);
+        replayCache.setAtomicCreate(false);
+        replayCache.setLockStripes(4);
+        replayCache.initialize();
+        
+        Assert.assertTrue(replayCache.check(context, messageID, expiration),
+                "Message was not replay, insert into empty cache");
+        Assert.assertFalse(replayCache.check(context, messageID, expiration),
+                "Message was replay");
+    }
+
+    /**
+     * Test replay detection without atomic creation, using a store whose create operation overwrites records.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testReplayNonAtomicOverwritingStore() throws Exception {
+        final MemoryStorageService overwritingStorage = new MemoryStorageService() {
+            public boolean create(final String context, final String key, final String value,
+                    final Long expiration) throws IOException {
+                if (!super.create(context, key, value, expiration)) {
+                    super.update(context, key, value, expiration);
+                }
+                return true;
+            }
+        };
+        overwritingStorage.setId("overwriting");
+        overwritingStorage.initialize();
+        
+        try {
+            replayCache = new ReplayCache();
+            replayCache.setStorage(overwritingStorage);
+            replayCache.setAtomicCreate(false);
+            replayCache.initialize();
+            
+            Assert.assertTrue(replayCache.check(context, messageID, expiration),
+                    "Message was not replay, insert into empty cache");
+            Assert.assertFalse(replayCache.check(context, messageID, expiration),
+                    "Message was replay");
+        } finally {
+            overwritingStorage.destroy();
+        }
+    }
+
+    /**
+     * Test replay detection via the local cache.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testReplayLocalCache() throws Exception {
+        replayCache = new ReplayCache();
+        replayCache.setStorage(storageService);
+        replayCache.setLocalCacheSize(10);
+        replayCache.initialize();
+        
+        Assert.assertTrue(replayCache.check(context, messageID, expiration),
+                "Message was not replay, insert into empty cache");
+        
+        // Removing the record from storage demonstrates the local cache detected the replay.
+        storageService.delete(context, messageID);
+        Assert.assertFalse(replayCache.check(context, messageID, expiration),
+                "Message was replay");
+        Assert.assertTrue(replayCache.check(context, "IDWhichIsNot" + messageID, expiration),
+                "Message was not replay");
+    }
+
+    /**
+     * Test that concurrent checks of the same value detect exactly one non-replay.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testConcurrentReplay() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                tasks.add(() -> replayCache.check(context, messageID, expiration));
+            }
+            
+            int accepted = 0;
+            for (final Future<Boolean> result : executor.invokeAll(tasks)) {
+                if (result.get()) {
+                    accepted++;
+                }
+            }
+            Assert.assertEquals(accepted, 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.storage.StorageService;
+import org.opensaml.storage.testing.StorageServiceTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link ShardedMemoryStorageService} implementation.
+ */
+public class ShardedMemoryStorageServiceTest extends StorageServiceTest {
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull protected StorageService getStorageService() {
+        ShardedMemoryStorageService ss = new ShardedMemoryStorageService();
+        ss.setId("test");
+        ss.setCleanupInterval(Duration.ofSeconds(1));
+        return ss;
+    }
+        
+    @Test
+    public void validConfig() throws ComponentInitializationException {
+        ShardedMemoryStorageService ss = new ShardedMemoryStorageService();
+        ss.setId("test");
+        ss.initialize();
+        ss.destroy();
+    }
+    
+    @Test
+    public void contextOperationsAcrossShards() throws ComponentInitializationException, IOException {
+        ShardedMemoryStorageService ss = new ShardedMemoryStorageService();
+        ss.setId("test");
+        ss.setShardCount(4);
+        ss.initialize();
+        
+        try {
+            final long exp = System.currentTimeMillis() + 60000;
+            for (int i = 0; i < 20; i++) {
+                Assert.assertTrue(ss.create("context", "key" + i, "value", exp));
+                Assert.assertTrue(ss.create("other", "key" + i, "value", exp));
+            }
+            
+            ss.updateContextExpiration("context", System.currentTimeMillis() - 1);
+            for (int i = 0; i < 20; i++) {
+                Assert.assertNull(ss.read("context", "key" + i));
+                Assert.assertNotNull(ss.read("other", "key" + i));
+            }
+            
+            ss.reap("context");
+            ss.getCleanupTask().run();
+            Assert.assertTrue(ss.create("context", "key0", "value", exp));
+            
+            ss.deleteContext("other");
+            for (int i = 0; i < 20; i++) {
+                Assert.assertNull(ss.read("other", "key" + i));
+            }
+        } finally {
+            ss.destroy();
+        }
+    }
+    
+}
@@ -48,6 +48,11 @@ public class AbstractBaseClientStorageServiceTest {
     }
 
     protected ClientStorageService getStorageService() throws ComponentInitializationException {
+        return getStorageService(null);
+    }
+
+    protected ClientStorageService getStorageService(final ClientStorageServiceStore.Factory factory)
+            throws ComponentInitializationException {
         final ClientStorageService ss = new ClientStorageService();
         ss.setId("test");
         ss.setStorageName(STORAGE_NAME);
@@ -76,6 +81,9 @@ public class AbstractBaseClientStorageServiceTest {
         }
 
         ss.setDataSealer(sealer);
+        if (factory != null) {
+            ss.setClientStorageServiceStoreFactory(factory);
+        }
         
         ss.setHttpServletRequest(new ThreadLocalHttpServletRequestProxy());
         ss.initialize();
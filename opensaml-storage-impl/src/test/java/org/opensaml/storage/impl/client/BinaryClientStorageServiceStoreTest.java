@@ -0,0 +1,154 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl.client;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.impl.client.BinaryClientStorageServiceStore.BinaryClientStorageServiceStoreFactory;
+import org.opensaml.storage.impl.client.ClientStorageService.ClientStorageSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.net.HttpServletRequestResponseContext;
+
+/** Unit test for {@link BinaryClientStorageServiceStore}. */
+public class BinaryClientStorageServiceStoreTest extends AbstractBaseClientStorageServiceTest {
+
+    private BinaryClientStorageServiceStoreFactory factory;
+
+    @BeforeClass public void setUpClass() throws ComponentInitializationException {
+        init();
+    }
+
+    @BeforeMethod public void setUp() throws ComponentInitializationException {
+        factory = new BinaryClientStorageServiceStoreFactory();
+        factory.setCompressionThreshold(0);
+        factory.initialize();
+
+        HttpServletRequestResponseContext.loadCurrent(new MockHttpServletRequest(), new MockHttpServletResponse());
+    }
+
+    @Test public void testRoundTrip() throws ComponentInitializationException, IOException {
+        final ClientStorageService ss = getStorageService(factory);
+
+        final long exp = System.currentTimeMillis() + 60000;
+        ss.load(null, ClientStorageSource.COOKIE);
+        for (int i = 0; i < 10; i++) {
+            ss.create("context", "key" + i, "value" + i, i % 2 == 0 ? exp : null);
+        }
+        ss.create("context2", "key", "value", exp);
+
+        final ClientStorageServiceOperation op = ss.save();
+        Assert.assertNotNull(op);
+        Assert.assertNotNull(op.getValue());
+        Assert.assertTrue(op.getSerializedSize() > 0);
+
+        ss.load(op.getValue(), ClientStorageSource.COOKIE);
+        for (int i = 0; i < 10; i++) {
+            final StorageRecord<?> record = ss.read("context", "key" + i);
+            Assert.assertNotNull(record);
+            Assert.assertEquals(record.getValue(), "value" + i);
+            Assert.assertEquals(record.getExpiration(), i % 2 == 0 ? Long.valueOf(exp) : null);
+        }
+        Assert.assertEquals(ss.read("context2", "key").getValue(), "value");
+        Assert.assertNull(ss.save());
+    }
+
+    @Test public void testUnchanged() throws ComponentInitializationException, IOException {
+        final ClientStorageService ss = getStorageService(factory);
+
+        ss.load(null, ClientStorageSource.COOKIE);
+        ss.create("context", "key", "value", null);
+        final ClientStorageServiceOperation op = ss.save();
+        Assert.assertNotNull(op);
+
+        // Rewriting the same value marks the store dirty without changing it.
+        ss.load(op.getValue(), ClientStorageSource.COOKIE);
+        ss.update("context", "key", "value", null);
+        Assert.assertNull(ss.save());
+
+        ss.update("context", "key", "value2", null);
+        Assert.assertNotNull(ss.save());
+    }
+
+    @Test public void testReseal() throws ComponentInitializationException, IOException {
+        factory = new BinaryClientStorageServiceStoreFactory();
+        factory.setResealThreshold(Duration.ofDays(2));
+        factory.initialize();
+        final ClientStorageService ss = getStorageService(factory);
+
+        ss.load(null, ClientStorageSource.COOKIE);
+        ss.create("context", "key", "value", null);
+        final ClientStorageServiceOperation op = ss.save();
+        Assert.assertNotNull(op);
+
+        // Unchanged data sealed for less than the threshold is re-sealed to refresh it.
+        ss.load(op.getValue(), ClientStorageSource.COOKIE);
+        ss.update("context", "key", "value", null);
+        final ClientStorageServiceOperation resealed = ss.save();
+        Assert.assertNotNull(resealed);
+        Assert.assertNotNull(resealed.getValue());
+
+        ss.load(resealed.getValue(), ClientStorageSource.COOKIE);
+        Assert.assertEquals(ss.read("context", "key").getValue(), "value");
+
+        // Data sealed until the expiration of its records is not re-sealed, as that would not extend it.
+        ss.update("context", "key", "value", System.currentTimeMillis() + 60000);
+        final ClientStorageServiceOperation expiring = ss.save();
+        Assert.assertNotNull(expiring);
+        ss.load(expiring.getValue(), ClientStorageSource.COOKIE);
+        ss.update("context", "key", "value", ss.read("context", "key").getExpiration());
+        Assert.assertNull(ss.save());
+    }
+
+    @Test public void testEmpty() throws ComponentInitializationException, IOException {
+        final ClientStorageService ss = getStorageService(factory);
+
+        ss.load(null, ClientStorageSource.HTML_LOCAL_STORAGE);
+        ss.create("context", "key", "value", null);
+        ss.load(ss.save().getValue(), ClientStorageSource.HTML_LOCAL_STORAGE);
+
+        ss.delete("context", "key");
+        final ClientStorageServiceOperation op = ss.save();
+        Assert.assertNotNull(op);
+        Assert.assertNull(op.getValue());
+    }
+
+    @Test public void testCorrupt() throws ComponentInitializationException, IOException {
+        final ClientStorageService ss = getStorageService(factory);
+
+        final ClientStorageService json = getStorageService();
+        json.load(null, ClientStorageSource.COOKIE);
+        json.create("context", "key", "value", null);
+
+        // Data in another format is discarded and overwritten.
+        ss.load(json.save().getValue(), ClientStorageSource.COOKIE);
+        Assert.assertNull(ss.read("context", "key"));
+        final ClientStorageServiceOperation op = ss.save();
+        Assert.assertNotNull(op);
+        Assert.assertNull(op.getValue());
+    }
+
+}
@@ -198,6 +198,31 @@ public class LoadClientStorageServicesTest extends AbstractBaseClientStorageServ
         checkStorageContent(ss);
     }
 
+    @Test public void testDeferredLoad() throws ComponentInitializationException, IOException {
+        final ClientStorageService ss = getStorageService();
+        ss.load(null, ClientStorageSource.COOKIE);
+        ss.create("context1", "key1", "value1", null);
+        
+        final ClientStorageServiceOperation saved = ss.save();
+        Assert.assertNotNull(saved);
+
+        // Unaccessed but invalid data is still overwritten.
+        ss.load("error", ClientStorageSource.HTML_LOCAL_STORAGE);
+        Assert.assertTrue(ss.isLoaded());
+        Assert.assertEquals(ss.getSource(), ClientStorageSource.HTML_LOCAL_STORAGE);
+        final ClientStorageServiceOperation overwritten = ss.save();
+        Assert.assertNotNull(overwritten);
+        Assert.assertNull(overwritten.getValue());
+        
+        ss.load(saved.getValue(), ClientStorageSource.COOKIE);
+        Assert.assertNull(ss.save());
+        Assert.assertEquals(ss.read("context1", "key1").getValue(), "value1");
+        Assert.assertNull(ss.save());
+        
+        ss.update("context1", "key1", "value2", null);
+        Assert.assertNotNull(ss.save());
+    }
+
     private void checkStorageContent(final StorageService ss) throws IOException {
         Assert.assertNull(loadCtx.getParent());
 
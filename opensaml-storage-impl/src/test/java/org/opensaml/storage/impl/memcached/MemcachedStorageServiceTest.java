@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -216,6 +217,48 @@ public class MemcachedStorageServiceTest {
         }
     }
 
+    @Test
+    public void testBulkOperations() throws Exception {
+        final IdGenerator generator = new RandomIdGenerator(20);
+        final String context = generator.generate();
+        final Set<String> keySet = createContextKeys(context, generator, 20);
+        final Map<String, StorageRecord<String>> records = keyTrackingService.readBulk(context, keySet);
+        assertEquals(records.keySet(), keySet);
+        assertEquals(keyTrackingService.readContext(context).keySet(), keySet);
+
+        final Set<String> keysTBD = new HashSet<>();
+        for (final String k : keySet) {
+            if (keysTBD.size() < 5) {
+                keysTBD.add(k);
+            }
+        }
+        assertEquals(keyTrackingService.deleteBulk(context, keysTBD), 5);
+        final Set<String> remaining = new HashSet<>(keySet);
+        remaining.removeAll(keysTBD);
+        assertEquals(keyTrackingService.readContext(context).keySet(), remaining);
+
+        assertEquals(keyTrackingService.updateExpirationBulk(context, remaining, System.currentTimeMillis() - 5000),
+                remaining.size());
+        assertTrue(keyTrackingService.readBulk(context, keySet).isEmpty());
+    }
+
+    @Test
+    public void testAsyncOperations() throws Exception {
+        final IdGenerator generator = new RandomIdGenerator(20);
+        final String context = generator.generate();
+        final String key = generator.generate();
+        assertTrue(keyTrackingService.createAsync(context, key, "value", 30000L).get());
+        assertFalse(keyTrackingService.createAsync(context, key, "value", 30000L).get());
+        final StorageRecord<String> record = keyTrackingService.<String>readAsync(context, key).get();
+        assertNotNull(record);
+        assertEquals(record.getValue(), "value");
+        assertTrue(keyTrackingService.updateAsync(context, key, "updated", 30000L).get());
+        assertEquals(keyTrackingService.read(context, key).getValue(), "updated");
+        assertTrue(keyTrackingService.deleteAsync(context, key).get());
+        assertNull(keyTrackingService.readAsync(context, key).get());
+        assertTrue(keyTrackingService.readContext(context).isEmpty());
+    }
+
     @AfterClass
     public void tearDown() {
         service.destroy();
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.context;
+
+import javax.annotation.Nonnull;
+
+import org.opensaml.messaging.context.BaseContext;
+import org.opensaml.xmlsec.encryption.support.DecryptedKeyCache;
+
+/**
+ * A context implementation which carries a {@link DecryptedKeyCache}, so that the decryption of
+ * shared EncryptedKey elements may be reused by all of the decryption operations performed on a message.
+ */
+public final class DecryptedKeyCacheContext extends BaseContext {
+    
+    /** The decrypted key cache. */
+    @Nonnull private final DecryptedKeyCache cache;
+    
+    /** Constructor. */
+    public DecryptedKeyCacheContext() {
+        cache = new DecryptedKeyCache();
+    }
+    
+    /**
+     * Get the decrypted key cache.
+     * 
+     * @return the decrypted key cache
+     */
+    @Nonnull public DecryptedKeyCache getDecryptedKeyCache() {
+        return cache;
+    }
+
+}
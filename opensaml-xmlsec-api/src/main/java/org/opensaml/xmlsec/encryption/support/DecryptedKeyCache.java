@@ -0,0 +1,95 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.encryption.support;
+
+import java.security.Key;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.xmlsec.encryption.EncryptedKey;
+
+/**
+ * A cache of the keys obtained by decrypting {@link EncryptedKey} instances, for use by one or more
+ * {@link Decrypter} instances which are processing the same message.
+ * 
+ * <p>
+ * Keys are cached by {@link EncryptedKey} object identity and key algorithm URI, so that an EncryptedKey which
+ * is shared by multiple EncryptedData elements, for example by use of a RetrievalMethod or CarriedKeyName reference,
+ * is decrypted only once.
+ * </p>
+ * 
+ * <p>
+ * Since the cached keys are sensitive, instances should have a lifetime no longer than the message being processed.
+ * </p>
+ */
+@ThreadSafe
+public class DecryptedKeyCache {
+    
+    /** The cached keys, indexed by EncryptedKey and then key algorithm URI. */
+    @Nonnull private final Map<EncryptedKey, Map<String, Key>> keys;
+    
+    /** Constructor. */
+    public DecryptedKeyCache() {
+        keys = new IdentityHashMap<>();
+    }
+    
+    /**
+     * Get the previously decrypted key for an {@link EncryptedKey}.
+     * 
+     * @param encryptedKey the encrypted key
+     * @param algorithm the algorithm associated with the decrypted key
+     * 
+     * @return the cached key, or null
+     */
+    @Nullable public synchronized Key get(@Nonnull final EncryptedKey encryptedKey, @Nonnull final String algorithm) {
+        final Map<String, Key> algorithmKeys = keys.get(encryptedKey);
+        if (algorithmKeys != null) {
+            return algorithmKeys.get(algorithm);
+        }
+        return null;
+    }
+    
+    /**
+     * Cache the decrypted key for an {@link EncryptedKey}.
+     * 
+     * @param encryptedKey the encrypted key
+     * @param algorithm the algorithm associated with the decrypted key
+     * @param key the decrypted key
+     */
+    public synchronized void put(@Nonnull final EncryptedKey encryptedKey, @Nonnull final String algorithm,
+            @Nonnull final Key key) {
+        Constraint.isNotNull(encryptedKey, "EncryptedKey cannot be null");
+        Constraint.isNotNull(algorithm, "Algorithm cannot be null");
+        Constraint.isNotNull(key, "Key cannot be null");
+        
+        keys.computeIfAbsent(encryptedKey, k -> new HashMap<>()).put(algorithm, key);
+    }
+    
+    /** Remove all cached keys. */
+    public synchronized void clear() {
+        keys.clear();
+    }
+    
+}
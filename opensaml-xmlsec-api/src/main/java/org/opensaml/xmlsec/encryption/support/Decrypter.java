@@ -18,8 +18,11 @@
 package org.opensaml.xmlsec.encryption.support;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -28,6 +31,9 @@ import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.spec.IvParameterSpec;
 
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.primitive.StringSupport;
@@ -55,9 +61,14 @@ import org.opensaml.security.credential.UsageType;
 import org.opensaml.security.criteria.KeyAlgorithmCriterion;
 import org.opensaml.security.criteria.KeyLengthCriterion;
 import org.opensaml.security.criteria.UsageCriterion;
+import org.opensaml.security.crypto.JCAConstants;
 import org.opensaml.xmlsec.DecryptionParameters;
+import org.opensaml.xmlsec.algorithm.AlgorithmDescriptor;
+import org.opensaml.xmlsec.algorithm.AlgorithmRegistry;
 import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
+import org.opensaml.xmlsec.algorithm.BlockEncryptionAlgorithm;
 import org.opensaml.xmlsec.config.DecryptionParserPool;
+import org.opensaml.xmlsec.encryption.CipherData;
 import org.opensaml.xmlsec.encryption.EncryptedData;
 import org.opensaml.xmlsec.encryption.EncryptedKey;
 import org.opensaml.xmlsec.encryption.EncryptedType;
@@ -182,6 +193,16 @@ import com.google.common.base.Strings;
  * This should only be done where the caller's use case really requires it.
  * </p>
  * 
+ * <p>
+ * If the <code>streamingDecryption</code> option is enabled via {@link #setStreamingDecryption(boolean)},
+ * EncryptedData carried inline as a CipherValue and encrypted with a CBC mode block cipher will be
+ * decrypted by streaming the cipher octets, base64-decoded from the CipherValue's DOM text nodes, through the
+ * cipher directly into the parser, rather than first materializing the full ciphertext and plaintext octets in
+ * memory. Other EncryptedData is decrypted as usual. In particular, authenticated (e.g. GCM) modes are never
+ * streamed, since not every JCA provider verifies the authentication tag before releasing plaintext, and
+ * unauthenticated plaintext must not reach the parser.
+ * </p>
+ * 
  */
 public class Decrypter {
 
@@ -222,6 +243,12 @@ public class Decrypter {
      * root of a new DOM document. */
     private boolean defaultRootInNewDocument;
     
+    /** Flag to determine whether streaming decryption is used where supported. */
+    private boolean streamingDecryption;
+    
+    /** Optional cache of keys resolved from EncryptedKey decryption. */
+    private DecryptedKeyCache decryptedKeyCache;
+    
     /**
      * Constructor.
      *
@@ -309,6 +336,51 @@ public class Decrypter {
     public void setRootInNewDocument(final boolean flag) {
        defaultRootInNewDocument = flag; 
     }
+    
+    /**
+     * Get the flag which indicates whether EncryptedData is decrypted by streaming the cipher octets
+     * directly into the parser, where supported.  Defaults to false.
+     * 
+     * @return the current value of the flag for this decrypter instance
+     */
+    public boolean isStreamingDecryption() {
+        return streamingDecryption;
+    }
+    
+    /**
+     * Set the flag which indicates whether EncryptedData is decrypted by streaming the cipher octets
+     * directly into the parser, where supported.  Defaults to false.
+     * 
+     * @param flag the new value of the flag for this decrypter instance
+     */
+    public void setStreamingDecryption(final boolean flag) {
+        streamingDecryption = flag;
+    }
+    
+    /**
+     * Get the optional cache of keys obtained by decrypting EncryptedKey instances
+     * using the KEK KeyInfo credential resolver.
+     * 
+     * @return the decrypted key cache, or null
+     */
+    @Nullable public DecryptedKeyCache getDecryptedKeyCache() {
+        return decryptedKeyCache;
+    }
+    
+    /**
+     * Set the optional cache of keys obtained by decrypting EncryptedKey instances
+     * using the KEK KeyInfo credential resolver.
+     * 
+     * <p>
+     * The cache may be shared among decrypters operating on the same message, so that an EncryptedKey
+     * referenced by multiple EncryptedData elements is only decrypted once.
+     * </p>
+     * 
+     * @param cache the decrypted key cache, or null
+     */
+    public void setDecryptedKeyCache(@Nullable final DecryptedKeyCache cache) {
+        decryptedKeyCache = cache;
+    }
 
     /**
      * Get the Java Cryptography Architecture (JCA) security provider name that should be used to provide the decryption
@@ -573,6 +645,15 @@ public class Decrypter {
             throw e;
         }
         final Element targetElement = encryptedData.getDOM();
+        
+        if (isStreamingDecryption()) {
+            final DocumentFragment docFragment = decryptStreaming(encryptedData, dataEncKey,
+                    targetElement.getOwnerDocument());
+            if (docFragment != null) {
+                return docFragment;
+            }
+            log.debug("Streaming decryption is not supported for this EncryptedData, using standard decryption");
+        }
 
         final XMLCipher xmlCipher;
         try {
@@ -627,11 +708,24 @@ public class Decrypter {
             throw new DecryptionException("Algorithm of encrypted key not supplied, key decryption cannot proceed");
         }
 
+        if (decryptedKeyCache != null) {
+            final Key cachedKey = decryptedKeyCache.get(encryptedKey, algorithm);
+            if (cachedKey != null) {
+                validateAlgorithms(encryptedKey);
+                log.debug("Using previously decrypted key for EncryptedKey");
+                return cachedKey;
+            }
+        }
+
         final CriteriaSet criteriaSet = buildCredentialCriteria(encryptedKey, kekResolverCriteria);
         try {
             for (final Credential cred : kekResolver.resolve(criteriaSet)) {
                 try {
-                    return decryptKey(encryptedKey, algorithm, CredentialSupport.extractDecryptionKey(cred));
+                    final Key key = decryptKey(encryptedKey, algorithm, CredentialSupport.extractDecryptionKey(cred));
+                    if (decryptedKeyCache != null) {
+                        decryptedKeyCache.put(encryptedKey, algorithm, key);
+                    }
+                    return key;
                 } catch (final DecryptionException e) {
                     final String msg =
                             "Attempt to decrypt EncryptedKey using credential from KEK KeyInfo resolver failed: ";
@@ -784,6 +878,74 @@ public class Decrypter {
         return null;
     }
 
+    /**
+     * Attempt to decrypt the supplied EncryptedData by streaming its inline cipher octets through the cipher
+     * directly into the parser.
+     * 
+     * @param encryptedData the encrypted data to decrypt
+     * @param dataEncKey Java Key with which to attempt decryption of the encrypted data
+     * @param owningDocument the Document which will own the returned DocumentFragment
+     * @return the decrypted document fragment, or null if streaming decryption is not supported for the input
+     * @throws DecryptionException exception indicating a decryption error
+     * 
+     * @since 4.1.0
+     */
+    @Nullable protected DocumentFragment decryptStreaming(@Nonnull final EncryptedData encryptedData,
+            @Nonnull final Key dataEncKey, @Nonnull final Document owningDocument) throws DecryptionException {
+        
+        final CipherData cipherData = encryptedData.getCipherData();
+        if (cipherData == null || cipherData.getCipherValue() == null
+                || cipherData.getCipherValue().getDOM() == null) {
+            return null;
+        }
+        
+        final AlgorithmRegistry registry = AlgorithmSupport.getGlobalAlgorithmRegistry();
+        final AlgorithmDescriptor descriptor = registry != null && encryptedData.getEncryptionMethod() != null
+                ? registry.get(encryptedData.getEncryptionMethod().getAlgorithm()) : null;
+        if (!(descriptor instanceof BlockEncryptionAlgorithm)) {
+            return null;
+        }
+        
+        // Only unauthenticated modes are streamed, as otherwise the plaintext could reach the parser before
+        // the authentication tag has been verified.
+        if (!JCAConstants.CIPHER_MODE_CBC.equals(((BlockEncryptionAlgorithm) descriptor).getCipherMode())) {
+            return null;
+        }
+        
+        try {
+            final Cipher cipher;
+            if (getJCAProviderName() != null) {
+                cipher = Cipher.getInstance(descriptor.getJCAAlgorithmID(), getJCAProviderName());
+            } else {
+                cipher = Cipher.getInstance(descriptor.getJCAAlgorithmID());
+            }
+            
+            final InputStream cipherOctets =
+                    Base64.getMimeDecoder().wrap(new TextNodeInputStream(cipherData.getCipherValue().getDOM()));
+            
+            // The IV is prepended to the cipher octets.
+            final int ivLength = cipher.getBlockSize();
+            final byte[] iv = cipherOctets.readNBytes(ivLength);
+            if (iv.length != ivLength) {
+                throw new DecryptionException("EncryptedData CipherValue was too short to contain an IV");
+            }
+            
+            cipher.init(Cipher.DECRYPT_MODE, dataEncKey, new IvParameterSpec(iv));
+            
+            try (final InputStream plaintext = new CipherInputStream(cipherOctets, cipher)) {
+                return parseInputStream(plaintext, owningDocument);
+            }
+        } catch (final GeneralSecurityException | IOException e) {
+            log.error("Error decrypting the encrypted data element: {}", e.getMessage());
+            throw new DecryptionException("Error decrypting the encrypted data element", e);
+        } catch (final DecryptionException e) {
+            throw e;
+        } catch (final Exception e) {
+            // Catch anything else, esp. unchecked RuntimeException, and convert to our checked type.
+            throw new DecryptionException("Probable runtime exception on decryption", e);
+        }
+    }
+
     /**
      * Parse the specified input stream in a DOM DocumentFragment, owned by the specified Document.
      * 
@@ -1101,4 +1263,83 @@ public class Decrypter {
         }
     }
 
+    /**
+     * An {@link InputStream} over the character data of the text node children of an {@link Element}, which
+     * contain only single-byte characters, such as base64-encoded data. The text nodes are read in turn, so the
+     * character data is never concatenated.
+     */
+    private static final class TextNodeInputStream extends InputStream {
+        
+        /** The next child node to be read. */
+        @Nullable private Node nextNode;
+        
+        /** The character data of the current text node. */
+        @Nonnull private String chars;
+        
+        /** The current read position within the current text node. */
+        private int position;
+        
+        /**
+         * Constructor.
+         *
+         * @param element the element whose text node children are to be read
+         */
+        TextNodeInputStream(@Nonnull final Element element) {
+            nextNode = element.getFirstChild();
+            chars = "";
+        }
+        
+        /**
+         * Advance to the next text node with unread character data, if necessary.
+         * 
+         * @return true if there is unread character data, false if the end of the data has been reached
+         */
+        private boolean advance() {
+            while (position >= chars.length()) {
+                while (nextNode != null && nextNode.getNodeType() != Node.TEXT_NODE
+                        && nextNode.getNodeType() != Node.CDATA_SECTION_NODE) {
+                    nextNode = nextNode.getNextSibling();
+                }
+                if (nextNode == null) {
+                    return false;
+                }
+                chars = nextNode.getNodeValue();
+                position = 0;
+                nextNode = nextNode.getNextSibling();
+            }
+            return true;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public int read() {
+            if (!advance()) {
+                return -1;
+            }
+            return chars.charAt(position++) & 0xff;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            final int count = Math.min(len, chars.length() - position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) chars.charAt(position++);
+            }
+            return count;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public int available() {
+            return chars.length() - position;
+        }
+    }
+
 }
\ No newline at end of file
@@ -17,6 +17,7 @@
 
 package org.opensaml.xmlsec.signature.support;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -26,6 +27,7 @@ import javax.annotation.Nullable;
 import org.opensaml.core.xml.XMLObjectBuilder;
 import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
 import org.opensaml.core.xml.io.Marshaller;
+import org.opensaml.core.xml.io.MarshallerFactory;
 import org.opensaml.core.xml.io.MarshallingException;
 import org.opensaml.security.SecurityException;
 import org.opensaml.xmlsec.SignatureSigningParameters;
@@ -297,4 +299,60 @@ public final class SignatureSupport {
         Signer.signObject(signature);
     }
 
+    /**
+     * Signs a collection of {@link SignableXMLObject} instances using a common set of signing parameters.
+     * 
+     * <p>
+     * This is equivalent to calling {@link #signObject(SignableXMLObject, SignatureSigningParameters)} for
+     * each object, but the Signature builder, marshaller factory and {@link SignerProvider} are resolved
+     * only once for the whole batch. All objects are prepared and marshalled before any signature is
+     * computed, and the signatures are then computed in the order supplied.
+     * </p>
+     * 
+     * <p>
+     * Signatures are computed sequentially on the calling thread, since the DOM implementations
+     * backing the marshalled objects are not safe for concurrent use, and sibling objects will
+     * typically share a single owner document.
+     * </p>
+     * 
+     * @param signables the signable XMLObjects to sign
+     * @param parameters the signing parameters to use
+     * 
+     * @throws SecurityException if there is a problem preparing a signature
+     * @throws MarshallingException if there is a problem marshalling an XMLObject
+     * @throws SignatureException if there is a problem with a signature operation
+     */
+    public static void signObjects(@Nonnull @NonnullElements final List<? extends SignableXMLObject> signables,
+            @Nonnull final SignatureSigningParameters parameters) throws SecurityException, MarshallingException,
+            SignatureException {
+        Constraint.isNotNull(signables, "Signable XMLObject list cannot be null");
+        Constraint.isNotNull(parameters, "Signature signing parameters cannot be null");
+        
+        if (signables.isEmpty()) {
+            return;
+        }
+
+        final XMLObjectBuilder<Signature> signatureBuilder =
+                XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilderOrThrow(
+                        Signature.DEFAULT_ELEMENT_NAME);
+        final MarshallerFactory marshallerFactory = XMLObjectProviderRegistrySupport.getMarshallerFactory();
+        
+        final List<Signature> signatures = new ArrayList<>(signables.size());
+        for (final SignableXMLObject signable : signables) {
+            Constraint.isNotNull(signable, "Signable XMLObject cannot be null");
+            
+            final Signature signature = signatureBuilder.buildObject(Signature.DEFAULT_ELEMENT_NAME);
+            signable.setSignature(signature);
+            SignatureSupport.prepareSignatureParams(signature, parameters);
+            
+            final Marshaller marshaller = marshallerFactory.getMarshaller(signable);
+            marshaller.marshall(signable);
+            
+            signatures.add(signature);
+        }
+        
+        getLogger().debug("Signing batch of {} objects", signatures.size());
+        Signer.signObjects(signatures);
+    }
+
 }
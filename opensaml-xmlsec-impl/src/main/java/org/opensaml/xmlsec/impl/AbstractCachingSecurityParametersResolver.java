@@ -0,0 +1,270 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.Resolver;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Abstract base class for security parameters resolvers which memoize the results of a delegate resolver.
+ *
+ * <p>
+ * Results are cached keyed on the value of the input {@link CriteriaSet}, which is compared using the
+ * {@link Object#equals(Object)} semantics of the contained criteria. The standard security configuration
+ * criteria compare their configuration instances by identity, and metadata-derived criteria such as
+ * the SAML role descriptor criterion compare the underlying metadata objects by identity. A metadata refresh,
+ * which produces new metadata object instances, will therefore naturally result in a cache miss.
+ * Stale entries are evicted once the configured entry lifetime has elapsed, or once the cache reaches its
+ * maximum size, in least-recently-used order.
+ * </p>
+ *
+ * <p>
+ * Since parameters instances are mutable, a copy of the cached instance is returned to each caller.
+ * </p>
+ *
+ * @param <ProductType> the type of output produced by the resolver
+ */
+public abstract class AbstractCachingSecurityParametersResolver<ProductType>
+        implements Resolver<ProductType, CriteriaSet> {
+
+    /** Default maximum number of cache entries: 500. */
+    public static final int DEFAULT_MAX_CACHE_SIZE = 500;
+
+    /** Default cache entry lifetime: 10 minutes. */
+    @Nonnull public static final Duration DEFAULT_CACHE_ENTRY_LIFETIME = Duration.ofMinutes(10);
+
+    /** Logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(AbstractCachingSecurityParametersResolver.class);
+
+    /** The delegate resolver. */
+    @Nonnull private final Resolver<ProductType, CriteriaSet> delegate;
+
+    /** The result cache, in access order. */
+    @Nonnull private final Map<CriteriaSet, CacheEntry<ProductType>> cache;
+
+    /** Maximum number of cache entries. */
+    private int maxCacheSize;
+
+    /** Lifetime of a cache entry. */
+    @Nonnull private Duration cacheEntryLifetime;
+
+    /**
+     * Constructor.
+     *
+     * @param resolver the delegate resolver
+     */
+    protected AbstractCachingSecurityParametersResolver(@Nonnull final Resolver<ProductType, CriteriaSet> resolver) {
+        delegate = Constraint.isNotNull(resolver, "Delegate resolver may not be null");
+        maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+        cacheEntryLifetime = DEFAULT_CACHE_ENTRY_LIFETIME;
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            /** Serial version UID. */
+            private static final long serialVersionUID = -2862327734458347434L;
+
+            /** {@inheritDoc} */
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<CriteriaSet, CacheEntry<ProductType>> eldest) {
+                return size() > maxCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Get the delegate resolver.
+     *
+     * @return the delegate resolver
+     */
+    @Nonnull public Resolver<ProductType, CriteriaSet> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Get the maximum number of cache entries.
+     *
+     * <p>Defaults to {@link #DEFAULT_MAX_CACHE_SIZE}.</p>
+     *
+     * @return the maximum cache size
+     */
+    public int getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * Set the maximum number of cache entries.
+     *
+     * <p>Defaults to {@link #DEFAULT_MAX_CACHE_SIZE}.</p>
+     *
+     * @param size the maximum cache size, must be greater than 0
+     */
+    public void setMaxCacheSize(final int size) {
+        maxCacheSize = (int) Constraint.isGreaterThan(0, size, "Maximum cache size must be greater than 0");
+    }
+
+    /**
+     * Get the lifetime of a cache entry.
+     *
+     * <p>Defaults to {@link #DEFAULT_CACHE_ENTRY_LIFETIME}.</p>
+     *
+     * @return the cache entry lifetime
+     */
+    @Nonnull public Duration getCacheEntryLifetime() {
+        return cacheEntryLifetime;
+    }
+
+    /**
+     * Set the lifetime of a cache entry.
+     *
+     * <p>Defaults to {@link #DEFAULT_CACHE_ENTRY_LIFETIME}.</p>
+     *
+     * @param lifetime the cache entry lifetime, must be positive
+     */
+    public void setCacheEntryLifetime(@Nonnull final Duration lifetime) {
+        Constraint.isNotNull(lifetime, "Cache entry lifetime may not be null");
+        Constraint.isFalse(lifetime.isNegative() || lifetime.isZero(), "Cache entry lifetime must be positive");
+        cacheEntryLifetime = lifetime;
+    }
+
+    /**
+     * Remove all cached entries.
+     *
+     * <p>This may be used, for example, when an underlying configuration or metadata source is known
+     * to have changed.</p>
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Nonnull public Iterable<ProductType> resolve(@Nullable final CriteriaSet criteria) throws ResolverException {
+        final ProductType params = resolveSingle(criteria);
+        if (params != null) {
+            return Collections.singletonList(params);
+        }
+        return Collections.emptyList();
+    }
+
+    /** {@inheritDoc} */
+    @Nullable public ProductType resolveSingle(@Nullable final CriteriaSet criteria) throws ResolverException {
+        if (criteria == null) {
+            return delegate.resolveSingle(criteria);
+        }
+
+        final CriteriaSet key = new CriteriaSet();
+        key.addAll(criteria);
+
+        final Instant now = Instant.now();
+
+        synchronized (cache) {
+            final CacheEntry<ProductType> entry = cache.get(key);
+            if (entry != null) {
+                if (now.isBefore(entry.getExpiration())) {
+                    log.trace("Resolved cached security parameters for criteria: {}", key);
+                    return copy(entry.getProduct(), criteria);
+                }
+                cache.remove(key);
+            }
+        }
+
+        final ProductType params = delegate.resolveSingle(criteria);
+        if (params == null) {
+            return null;
+        }
+
+        // Cache a private copy, so that subsequent caller modification of the returned instance is harmless.
+        synchronized (cache) {
+            cache.put(key, new CacheEntry<>(copy(params, criteria), now.plus(cacheEntryLifetime)));
+        }
+
+        return params;
+    }
+
+    /**
+     * Produce a copy of the supplied parameters instance.
+     *
+     * <p>
+     * Implementations must also regenerate any values which must not be shared across resolutions.
+     * </p>
+     *
+     * @param params the parameters instance to copy
+     * @param criteria the input criteria being evaluated
+     *
+     * @return the copy
+     */
+    @Nonnull protected abstract ProductType copy(@Nonnull final ProductType params,
+            @Nonnull final CriteriaSet criteria);
+
+    /**
+     * A cached result and its expiration.
+     *
+     * @param <T> the type of cached product
+     */
+    private static final class CacheEntry<T> {
+
+        /** The cached product. */
+        @Nonnull private final T product;
+
+        /** The expiration instant. */
+        @Nonnull private final Instant expiration;
+
+        /**
+         * Constructor.
+         *
+         * @param cachedProduct the cached product
+         * @param expires the expiration instant
+         */
+        CacheEntry(@Nonnull final T cachedProduct, @Nonnull final Instant expires) {
+            product = cachedProduct;
+            expiration = expires;
+        }
+
+        /**
+         * Get the cached product.
+         *
+         * @return the cached product
+         */
+        @Nonnull public T getProduct() {
+            return product;
+        }
+
+        /**
+         * Get the expiration instant.
+         *
+         * @return the expiration instant
+         */
+        @Nonnull public Instant getExpiration() {
+            return expiration;
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.impl;
+
+import java.security.KeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.EncryptionConfiguration;
+import org.opensaml.xmlsec.EncryptionParameters;
+import org.opensaml.xmlsec.EncryptionParametersResolver;
+import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
+import org.opensaml.xmlsec.criterion.EncryptionConfigurationCriterion;
+import org.opensaml.xmlsec.encryption.support.RSAOAEPParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link EncryptionParametersResolver} which caches the results of a delegate resolver,
+ * for example an instance of {@link BasicEncryptionParametersResolver}.
+ * 
+ * <p>
+ * See {@link AbstractCachingSecurityParametersResolver} for details of cache keying and eviction.
+ * </p>
+ * 
+ * <p>
+ * A data encryption credential which was not supplied by one of the {@link EncryptionConfiguration} instances
+ * in the input criteria is assumed to have been auto-generated by the delegate, and a fresh credential
+ * is generated for each resolution served from the cache, so that symmetric keys are never shared
+ * between callers.
+ * </p>
+ */
+public class CachingEncryptionParametersResolver 
+        extends AbstractCachingSecurityParametersResolver<EncryptionParameters>
+        implements EncryptionParametersResolver {
+    
+    /** Logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(CachingEncryptionParametersResolver.class);
+    
+    /**
+     * Constructor.
+     *
+     * @param resolver the delegate resolver
+     */
+    public CachingEncryptionParametersResolver(@Nonnull final EncryptionParametersResolver resolver) {
+        super(resolver);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull protected EncryptionParameters copy(@Nonnull final EncryptionParameters params,
+            @Nonnull final CriteriaSet criteria) {
+        final EncryptionParameters copy = new EncryptionParameters();
+        copy.setDataEncryptionAlgorithm(params.getDataEncryptionAlgorithm());
+        copy.setDataKeyInfoGenerator(params.getDataKeyInfoGenerator());
+        copy.setKeyTransportEncryptionCredential(params.getKeyTransportEncryptionCredential());
+        copy.setKeyTransportEncryptionAlgorithm(params.getKeyTransportEncryptionAlgorithm());
+        copy.setKeyTransportKeyInfoGenerator(params.getKeyTransportKeyInfoGenerator());
+        
+        final RSAOAEPParameters rsaParams = params.getRSAOAEPParameters();
+        if (rsaParams != null) {
+            copy.setRSAOAEPParameters(new RSAOAEPParameters(rsaParams.getDigestMethod(),
+                    rsaParams.getMaskGenerationFunction(), rsaParams.getOAEPParams()));
+        }
+        
+        final Credential dataCredential = params.getDataEncryptionCredential();
+        if (dataCredential != null && !isConfiguredDataEncryptionCredential(dataCredential, criteria)) {
+            copy.setDataEncryptionCredential(generateDataEncryptionCredential(params.getDataEncryptionAlgorithm()));
+        } else {
+            copy.setDataEncryptionCredential(dataCredential);
+        }
+        
+        return copy;
+    }
+    
+    /**
+     * Evaluate whether the supplied data encryption credential was supplied by one of the
+     * input {@link EncryptionConfiguration} instances.
+     * 
+     * @param credential the data encryption credential to evaluate
+     * @param criteria the input criteria being evaluated
+     * 
+     * @return true if the credential is a configured credential, false otherwise
+     */
+    protected boolean isConfiguredDataEncryptionCredential(@Nonnull final Credential credential,
+            @Nonnull final CriteriaSet criteria) {
+        final EncryptionConfigurationCriterion criterion = criteria.get(EncryptionConfigurationCriterion.class);
+        if (criterion != null) {
+            for (final EncryptionConfiguration config : criterion.getConfigurations()) {
+                if (config.getDataEncryptionCredentials().contains(credential)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Generate a random data encryption symmetric key credential.
+     * 
+     * @param dataEncryptionAlgorithm the data encryption algorithm URI
+     * 
+     * @return the generated credential, or null if there was a problem generating a key from the algorithm URI
+     */
+    @Nullable protected Credential generateDataEncryptionCredential(@Nullable final String dataEncryptionAlgorithm) {
+        if (dataEncryptionAlgorithm == null) {
+            return null;
+        }
+        try {
+            return AlgorithmSupport.generateSymmetricKeyAndCredential(dataEncryptionAlgorithm);
+        } catch (final NoSuchAlgorithmException | KeyException e) {
+            log.warn("Error generating a symmetric key credential using algorithm URI: " + dataEncryptionAlgorithm, e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.impl;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+
+import org.opensaml.xmlsec.SignatureSigningParameters;
+import org.opensaml.xmlsec.SignatureSigningParametersResolver;
+
+/**
+ * Implementation of {@link SignatureSigningParametersResolver} which caches the results of a delegate resolver,
+ * for example an instance of {@link BasicSignatureSigningParametersResolver}.
+ * 
+ * <p>
+ * See {@link AbstractCachingSecurityParametersResolver} for details of cache keying and eviction.
+ * </p>
+ */
+public class CachingSignatureSigningParametersResolver 
+        extends AbstractCachingSecurityParametersResolver<SignatureSigningParameters>
+        implements SignatureSigningParametersResolver {
+    
+    /**
+     * Constructor.
+     *
+     * @param resolver the delegate resolver
+     */
+    public CachingSignatureSigningParametersResolver(@Nonnull final SignatureSigningParametersResolver resolver) {
+        super(resolver);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull protected SignatureSigningParameters copy(@Nonnull final SignatureSigningParameters params,
+            @Nonnull final CriteriaSet criteria) {
+        final SignatureSigningParameters copy = new SignatureSigningParameters();
+        copy.setSigningCredential(params.getSigningCredential());
+        copy.setSignatureAlgorithm(params.getSignatureAlgorithm());
+        copy.setSignatureReferenceDigestMethod(params.getSignatureReferenceDigestMethod());
+        copy.setSignatureReferenceCanonicalizationAlgorithm(params.getSignatureReferenceCanonicalizationAlgorithm());
+        copy.setSignatureCanonicalizationAlgorithm(params.getSignatureCanonicalizationAlgorithm());
+        copy.setSignatureHMACOutputLength(params.getSignatureHMACOutputLength());
+        copy.setKeyInfoGenerator(params.getKeyInfoGenerator());
+        return copy;
+    }
+
+}
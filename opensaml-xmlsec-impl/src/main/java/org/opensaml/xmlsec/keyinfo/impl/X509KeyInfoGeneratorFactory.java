@@ -17,11 +17,21 @@
 
 package org.opensaml.xmlsec.keyinfo.impl;
 
+import java.lang.ref.WeakReference;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -32,6 +42,9 @@ import net.shibboleth.utilities.java.support.logic.Constraint;
 import org.opensaml.core.xml.XMLObject;
 import org.opensaml.core.xml.XMLObjectBuilder;
 import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.security.SecurityException;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.x509.InternalX500DNHandler;
@@ -64,10 +77,14 @@ public class X509KeyInfoGeneratorFactory extends BasicKeyInfoGeneratorFactory {
     /** The set of options configured for the factory. */
     private final X509Options options;
     
+    /** KeyInfo generated by this factory's generators, indexed by credential, if caching is enabled. */
+    private final Map<X509Credential,CachedKeyInfo> keyInfoCache;
+    
     /** Constructor. */
     public X509KeyInfoGeneratorFactory() {
         super();
         options = (X509Options) super.getOptions();
+        keyInfoCache = Collections.synchronizedMap(new WeakHashMap<>());
     }
     
     /** {@inheritDoc} */
@@ -105,6 +122,33 @@ public class X509KeyInfoGeneratorFactory extends BasicKeyInfoGeneratorFactory {
         options.emitCRLs = newValue;
     }
 
+    /**
+     * Get the option to cache the KeyInfo generated for a credential by this factory's generators,
+     * and to return a copy of it for subsequent invocations with the same, unmodified credential.
+     * 
+     * @return the option value
+     */
+    public boolean cacheGeneratedKeyInfo() {
+        return options.cacheGeneratedKeyInfo;
+    }
+
+    /**
+     * Set the option to cache the KeyInfo generated for a credential by this factory's generators,
+     * and to return a copy of it for subsequent invocations with the same, unmodified credential.
+     * 
+     * <p>
+     * This avoids re-encoding the certificate and CRL data, and recomputing derived values such as the
+     * subject key identifier and certificate digest, when a static credential is used repeatedly. The cache
+     * is shared by all generators obtained from this factory, and each entry is only used by generators whose
+     * options match those with which it was generated. Credentials are weakly referenced by the cache.
+     * </p>
+     * 
+     * @param newValue the new option value
+     */
+    public void setCacheGeneratedKeyInfo(final boolean newValue) {
+        options.cacheGeneratedKeyInfo = newValue;
+    }
+
     /**
      * Get the option to emit the entity certificate as an X509Certificate element within X509Data. 
      *
@@ -384,6 +428,28 @@ public class X509KeyInfoGeneratorFactory extends BasicKeyInfoGeneratorFactory {
         return new X509Options();
     }
 
+    /**
+     * Build a snapshot of the options which determine the KeyInfo produced by a generator.
+     * 
+     * <p>The basic options are private to the superclass, so they are taken from the factory, from which the
+     * generator's options have just been cloned.</p>
+     * 
+     * @param generatorOptions the options of the generator
+     * 
+     * @return the options snapshot
+     */
+    @Nonnull private List<Object> buildOptionsKey(@Nonnull final X509Options generatorOptions) {
+        return Arrays.asList(emitKeyNames(), emitEntityIDAsKeyName(), emitPublicKeyValue(),
+                emitPublicDEREncodedKeyValue(), generatorOptions.emitEntityCertificate,
+                generatorOptions.emitEntityCertificateChain, generatorOptions.emitCRLs,
+                generatorOptions.emitX509SubjectName, generatorOptions.emitX509IssuerSerial,
+                generatorOptions.emitX509SKI, generatorOptions.emitX509Digest, generatorOptions.x509DigestAlgorithmURI,
+                generatorOptions.emitSubjectDNAsKeyName, generatorOptions.emitSubjectCNAsKeyName,
+                generatorOptions.emitSubjectAltNamesAsKeyNames, new HashSet<>(generatorOptions.subjectAltNames),
+                generatorOptions.x500DNHandler.getClass(), generatorOptions.x500SubjectDNFormat,
+                generatorOptions.x500IssuerDNFormat);
+    }
+
     /**
      * An implementation of {@link KeyInfoGenerator} capable of handling the information 
      * contained within a {@link X509Credential}.
@@ -401,6 +467,9 @@ public class X509KeyInfoGeneratorFactory extends BasicKeyInfoGeneratorFactory {
         
         /** Builder for X509Data objects. */
         private final XMLObjectBuilder<X509Data> x509DataBuilder;
+        
+        /** Snapshot of the options identifying the KeyInfo this generator produces, if caching is enabled. */
+        @Nullable private final List<Object> optionsKey;
        
         /**
          * Constructor.
@@ -410,6 +479,7 @@ public class X509KeyInfoGeneratorFactory extends BasicKeyInfoGeneratorFactory {
         protected X509KeyInfoGenerator(final X509Options newOptions) {
             super(newOptions);
             options = newOptions;
+            optionsKey = newOptions.cacheGeneratedKeyInfo ? buildOptionsKey(newOptions) : null;
             
             keyInfoBuilder = XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilderOrThrow(
                     KeyInfo.DEFAULT_ELEMENT_NAME);
@@ -429,6 +499,14 @@ public class X509KeyInfoGeneratorFactory extends BasicKeyInfoGeneratorFactory {
             }
             final X509Credential x509Credential = (X509Credential) credential;
             
+            if (optionsKey != null) {
+                final CachedKeyInfo cached = keyInfoCache.get(x509Credential);
+                if (cached != null && cached.isValidFor(x509Credential, optionsKey)) {
+                    log.trace("Returning copy of cached KeyInfo for credential");
+                    return cached.getCopy();
+                }
+            }
+            
             KeyInfo keyInfo =  super.generate(credential);
             if (keyInfo == null) {
                 keyInfo = keyInfoBuilder.buildObject(KeyInfo.DEFAULT_ELEMENT_NAME);
@@ -446,6 +524,11 @@ public class X509KeyInfoGeneratorFactory extends BasicKeyInfoGeneratorFactory {
             
             final List<XMLObject> keyInfoChildren = keyInfo.getOrderedChildren();
             if (keyInfoChildren != null && keyInfoChildren.size() > 0) {
+                if (optionsKey != null) {
+                    final CachedKeyInfo cached = new CachedKeyInfo(x509Credential, optionsKey, keyInfo);
+                    keyInfoCache.put(x509Credential, cached);
+                    return cached.getCopy();
+                }
                 return keyInfo;
             }
             return null;
@@ -787,6 +870,9 @@ public class X509KeyInfoGeneratorFactory extends BasicKeyInfoGeneratorFactory {
        /** The format specifier for outputting X.500 issuer names. */
        private String x500IssuerDNFormat;
        
+       /** Cache the generated KeyInfo within the factory. */
+       private boolean cacheGeneratedKeyInfo;
+       
        /** Constructor. */
        protected X509Options() {
            x509DigestAlgorithmURI = EncryptionConstants.ALGO_ID_DIGEST_SHA256;
@@ -810,4 +896,119 @@ public class X509KeyInfoGeneratorFactory extends BasicKeyInfoGeneratorFactory {
        
    }
 
+    /**
+     * A generated KeyInfo, along with a snapshot of the credential data from which it was generated.
+     */
+    private static final class CachedKeyInfo {
+        
+        /** The credential from which the KeyInfo was generated, weakly referenced as it keys the cache. */
+        @Nonnull private final WeakReference<X509Credential> credential;
+        
+        /** Snapshot of the generator options with which the KeyInfo was generated. */
+        @Nonnull private final List<Object> optionsKey;
+        
+        /** The credential's entity certificate at generation time. */
+        @Nullable private final java.security.cert.X509Certificate entityCertificate;
+        
+        /** The credential's entity certificate chain at generation time. */
+        @Nonnull private final List<java.security.cert.X509Certificate> entityCertificateChain;
+        
+        /** The credential's CRLs at generation time. */
+        @Nonnull private final List<java.security.cert.X509CRL> crls;
+        
+        /** The credential's key names at generation time. */
+        @Nonnull private final List<String> keyNames;
+        
+        /** The credential's entityID at generation time. */
+        @Nullable private final String entityId;
+        
+        /** The credential's public key at generation time. */
+        @Nullable private final PublicKey publicKey;
+        
+        /** The KeyInfo template, with its cached DOM. */
+        @Nonnull private final KeyInfo template;
+        
+        /**
+         * Constructor.
+         *
+         * @param cred the credential from which the KeyInfo was generated
+         * @param key snapshot of the generator options with which the KeyInfo was generated
+         * @param keyInfo the generated KeyInfo
+         * 
+         * @throws SecurityException if the KeyInfo could not be marshalled
+         */
+        CachedKeyInfo(@Nonnull final X509Credential cred, @Nonnull final List<Object> key,
+                @Nonnull final KeyInfo keyInfo) throws SecurityException {
+            credential = new WeakReference<>(cred);
+            optionsKey = key;
+            entityCertificate = cred.getEntityCertificate();
+            entityCertificateChain = copyOf(cred.getEntityCertificateChain());
+            crls = copyOf(cred.getCRLs());
+            keyNames = copyOf(cred.getKeyNames());
+            entityId = cred.getEntityId();
+            publicKey = cred.getPublicKey();
+            
+            // Marshall once up front so that copies only need to clone the cached DOM.
+            try {
+                XMLObjectSupport.marshall(keyInfo);
+            } catch (final MarshallingException e) {
+                throw new SecurityException("Error marshalling generated KeyInfo for caching", e);
+            }
+            template = keyInfo;
+        }
+        
+        /**
+         * Evaluate whether this cached KeyInfo is valid for the supplied credential.
+         * 
+         * @param cred the credential to evaluate
+         * @param key snapshot of the options of the generator evaluating the credential
+         * 
+         * @return true if the credential is the one from which the KeyInfo was generated, and is unchanged,
+         *          and the options match those with which it was generated
+         */
+        boolean isValidFor(@Nonnull final X509Credential cred, @Nonnull final List<Object> key) {
+            return cred == credential.get()
+                    && optionsKey.equals(key)
+                    && cred.getEntityCertificate() == entityCertificate
+                    && entityCertificateChain.equals(copyOf(cred.getEntityCertificateChain()))
+                    && crls.equals(copyOf(cred.getCRLs()))
+                    && keyNames.equals(copyOf(cred.getKeyNames()))
+                    && Objects.equals(entityId, cred.getEntityId())
+                    && Objects.equals(publicKey, cred.getPublicKey());
+        }
+        
+        /**
+         * Get a copy of the cached KeyInfo.
+         * 
+         * @return a new KeyInfo instance equivalent to the cached KeyInfo
+         * 
+         * @throws SecurityException if the cached KeyInfo could not be cloned
+         */
+        @Nonnull KeyInfo getCopy() throws SecurityException {
+            try {
+                // Serialize access to the shared template DOM while cloning it.
+                synchronized (template) {
+                    return XMLObjectSupport.cloneXMLObject(template);
+                }
+            } catch (final MarshallingException | UnmarshallingException e) {
+                throw new SecurityException("Error cloning cached KeyInfo", e);
+            }
+        }
+        
+        /**
+         * Produce a list copy of a possibly null collection.
+         * 
+         * @param collection the collection to copy
+         * @param <T> the type of collection element
+         * 
+         * @return the list copy
+         */
+        @Nonnull private static <T> List<T> copyOf(@Nullable final Collection<T> collection) {
+            if (collection == null) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>(collection);
+        }
+    }
+
 }
\ No newline at end of file
@@ -17,6 +17,10 @@
 
 package org.opensaml.xmlsec.signature.support.impl;
 
+import java.security.PublicKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -25,6 +29,7 @@ import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
+import org.opensaml.core.criterion.EntityIdCriterion;
 import org.opensaml.security.SecurityException;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.CredentialResolver;
@@ -52,6 +57,12 @@ import com.google.common.base.Strings;
  * key, then all trusted credentials obtained by the trusted credential resolver will be used to attempt to validate the
  * signature.
  * </p>
+ * 
+ * <p>
+ * When validating raw signatures on behalf of an entity, the trusted credential whose key last verified a raw
+ * signature for that entity is tried before the others, so that entities with several trusted keys, e.g. during a
+ * key rollover, don't pay for failed verifications on every message.
+ * </p>
  */
 public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<Iterable<Credential>> implements
         TrustedCredentialTrustEngine<Signature> {
@@ -65,6 +76,9 @@ public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<It
     /** The external explicit key trust engine to use as a basis for trust in this implementation. */
     private final ExplicitKeyTrustEvaluator keyTrust;
 
+    /** Keys of the trusted credentials which last verified a raw signature, indexed by entityID. */
+    private final Map<String,PublicKey> lastVerifyingKeys;
+
     /**
      * Constructor.
      * 
@@ -78,6 +92,7 @@ public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<It
 
         credentialResolver = Constraint.isNotNull(resolver, "Credential resolver cannot be null");
         keyTrust = new ExplicitKeyTrustEvaluator();
+        lastVerifyingKeys = new ConcurrentHashMap<>();
     }
 
     /** {@inheritDoc} */
@@ -172,15 +187,20 @@ public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<It
         // as a fall back attempt to verify the signature with the trusted credentials directly.
         log.debug("Attempting to verify signature using trusted credentials");
 
+        final EntityIdCriterion entityCriterion = criteriaSet.get(EntityIdCriterion.class);
+        final String entityID = entityCriterion != null ? entityCriterion.getEntityId() : null;
+        final Credential lastVerifying = getLastVerifyingCredential(entityID, trustedCredentials);
+        if (lastVerifying != null && verifyWithTrustedCredential(lastVerifying, signature, content, algorithmURI)) {
+            return true;
+        }
+
         for (final Credential trustedCredential : trustedCredentials) {
-            try {
-                if (XMLSigningUtil.verifyWithURI(trustedCredential, algorithmURI, signature, content)) {
-                    log.debug("Successfully verified signature using resolved trusted credential");
-                    return true;
+            if (trustedCredential != lastVerifying
+                    && verifyWithTrustedCredential(trustedCredential, signature, content, algorithmURI)) {
+                if (entityID != null && trustedCredential.getPublicKey() != null) {
+                    lastVerifyingKeys.put(entityID, trustedCredential.getPublicKey());
                 }
-            } catch (final SecurityException e) {
-                // Java 7 now throws this exception under conditions such as mismatched key sizes.
-                log.debug("Saw fatal error attempting to verify raw signature with trusted credential", e);
+                return true;
             }
         }
         log.debug("Failed to verify signature using either supplied candidate credential"
@@ -190,6 +210,55 @@ public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<It
 
     // CheckStyle: CyclomaticComplexity ON
 
+    /**
+     * Get the trusted credential whose key last verified a raw signature for an entity.
+     * 
+     * @param entityID the entityID, if known
+     * @param trustedCredentials the trusted credentials of the entity
+     * @return the trusted credential with the last verifying key, or null
+     */
+    @Nullable private Credential getLastVerifyingCredential(@Nullable final String entityID,
+            @Nonnull final Iterable<Credential> trustedCredentials) {
+        if (entityID == null) {
+            return null;
+        }
+        final PublicKey lastKey = lastVerifyingKeys.get(entityID);
+        if (lastKey == null) {
+            return null;
+        }
+        for (final Credential trustedCredential : trustedCredentials) {
+            if (lastKey.equals(trustedCredential.getPublicKey())) {
+                return trustedCredential;
+            }
+        }
+        // The key is no longer trusted.
+        lastVerifyingKeys.remove(entityID, lastKey);
+        return null;
+    }
+
+    /**
+     * Verify a raw signature using a trusted credential.
+     * 
+     * @param trustedCredential the trusted credential
+     * @param signature the signature value
+     * @param content the content that was signed
+     * @param algorithmURI the signature algorithm URI
+     * @return true if the signature was verified, false otherwise
+     */
+    private boolean verifyWithTrustedCredential(@Nonnull final Credential trustedCredential,
+            @Nonnull final byte[] signature, @Nonnull final byte[] content, @Nonnull final String algorithmURI) {
+        try {
+            if (XMLSigningUtil.verifyWithURI(trustedCredential, algorithmURI, signature, content)) {
+                log.debug("Successfully verified signature using resolved trusted credential");
+                return true;
+            }
+        } catch (final SecurityException e) {
+            // Java 7 now throws this exception under conditions such as mismatched key sizes.
+            log.debug("Saw fatal error attempting to verify raw signature with trusted credential", e);
+        }
+        return false;
+    }
+
     /** {@inheritDoc} */
     @Override protected boolean evaluateTrust(@Nonnull final Credential untrustedCredential,
             @Nullable final Iterable<Credential> trustedCredentials) throws SecurityException {
@@ -132,6 +132,15 @@ public class AESGCMTest extends XMLObjectBaseTestCase {
             Assert.assertTrue(decryptedXMLObject instanceof SignableSimpleXMLObject);
             assertXMLEquals(sxo.getDOM().getOwnerDocument(), decryptedXMLObject);
             
+            // GCM is never streamed, so this falls back to standard decryption.
+            decrypter.setStreamingDecryption(true);
+            
+            decryptedXMLObject = decrypter.decryptData(encryptedData);
+            
+            Assert.assertNotNull(decryptedXMLObject);
+            Assert.assertTrue(decryptedXMLObject instanceof SignableSimpleXMLObject);
+            assertXMLEquals(sxo.getDOM().getOwnerDocument(), decryptedXMLObject);
+            
         } finally {
             providerSupport.unloadBC();
         }
@@ -25,6 +25,8 @@ import java.security.NoSuchProviderException;
 import java.util.Arrays;
 import java.util.Collections;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.crypto.SecretKey;
 
 import net.shibboleth.utilities.java.support.xml.XMLParserException;
@@ -38,6 +40,7 @@ import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
 import org.opensaml.xmlsec.encryption.EncryptedData;
 import org.opensaml.xmlsec.encryption.EncryptedKey;
 import org.opensaml.xmlsec.encryption.support.DataEncryptionParameters;
+import org.opensaml.xmlsec.encryption.support.DecryptedKeyCache;
 import org.opensaml.xmlsec.encryption.support.Decrypter;
 import org.opensaml.xmlsec.encryption.support.DecryptionException;
 import org.opensaml.xmlsec.encryption.support.EncryptedKeyResolver;
@@ -56,6 +59,8 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Text;
 
 /**
  * Simple tests for decryption.
@@ -147,6 +152,36 @@ public class SimpleDecryptionTest extends XMLObjectBaseTestCase {
         
     }
     
+    /**
+     * Test that a decrypted key cache shared between decrypters avoids repeated EncryptedKey decryption.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testEncryptedKeyCached() throws Exception {
+        final DecryptedKeyCache cache = new DecryptedKeyCache();
+        
+        Decrypter decrypter = new Decrypter(null, kekResolver, null);
+        decrypter.setDecryptedKeyCache(cache);
+        Key decryptedKey = decrypter.decryptKey(encryptedKey, encURI);
+        Assert.assertEquals(decryptedKey, encKey);
+        Assert.assertSame(cache.get(encryptedKey, encURI), decryptedKey);
+        
+        // A KEK resolver which can't decrypt the key demonstrates the cached key is used.
+        final Credential badKEKCred = AlgorithmSupport.generateKeyPairAndCredential(kekURI, 1024, true);
+        decrypter = new Decrypter(null, new StaticKeyInfoCredentialResolver(badKEKCred), null);
+        decrypter.setDecryptedKeyCache(cache);
+        Assert.assertSame(decrypter.decryptKey(encryptedKey, encURI), decryptedKey);
+        
+        cache.clear();
+        try {
+            decrypter.decryptKey(encryptedKey, encURI);
+            Assert.fail("Decryption with incorrect KEK should have failed");
+        } catch (final DecryptionException e) {
+            // expected
+        }
+    }
+    
     /**
      *  Test simple decryption of an EncryptedData object which is of type Element.
      */
@@ -165,6 +200,54 @@ public class SimpleDecryptionTest extends XMLObjectBaseTestCase {
         
     }
     
+    /**
+     *  Test streaming decryption of an EncryptedData object which is of type Element.
+     *  
+     * @throws DecryptionException ...
+     */
+    @Test
+    public void testEncryptedElementStreaming() throws DecryptionException {
+        CountingDecrypter decrypter = new CountingDecrypter(keyResolver);
+        decrypter.setStreamingDecryption(true);
+        
+        XMLObject decryptedXMLObject = decrypter.decryptData(encryptedData);
+        
+        assertXMLEquals(targetDOM, decryptedXMLObject);
+        Assert.assertEquals(decrypter.streamed, 1);
+    }
+    
+    /**
+     *  Test streaming decryption of an EncryptedData object whose CipherValue is split across text nodes.
+     *  
+     * @throws DecryptionException ...
+     */
+    @Test
+    public void testEncryptedElementStreamingSplitCipherValue() throws DecryptionException {
+        Text cipherText = (Text) encryptedData.getCipherData().getCipherValue().getDOM().getFirstChild();
+        cipherText.splitText(cipherText.getLength() / 2);
+        
+        CountingDecrypter decrypter = new CountingDecrypter(keyResolver);
+        decrypter.setStreamingDecryption(true);
+        
+        XMLObject decryptedXMLObject = decrypter.decryptData(encryptedData);
+        
+        assertXMLEquals(targetDOM, decryptedXMLObject);
+        Assert.assertEquals(decrypter.streamed, 1);
+    }
+    
+    /**
+     * Test streaming decryption with the wrong key, which should fail.
+     * 
+     * @throws Exception ...
+     */
+    @Test(expectedExceptions=DecryptionException.class)
+    public void testEncryptedElementStreamingWrongKey() throws Exception {
+        Decrypter decrypter = new Decrypter(null, null, null);
+        decrypter.setStreamingDecryption(true);
+        
+        decrypter.decryptDataToDOM(encryptedData, AlgorithmSupport.generateSymmetricKey(encURI));
+    }
+    
     /**
      * Test EncryptedData decryption which should fail due to blacklist validation.
      * 
@@ -490,4 +573,33 @@ public class SimpleDecryptionTest extends XMLObjectBaseTestCase {
         
     }
     
+    /**
+     * Decrypter which counts the decryptions completed by the streaming path rather than the DOM fallback.
+     */
+    private static class CountingDecrypter extends Decrypter {
+        
+        /** Number of successful streaming decryptions. */
+        private int streamed;
+        
+        /**
+         * Constructor.
+         *
+         * @param resolver resolver for the data encryption key
+         */
+        public CountingDecrypter(@Nullable final KeyInfoCredentialResolver resolver) {
+            super(resolver, null, null);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        @Nullable protected DocumentFragment decryptStreaming(@Nonnull final EncryptedData encryptedData,
+                @Nonnull final Key dataEncKey, @Nonnull final Document owningDocument) throws DecryptionException {
+            final DocumentFragment fragment = super.decryptStreaming(encryptedData, dataEncKey, owningDocument);
+            if (fragment != null) {
+                streamed++;
+            }
+            return fragment;
+        }
+    }
+    
 }
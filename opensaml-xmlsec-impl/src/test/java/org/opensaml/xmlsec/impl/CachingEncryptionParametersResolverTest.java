@@ -0,0 +1,171 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.impl;
+
+import static org.testng.Assert.*;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.util.Collections;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+
+import org.opensaml.core.testing.XMLObjectBaseTestCase;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.CredentialSupport;
+import org.opensaml.security.crypto.JCAConstants;
+import org.opensaml.security.crypto.KeySupport;
+import org.opensaml.xmlsec.EncryptionParameters;
+import org.opensaml.xmlsec.criterion.EncryptionConfigurationCriterion;
+import org.opensaml.xmlsec.encryption.support.EncryptionConstants;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test the caching encryption parameters resolver.
+ */
+public class CachingEncryptionParametersResolverTest extends XMLObjectBaseTestCase {
+    
+    private CountingResolver delegate;
+    
+    private CachingEncryptionParametersResolver resolver;
+    
+    private BasicEncryptionConfiguration config;
+    
+    private Credential rsaCred1, aes128Cred1;
+    
+    @BeforeClass
+    public void buildCredentials() throws NoSuchAlgorithmException, NoSuchProviderException {
+        KeyPair rsaKeyPair = KeySupport.generateKeyPair(JCAConstants.KEY_ALGO_RSA, 2048, null);
+        rsaCred1 = CredentialSupport.getSimpleCredential(rsaKeyPair.getPublic(), rsaKeyPair.getPrivate());
+        
+        SecretKey aes128Key = KeySupport.generateKey(JCAConstants.KEY_ALGO_AES, 128, null);
+        aes128Cred1 = CredentialSupport.getSimpleCredential(aes128Key);
+    }
+    
+    @BeforeMethod
+    public void setUp() {
+        delegate = new CountingResolver();
+        resolver = new CachingEncryptionParametersResolver(delegate);
+        
+        config = new BasicEncryptionConfiguration();
+        config.setDataEncryptionAlgorithms(List.of(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128));
+        config.setKeyTransportEncryptionAlgorithms(List.of(EncryptionConstants.ALGO_ID_KEYTRANSPORT_RSAOAEP));
+        config.setKeyTransportEncryptionCredentials(Collections.singletonList(rsaCred1));
+    }
+    
+    @Test
+    public void testCacheHit() throws ResolverException {
+        EncryptionParameters params1 = resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        EncryptionParameters params2 = resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        
+        assertEquals(delegate.count, 1);
+        assertNotNull(params1);
+        assertNotNull(params2);
+        assertNotSame(params1, params2);
+        assertEquals(params2.getKeyTransportEncryptionCredential(), rsaCred1);
+        assertEquals(params2.getKeyTransportEncryptionAlgorithm(), EncryptionConstants.ALGO_ID_KEYTRANSPORT_RSAOAEP);
+        assertEquals(params2.getDataEncryptionAlgorithm(), EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128);
+        assertNotNull(params2.getRSAOAEPParameters());
+        assertNotSame(params1.getRSAOAEPParameters(), params2.getRSAOAEPParameters());
+    }
+    
+    @Test
+    public void testCacheMissOnDifferentConfiguration() throws ResolverException {
+        BasicEncryptionConfiguration other = new BasicEncryptionConfiguration();
+        other.setDataEncryptionAlgorithms(List.of(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES256));
+        
+        resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        EncryptionParameters params = resolver.resolveSingle(
+                new CriteriaSet(new EncryptionConfigurationCriterion(other, config)));
+        
+        assertEquals(delegate.count, 2);
+        assertEquals(params.getDataEncryptionAlgorithm(), EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES256);
+    }
+    
+    @Test
+    public void testClearCache() throws ResolverException {
+        resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        resolver.clearCache();
+        resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        
+        assertEquals(delegate.count, 2);
+    }
+    
+    @Test
+    public void testMaxCacheSize() throws ResolverException {
+        BasicEncryptionConfiguration other = new BasicEncryptionConfiguration();
+        resolver.setMaxCacheSize(1);
+        
+        resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(other, config)));
+        resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        
+        assertEquals(delegate.count, 3);
+    }
+    
+    @Test
+    public void testConfiguredDataEncryptionCredential() throws ResolverException {
+        config.setDataEncryptionCredentials(Collections.singletonList(aes128Cred1));
+        
+        resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        EncryptionParameters params = resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        
+        assertEquals(delegate.count, 1);
+        assertSame(params.getDataEncryptionCredential(), aes128Cred1);
+    }
+    
+    @Test
+    public void testAutoGeneratedDataEncryptionCredential() throws ResolverException {
+        delegate.setAutoGenerateDataEncryptionCredential(true);
+        
+        EncryptionParameters params1 = resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        EncryptionParameters params2 = resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        EncryptionParameters params3 = resolver.resolveSingle(new CriteriaSet(new EncryptionConfigurationCriterion(config)));
+        
+        assertEquals(delegate.count, 1);
+        assertNotNull(params1.getDataEncryptionCredential());
+        assertNotNull(params2.getDataEncryptionCredential());
+        assertNotNull(params3.getDataEncryptionCredential());
+        assertNotEquals(CredentialSupport.extractEncryptionKey(params1.getDataEncryptionCredential()),
+                CredentialSupport.extractEncryptionKey(params2.getDataEncryptionCredential()));
+        assertNotEquals(CredentialSupport.extractEncryptionKey(params2.getDataEncryptionCredential()),
+                CredentialSupport.extractEncryptionKey(params3.getDataEncryptionCredential()));
+    }
+    
+    /**
+     * Delegate resolver which counts invocations.
+     */
+    private class CountingResolver extends BasicEncryptionParametersResolver {
+        
+        private int count;
+        
+        /** {@inheritDoc} */
+        public EncryptionParameters resolveSingle(CriteriaSet criteria) throws ResolverException {
+            count++;
+            return super.resolveSingle(criteria);
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.impl;
+
+import static org.testng.Assert.*;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.util.Collections;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+
+import org.opensaml.core.testing.XMLObjectBaseTestCase;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.CredentialSupport;
+import org.opensaml.security.crypto.JCAConstants;
+import org.opensaml.security.crypto.KeySupport;
+import org.opensaml.xmlsec.SignatureSigningParameters;
+import org.opensaml.xmlsec.criterion.SignatureSigningConfigurationCriterion;
+import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test the caching signature signing parameters resolver.
+ */
+public class CachingSignatureSigningParametersResolverTest extends XMLObjectBaseTestCase {
+    
+    private CountingResolver delegate;
+    
+    private CachingSignatureSigningParametersResolver resolver;
+    
+    private BasicSignatureSigningConfiguration config;
+    
+    private Credential rsaCred;
+    
+    @BeforeClass
+    public void buildCredentials() throws NoSuchAlgorithmException, NoSuchProviderException {
+        KeyPair rsaKeyPair = KeySupport.generateKeyPair(JCAConstants.KEY_ALGO_RSA, 2048, null);
+        rsaCred = CredentialSupport.getSimpleCredential(rsaKeyPair.getPublic(), rsaKeyPair.getPrivate());
+    }
+    
+    @BeforeMethod
+    public void setUp() {
+        delegate = new CountingResolver();
+        resolver = new CachingSignatureSigningParametersResolver(delegate);
+        
+        config = new BasicSignatureSigningConfiguration();
+        config.setSigningCredentials(Collections.singletonList(rsaCred));
+        config.setSignatureAlgorithms(Collections.singletonList(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256));
+        config.setSignatureReferenceDigestMethods(Collections.singletonList(SignatureConstants.ALGO_ID_DIGEST_SHA256));
+        config.setSignatureCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+    }
+    
+    @Test
+    public void testCacheHit() throws ResolverException {
+        SignatureSigningParameters params1 =
+                resolver.resolveSingle(new CriteriaSet(new SignatureSigningConfigurationCriterion(config)));
+        SignatureSigningParameters params2 =
+                resolver.resolveSingle(new CriteriaSet(new SignatureSigningConfigurationCriterion(config)));
+        
+        assertEquals(delegate.count, 1);
+        assertNotNull(params1);
+        assertNotNull(params2);
+        assertNotSame(params1, params2);
+        assertSame(params2.getSigningCredential(), rsaCred);
+        assertEquals(params2.getSignatureAlgorithm(), SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256);
+        assertEquals(params2.getSignatureReferenceDigestMethod(), SignatureConstants.ALGO_ID_DIGEST_SHA256);
+        assertEquals(params2.getSignatureCanonicalizationAlgorithm(),
+                SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+    }
+    
+    @Test
+    public void testCallerModificationNotCached() throws ResolverException {
+        SignatureSigningParameters params1 =
+                resolver.resolveSingle(new CriteriaSet(new SignatureSigningConfigurationCriterion(config)));
+        params1.setSignatureAlgorithm(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA512);
+        
+        SignatureSigningParameters params2 =
+                resolver.resolveSingle(new CriteriaSet(new SignatureSigningConfigurationCriterion(config)));
+        
+        assertEquals(params2.getSignatureAlgorithm(), SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256);
+    }
+    
+    @Test
+    public void testCacheMissOnDifferentConfiguration() throws ResolverException {
+        BasicSignatureSigningConfiguration other = new BasicSignatureSigningConfiguration();
+        other.setSignatureAlgorithms(Collections.singletonList(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA512));
+        
+        resolver.resolveSingle(new CriteriaSet(new SignatureSigningConfigurationCriterion(config)));
+        SignatureSigningParameters params =
+                resolver.resolveSingle(new CriteriaSet(new SignatureSigningConfigurationCriterion(other, config)));
+        
+        assertEquals(delegate.count, 2);
+        assertEquals(params.getSignatureAlgorithm(), SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA512);
+    }
+    
+    @Test
+    public void testNoResultNotCached() throws ResolverException {
+        BasicSignatureSigningConfiguration empty = new BasicSignatureSigningConfiguration();
+        
+        assertNull(resolver.resolveSingle(new CriteriaSet(new SignatureSigningConfigurationCriterion(empty))));
+        assertNull(resolver.resolveSingle(new CriteriaSet(new SignatureSigningConfigurationCriterion(empty))));
+        
+        assertEquals(delegate.count, 2);
+    }
+    
+    /**
+     * Delegate resolver which counts invocations.
+     */
+    private class CountingResolver extends BasicSignatureSigningParametersResolver {
+        
+        private int count;
+        
+        /** {@inheritDoc} */
+        public SignatureSigningParameters resolveSingle(CriteriaSet criteria) throws ResolverException {
+            count++;
+            return super.resolveSingle(criteria);
+        }
+    }
+
+}
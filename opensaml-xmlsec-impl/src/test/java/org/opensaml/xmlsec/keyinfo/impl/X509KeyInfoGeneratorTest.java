@@ -580,6 +580,85 @@ public class X509KeyInfoGeneratorTest extends XMLObjectBaseTestCase {
         Assert.assertTrue(keyNames.contains(altName3), "Failed to find expected KeyName value");
     }
 
+    /**
+     * Test caching of the generated KeyInfo.
+     * 
+     * @throws SecurityException ...
+     * @throws CertificateException ...
+     */
+    @Test
+    public void testCacheGeneratedKeyInfo() throws SecurityException, CertificateException {
+        factory.setCacheGeneratedKeyInfo(true);
+        factory.setEmitKeyNames(true);
+        factory.setEmitEntityCertificateChain(true);
+
+        generator = factory.newInstance();
+        KeyInfo keyInfo1 = generator.generate(credential);
+        KeyInfo keyInfo2 = generator.generate(credential);
+
+        Assert.assertNotNull(keyInfo1, "Generated KeyInfo was null");
+        Assert.assertNotNull(keyInfo2, "Generated KeyInfo was null");
+        Assert.assertNotSame(keyInfo1, keyInfo2, "Cached KeyInfo instance should not be shared");
+        Assert.assertNull(keyInfo2.getParent(), "Copied KeyInfo should not have a parent");
+
+        Assert.assertEquals(keyInfo2.getKeyNames().size(), 2, "Unexpected number of KeyName elements");
+        Assert.assertEquals(keyInfo2.getX509Datas().size(), 1, "Unexpected number of X509Data elements");
+        List<X509Certificate> certs = KeyInfoSupport.getCertificates(keyInfo2.getX509Datas().get(0));
+        Assert.assertEquals(certs.size(), 2, "Unexpected number of X509Certificate elements");
+        Assert.assertTrue(certs.contains(entityCert), "Expected certificate value not found");
+        Assert.assertTrue(certs.contains(caCert), "Expected certificate value not found");
+
+        // The cache is held by the factory, so it is shared with other generators having the same options.
+        KeyInfo keyInfoOther = factory.newInstance().generate(credential);
+        Assert.assertNotNull(keyInfoOther, "Generated KeyInfo was null");
+        Assert.assertNotSame(keyInfoOther, keyInfo2, "Cached KeyInfo instance should not be shared");
+        Assert.assertEquals(keyInfoOther.getKeyNames().size(), 2, "Unexpected number of KeyName elements");
+        Assert.assertEquals(KeyInfoSupport.getCertificates(keyInfoOther.getX509Datas().get(0)).size(), 2,
+                "Unexpected number of X509Certificate elements");
+
+        // A generator with different options should not use the cached KeyInfo.
+        factory.setEmitKeyNames(false);
+        KeyInfo keyInfoNoNames = factory.newInstance().generate(credential);
+        Assert.assertNotNull(keyInfoNoNames, "Generated KeyInfo was null");
+        Assert.assertTrue(keyInfoNoNames.getKeyNames().isEmpty(), "Unexpected KeyName elements found");
+        Assert.assertEquals(generator.generate(credential).getKeyNames().size(), 2,
+                "Unexpected number of KeyName elements");
+
+        // Modifying the credential should invalidate the cached KeyInfo.
+        credential.setEntityCertificateChain(Arrays.asList(entityCert));
+        credential.getKeyNames().remove(keyNameBar);
+
+        KeyInfo keyInfo3 = generator.generate(credential);
+        Assert.assertNotNull(keyInfo3, "Generated KeyInfo was null");
+        Assert.assertEquals(keyInfo3.getKeyNames().size(), 1, "Unexpected number of KeyName elements");
+        certs = KeyInfoSupport.getCertificates(keyInfo3.getX509Datas().get(0));
+        Assert.assertEquals(certs.size(), 1, "Unexpected number of X509Certificate elements");
+        Assert.assertEquals(certs.get(0), entityCert, "Unexpected certificate value found");
+    }
+
+    /**
+     * Test that a cached KeyInfo is not used once the credential's entityID has changed.
+     * 
+     * @throws SecurityException ...
+     */
+    @Test
+    public void testCacheGeneratedKeyInfoEntityID() throws SecurityException {
+        factory.setCacheGeneratedKeyInfo(true);
+        factory.setEmitEntityIDAsKeyName(true);
+
+        generator = factory.newInstance();
+        KeyInfo keyInfo = generator.generate(credential);
+        Assert.assertNotNull(keyInfo, "Generated KeyInfo was null");
+        Assert.assertEquals(KeyInfoSupport.getKeyNames(keyInfo), Arrays.asList(entityID),
+                "Unexpected KeyName values");
+
+        credential.setEntityId("otherEntityID");
+        keyInfo = generator.generate(credential);
+        Assert.assertNotNull(keyInfo, "Generated KeyInfo was null");
+        Assert.assertEquals(KeyInfoSupport.getKeyNames(keyInfo), Arrays.asList("otherEntityID"),
+                "Unexpected KeyName values");
+    }
+
     /**
      * Test that the options passed to the generator are really cloned. After newInstance() is called, changes to the
      * factory options should not be reflected in the generator.
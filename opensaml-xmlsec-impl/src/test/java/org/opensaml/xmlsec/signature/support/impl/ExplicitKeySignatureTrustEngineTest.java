@@ -17,11 +17,14 @@
 
 package org.opensaml.xmlsec.signature.support.impl;
 
+import java.math.BigInteger;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPublicKey;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 
@@ -30,6 +33,7 @@ import org.opensaml.core.testing.XMLObjectBaseTestCase;
 import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
 import org.opensaml.core.xml.io.MarshallingException;
 import org.opensaml.security.SecurityException;
+import org.opensaml.security.credential.BasicCredential;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.impl.CollectionCredentialResolver;
 import org.opensaml.security.crypto.KeySupport;
@@ -304,6 +308,60 @@ public class ExplicitKeySignatureTrustEngineTest extends XMLObjectBaseTestCase {
                 "Raw Signature was valid and non-supplied candidate signing cred was in trusted set");
     }
     
+    /**
+     * Test valid raw signatures with several trusted credentials, and removal of the last verifying credential.
+     * 
+     * @throws Exception ...
+     */
+    @Test
+    public void testRawMultipleTrustedCredentials() throws Exception {
+        // Verification attempts with the decoy are counted by its modulus being obtained, which only
+        // happens when the JCA translates the key to verify with it, unlike resolution and key comparison.
+        final AtomicInteger decoyAttempts = new AtomicInteger();
+        final RSAPublicKey decoyKey = (RSAPublicKey) KeySupport.generateKeyPair("RSA", 2048, null).getPublic();
+        final BasicCredential decoyCred = new BasicCredential(new RSAPublicKey() {
+            private static final long serialVersionUID = 1L;
+            public BigInteger getModulus() {
+                decoyAttempts.incrementAndGet();
+                return decoyKey.getModulus();
+            }
+            public BigInteger getPublicExponent() {
+                return decoyKey.getPublicExponent();
+            }
+            public String getAlgorithm() {
+                return decoyKey.getAlgorithm();
+            }
+            public String getFormat() {
+                return decoyKey.getFormat();
+            }
+            public byte[] getEncoded() {
+                return decoyKey.getEncoded();
+            }
+        });
+        trustedCredentials.add(decoyCred);
+        trustedCredentials.add(signingX509Cred);
+        decoyAttempts.set(0);
+        
+        Assert.assertTrue(engine.validate(rawControlSignature, rawData.getBytes(), rawAlgorithmURI, 
+                criteriaSet, null), 
+                "Raw Signature was valid and non-supplied candidate signing cred was in trusted set");
+        Assert.assertTrue(decoyAttempts.get() > 0, "Trusted credentials should have been tried in order");
+        
+        decoyAttempts.set(0);
+        Assert.assertTrue(engine.validate(rawControlSignature, rawData.getBytes(), rawAlgorithmURI, 
+                criteriaSet, null), 
+                "Raw Signature was valid and last verifying cred was still in trusted set");
+        Assert.assertEquals(decoyAttempts.get(), 0, "Last verifying cred should have been tried first");
+        
+        trustedCredentials.remove(signingX509Cred);
+        
+        decoyAttempts.set(0);
+        Assert.assertFalse(engine.validate(rawControlSignature, rawData.getBytes(), rawAlgorithmURI, 
+                criteriaSet, null), 
+                "Raw Signature was valid, but last verifying cred was no longer in trusted set");
+        Assert.assertTrue(decoyAttempts.get() > 0, "Remaining trusted credentials should have been tried");
+    }
+    
     /**
      * Test valid raw signature, untrusted signing credential.
      * 